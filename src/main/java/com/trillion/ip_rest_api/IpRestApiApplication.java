@@ -2,16 +2,143 @@ package com.trillion.ip_rest_api;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Launches our application.
  */
 @SpringBootApplication
+@EnableScheduling
 public class IpRestApiApplication {
+    /**
+     * Name of entry in application.properties for controlling the max number of addresses changed per statement when
+     * acquiring or releasing a batch of addresses.
+     */
+    public static final String BATCH_CHUNK_SIZE = "ip-rest-api.batch.chunk-size";
+
+    /**
+     * Name of entry in application.properties for controlling the max number of block jobs waiting for a thread, 
+     * beyond which new block jobs are rejected.
+     */
+    public static final String BLOCK_JOB_QUEUE_SIZE = "ip-rest-api.block.jobs.queue-size";
+
+    /**
+     * Name of entry in application.properties for controlling the number of threads that run block jobs, and so the 
+     * max number of block jobs running at once.
+     */
+    public static final String BLOCK_JOB_THREADS = "ip-rest-api.block.jobs.threads";
+
+    /**
+     * Name of entry in application.properties for controlling how the bitmap store persists changes of address state 
+     * ("sync" or "async").
+     */
+    public static final String BITMAP_DURABILITY = "ip-rest-api.store.bitmap.durability";
+
+    /**
+     * Name of entry in application.properties for controlling the max number of changes of address state that the 
+     * bitmap store flushes to the DB in one transaction, when using async durability.
+     */
+    public static final String BITMAP_FLUSH_BATCH_SIZE = "ip-rest-api.store.bitmap.flush-batch-size";
+
+    /**
+     * Name of entry in application.properties for controlling the delay in milliseconds between flushes of changes of 
+     * address state by the bitmap store, when using async durability.
+     */
+    public static final String BITMAP_FLUSH_INTERVAL_MS = "ip-rest-api.store.bitmap.flush-interval-ms";
+
+    /**
+     * Name of entry in application.properties for controlling the delay in milliseconds between flushes of the change 
+     * log to the DB.
+     */
+    public static final String CHANGES_FLUSH_INTERVAL_MS = "ip-rest-api.changes.flush-interval-ms";
+
+    /**
+     * Name of entry in application.properties for controlling the number of most recent changes that the change log 
+     * keeps in memory, so that clients that are nearly caught up are answered without reading the DB.
+     */
+    public static final String CHANGES_MEMORY_SIZE = "ip-rest-api.changes.memory-size";
+
+    /**
+     * Name of entry in application.properties for controlling the number of most recent changes that the change log 
+     * keeps in the DB, beyond which older changes are compacted away and clients that need them must resync in full.
+     */
+    public static final String CHANGES_RETAINED = "ip-rest-api.changes.retained";
+
     /**
      * Name of entry in application.properties for controlling JDBC insert batching on repository saveAll calls.
      */
-    public static final String JDBC_BATCH_SIZE = "spring.jpa.properties.hibernate.jdbc.batch_size=256";
+    public static final String JDBC_BATCH_SIZE = "spring.jpa.properties.hibernate.jdbc.batch_size";
+
+    /**
+     * Name of entry in application.properties for controlling the number of locks that single address acquire and 
+     * release operations are spread across (0 or a power of two, 0 disabling the locks).
+     */
+    public static final String LOCK_STRIPES = "ip-rest-api.lock.stripes";
+
+    /**
+     * Name of entry in application.properties for controlling whether adding a CIDR block also persists an IpAddress
+     * instance for every address within it, rather than only for addresses once they are acquired.
+     */
+    public static final String MATERIALIZE_BLOCKS = "ip-rest-api.block.materialize";
+
+    /**
+     * Name of entry in application.properties for controlling the number of rows inserted by the first chunk when
+     * materializing a CIDR block with the "sql" method (the "jpa" method starts from the JDBC batch size instead).
+     */
+    public static final String MATERIALIZE_CHUNK_SIZE = "ip-rest-api.block.materialize.chunk-size";
+
+    /**
+     * Name of entry in application.properties for controlling the max number of rows in one chunk when materializing
+     * a CIDR block.  With the "jpa" method, this also bounds the number of IpAddress instances held in memory at once.
+     */
+    public static final String MATERIALIZE_CHUNK_SIZE_MAX = "ip-rest-api.block.materialize.chunk-size.max";
+
+    /**
+     * Name of entry in application.properties for controlling the min number of rows in one chunk when materializing
+     * a CIDR block.
+     */
+    public static final String MATERIALIZE_CHUNK_SIZE_MIN = "ip-rest-api.block.materialize.chunk-size.min";
+
+    /**
+     * Name of entry in application.properties for selecting how blocks are materialized ("sql" for set-based inserts
+     * generated by the DB, or "jpa" for saving IpAddress instances via the repository).
+     */
+    public static final String MATERIALIZE_METHOD = "ip-rest-api.block.materialize.method";
+
+    /**
+     * Name of entry in application.properties for controlling the number of workers that materialize a CIDR block
+     * concurrently, each over its own DB connection.  Values below 1 are treated as 1.
+     */
+    public static final String MATERIALIZE_PARALLELISM = "ip-rest-api.block.materialize.parallelism";
+
+    /**
+     * Name of entry in application.properties for the directory in which the mmap store keeps its files.
+     */
+    public static final String MMAP_DIRECTORY = "ip-rest-api.store.mmap.directory";
+
+    /**
+     * Name of entry in application.properties for controlling the max number of IpAddress instances that one page of 
+     * a listing may hold, and the max number of addresses that one call may allocate, beyond which the call is refused.
+     */
+    public static final String PAGE_MAX_SIZE = "ip-rest-api.page.max-size";
+
+    /**
+     * Name of entry in application.properties for controlling the base delay in milliseconds before retrying a single
+     * address write that failed on a concurrent change (doubled for each further attempt, and jittered).
+     */
+    public static final String RETRY_BACKOFF_MS = "ip-rest-api.retry.backoff-ms";
+
+    /**
+     * Name of entry in application.properties for controlling the maximum number of attempts at a single address write
+     * that fails on concurrent changes.
+     */
+    public static final String RETRY_MAX_ATTEMPTS = "ip-rest-api.retry.max-attempts";
+
+    /**
+     * Name of entry in application.properties for selecting the store to use for address state ("jpa", "bitmap", or
+     * "mmap").
+     */
+    public static final String STORE = "ip-rest-api.store";
 
     /**
      * Launches SpringBoot to run our application.
@@ -0,0 +1,24 @@
+package com.trillion.ip_rest_api.codec;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers the converter for the compact binary listing format.
+ */
+@Configuration
+public class BinaryFormatConfig implements WebMvcConfigurer {
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The converter is added after the default ones, so that JSON is still written unless the binary format is asked
+     * for explicitly.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new IpAddressBinaryHttpMessageConverter());
+    }
+}
@@ -0,0 +1,124 @@
+package com.trillion.ip_rest_api.codec;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.trillion.ip_rest_api.dto.IpAddressPageDTO;
+import com.trillion.ip_rest_api.model.IpAddress;
+
+/**
+ * Writes lists of IpAddress instances, and IpAddressPageDTO instances, in the compact binary listing format when a
+ * caller asks for it via the Accept header, so that the list operations of the controller support it without any
+ * change to them.  The cursor for the next page of an IpAddressPageDTO (if any) is sent in the NEXT_CURSOR_HEADER
+ * header, since the format only holds addresses.  Nothing is read in this format.
+ */
+public class IpAddressBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    /**
+     * Media type of the format.
+     */
+    public static final MediaType APPLICATION_IPAM_BIN = MediaType.parseMediaType(IpAddressBinaryWriter.MEDIA_TYPE);
+
+    /**
+     * Name of the response header holding the cursor for the next page, when an IpAddressPageDTO is written.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Constructor.
+     */
+    public IpAddressBinaryHttpMessageConverter() {
+        super(APPLICATION_IPAM_BIN);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Nothing is read in this format.
+     */
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Lists are only written if their declared element type is IpAddress.
+     */
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (! canWrite(mediaType)) {
+            return false;
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType)type;
+            return (parameterizedType.getRawType() instanceof Class)
+                && List.class.isAssignableFrom((Class<?>)parameterizedType.getRawType())
+                && IpAddress.class.equals(parameterizedType.getActualTypeArguments()[0]);
+        }
+        return IpAddressPageDTO.class.equals((type instanceof Class) ? type : clazz);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Nothing is read in this format.
+     */
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("binary listing format cannot be read", inputMessage);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Nothing is read in this format.
+     */
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("binary listing format cannot be read", inputMessage);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only IpAddressPageDTO is supported by class alone, since lists are checked by their declared element type.
+     */
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return IpAddressPageDTO.class.equals(clazz);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The addresses are passed to an IpAddressBinaryWriter in order, after setting the next page header (if any).
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        List<IpAddress> ipAddresses;
+        if (value instanceof IpAddressPageDTO) {
+            IpAddressPageDTO page = (IpAddressPageDTO)value;
+            if (page.getNext() != null) {
+                outputMessage.getHeaders().set(NEXT_CURSOR_HEADER, page.getNext());
+            }
+            ipAddresses = page.getAddresses();
+        } else {
+            ipAddresses = (List<IpAddress>)value;
+        }
+        IpAddressBinaryWriter writer = new IpAddressBinaryWriter(outputMessage.getBody());
+        for (IpAddress ipAddress : ipAddresses) {
+            writer.accept(ipAddress.getAddress(), ipAddress.isAcquired());
+        }
+        writer.finish();
+    }
+}
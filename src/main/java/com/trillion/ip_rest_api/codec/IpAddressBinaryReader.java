@@ -0,0 +1,97 @@
+package com.trillion.ip_rest_api.codec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.trillion.ip_rest_api.store.AddressRunConsumer;
+import com.trillion.ip_rest_api.store.AddressStateConsumer;
+
+/**
+ * Reads the state of addresses from the compact binary listing format ("application/x-ipam-bin") written by
+ * IpAddressBinaryWriter, for clients that sync addresses in bulk.  It depends on java.io, the two consumer interfaces
+ * it passes addresses to, and the format constants of IpAddressBinaryWriter (its magic bytes, version, record tags and
+ * max frame size).  The writer itself needs nothing more, so a client can copy the reader along with the writer and the
+ * two interfaces.
+ */
+public class IpAddressBinaryReader {
+    /**
+     * Buffered stream to read from.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Constructor, which reads and checks the magic bytes and version.
+     *
+     * @param in InputStream to read from.
+     * @throws IOException Thrown if unable to read from the stream, or if it is not in a supported version of the
+     *     format.
+     */
+    public IpAddressBinaryReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        byte[] magic = new byte[IpAddressBinaryWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (! Arrays.equals(magic, IpAddressBinaryWriter.MAGIC)) {
+            throw new IOException("stream is not in the binary listing format");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != IpAddressBinaryWriter.VERSION) {
+            throw new IOException("binary listing format version " + version + " is not supported");
+        }
+    }
+
+    /**
+     * Reads the remaining records up to and including the end record, passing the state of every address to the
+     * specified consumer, including each address within a run record.
+     *
+     * @param consumer AddressStateConsumer to pass each address to.
+     * @throws IOException Thrown if unable to read from the stream, or if it is malformed or truncated.
+     */
+    public void read(AddressStateConsumer consumer) throws IOException {
+        read(consumer, (startAddress, endAddress, acquired) -> {
+            for (long address = startAddress; address <= endAddress; address++) {
+                consumer.accept(address, acquired);
+            }
+        });
+    }
+
+    /**
+     * Reads the remaining records up to and including the end record, passing the state of each address within a
+     * frame record to the specified address consumer, and each run record to the specified run consumer as is.
+     *
+     * @param addressConsumer AddressStateConsumer to pass each address within a frame to.
+     * @param runConsumer AddressRunConsumer to pass each run to.
+     * @throws IOException Thrown if unable to read from the stream, or if it is malformed or truncated.
+     */
+    public void read(AddressStateConsumer addressConsumer, AddressRunConsumer runConsumer) throws IOException {
+        byte[] bitmap = new byte[IpAddressBinaryWriter.MAX_FRAME_ADDRESSES / 8];
+        while (true) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case IpAddressBinaryWriter.END:
+                    return;
+                case IpAddressBinaryWriter.FRAME:
+                    long frameStartAddress = in.readInt() & 0xFFFF_FFFFL;
+                    int frameCount = in.readInt();
+                    if ((frameCount < 1) || (frameCount > IpAddressBinaryWriter.MAX_FRAME_ADDRESSES)) {
+                        throw new IOException("invalid frame count " + frameCount);
+                    }
+                    in.readFully(bitmap, 0, (frameCount + 7) >>> 3);
+                    for (int i = 0; i < frameCount; i++) {
+                        addressConsumer.accept(frameStartAddress + i, (bitmap[i >>> 3] & (1 << (i & 7))) != 0);
+                    }
+                    break;
+                case IpAddressBinaryWriter.AVAILABLE_RUN:
+                case IpAddressBinaryWriter.ACQUIRED_RUN:
+                    long startAddress = in.readInt() & 0xFFFF_FFFFL;
+                    long endAddress = in.readInt() & 0xFFFF_FFFFL;
+                    runConsumer.accept(startAddress, endAddress, tag == IpAddressBinaryWriter.ACQUIRED_RUN);
+                    break;
+                default:
+                    throw new IOException("invalid record tag " + tag);
+            }
+        }
+    }
+}
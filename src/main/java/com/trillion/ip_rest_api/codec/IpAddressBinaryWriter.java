@@ -0,0 +1,165 @@
+package com.trillion.ip_rest_api.codec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.trillion.ip_rest_api.store.AddressRunConsumer;
+import com.trillion.ip_rest_api.store.AddressStateConsumer;
+
+/**
+ * Writes the state of addresses in the compact binary listing format ("application/x-ipam-bin"), which takes about one
+ * bit per address where addresses are contiguous, rather than the 40 or so bytes per address of JSON.
+ * <p>
+ * All values are big-endian.  The stream starts with the 4 byte magic "IPAM" and a 1 byte version, followed by records,
+ * each starting with a 1 byte tag, and ends with the end record:
+ * <ul>
+ * <li>0 (end): no further fields.</li>
+ * <li>1 (frame): 4 byte first address, 4 byte count of contiguous addresses (1 to 65536), then a bitmap of their
+ * acquired flags, one bit per address (lowest bit of each byte first), padded to a whole number of bytes.</li>
+ * <li>2 (available run) or 3 (acquired run): 4 byte first address, 4 byte last address, of a run of contiguous
+ * addresses that all share that state.</li>
+ * </ul>
+ * Addresses passed one at a time are gathered into frames, a new frame being started wherever an address does not
+ * follow on from the previous one, while runs are written as run records.  Nothing is allocated per address, and the
+ * output is buffered, so finish must be called once all addresses have been passed.  IpAddressBinaryReader decodes the
+ * format.
+ */
+public class IpAddressBinaryWriter implements AddressStateConsumer, AddressRunConsumer {
+    /**
+     * Tag of a run record of acquired addresses.
+     */
+    static final int ACQUIRED_RUN = 3;
+
+    /**
+     * Tag of a run record of available addresses.
+     */
+    static final int AVAILABLE_RUN = 2;
+
+    /**
+     * Tag of the end record.
+     */
+    static final int END = 0;
+
+    /**
+     * Tag of a frame record.
+     */
+    static final int FRAME = 1;
+
+    /**
+     * Magic bytes that the format starts with.
+     */
+    static final byte[] MAGIC = { 'I', 'P', 'A', 'M' };
+
+    /**
+     * Max number of addresses in a frame.
+     */
+    static final int MAX_FRAME_ADDRESSES = 65_536;
+
+    /**
+     * Media type of the format.
+     */
+    public static final String MEDIA_TYPE = "application/x-ipam-bin";
+
+    /**
+     * Version of the format written.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Acquired flags of the addresses in the frame being gathered.
+     */
+    private final byte[] bitmap = new byte[MAX_FRAME_ADDRESSES / 8];
+
+    /**
+     * Number of addresses in the frame being gathered (0 if none is).
+     */
+    private int frameCount;
+
+    /**
+     * First address in the frame being gathered.
+     */
+    private long frameStartAddress;
+
+    /**
+     * Buffered stream to write to.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Constructor, which writes the magic bytes and version.
+     *
+     * @param out OutputStream to write to.
+     * @throws IOException Thrown if unable to write to the stream.
+     */
+    public IpAddressBinaryWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.write(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The address is added to the frame being gathered if it follows on from the last address in it, and otherwise
+     * starts a new frame.
+     */
+    @Override
+    public void accept(long address, boolean acquired) throws IOException {
+        if ((frameCount > 0) && ((address != frameStartAddress + frameCount) || (frameCount == MAX_FRAME_ADDRESSES))) {
+            writeFrame();
+        }
+        if (frameCount == 0) {
+            frameStartAddress = address;
+        }
+        if (acquired) {
+            bitmap[frameCount >>> 3] |= (byte)(1 << (frameCount & 7));
+        }
+        frameCount++;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The run is written as a single run record, after the frame being gathered (if any).
+     */
+    @Override
+    public void accept(long startAddress, long endAddress, boolean acquired) throws IOException {
+        writeFrame();
+        out.writeByte(acquired ? ACQUIRED_RUN : AVAILABLE_RUN);
+        out.writeInt((int)startAddress);
+        out.writeInt((int)endAddress);
+    }
+
+    /**
+     * Writes the frame being gathered (if any) and the end record, and flushes the output.  Does not close the stream
+     * written to.
+     *
+     * @throws IOException Thrown if unable to write to the stream.
+     */
+    public void finish() throws IOException {
+        writeFrame();
+        out.writeByte(END);
+        out.flush();
+    }
+
+    /**
+     * Internal utility to write the frame being gathered (if any), and start afresh.
+     *
+     * @throws IOException Thrown if unable to write to the stream.
+     */
+    private void writeFrame() throws IOException {
+        if (frameCount == 0) {
+            return;
+        }
+        int bitmapLength = (frameCount + 7) >>> 3;
+        out.writeByte(FRAME);
+        out.writeInt((int)frameStartAddress);
+        out.writeInt(frameCount);
+        out.write(bitmap, 0, bitmapLength);
+        Arrays.fill(bitmap, 0, bitmapLength, (byte)0);
+        frameCount = 0;
+    }
+}
@@ -1,25 +1,53 @@
 package com.trillion.ip_rest_api.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.servlet.http.HttpServletResponse;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.trillion.ip_rest_api.codec.IpAddressBinaryHttpMessageConverter;
+import com.trillion.ip_rest_api.codec.IpAddressBinaryWriter;
+import com.trillion.ip_rest_api.dto.AddressChangeDTO;
+import com.trillion.ip_rest_api.dto.BatchResultDTO;
+import com.trillion.ip_rest_api.dto.BlockJobDTO;
 import com.trillion.ip_rest_api.dto.IpAddressDTO;
+import com.trillion.ip_rest_api.dto.IpAddressPageDTO;
+import com.trillion.ip_rest_api.dto.IpAddressRunDTO;
+import com.trillion.ip_rest_api.dto.LockStatsDTO;
+import com.trillion.ip_rest_api.exception.BlockJobNotFoundException;
+import com.trillion.ip_rest_api.exception.BlockJobRejectedException;
 import com.trillion.ip_rest_api.exception.IpAddressNotFoundException;
 import com.trillion.ip_rest_api.exception.IpAddressOverlapException;
 import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
 import com.trillion.ip_rest_api.service.IpAddressService;
+import com.trillion.ip_rest_api.store.StateChange;
+import com.trillion.ip_rest_api.util.NetUtils;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -34,6 +62,29 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 @RestController     
 @RequestMapping("/api/address")
 public class IpAddressController {
+    /**
+     * Media type of newline delimited JSON, as written by getAllStreamed when asked for the "ndjson" format.
+     */
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Max number of addresses accepted in the body of a batch acquire or release, so that a single request cannot ask
+     * the change log to reserve more sequence numbers than it can take.
+     */
+    public static final int MAX_BATCH_SIZE = 100_000;
+
+    /**
+     * Identifies this run of the application within ETags, so that an ETag handed out before a restart, when the 
+     * mutation generation started again from 0, never matches one handed out after it.
+     */
+    private static final String ETAG_EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Factory for the JsonGenerators that the streaming operations write their responses with, and the JsonParsers that
+     * the batch operations read their requests with.  Thread safe.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     /**
      * Service to use for address related operations.
      */
@@ -72,6 +123,36 @@ public class IpAddressController {
         return new IpAddressDTO(ipAddress);
     }
 
+    /**
+     * Sets the acquired flag of each of the addresses in the request body to true (if it is not already), in a handful
+     * of statements rather than one request per address.
+     * 
+     * @param body Request body, holding either a JSON array of dotted decimal addresses, or newline delimited JSON with
+     * one dotted decimal address per line.
+     * @return List of BatchResultDTO representations of the outcome for each address, in the same order.
+     * @throws IOException Thrown if unable to read the request body.
+     */
+    @Operation(summary = "Mark each of the dotted decimal addresses in the request body as acquired.")
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Processed successfully, with the outcome for each address.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    array = @ArraySchema(schema = @Schema(implementation = BatchResultDTO.class))
+                ) 
+            }
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid address, malformed body, or too many addresses.", 
+            content = @Content)
+    })
+    @PatchMapping(value = "/acquire", consumes = { MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson" })
+    public List<BatchResultDTO> acquireAll(InputStream body) throws IOException {
+        List<String> addresses = readAddresses(body);
+        return convertStateChangesToDTOs(addresses, service.acquireAll(addresses));
+    }
+
     /**
      * Adds IpAddress instances for all addresses within (inclusive) the specified CIDR block.  
      * 
@@ -106,23 +187,159 @@ public class IpAddressController {
     }    
     
     /**
-     * Internal utility for converting a list of IpAddress instances to a list of IpAddressDTO instances.  Note that
-     * we do not use stream mapping for this because the IpAddressDTO constructor can throw a checked exception, which  
-     * is not something that stream mapping can tolerate.
+     * Starts a job that adds IpAddress instances for all addresses within (inclusive) the specified CIDR block in the
+     * background, and returns without waiting for it to finish.  The job's progress can then be polled via 
+     * getBlockJob.
      * 
-     * @param ipAddresses List of IpAddress instances in question.
-     * @return List of corresponding IpAddressDTO instances created.
-     * @throws UnknownHostException Thrown if we cannot convert a long address to dotted decimals (should not happen).
+     * @param networkAddress Dotted decimal address of CIDR block being added (e.g. "1.0.0.0").
+     * @param cidrMask CIDR mask of the block being added (e.g. 24).
+     * @return BlockJobDTO representation of the job started.
+     * @throws UnknownHostException Thrown if unable to translate input address successfully.
+     * @throws IpAddressOverlapException Thrown if the CIDR block overlaps an existing one.
+     * @throws BlockJobRejectedException Thrown if too many block jobs are already running or queued.
+     */
+    @Operation(summary = 
+        "Starts a job adding new IpAddress instances within (inclusive) the specified CIDR block (e.g. '1.0.0.0/24')."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "202", 
+            description = "Job started.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    schema = @Schema(implementation = BlockJobDTO.class)
+                ) 
+            }
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid CIDR block.", content = @Content),
+        @ApiResponse(responseCode = "409", description = "Overlapping CIDR block.", content = @Content),
+        @ApiResponse(responseCode = "503", description = "Too many jobs running or queued.", content = @Content)
+    })
+    @PostMapping("/jobs/{networkAddress}/{cidrMask}")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public BlockJobDTO addBlockJob(@PathVariable String networkAddress, @PathVariable int cidrMask) 
+        throws UnknownHostException, IpAddressOverlapException, BlockJobRejectedException
+    {
+        return new BlockJobDTO(service.submitBlockJob(networkAddress, cidrMask));
+    }
+
+    /**
+     * Atomically picks the first available address, optionally within the specified CIDR block, and acquires it, so 
+     * that callers no longer need to find a free address themselves and then race each other to acquire it.
+     * 
+     * @param cidr CIDR block to allocate the address within (e.g. "1.0.0.0/24"), or null to allocate it from any block.
+     * @return IpAddressDTO representation of IpAddress that was acquired.
+     * @throws IpAddressNotFoundException Thrown if there is no available address (within the CIDR block).
+     * @throws UnknownHostException Thrown if unable to translate input CIDR block.
+     */
+    @Operation(summary = "Acquire the first available address, optionally within the specified CIDR block.")
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Allocated successfully.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    schema = @Schema(implementation = IpAddressDTO.class)
+                ) 
+            }
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid CIDR block.", content = @Content),
+        @ApiResponse(responseCode = "404", description = "No available address.", content = @Content)
+    })
+    @PostMapping("/allocate")
+    public IpAddressDTO allocate(@RequestParam(required = false) String cidr) 
+        throws IpAddressNotFoundException, UnknownHostException 
+    {
+        IpAddress ipAddress = service.allocate(cidr);
+        return new IpAddressDTO(ipAddress);
+    }
+
+    /**
+     * Atomically picks the specified number of available addresses, optionally within the specified CIDR block, and 
+     * acquires them all at once, preferring contiguous runs.  The addresses are returned as runs rather than one by 
+     * one, so a contiguous allocation of any size is a single run.
+     * 
+     * @param cidr CIDR block to allocate the addresses within (e.g. "1.0.0.0/24"), or null to allocate them from any 
+     * block.
+     * @param count Number of addresses to allocate.
+     * @return List of IpAddressRunDTO representations of the runs of addresses acquired.
+     * @throws IpAddressNotFoundException Thrown if there are fewer available addresses (within the CIDR block).
+     * @throws UnknownHostException Thrown if unable to translate input CIDR block.
      */
-    private List<IpAddressDTO> convertIpAddressesToDTOs(List<IpAddress> ipAddresses) throws UnknownHostException {
-        List<IpAddressDTO> ipAddressDTOs = new ArrayList<>(ipAddresses.size());
-        for (IpAddress ipAddress : ipAddresses) {
-            IpAddressDTO ipAddressDTO = new IpAddressDTO(ipAddress);
-            ipAddressDTOs.add(ipAddressDTO);
+    @Operation(summary = 
+        "Acquire the specified number of available addresses, optionally within the specified CIDR block, as runs."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Allocated successfully.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    array = @ArraySchema(schema = @Schema(implementation = IpAddressRunDTO.class))
+                ) 
+            }
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid CIDR block, or count out of bounds.", 
+            content = @Content),
+        @ApiResponse(responseCode = "404", description = "Not enough available addresses.", content = @Content)
+    })
+    @PostMapping(value = "/allocate", params = "count")
+    public List<IpAddressRunDTO> allocateMany(@RequestParam(required = false) String cidr, @RequestParam int count) 
+        throws IpAddressNotFoundException, UnknownHostException 
+    {
+        List<IpAddressRange> runs = service.allocate(cidr, count);
+        List<IpAddressRunDTO> runDTOs = new ArrayList<>(runs.size());
+        for (IpAddressRange run : runs) {
+            runDTOs.add(new IpAddressRunDTO(run, true));
         }
-        return ipAddressDTOs;
+        return runDTOs;
     }
-    
+
+    /**
+     * Cancels the specified block job, if it has not finished.
+     * 
+     * @param id Id of the job to cancel.
+     * @return BlockJobDTO representation of the job, as of the cancellation.
+     * @throws BlockJobNotFoundException Thrown if there is no such job.
+     */
+    @Operation(summary = "Cancel the specified block job, removing anything it has added so far.")
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Cancelled (or already finished).",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    schema = @Schema(implementation = BlockJobDTO.class)
+                ) 
+            }
+        ),
+        @ApiResponse(responseCode = "404", description = "Job not found.", content = @Content)
+    })
+    @DeleteMapping("/jobs/{id}")
+    public BlockJobDTO cancelBlockJob(@PathVariable long id) throws BlockJobNotFoundException {
+        return new BlockJobDTO(service.cancelBlockJob(id).
+            orElseThrow(() -> new BlockJobNotFoundException("block job " + id + " not found")));
+    }
+
+    /**
+     * Internal utility to convert the specified outcomes for the specified addresses to DTO representations.
+     * 
+     * @param addresses List of dotted decimal addresses in question.
+     * @param changes List of the outcome for each address, in the same order.
+     * @return List of BatchResultDTO representations, in the same order.
+     */
+    private List<BatchResultDTO> convertStateChangesToDTOs(List<String> addresses, List<StateChange> changes) {
+        List<BatchResultDTO> resultDTOs = new ArrayList<>(addresses.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            resultDTOs.add(new BatchResultDTO(addresses.get(i), changes.get(i)));
+        }
+        return resultDTOs;
+    }
+
     /**
      * Deletes all IpAddress instances.
      */
@@ -136,9 +353,12 @@ public class IpAddressController {
     } 
     
     /**
-     * Fetches all IpAddress instances present, in ascending order.
+     * Fetches all IpAddress instances present, in ascending order.  The instances are written straight to the response
+     * by IpAddressSerializer, so no per-address DTOs or Strings are created.  The response carries an ETag made from
+     * the mutation generation, and a 304 status is sent without reading the store if it matches If-None-Match.
      * 
-     * @return List of addresses present.
+     * @param request ServletWebRequest being handled.
+     * @return List of addresses present, or null if they have not been modified.
      * @throws UnknownHostException Thrown if we cannot convert a long address to dotted decimals (should not happen).
      */
     @Operation(summary = "Fetch all IpAddresses.")
@@ -152,25 +372,288 @@ public class IpAddressController {
                     array = @ArraySchema(schema = @Schema(implementation = IpAddressDTO.class))
                 ) 
             }
+        ),
+        @ApiResponse(
+            responseCode = "304", 
+            description = "Not modified since the ETag given in If-None-Match was sent.", 
+            content = @Content
         )
     })
     @GetMapping("")
-    public List<IpAddressDTO> getAll() throws UnknownHostException {
-        List<IpAddress> ipAddresses = service.getAll();
-        return convertIpAddressesToDTOs(ipAddresses);
+    public List<IpAddress> getAll(ServletWebRequest request) throws UnknownHostException {
+        if (isNotModified(request)) {
+            return null;
+        }
+        return service.getAll();
     }
     
+    /**
+     * Fetches all IpAddress instances present, in ascending order, streaming each one to the response as it is read
+     * from the store, rather than collecting them all into lists first.  Memory use therefore stays flat no matter how
+     * many addresses there are.  The response is either a JSON array (the same as getAll), or newline delimited JSON 
+     * objects, one per address, if the "ndjson" format is requested.  Each address is formatted into the same reused
+     * buffer, so no per-address objects are created.  The compact binary listing format is written instead if the 
+     * "bin" format is requested, or if no format is requested and the Accept header asks for it.
+     * <p>
+     * Since the response is committed before streaming starts, a failure part way through truncates the response
+     * rather than turning it into an error status.
+     * 
+     * @param format Format of the response, either "json" (the default), "ndjson" or "bin".
+     * @param accept Accept header of the request (if any).
+     * @return StreamingResponseBody that writes the addresses present.
+     */
+    @Operation(summary = 
+        "Fetch all IpAddresses, streamed as a JSON array, as newline delimited JSON, or in the binary listing format."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Fetched successfully.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    array = @ArraySchema(schema = @Schema(implementation = IpAddressDTO.class))
+                ),
+                @Content(
+                    mediaType = "application/x-ndjson", 
+                    schema = @Schema(implementation = IpAddressDTO.class)
+                ),
+                @Content(mediaType = IpAddressBinaryWriter.MEDIA_TYPE)
+            }
+        ),
+        @ApiResponse(responseCode = "400", description = "Unknown format.", content = @Content)
+    })
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> getAllStreamed(@RequestParam(required = false) String format,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
+    {
+        if (format == null) {
+            format = isBinaryAccepted(accept) ? "bin" : "json";
+        }
+        boolean ndjson;
+        if ("bin".equalsIgnoreCase(format)) {
+            StreamingResponseBody body = outputStream -> {
+                IpAddressBinaryWriter writer = new IpAddressBinaryWriter(outputStream);
+                service.forEachAddress(writer);
+                writer.finish();
+            };
+            return ResponseEntity.ok().contentType(IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN).
+                body(body);
+        } else if ("json".equalsIgnoreCase(format)) {
+            ndjson = false;
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            ndjson = true;
+        } else {
+            throw new IllegalArgumentException("format must be either json, ndjson or bin");
+        }
+        StreamingResponseBody body = outputStream -> {
+            char[] chars = new char[NetUtils.MAX_DOTTED_DECIMAL_LENGTH];
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+                if (ndjson) {
+                    generator.setRootValueSeparator(null);
+                } else {
+                    generator.writeStartArray();
+                }
+                service.forEachAddress((address, acquired) -> {
+                    generator.writeStartObject();
+                    generator.writeFieldName("address");
+                    generator.writeString(chars, 0, NetUtils.writeDottedDecimal(address, chars, 0));
+                    generator.writeBooleanField("acquired", acquired);
+                    generator.writeEndObject();
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+                });
+                if (! ndjson) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(ndjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Fetches the state of all addresses present as runs of contiguous addresses that share the same state, in 
+     * ascending order, streaming each run to the response as a JSON array element as it is found.  A freshly added 
+     * block is therefore a single run however large it is, and no per-address objects are created.  The runs are 
+     * written as run records of the compact binary listing format instead if the Accept header asks for it.
+     * 
+     * @param accept Accept header of the request (if any).
+     * @return StreamingResponseBody that writes the runs of addresses present.
+     */
+    @Operation(summary = 
+        "Fetch all IpAddresses as runs of contiguous addresses that are either all acquired or all available."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Fetched successfully.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    array = @ArraySchema(schema = @Schema(implementation = IpAddressRunDTO.class))
+                ),
+                @Content(mediaType = IpAddressBinaryWriter.MEDIA_TYPE)
+            }
+        )
+    })
+    @GetMapping("/runs")
+    public ResponseEntity<StreamingResponseBody> getAllRuns(
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
+    {
+        if (isBinaryAccepted(accept)) {
+            StreamingResponseBody body = outputStream -> {
+                IpAddressBinaryWriter writer = new IpAddressBinaryWriter(outputStream);
+                service.forEachRun(writer);
+                writer.finish();
+            };
+            return ResponseEntity.ok().contentType(IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN).
+                body(body);
+        }
+        StreamingResponseBody body = outputStream -> {
+            char[] chars = new char[NetUtils.MAX_DOTTED_DECIMAL_LENGTH];
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+                generator.writeStartArray();
+                service.forEachRun((startAddress, endAddress, acquired) -> {
+                    generator.writeStartObject();
+                    generator.writeFieldName("start");
+                    generator.writeString(chars, 0, NetUtils.writeDottedDecimal(startAddress, chars, 0));
+                    generator.writeFieldName("end");
+                    generator.writeString(chars, 0, NetUtils.writeDottedDecimal(endAddress, chars, 0));
+                    generator.writeBooleanField("acquired", acquired);
+                    generator.writeEndObject();
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Fetches the progress of the specified block job.
+     * 
+     * @param id Id of the job to fetch.
+     * @return BlockJobDTO representation of the job.
+     * @throws BlockJobNotFoundException Thrown if there is no such job.
+     */
+    @Operation(summary = "Fetch the progress of the specified block job, including its rate and ETA.")
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Fetched successfully.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    schema = @Schema(implementation = BlockJobDTO.class)
+                ) 
+            }
+        ),
+        @ApiResponse(responseCode = "404", description = "Job not found.", content = @Content)
+    })
+    @GetMapping("/jobs/{id}")
+    public BlockJobDTO getBlockJob(@PathVariable long id) throws BlockJobNotFoundException {
+        return new BlockJobDTO(service.getBlockJob(id).
+            orElseThrow(() -> new BlockJobNotFoundException("block job " + id + " not found")));
+    }
+
+    /**
+     * Fetches the changes made after the specified sequence number, for clients that mirror the addresses locally and
+     * have applied every change up to it, streaming each change to the response as it is read.  The response is a 
+     * JSON object holding the "changes" array, then a "resync" flag and the "next" sequence number to pass as since
+     * on the following call.  If resync is true, some of the changes needed are no longer retained (or since was not
+     * handed out by this log), so the client must discard any changes in this response, fetch every address again, and
+     * carry on from next.  A new client should start here with since=0, which tells it to resync.
+     * <p>
+     * Since the response is committed before streaming starts, a failure part way through truncates the response
+     * rather than turning it into an error status.
+     * 
+     * @param since Sequence number of the last change the client has applied (0 if none).
+     * @return StreamingResponseBody that writes the changes.
+     */
+    @Operation(summary = "Fetch the changes made after the specified sequence number, or whether a full resync is " +
+        "needed.")
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Fetched successfully, as an object holding the \"changes\" array, the \"resync\" flag, " + 
+                "and the \"next\" sequence number.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    array = @ArraySchema(schema = @Schema(implementation = AddressChangeDTO.class))
+                ) 
+            }
+        )
+    })
+    @GetMapping("/changes")
+    public ResponseEntity<StreamingResponseBody> getChanges(@RequestParam(defaultValue = "0") long since) {
+        StreamingResponseBody body = outputStream -> {
+            char[] chars = new char[NetUtils.MAX_DOTTED_DECIMAL_LENGTH];
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("changes");
+                long next = service.forEachChangeSince(since, (sequence, type, startAddress, endAddress) -> {
+                    generator.writeStartObject();
+                    generator.writeNumberField("sequence", sequence);
+                    generator.writeStringField("type", type.name());
+                    generator.writeFieldName("start");
+                    generator.writeString(chars, 0, NetUtils.writeDottedDecimal(startAddress, chars, 0));
+                    generator.writeFieldName("end");
+                    generator.writeString(chars, 0, NetUtils.writeDottedDecimal(endAddress, chars, 0));
+                    generator.writeEndObject();
+                });
+                generator.writeEndArray();
+                generator.writeBooleanField("resync", next < 0);
+                generator.writeNumberField("next", (next < 0) ? service.getChangeSequence() : next);
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Fetches the contention on the locks taken by single address acquire and release operations since startup, the 
+     * count of single address operations coalesced with concurrent ones, and the count of writes retried after 
+     * concurrent changes, so that hot addresses can be spotted under load.
+     * 
+     * @return LockStatsDTO representation of the lock contention.
+     */
+    @Operation(summary = "Fetch the number of lock stripes, how often they have been contended, how often " + 
+        "operations have been coalesced, and how often writes have been retried.")
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Fetched successfully.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    schema = @Schema(implementation = LockStatsDTO.class)
+                ) 
+            }
+        )
+    })
+    @GetMapping("/locks")
+    public LockStatsDTO getLockStats() {
+        return new LockStatsDTO(service.getStripedLocks(), service.getCoalescedCount(), service.getRetryCount());
+    }
+
     /**
      * Fetches one page of IpAddress instances, in ascending order.  
+     * <p>
+     * Superseded by getPageAfter, since a page found by its number costs more the deeper it is.  The instances are 
+     * written straight to the response by IpAddressSerializer.  The response carries an ETag made from the mutation
+     * generation, and a 304 status is sent without reading the store if it matches If-None-Match.
      * 
      * @param pageNum Page number to fetch.
      * @param pageSize Number of instances in a page.
-     * @param resp HttpServletResponse we will send back.
-     * @return List of addresses present.
+     * @param request ServletWebRequest being handled.
+     * @return List of addresses present, or null if they have not been modified.
      * @throws UnknownHostException Thrown if we cannot convert a long address to dotted decimals (should not happen).
      */
-    @Operation(summary = 
-        "Fetch one page of IpAddress instances, using the specified page number (starting at 0) and page size."
+    @Operation(
+        summary = 
+            "Fetch one page of IpAddress instances, using the specified page number (starting at 0) and page size.",
+        deprecated = true
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -182,16 +665,149 @@ public class IpAddressController {
                     array = @ArraySchema(schema = @Schema(implementation = IpAddressDTO.class))
                 ) 
             }
-        )
+        ),
+        @ApiResponse(
+            responseCode = "304", 
+            description = "Not modified since the ETag given in If-None-Match was sent.", 
+            content = @Content
+        ),
+        @ApiResponse(responseCode = "400", description = "Page number or page size out of bounds.", content = @Content)
     })
     @GetMapping("/{pageNum}/{pageSize}")
-    public List<IpAddressDTO> getPage(@PathVariable int pageNum, @PathVariable int pageSize, HttpServletResponse resp) 
+    public List<IpAddress> getPage(@PathVariable int pageNum, @PathVariable int pageSize, ServletWebRequest request) 
         throws UnknownHostException
     {
-        List<IpAddress> ipAddresses = service.getPage(pageNum, pageSize);
-        return convertIpAddressesToDTOs(ipAddresses);
+        if (isNotModified(request)) {
+            return null;
+        }
+        return service.getPage(pageNum, pageSize);
     }
     
+    /**
+     * Fetches one page of IpAddress instances, in ascending order, starting immediately after the specified address 
+     * cursor.  The page is found by seeking on the address rather than by skipping over the pages before it, and no 
+     * count is made, so fetching a deep page costs the same as fetching the first.  The instances are written straight
+     * to the response by IpAddressSerializer.  The response carries an ETag made from the mutation generation, and a 
+     * 304 status is sent without reading the store if it matches If-None-Match.
+     * 
+     * @param after Address cursor returned as "next" with the previous page (i.e. the dotted decimal address of its 
+     * last instance), or null to fetch the first page.
+     * @param limit Max number of instances in the page, which must not exceed the max page size configured in
+     * application.properties.
+     * @param request ServletWebRequest being handled.
+     * @return IpAddressPageDTO holding the addresses in the page, and the cursor for the next page (if any), or null
+     *     if they have not been modified.
+     * @throws UnknownHostException Thrown if unable to translate input cursor.
+     */
+    @Operation(summary = 
+        "Fetch one page of IpAddress instances following the specified address cursor (if any), along with the next " +
+        "address cursor."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Fetched successfully.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    schema = @Schema(implementation = IpAddressPageDTO.class)
+                ) 
+            }
+        ),
+        @ApiResponse(
+            responseCode = "304", 
+            description = "Not modified since the ETag given in If-None-Match was sent.", 
+            content = @Content
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid address cursor, or limit out of bounds.", 
+            content = @Content)
+    })
+    @GetMapping("/page")
+    public IpAddressPageDTO getPageAfter(@RequestParam(required = false) String after, 
+        @RequestParam(defaultValue = "1000") int limit, ServletWebRequest request) throws UnknownHostException
+    {
+        if (isNotModified(request)) {
+            return null;
+        }
+        List<IpAddress> ipAddresses = service.getPageAfter(after, limit);
+        String next = null;
+        if (ipAddresses.size() == limit) {
+            next = NetUtils.convertLongToDottedDecimal(ipAddresses.get(ipAddresses.size() - 1).getAddress());
+        }
+        return new IpAddressPageDTO(ipAddresses, next);
+    }
+
+    /**
+     * Internal utility to check whether the specified Accept header explicitly asks for the compact binary listing 
+     * format (i.e. not just via a wildcard).
+     * 
+     * @param accept Accept header in question (if any).
+     * @return Returns true if the binary format is asked for.
+     */
+    private boolean isBinaryAccepted(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+            if (IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN.equalsTypeAndSubtype(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Internal utility to check whether the listing requested has not been modified since the client last fetched it,
+     * by comparing If-None-Match with a strong ETag made from the mutation generation, which differs between the JSON 
+     * and binary representations.  The ETag is set on the response either way, and a 304 status too if it matches.  
+     * The generation is read before the store is, so the ETag can only ever be older than the listing it is sent with.
+     * 
+     * @param request ServletWebRequest being handled.
+     * @return Returns true if the listing has not been modified, so that no body should be sent.
+     */
+    private boolean isNotModified(ServletWebRequest request) {
+        boolean binary = isBinaryAccepted(request.getHeader(HttpHeaders.ACCEPT));
+        String etag = "\"" + ETAG_EPOCH + "-" + service.getGeneration() + (binary ? "-bin" : "") + "\"";
+        if (request.getResponse() != null) {
+            request.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return request.checkNotModified(etag);
+    }
+
+    /**
+     * Internal utility to read the dotted decimal addresses from the specified request body, which holds either a JSON
+     * array of strings, or a sequence of JSON strings (i.e. newline delimited JSON with one string per line).
+     * 
+     * @param body Request body in question.
+     * @return List of the addresses read, in the same order.
+     * @throws IOException Thrown if unable to read the request body.
+     * @throws IllegalArgumentException Thrown if the request body is not JSON of the expected shape, or holds more than
+     *     MAX_BATCH_SIZE addresses.
+     */
+    private List<String> readAddresses(InputStream body) throws IOException {
+        List<String> addresses = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while ((token != null) && (token != JsonToken.END_ARRAY)) {
+                if (token != JsonToken.VALUE_STRING) {
+                    throw new IllegalArgumentException("expected dotted decimal address but found " + token);
+                }
+                if (addresses.size() == MAX_BATCH_SIZE) {
+                    throw new IllegalArgumentException("request body cannot hold more than " + MAX_BATCH_SIZE + 
+                        " addresses");
+                }
+                addresses.add(parser.getText());
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("malformed request body: " + ex.getOriginalMessage(), ex);
+        }
+        return addresses;
+    }
+
     /**
      * Updates a specified IpAddress instance to set its acquired flag to false (if it is not already).
      * <p>
@@ -223,4 +839,34 @@ public class IpAddressController {
         IpAddress ipAddress = service.release(address);
         return new IpAddressDTO(ipAddress);
     }
+
+    /**
+     * Sets the acquired flag of each of the addresses in the request body to false (if it is not already), in a 
+     * handful of statements rather than one request per address.
+     * 
+     * @param body Request body, holding either a JSON array of dotted decimal addresses, or newline delimited JSON with
+     * one dotted decimal address per line.
+     * @return List of BatchResultDTO representations of the outcome for each address, in the same order.
+     * @throws IOException Thrown if unable to read the request body.
+     */
+    @Operation(summary = "Mark each of the dotted decimal addresses in the request body as released.")
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Processed successfully, with the outcome for each address.",
+            content = { 
+                @Content(
+                    mediaType = "application/json", 
+                    array = @ArraySchema(schema = @Schema(implementation = BatchResultDTO.class))
+                ) 
+            }
+        ),
+        @ApiResponse(responseCode = "400", description = "Invalid address, malformed body, or too many addresses.", 
+            content = @Content)
+    })
+    @PatchMapping(value = "/release", consumes = { MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson" })
+    public List<BatchResultDTO> releaseAll(InputStream body) throws IOException {
+        List<String> addresses = readAddresses(body);
+        return convertStateChangesToDTOs(addresses, service.releaseAll(addresses));
+    }
 }
@@ -0,0 +1,113 @@
+package com.trillion.ip_rest_api.dto;
+
+import java.util.Objects;
+
+import com.trillion.ip_rest_api.model.AddressChange;
+
+/**
+ * DTO representation of an entry in the change log.  Uses dotted decimals rather than longs to represent the first and
+ * last addresses changed.
+ */
+public class AddressChangeDTO {
+    /**
+     * Dotted decimal value of the last address changed.
+     */
+    private String end;
+
+    /**
+     * Sequence number of the change.
+     */
+    private long sequence;
+
+    /**
+     * Dotted decimal value of the first address changed.
+     */
+    private String start;
+
+    /**
+     * Type of the change.
+     */
+    private AddressChange.Type type;
+
+    /**
+     * Do nothing constructor used by Jackson.
+     */
+    public AddressChangeDTO() { }
+
+    /**
+     * Constructor.
+     *
+     * @param sequence Sets our sequence attribute.
+     * @param type Sets our type attribute.
+     * @param start Sets our start attribute.
+     * @param end Sets our end attribute.
+     */
+    public AddressChangeDTO(long sequence, AddressChange.Type type, String start, String end) {
+        this.sequence = sequence;
+        this.type = type;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (! getClass().equals(obj.getClass())) {
+            return false;
+        }
+        AddressChangeDTO changeDTO = (AddressChangeDTO)obj;
+        if ((sequence != changeDTO.sequence) || (type != changeDTO.type) || ! Objects.equals(start, changeDTO.start)
+            || ! Objects.equals(end, changeDTO.end))
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns our end attribute.
+     */
+    public String getEnd() {
+        return end;
+    }
+
+    /**
+     * @return Returns our sequence attribute.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Returns our start attribute.
+     */
+    public String getStart() {
+        return start;
+    }
+
+    /**
+     * @return Returns our type attribute.
+     */
+    public AddressChange.Type getType() {
+        return type;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, type, start, end);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(96);
+        builder.append('{');
+        builder.append("sequence=").append(sequence).append(", ");
+        builder.append("type=").append(type).append(", ");
+        builder.append("start=").append(start).append(", ");
+        builder.append("end=").append(end);
+        builder.append('}');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.trillion.ip_rest_api.dto;
+
+import java.util.Objects;
+
+import com.trillion.ip_rest_api.store.StateChange;
+
+/**
+ * DTO representation of the outcome of acquiring or releasing one address, as part of a batch.
+ */
+public class BatchResultDTO {
+    /**
+     * Dotted decimal address in question (e.g. "1.0.0.1").
+     */
+    private String address;
+
+    /**
+     * Outcome for the address, as the name of a StateChange (e.g. "CHANGED").
+     */
+    private String result;
+
+    /**
+     * Do nothing constructor used by Jackson.
+     */
+    public BatchResultDTO() { }
+
+    /**
+     * Constructor.
+     * 
+     * @param address Sets our address attribute.
+     * @param result Outcome to set our result attribute from.
+     */
+    public BatchResultDTO(String address, StateChange result) {
+        this.address = Objects.requireNonNull(address, "address cannot be null");
+        this.result = Objects.requireNonNull(result, "result cannot be null").name();
+    }
+
+    /**
+     * @return Returns our address attribute.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * @return Returns our result attribute.
+     */
+    public String getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,128 @@
+package com.trillion.ip_rest_api.dto;
+
+import java.util.Objects;
+
+import com.trillion.ip_rest_api.service.BlockJob;
+
+/**
+ * DTO representation of a BlockJob, capturing its progress at the time the DTO was created.
+ */
+public class BlockJobDTO {
+    /**
+     * CIDR block being added (e.g. "1.0.0.0/24").
+     */
+    private String cidrBlock;
+
+    /**
+     * Message of the exception that failed the job (if any).
+     */
+    private String errorMessage;
+
+    /**
+     * Estimated seconds until the job finishes, or -1 if not yet known.
+     */
+    private long etaSeconds;
+
+    /**
+     * Id that uniquely identifies the job.
+     */
+    private long id;
+
+    /**
+     * Average rate in addresses/sec at which the job has added addresses while running.
+     */
+    private long rowsPerSec;
+
+    /**
+     * Count of addresses added so far.
+     */
+    private long rowsWritten;
+
+    /**
+     * Name of the state the job is in (e.g. "RUNNING").
+     */
+    private String state;
+
+    /**
+     * Count of addresses in the CIDR block being added.
+     */
+    private long totalRows;
+
+    /**
+     * Do nothing constructor used by Jackson.
+     */
+    public BlockJobDTO() { }
+
+    /**
+     * Constructor.
+     * 
+     * @param job BlockJob instance to create the DTO for.
+     */
+    public BlockJobDTO(BlockJob job) {
+        Objects.requireNonNull(job, "job cannot be null");
+        this.id = job.getId();
+        this.cidrBlock = job.getCidrBlock();
+        this.state = job.getState().name();
+        this.rowsWritten = job.getRowsWritten();
+        this.totalRows = job.getTotalRows();
+        this.rowsPerSec = job.getRowsPerSec();
+        this.etaSeconds = job.getEtaSeconds();
+        this.errorMessage = job.getErrorMessage();
+    }
+
+    /**
+     * @return Returns our cidrBlock attribute.
+     */
+    public String getCidrBlock() {
+        return cidrBlock;
+    }
+
+    /**
+     * @return Returns our errorMessage attribute.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return Returns our etaSeconds attribute.
+     */
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    /**
+     * @return Returns our id attribute.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return Returns our rowsPerSec attribute.
+     */
+    public long getRowsPerSec() {
+        return rowsPerSec;
+    }
+
+    /**
+     * @return Returns our rowsWritten attribute.
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * @return Returns our state attribute.
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return Returns our totalRows attribute.
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+}
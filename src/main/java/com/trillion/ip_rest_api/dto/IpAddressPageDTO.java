@@ -0,0 +1,54 @@
+package com.trillion.ip_rest_api.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.trillion.ip_rest_api.model.IpAddress;
+
+/**
+ * DTO representation of one page of IpAddress instances fetched by keyset pagination, along with the cursor to pass 
+ * back to fetch the page that follows.
+ */
+public class IpAddressPageDTO {
+    /**
+     * IpAddress instances within the page, in ascending order, serialized by IpAddressSerializer in the same shape as
+     * IpAddressDTO.
+     */
+    private List<IpAddress> addresses;
+
+    /**
+     * Address cursor to pass back as the "after" parameter to fetch the next page, or null if there are no more pages.
+     * This is the dotted decimal address of the last instance in the page.
+     */
+    private String next;
+
+    /**
+     * Do nothing constructor used by Jackson.
+     */
+    public IpAddressPageDTO() { }
+
+    /**
+     * Constructor.
+     * 
+     * @param addresses Sets our addresses attribute.
+     * @param next Sets our next attribute.
+     */
+    public IpAddressPageDTO(List<IpAddress> addresses, String next) {
+        this.addresses = Objects.requireNonNull(addresses, "addresses cannot be null");
+        this.next = next;
+    }
+
+    /**
+     * @return Returns our addresses attribute.
+     */
+    public List<IpAddress> getAddresses() {
+        return addresses;
+    }
+
+    /**
+     * @return Returns our next attribute.
+     */
+    public String getNext() {
+        return next;
+    }
+}
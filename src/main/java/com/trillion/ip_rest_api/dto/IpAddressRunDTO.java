@@ -0,0 +1,114 @@
+package com.trillion.ip_rest_api.dto;
+
+import java.net.UnknownHostException;
+import java.util.Objects;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.util.NetUtils;
+
+/**
+ * DTO representation of a run of contiguous addresses that share the same state.  Uses dotted decimals rather than
+ * longs to represent the first and last addresses in the run.
+ */
+public class IpAddressRunDTO {
+    /**
+     * Flags whether the addresses in the run have been acquired.
+     */
+    private boolean acquired;
+
+    /**
+     * Dotted decimal value of the last address in the run.
+     */
+    private String end;
+
+    /**
+     * Dotted decimal value of the first address in the run.
+     */
+    private String start;
+
+    /**
+     * Do nothing constructor used by Jackson.
+     */
+    public IpAddressRunDTO() { }
+
+    /**
+     * Constructor.
+     * 
+     * @param range IpAddressRange spanned by the run.
+     * @param acquired Sets our acquired attribute.
+     * @throws UnknownHostException Thrown if we are unable to convert the long addresses to dotted decimal.
+     */
+    public IpAddressRunDTO(IpAddressRange range, boolean acquired) throws UnknownHostException {
+        Objects.requireNonNull(range, "range cannot be null");
+        this.start = NetUtils.convertLongToDottedDecimal(range.getStartAddress());
+        this.end = NetUtils.convertLongToDottedDecimal(range.getEndAddress());
+        this.acquired = acquired;
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param start Sets our start attribute.
+     * @param end Sets our end attribute.
+     * @param acquired Sets our acquired attribute.
+     */
+    public IpAddressRunDTO(String start, String end, boolean acquired) {
+        this.start = start;
+        this.end = end;
+        this.acquired = acquired;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (! getClass().equals(obj.getClass())) {
+            return false;
+        }
+        IpAddressRunDTO runDTO = (IpAddressRunDTO)obj;
+        if (! Objects.equals(start, runDTO.start) || ! Objects.equals(end, runDTO.end) 
+            || (acquired != runDTO.acquired)) 
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns our end attribute.
+     */
+    public String getEnd() {
+        return end;
+    }
+
+    /**
+     * @return Returns our start attribute.
+     */
+    public String getStart() {
+        return start;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end, acquired);
+    }
+
+    /**
+     * @return Returns our acquired attribute.
+     */
+    public boolean isAcquired() {
+        return acquired;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(64);
+        builder.append('{');
+        builder.append("start=").append(start).append(", ");
+        builder.append("end=").append(end).append(", ");
+        builder.append("acquired=").append(acquired);
+        builder.append('}');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package com.trillion.ip_rest_api.dto;
+
+import java.util.Objects;
+
+import com.trillion.ip_rest_api.service.StripedLocks;
+
+/**
+ * DTO representation of the contention on the StripedLocks taken by single address operations, of the calls coalesced
+ * with a concurrent call for the same address, and of the retries of their writes, capturing the counts at the time 
+ * the DTO was created.
+ */
+public class LockStatsDTO {
+    /**
+     * Count of lock acquisitions since startup.
+     */
+    private long acquisitions;
+
+    /**
+     * Count of single address operations since startup that got the outcome of a concurrent one for the same address.
+     */
+    private long coalesced;
+
+    /**
+     * Count of lock acquisitions since startup that had to wait for their stripe.
+     */
+    private long contended;
+
+    /**
+     * Count of single address writes retried since startup after failing on a concurrent change.
+     */
+    private long retries;
+
+    /**
+     * Number of stripes that addresses are spread across.
+     */
+    private int stripes;
+
+    /**
+     * Total time in milliseconds spent waiting for stripes since startup.
+     */
+    private long waitMillis;
+
+    /**
+     * Do nothing constructor used by Jackson.
+     */
+    public LockStatsDTO() { }
+
+    /**
+     * Constructor.
+     * 
+     * @param locks StripedLocks instance to create the DTO for.
+     * @param coalesced Count of single address operations coalesced.
+     * @param retries Count of single address writes retried.
+     */
+    public LockStatsDTO(StripedLocks locks, long coalesced, long retries) {
+        Objects.requireNonNull(locks, "locks cannot be null");
+        this.stripes = locks.getStripeCount();
+        this.acquisitions = locks.getAcquisitions();
+        this.contended = locks.getContended();
+        this.waitMillis = locks.getWaitNanos() / 1_000_000L;
+        this.coalesced = coalesced;
+        this.retries = retries;
+    }
+
+    /**
+     * @return Returns our acquisitions attribute.
+     */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * @return Returns our coalesced attribute.
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return Returns our contended attribute.
+     */
+    public long getContended() {
+        return contended;
+    }
+
+    /**
+     * @return Returns our retries attribute.
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return Returns our stripes attribute.
+     */
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * @return Returns our waitMillis attribute.
+     */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+}
@@ -0,0 +1,16 @@
+package com.trillion.ip_rest_api.exception;
+
+/**
+ * An exception thrown when a specified block job is not found (either it never existed, or it finished long enough ago
+ * to have been forgotten).
+ */
+public class BlockJobNotFoundException extends Exception {
+    /**
+     * Constructor.
+     * 
+     * @param message Description of the exception.
+     */
+    public BlockJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.trillion.ip_rest_api.exception;
+
+/**
+ * An exception thrown when a new block job cannot be admitted, because the configured number of block jobs are already
+ * running or queued.
+ */
+public class BlockJobRejectedException extends Exception {
+    /**
+     * Constructor.
+     * 
+     * @param message Description of the exception.
+     */
+    public BlockJobRejectedException(String message) {
+        super(message);
+    }
+}
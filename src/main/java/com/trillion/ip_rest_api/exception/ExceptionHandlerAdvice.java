@@ -22,6 +22,58 @@ public class ExceptionHandlerAdvice {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ExceptionHandlerAdvice.class);
     
+    /**
+     * Handles BlockJobNotFoundExceptions by sending back a NOT_FOUND status, with an ExceptionResponse instance in the
+     * response body.
+     * 
+     * @param ex BlockJobNotFoundException in question.
+     * @param req HTTP request in question.
+     * @return ExceptionResponse instance encapsulating info about the exception safe to return to REST callers.
+     */
+    @ExceptionHandler(BlockJobNotFoundException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public @ResponseBody ExceptionResponse handleBlockJobNotFound(BlockJobNotFoundException ex, 
+        HttpServletRequest req) 
+    {
+        logException(ex, req);
+        return new ExceptionResponse(ex.getMessage(), req.getRequestURI());
+    }
+
+    /**
+     * Handles BlockJobRejectedExceptions by sending back a SERVICE_UNAVAILABLE status, with an ExceptionResponse 
+     * instance in the response body.
+     * 
+     * @param ex BlockJobRejectedException in question.
+     * @param req HTTP request in question.
+     * @return ExceptionResponse instance encapsulating info about the exception safe to return to REST callers.
+     */
+    @ExceptionHandler(BlockJobRejectedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public @ResponseBody ExceptionResponse handleBlockJobRejected(BlockJobRejectedException ex, 
+        HttpServletRequest req) 
+    {
+        logException(ex, req);
+        return new ExceptionResponse(ex.getMessage(), req.getRequestURI());
+    }
+
+    /**
+     * Handles IllegalArgumentExceptions, thrown when a request is well formed HTTP but its parameters or body are out 
+     * of bounds or malformed, by sending back a BAD_REQUEST status, with an ExceptionResponse instance in the response 
+     * body.
+     * 
+     * @param ex IllegalArgumentException in question.
+     * @param req HTTP request in question.
+     * @return ExceptionResponse instance encapsulating info about the exception safe to return to REST callers.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public @ResponseBody ExceptionResponse handleIllegalArgument(IllegalArgumentException ex, 
+        HttpServletRequest req) 
+    {
+        logException(ex, req);
+        return new ExceptionResponse(ex.getMessage(), req.getRequestURI());
+    }
+
     /**
      * Handles IpAddressNotFoundExceptions by sending back a NOT_FOUND status, with an ExceptionResponse instance in 
      * the response body.
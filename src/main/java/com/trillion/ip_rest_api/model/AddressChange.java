@@ -0,0 +1,147 @@
+package com.trillion.ip_rest_api.model;
+
+import java.util.Objects;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+
+/**
+ * Persistent representation of one entry in the change log, recording a change made to a range of addresses
+ * (inclusive), identified by its sequence number.
+ * <p>
+ * Sequence numbers start at 1 and increase by 1 per change, in the order the changes were made, so a client that has
+ * applied every change up to some sequence number can catch up by applying only those after it.
+ */
+@Entity
+public class AddressChange {
+    /**
+     * Types of change recorded.
+     */
+    public enum Type {
+        /**
+         * Every address in the range was acquired.
+         */
+        ACQUIRED,
+
+        /**
+         * A CIDR block was added, making every address in the range available.
+         */
+        BLOCK_ADDED,
+
+        /**
+         * Every CIDR block was deleted (the range covers all addresses).
+         */
+        DELETED_ALL,
+
+        /**
+         * Every address in the range was released.
+         */
+        RELEASED
+    }
+
+    /**
+     * Long value of the last address changed.
+     */
+    private long endAddress;
+
+    /**
+     * Sequence number of the change.  Uniquely identifies this instance.
+     */
+    @Id
+    private long sequence;
+
+    /**
+     * Long value of the first address changed.
+     */
+    private long startAddress;
+
+    /**
+     * Type of the change.
+     */
+    @Enumerated(EnumType.STRING)
+    private Type type;
+
+    /**
+     * Do nothing constructor used by JPA.
+     */
+    public AddressChange() { }
+
+    /**
+     * Constructor.
+     *
+     * @param sequence Sets our sequence attribute.
+     * @param type Sets our type attribute.
+     * @param startAddress Sets our startAddress attribute.
+     * @param endAddress Sets our endAddress attribute.
+     */
+    public AddressChange(long sequence, Type type, long startAddress, long endAddress) {
+        this.sequence = sequence;
+        this.type = Objects.requireNonNull(type, "type cannot be null");
+        this.startAddress = startAddress;
+        this.endAddress = endAddress;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (! getClass().equals(obj.getClass())) {
+            return false;
+        }
+        AddressChange change = (AddressChange)obj;
+        if ((sequence != change.sequence) || (type != change.type) || (startAddress != change.startAddress) ||
+            (endAddress != change.endAddress))
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns our endAddress attribute.
+     */
+    public long getEndAddress() {
+        return endAddress;
+    }
+
+    /**
+     * @return Returns our sequence attribute.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Returns our startAddress attribute.
+     */
+    public long getStartAddress() {
+        return startAddress;
+    }
+
+    /**
+     * @return Returns our type attribute.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, type, startAddress, endAddress);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(96);
+        builder.append('{');
+        builder.append("sequence=").append(sequence).append(", ");
+        builder.append("type=").append(type).append(", ");
+        builder.append("startAddress=").append(startAddress).append(", ");
+        builder.append("endAddress=").append(endAddress);
+        builder.append('}');
+        return builder.toString();
+    }
+}
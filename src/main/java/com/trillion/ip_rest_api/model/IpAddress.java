@@ -5,14 +5,32 @@ import java.util.Objects;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
 
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.trillion.ip_rest_api.util.NetUtils;
 
 /**
  * Persistent representation of an IPv4 address.
+ * <p>
+ * Since the address is assigned rather than generated, Spring Data cannot tell whether an instance is new from its id,
+ * so by default it is treated as possibly stored, and saving it merges it (reading the row first).  Instances known not
+ * to be stored yet can be flagged via markNew, so that saving them inserts them without reading first.
+ * <p>
+ * Rows carry no version.  JpaIpAddressStore writes every state change as a conditional compare and set (or as a
+ * set-based statement under the stripe locks of the addresses), which replaces optimistic versioning: a change that
+ * lost a race is reported as such rather than overwriting the other change.
+ * <p>
+ * Instances are serialized to JSON by IpAddressSerializer, in the same shape as IpAddressDTO, so that lists of them
+ * can be returned directly.
  */
 @Entity
-public class IpAddress {
+@JsonSerialize(using = IpAddressSerializer.class)
+public class IpAddress implements Persistable<Long> {
     /**
      * Long value of address that uniquely identifies this instance.  Stored as a long rather than a dotted decimal
      * to facilitate querying of ranges, and sorting query results.
@@ -24,7 +42,13 @@ public class IpAddress {
      * Flags whether the address has been acquired.
      */
     private boolean acquired;
-    
+
+    /**
+     * Flags whether this instance is known not to be stored yet.  Not persisted.
+     */
+    @Transient
+    private boolean newInstance;
+
     /**
      * Do nothing constructor used by JPA.
      */
@@ -64,6 +88,14 @@ public class IpAddress {
     public long getAddress() {
         return address;
     }
+
+    /**
+     * @return Returns our address attribute, as the id of this instance.
+     */
+    @Override
+    public Long getId() {
+        return address;
+    }
     
     @Override
     public int hashCode() {
@@ -76,6 +108,34 @@ public class IpAddress {
     public boolean isAcquired() {
         return acquired;
     }    
+
+    /**
+     * @return Returns true if this instance has been flagged via markNew, and has not been stored or loaded since.
+     */
+    @Override
+    public boolean isNew() {
+        return newInstance;
+    }
+
+    /**
+     * Flags this instance as known not to be stored yet, so that saving it inserts it without reading first.  Saving an
+     * instance flagged this way that is in fact already stored fails with a constraint violation.
+     *
+     * @return Returns this instance, for chaining.
+     */
+    public IpAddress markNew() {
+        newInstance = true;
+        return this;
+    }
+
+    /**
+     * Clears our new flag once this instance has been stored or loaded.  Called by JPA.
+     */
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newInstance = false;
+    }
     
     /**
      * @param acquired Sets our acquired attribute.
@@ -0,0 +1,124 @@
+package com.trillion.ip_rest_api.model;
+
+import java.net.UnknownHostException;
+import java.util.Objects;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import com.trillion.ip_rest_api.util.NetUtils;
+
+/**
+ * Persistent representation of a CIDR block that has been added, defined by its start and end addresses (inclusive).
+ * <p>
+ * Every address within a range is considered to exist, and to be available unless an acquired IpAddress instance has
+ * been persisted for it.  This lets us add a block of any size by saving a single instance of this class.
+ */
+@Entity
+public class IpAddressRange {
+    /**
+     * Long value of the first address in the range.  Uniquely identifies this instance, since ranges never overlap.
+     */
+    @Id
+    private long startAddress;
+
+    /**
+     * Long value of the last address in the range.
+     */
+    private long endAddress;
+
+    /**
+     * Do nothing constructor used by JPA.
+     */
+    public IpAddressRange() { }
+
+    /**
+     * Constructor.
+     *
+     * @param startAddress Sets our startAddress attribute.
+     * @param endAddress Sets our endAddress attribute.
+     * @throws UnknownHostException Thrown if either address is invalid, or if endAddress precedes startAddress.
+     */
+    public IpAddressRange(long startAddress, long endAddress) throws UnknownHostException {
+        NetUtils.assertValidLong(startAddress);
+        NetUtils.assertValidLong(endAddress);
+        if (endAddress < startAddress) {
+            throw new UnknownHostException("end address " + endAddress + " precedes start address " + startAddress);
+        }
+        this.startAddress = startAddress;
+        this.endAddress = endAddress;
+    }
+
+    /**
+     * Tests whether the specified address falls within (inclusive) this range.
+     *
+     * @param address Long address to test.
+     * @return Returns true if the address is within this range.
+     */
+    public boolean contains(long address) {
+        return (address >= startAddress) && (address <= endAddress);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (! getClass().equals(obj.getClass())) {
+            return false;
+        }
+        IpAddressRange range = (IpAddressRange)obj;
+        if ((startAddress != range.startAddress) || (endAddress != range.endAddress)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns our endAddress attribute.
+     */
+    public long getEndAddress() {
+        return endAddress;
+    }
+
+    /**
+     * @return Returns the count of addresses within (inclusive) this range.
+     */
+    public long getSize() {
+        return endAddress - startAddress + 1;
+    }
+
+    /**
+     * @return Returns our startAddress attribute.
+     */
+    public long getStartAddress() {
+        return startAddress;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(startAddress, endAddress);
+    }
+
+    /**
+     * Formats the range as a CIDR block (e.g. "1.0.0.0/30").  This assumes that the range is a CIDR block, which is
+     * true of every IpAddressRange added via the service layer.
+     *
+     * @return CIDR block string.
+     * @throws UnknownHostException Thrown if the start address is invalid (should not happen).
+     */
+    public String toCidrBlock() throws UnknownHostException {
+        int cidrMask = 32 - Long.numberOfTrailingZeros(getSize());
+        return NetUtils.convertLongToDottedDecimal(startAddress) + "/" + cidrMask;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(64);
+        builder.append('{');
+        builder.append("startAddress=").append(startAddress).append(", ");
+        builder.append("endAddress=").append(endAddress);
+        builder.append('}');
+        return builder.toString();
+    }
+}
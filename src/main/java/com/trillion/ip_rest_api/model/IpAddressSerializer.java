@@ -0,0 +1,64 @@
+package com.trillion.ip_rest_api.model;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.trillion.ip_rest_api.util.NetUtils;
+
+/**
+ * Jackson serializer that writes an IpAddress straight from its fields as {"address":"a.b.c.d","acquired":bool}, the
+ * same shape as IpAddressDTO, without creating a DTO or a String for the address.  The address is formatted into a
+ * buffer kept per thread and written from there, and the field names are pre-encoded, so serializing a list of
+ * addresses creates no per-address objects.
+ */
+public class IpAddressSerializer extends StdSerializer<IpAddress> {
+    /**
+     * Pre-encoded name of the acquired field.
+     */
+    private static final SerializableString ACQUIRED = new SerializedString("acquired");
+
+    /**
+     * Pre-encoded name of the address field.
+     */
+    private static final SerializableString ADDRESS = new SerializedString("address");
+
+    /**
+     * Buffer per thread that addresses are formatted into before being written.
+     */
+    private static final ThreadLocal<char[]> CHARS =
+        ThreadLocal.withInitial(() -> new char[NetUtils.MAX_DOTTED_DECIMAL_LENGTH]);
+
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     */
+    public IpAddressSerializer() {
+        super(IpAddress.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The address is formatted into the buffer for this thread, and written from there.
+     */
+    @Override
+    public void serialize(IpAddress ipAddress, JsonGenerator generator, SerializerProvider provider)
+        throws IOException
+    {
+        char[] chars = CHARS.get();
+        generator.writeStartObject(ipAddress);
+        generator.writeFieldName(ADDRESS);
+        generator.writeString(chars, 0, NetUtils.writeDottedDecimal(ipAddress.getAddress(), chars, 0));
+        generator.writeFieldName(ACQUIRED);
+        generator.writeBoolean(ipAddress.isAcquired());
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,45 @@
+package com.trillion.ip_rest_api.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.trillion.ip_rest_api.model.AddressChange;
+
+/**
+ * Specifies DB CRUD operations for AddressChange instances.
+ */
+@Repository
+public interface AddressChangeRepository extends CrudRepository<AddressChange, Long> {
+    /**
+     * Deletes all AddressChange instances up to (inclusive) the specified sequence number.
+     *
+     * @param sequence Sequence number of the last change to delete.
+     * @return Count of changes deleted.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from AddressChange c where c.sequence <= :sequence")
+    int deleteUpTo(@Param("sequence") long sequence);
+
+    /**
+     * Query to find the greatest sequence number of all AddressChange instances.
+     *
+     * @return Greatest sequence number, or 0 if there are none.
+     */
+    @Query("select coalesce(max(c.sequence), 0) from AddressChange c")
+    long findMaxSequence();
+
+    /**
+     * Fetches up to 1000 AddressChange instances following the specified sequence number, in ascending order.
+     *
+     * @param sequence Sequence number to fetch the changes after.
+     * @return List of AddressChanges fetched.
+     */
+    List<AddressChange> findTop1000BySequenceGreaterThanOrderBySequenceAsc(long sequence);
+}
@@ -0,0 +1,41 @@
+package com.trillion.ip_rest_api.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Specifies DB CRUD operations for IpAddressRange instances.
+ */
+@Repository
+public interface IpAddressRangeRepository extends CrudRepository<IpAddressRange, Long> {
+    /**
+     * Fetches all IpAddressRange instances, in ascending order.
+     *
+     * @return List of IpAddressRanges fetched.
+     */
+    List<IpAddressRange> findAllByOrderByStartAddressAsc();
+
+    /**
+     * Fetches the IpAddressRange instance (if any) that contains the specified address.
+     *
+     * @param address Long address in question.
+     * @return IpAddressRange fetched (if any).
+     */
+    @Query("select r from IpAddressRange r where (r.startAddress <= :address) and (r.endAddress >= :address)")
+    Optional<IpAddressRange> findContaining(@Param("address") long address);
+
+    /**
+     * Query to sum the count of addresses within all IpAddressRange instances.
+     *
+     * @return Count of addresses within all ranges.
+     */
+    @Query("select coalesce(sum(r.endAddress - r.startAddress + 1), 0) from IpAddressRange r")
+    long sumSizes();
+}
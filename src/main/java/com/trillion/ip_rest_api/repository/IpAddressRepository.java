@@ -1,27 +1,34 @@
 package com.trillion.ip_rest_api.repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.trillion.ip_rest_api.model.IpAddress;
- 
+
 /**
- * Specifies DB CRUD operations for IpAddress instances.  
+ * Specifies DB CRUD operations for IpAddress instances.
  */
 @Repository
 public interface IpAddressRepository extends PagingAndSortingRepository<IpAddress, Long> {
     /**
-     * Query to test whether any IpAddress instances exist in the specified range (inclusive).
-     * 
+     * Fetches IpAddress instances in the specified range (inclusive), in ascending order.
+     *
      * @param startAddress Start address of range in question.
      * @param endAddress End address of range in question.
-     * @return Returns true if any exist in the range.
+     * @return List of IpAddresses fetched.
+     */
+    List<IpAddress> findByAddressBetweenOrderByAddressAsc(long startAddress, long endAddress);
+
+    /**
+     * Streams the long values of all acquired IpAddress instances, in ascending order.  Must be called within a 
+     * transaction, and the stream closed once consumed.
+     * 
+     * @return Stream of acquired addresses.
      */
-    @Query(
-        "select case when count(ia) > 0 then true else false end from IpAddress ia " +
-        "where (address >= :start_address) and (address <= :end_address)"
-    )
-    boolean existsWithinRange(@Param("start_address") long startAddress, @Param("end_address") long endAddress);
+    @Query("select ia.address from IpAddress ia where ia.acquired = true order by ia.address")
+    Stream<Long> streamAcquiredAddresses();
 }
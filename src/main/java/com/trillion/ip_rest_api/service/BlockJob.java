@@ -0,0 +1,250 @@
+package com.trillion.ip_rest_api.service;
+
+import java.util.concurrent.Future;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Tracks an asynchronous job adding a CIDR block, so that REST callers can poll its progress or cancel it.
+ * <p>
+ * Progress is updated by the thread running the job, and read by the threads polling it, so all mutable state is
+ * volatile.
+ */
+public class BlockJob {
+    /**
+     * States a job can be in.
+     */
+    public enum State {
+        /**
+         * Waiting for a thread to run it.
+         */
+        QUEUED,
+
+        /**
+         * Adding the block.
+         */
+        RUNNING,
+
+        /**
+         * Added the block in full.
+         */
+        SUCCEEDED,
+
+        /**
+         * Failed to add the block, leaving nothing added for it.
+         */
+        FAILED,
+
+        /**
+         * Cancelled before the block was added in full, leaving nothing added for it.
+         */
+        CANCELLED;
+
+        /**
+         * @return Returns true if a job in this state has finished.
+         */
+        public boolean isFinished() {
+            return (this == SUCCEEDED) || (this == FAILED) || (this == CANCELLED);
+        }
+    }
+
+    /**
+     * Flags whether cancellation of the job has been requested.
+     */
+    private volatile boolean cancelRequested;
+
+    /**
+     * CIDR block being added, as specified by the caller (e.g. "1.0.0.0/24").
+     */
+    private final String cidrBlock;
+
+    /**
+     * Message of the exception that failed the job (if any).
+     */
+    private volatile String errorMessage;
+
+    /**
+     * Future of the task running the job, once submitted.
+     */
+    private volatile Future<?> future;
+
+    /**
+     * Id that uniquely identifies the job.
+     */
+    private final long id;
+
+    /**
+     * Range of the CIDR block being added.
+     */
+    private final IpAddressRange range;
+
+    /**
+     * Count of addresses added so far.
+     */
+    private volatile long rowsWritten;
+
+    /**
+     * Value of System.nanoTime when the job started running (0 if it has not).
+     */
+    private volatile long startNanos;
+
+    /**
+     * Current state of the job.
+     */
+    private volatile State state = State.QUEUED;
+
+    /**
+     * Value of System.nanoTime when the job finished (0 if it has not).
+     */
+    private volatile long stopNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param id Sets our id attribute.
+     * @param cidrBlock Sets our cidrBlock attribute.
+     * @param range Sets our range attribute.
+     */
+    BlockJob(long id, String cidrBlock, IpAddressRange range) {
+        this.id = id;
+        this.cidrBlock = cidrBlock;
+        this.range = range;
+    }
+
+    /**
+     * @return Returns our cidrBlock attribute.
+     */
+    public String getCidrBlock() {
+        return cidrBlock;
+    }
+
+    /**
+     * @return Returns our errorMessage attribute.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Estimates the time remaining until the job finishes, from the rate achieved so far.
+     *
+     * @return Returns the estimated seconds remaining, or -1 if there is no rate to estimate from yet.
+     */
+    public long getEtaSeconds() {
+        if (state.isFinished()) {
+            return 0;
+        }
+        long rowsPerSec = getRowsPerSec();
+        if (rowsPerSec == 0) {
+            return -1;
+        }
+        return (getTotalRows() - rowsWritten) / rowsPerSec;
+    }
+
+    /**
+     * @return Returns our future attribute.
+     */
+    Future<?> getFuture() {
+        return future;
+    }
+
+    /**
+     * @return Returns our id attribute.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return Returns our range attribute.
+     */
+    IpAddressRange getRange() {
+        return range;
+    }
+
+    /**
+     * @return Returns the average rate in addresses/sec at which the job has added addresses while running.
+     */
+    public long getRowsPerSec() {
+        long start = startNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long stop = (stopNanos == 0) ? System.nanoTime() : stopNanos;
+        long elapsedNanos = Math.max(1L, stop - start);
+        return (long)(rowsWritten * 1_000_000_000.0 / elapsedNanos);
+    }
+
+    /**
+     * @return Returns our rowsWritten attribute.
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * @return Returns our state attribute.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return Returns the count of addresses in the CIDR block being added.
+     */
+    public long getTotalRows() {
+        return range.getSize();
+    }
+
+    /**
+     * @return Returns our cancelRequested attribute.
+     */
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Records the count of addresses added so far.  Called by the thread running the job.
+     *
+     * @param rows Count of addresses added so far.
+     * @return Returns false if cancellation of the job has been requested.
+     */
+    boolean progress(long rows) {
+        rowsWritten = rows;
+        return ! cancelRequested;
+    }
+
+    /**
+     * Flags that cancellation of the job has been requested.  The job stops at the next point where it checks.
+     */
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    /**
+     * Records that the job has started running.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+        state = State.RUNNING;
+    }
+
+    /**
+     * Records that the job has finished.
+     *
+     * @param finalState State the job finished in.
+     * @param message Message of the exception that failed the job (if any).
+     */
+    void stop(State finalState, String message) {
+        stopNanos = System.nanoTime();
+        errorMessage = message;
+        state = finalState;
+    }
+
+    /**
+     * @param future Sets our future attribute.
+     */
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+}
@@ -0,0 +1,22 @@
+package com.trillion.ip_rest_api.service;
+
+import java.io.IOException;
+
+import com.trillion.ip_rest_api.model.AddressChange;
+
+/**
+ * Accepts one change from the change log at a time, as changes are streamed from it.
+ */
+@FunctionalInterface
+public interface ChangeConsumer {
+    /**
+     * Accepts a change.
+     *
+     * @param sequence Sequence number of the change.
+     * @param type Type of the change.
+     * @param startAddress First address changed.
+     * @param endAddress Last address changed.
+     * @throws IOException Thrown if unable to pass the change on (e.g. to a response being written).
+     */
+    void accept(long sequence, AddressChange.Type type, long startAddress, long endAddress) throws IOException;
+}
@@ -0,0 +1,388 @@
+package com.trillion.ip_rest_api.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.AddressChange;
+import com.trillion.ip_rest_api.repository.AddressChangeRepository;
+
+/**
+ * Log of the changes made to addresses, each given the next sequence number, so that clients that mirror the addresses
+ * locally can catch up by fetching only the changes since the last one they applied, rather than every address.
+ * <p>
+ * The most recent changes are kept in memory, in a ring of the configured size holding a byte and a long per change, so
+ * clients that are nearly caught up are answered without reading the DB.  Every change is also written to the DB in
+ * batches at the configured flush interval, and the oldest are deleted from it once more than the configured number
+ * are retained.  A client that asks for changes that are no longer retained is told to resync in full instead.
+ * <p>
+ * Sequence numbers carry on from those in the DB on startup, but skip ahead first, so that a number handed out for a
+ * change that was lost (by stopping abruptly before it was flushed) is never reused.  Clients that were caught up
+ * before a restart therefore resync once after it.  So that the number of changes that can be lost always stays well
+ * below the skip, callers reserve a sequence number for each change they may make before making any, which fails 
+ * outright if the log is backlogged or half the skip would be waiting to be written, rather than handing out numbers 
+ * that could be reused.  Appending a change that was reserved for never fails, so a change that has been made is 
+ * always logged.
+ */
+@Component
+public class ChangeLog {
+    /**
+     * Max number of changes written to the DB per JDBC batch.
+     */
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeLog.class);
+
+    /**
+     * Max number of changes handed out but not yet written to the DB, plus those reserved, beyond which reserving more
+     * fails, so that the number of changes that can be lost by stopping abruptly never reaches SEQUENCE_GAP (half of 
+     * which this is).
+     */
+    private static final long MAX_PENDING = 1L << 19;
+
+    /**
+     * Number of changes waiting to be flushed at which appending a change flushes them first (and again each time as
+     * many more are waiting), and at which reserve fails if they cannot be flushed.
+     */
+    private static final int MAX_UNFLUSHED = 65_536;
+
+    /**
+     * SQL to write a change to the DB, which may be run again for the same change if a flush is retried.
+     */
+    private static final String MERGE_SQL =
+        "merge into address_change (sequence, type, start_address, end_address) key (sequence) values (?, ?, ?, ?)";
+
+    /**
+     * Number of sequence numbers skipped on startup, which must exceed the number of changes that can be lost.
+     */
+    private static final long SEQUENCE_GAP = 1L << 20;
+
+    /**
+     * Types of change, indexed by the ordinal held in memory.
+     */
+    private static final AddressChange.Type[] TYPES = AddressChange.Type.values();
+
+    /**
+     * Greatest sequence number deleted from the DB by compaction so far.
+     */
+    private long compactedSequence;
+
+    /**
+     * Loads entries from application.properties.
+     */
+    @Autowired
+    private Environment env;
+
+    /**
+     * Lock held while flushing, so that flushes do not interleave with each other.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Sequence number of the most recent change written to the DB, or of the last one handed out before startup.  
+     * Guarded by this instance.
+     */
+    private long flushedSequence;
+
+    /**
+     * Used to write changes to the DB in batches.
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Sequence number of the most recent change.  Guarded by this instance.
+     */
+    private long lastSequence;
+
+    /**
+     * Number of changes held in memory, ending with the most recent.  Guarded by this instance.
+     */
+    private int memoryCount;
+
+    /**
+     * Start address (high 32 bits) and end address (low 32 bits) of the changes held in memory, each at the index of
+     * its sequence number modulo the size of the ring.  Guarded by this instance.
+     */
+    private long[] memoryRanges = new long[0];
+
+    /**
+     * Ordinal of the type of the changes held in memory, at the same indexes as memoryRanges.  Guarded by this
+     * instance.
+     */
+    private byte[] memoryTypes = new byte[0];
+
+    /**
+     * Repository to use to read and compact changes in the DB.
+     */
+    @Autowired
+    private AddressChangeRepository repository;
+
+    /**
+     * Number of sequence numbers reserved for changes about to be made, and not yet appended or released.  Guarded by
+     * this instance.
+     */
+    private long reservedCount;
+
+    /**
+     * Max number of changes retained in the DB.
+     */
+    private long retained;
+
+    /**
+     * Changes not yet flushed to the DB, in order.  Guarded by this instance.
+     */
+    private List<AddressChange> unflushed = new ArrayList<>();
+
+    /**
+     * Appends a change with the next sequence number, using up one of the sequence numbers reserved.  Should be called
+     * once the change has been made, while still holding whatever lock orders it against other changes to the same 
+     * addresses.  Never fails for lack of room, since reserve has already made sure there is room for the change.
+     *
+     * @param type Type of the change.
+     * @param startAddress First address changed.
+     * @param endAddress Last address changed.
+     * @return Sequence number of the change.
+     */
+    public long append(AddressChange.Type type, long startAddress, long endAddress) {
+        Objects.requireNonNull(type, "type cannot be null");
+        long sequence;
+        boolean backlogged;
+        synchronized (this) {
+            reservedCount = Math.max(0, reservedCount - 1);
+            sequence = ++lastSequence;
+            if (memoryTypes.length > 0) {
+                int index = (int)(sequence % memoryTypes.length);
+                memoryTypes[index] = (byte)type.ordinal();
+                memoryRanges[index] = (startAddress << 32) | endAddress;
+                memoryCount = Math.min(memoryCount + 1, memoryTypes.length);
+            }
+            unflushed.add(new AddressChange(sequence, type, startAddress, endAddress));
+            backlogged = (unflushed.size() % MAX_UNFLUSHED) == 0;
+        }
+        if (backlogged) {
+            flush();
+        }
+        return sequence;
+    }
+
+    /**
+     * Flushes any remaining changes to the DB when the application stops.
+     */
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Internal utility to delete the oldest changes from the DB, keeping the configured number of most recent ones
+     * that have been flushed.  Must be called while holding flushLock.
+     *
+     * @param flushedSequence Sequence number of the most recent change flushed.
+     */
+    private void compact(long flushedSequence) {
+        long compactSequence = flushedSequence - retained;
+        if (compactSequence > compactedSequence) {
+            repository.deleteUpTo(compactSequence);
+            compactedSequence = compactSequence;
+        }
+    }
+
+    /**
+     * Writes all changes not yet flushed to the DB, in JDBC batches, and then compacts the DB.  Invoked periodically
+     * at the configured flush interval.  Changes that fail to be written are kept, and written by the next flush.
+     */
+    @Scheduled(fixedDelayString = "${" + IpRestApiApplication.CHANGES_FLUSH_INTERVAL_MS + ":100}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<AddressChange> batch;
+            synchronized (this) {
+                if (unflushed.isEmpty()) {
+                    return;
+                }
+                batch = unflushed;
+                unflushed = new ArrayList<>();
+            }
+            try {
+                jdbcTemplate.batchUpdate(MERGE_SQL, batch, FLUSH_BATCH_SIZE, (statement, change) -> {
+                    statement.setLong(1, change.getSequence());
+                    statement.setString(2, change.getType().name());
+                    statement.setLong(3, change.getStartAddress());
+                    statement.setLong(4, change.getEndAddress());
+                });
+                long batchSequence = batch.get(batch.size() - 1).getSequence();
+                synchronized (this) {
+                    flushedSequence = batchSequence;
+                }
+                compact(batchSequence);
+            } catch (Exception ex) {
+                synchronized (this) {
+                    batch.addAll(unflushed);
+                    unflushed = batch;
+                }
+                LOGGER.error("failed to flush change log, will retry on next flush", ex);
+            }
+        }
+    }
+
+    /**
+     * Passes every change after the specified sequence number to the specified consumer, in order, for a client that
+     * has applied every change up to it.  The changes held in memory are copied first, so no lock is held while the
+     * consumer runs, and any older ones are then read from the DB a page at a time.  If any of the changes needed are
+     * no longer retained (or the sequence number was never handed out), the client must resync in full instead, which
+     * may only be found part way through.
+     *
+     * @param since Sequence number of the last change the client has applied (0 if none).
+     * @param consumer Consumer to pass each change to.
+     * @return Sequence number of the last change passed (or since if none were), or -1 if the client must resync.
+     * @throws IOException Thrown if the consumer fails.
+     */
+    public long forEachSince(long since, ChangeConsumer consumer) throws IOException {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+
+        // copy the changes needed that are held in memory
+        long firstInMemory;
+        long[] ranges;
+        byte[] types;
+        synchronized (this) {
+            if ((since < 0) || (since > lastSequence)) {
+                return -1;
+            }
+            firstInMemory = lastSequence - memoryCount + 1;
+            int count = (int)(lastSequence - Math.max(since, firstInMemory - 1));
+            ranges = new long[count];
+            types = new byte[count];
+            for (int i = 0; i < count; i++) {
+                int index = (int)((lastSequence - count + 1 + i) % memoryTypes.length);
+                ranges[i] = memoryRanges[index];
+                types[i] = memoryTypes[index];
+            }
+        }
+
+        // read any older changes needed from the DB, checking that none are missing
+        long sequence = since;
+        if (since + 1 < firstInMemory) {
+            flush();
+            while (sequence + 1 < firstInMemory) {
+                List<AddressChange> page = repository.findTop1000BySequenceGreaterThanOrderBySequenceAsc(sequence);
+                if (page.isEmpty() || (page.get(0).getSequence() != sequence + 1)) {
+                    return -1;
+                }
+                for (AddressChange change : page) {
+                    if ((change.getSequence() != sequence + 1) || (change.getSequence() >= firstInMemory)) {
+                        break;
+                    }
+                    consumer.accept(change.getSequence(), change.getType(), change.getStartAddress(),
+                        change.getEndAddress());
+                    sequence++;
+                }
+                if ((sequence + 1 < firstInMemory) && (page.get(page.size() - 1).getSequence() != sequence)) {
+                    return -1;
+                }
+            }
+        }
+
+        // then pass the changes copied from memory
+        for (int i = 0; i < types.length; i++) {
+            sequence++;
+            consumer.accept(sequence, TYPES[types[i]], ranges[i] >>> 32, ranges[i] & 0xFFFF_FFFFL);
+        }
+        return sequence;
+    }
+
+    /**
+     * @return Returns the sequence number of the most recent change.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return Returns the number of changes handed out but not yet written to the DB.
+     */
+    public synchronized long getPendingCount() {
+        return lastSequence - flushedSequence;
+    }
+
+    /**
+     * Sizes the log from application.properties, and carries on the sequence numbers from the DB (skipping ahead), on
+     * startup.
+     */
+    @PostConstruct
+    public void load() {
+        // get sizes from application.properties (default to 65536 in memory, 1048576 in the DB)
+        String memorySizeProp = env.getProperty(IpRestApiApplication.CHANGES_MEMORY_SIZE, "65536");
+        int memorySize = Math.max(0, Integer.parseInt(memorySizeProp));
+        String retainedProp = env.getProperty(IpRestApiApplication.CHANGES_RETAINED, "1048576");
+        retained = Math.max(0, Long.parseLong(retainedProp));
+
+        long maxSequence = repository.findMaxSequence();
+        synchronized (this) {
+            memoryRanges = new long[memorySize];
+            memoryTypes = new byte[memorySize];
+            memoryCount = 0;
+            lastSequence = maxSequence + SEQUENCE_GAP;
+            flushedSequence = lastSequence;
+        }
+        LOGGER.info("change log starting after sequence {}, keeping {} changes in memory and {} in the DB",
+            lastSequence, memorySize, retained);
+    }
+
+    /**
+     * Releases the specified number of sequence numbers reserved but not appended, since the changes they were 
+     * reserved for were not made.
+     *
+     * @param count Number of sequence numbers to release (may be 0).
+     */
+    public synchronized void release(int count) {
+        reservedCount = Math.max(0, reservedCount - count);
+    }
+
+    /**
+     * Reserves a sequence number for each of the specified number of changes, flushing first if too many are waiting 
+     * to be written to the DB, so that callers can refuse to make changes rather than make ones that cannot be logged.
+     * Should be called before making the changes, while holding whatever lock orders them, and followed by an append
+     * for each change made and a release of the rest.
+     *
+     * @param count Number of changes that may be made.
+     * @throws IllegalArgumentException Thrown if count is negative.
+     * @throws IllegalStateException Thrown if too many changes are still waiting once flushed, since the DB is failing,
+     *     or if there is no room for the changes among those waiting and those already reserved.
+     */
+    public void reserve(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count cannot be negative");
+        }
+        if (getPendingCount() >= MAX_UNFLUSHED) {
+            flush();
+        }
+        synchronized (this) {
+            long pendingCount = lastSequence - flushedSequence;
+            if (pendingCount >= MAX_UNFLUSHED) {
+                throw new IllegalStateException("change log has " + pendingCount + 
+                    " changes that cannot be flushed, so cannot take any more");
+            }
+            if (pendingCount + reservedCount + count > MAX_PENDING) {
+                throw new IllegalStateException("change log has " + pendingCount + " changes waiting to be flushed " +
+                    "and " + reservedCount + " reserved, so cannot take " + count + " more");
+            }
+            reservedCount += count;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.trillion.ip_rest_api.service;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * In-memory summary of the free (i.e. available) addresses within the published CIDR blocks, held as a balanced tree of
+ * maximal runs of contiguous free addresses, keyed by the first address of each run.  A second tree orders the same
+ * runs by size, so that the smallest run able to hold a number of addresses can be found directly.
+ * <p>
+ * Finding the first free address within a span takes a single floor or ceiling lookup, and claiming or freeing an
+ * address splits or merges at most the runs either side of it, so every operation is O(log n) in the number of runs,
+ * however full the blocks are.  A freshly added block is a single run, however large it is.
+ * <p>
+ * All operations are synchronized, so that claiming addresses is atomic with respect to every other operation.
+ */
+class FreeSpaceIndex {
+    /**
+     * Maximal runs of contiguous free addresses, mapping the first address of each run to its last.
+     */
+    private final TreeMap<Long, Long> freeRuns = new TreeMap<>();
+
+    /**
+     * Same runs as freeRuns, each held as a {start, end} pair, ordered by size and then by start address.
+     */
+    private final NavigableSet<long[]> freeRunsBySize = new TreeSet<>(
+        Comparator.<long[]>comparingLong(run -> run[1] - run[0]).thenComparingLong(run -> run[0]));
+
+    /**
+     * Marks all addresses within (inclusive) the specified span as free, merging them with any adjoining free runs.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     */
+    synchronized void addFree(long startAddress, long endAddress) {
+        long runStartAddress = startAddress;
+        long runEndAddress = endAddress;
+
+        // absorb the runs that overlap or adjoin the span on either side
+        Entry<Long, Long> before = freeRuns.floorEntry(startAddress);
+        if ((before != null) && (before.getValue() >= startAddress - 1)) {
+            runStartAddress = before.getKey();
+            runEndAddress = Math.max(runEndAddress, before.getValue());
+        }
+        Entry<Long, Long> after = freeRuns.ceilingEntry(runStartAddress);
+        while ((after != null) && (after.getKey() <= runEndAddress + 1)) {
+            runEndAddress = Math.max(runEndAddress, after.getValue());
+            removeRun(after.getKey(), after.getValue());
+            after = freeRuns.higherEntry(after.getKey());
+        }
+        putRun(runStartAddress, runEndAddress);
+    }
+
+    /**
+     * Claims the specified address, if it is free.
+     *
+     * @param address Long address in question.
+     * @return Returns true if the address was free (and so is now claimed).
+     */
+    synchronized boolean claim(long address) {
+        Entry<Long, Long> run = freeRuns.floorEntry(address);
+        if ((run == null) || (run.getValue() < address)) {
+            return false;
+        }
+        claimFrom(run.getKey(), run.getValue(), address, address);
+        return true;
+    }
+
+    /**
+     * Claims the first free address within (inclusive) the specified span, if there is one.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @return Address claimed (if any).
+     */
+    synchronized OptionalLong claimFirst(long startAddress, long endAddress) {
+        Entry<Long, Long> run = freeRuns.floorEntry(startAddress);
+        if ((run == null) || (run.getValue() < startAddress)) {
+            run = freeRuns.higherEntry(startAddress);
+        }
+        if ((run == null) || (run.getKey() > endAddress)) {
+            return OptionalLong.empty();
+        }
+        long address = Math.max(run.getKey(), startAddress);
+        claimFrom(run.getKey(), run.getValue(), address, address);
+        return OptionalLong.of(address);
+    }
+
+    /**
+     * Claims the specified number of free addresses within (inclusive) the specified span, as few runs of contiguous
+     * addresses as we can readily find, or claims nothing if the span does not hold that many free addresses.
+     * <p>
+     * If a single run can hold them all, the smallest such run is used, so that larger runs are kept whole for larger
+     * requests.  When the span covers every free run, that run is found directly via the runs ordered by size.
+     * Otherwise the addresses are claimed from the free runs within the span in ascending order.
+     *
+     * @param count Number of addresses to claim.
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @return List of the runs claimed, in ascending order, or an empty list if there were not enough free addresses.
+     * @throws UnknownHostException Thrown if a run claimed is invalid (should not happen).
+     */
+    synchronized List<IpAddressRange> claimRuns(long count, long startAddress, long endAddress)
+        throws UnknownHostException
+    {
+        List<IpAddressRange> claimed = new ArrayList<>();
+        if (freeRuns.isEmpty()) {
+            return claimed;
+        }
+
+        // look for the smallest single run holding them all (directly if any run in the index would do)
+        long[] bestRun = null;
+        if ((startAddress <= freeRuns.firstKey()) && (endAddress >= freeRuns.lastEntry().getValue())) {
+            bestRun = freeRunsBySize.ceiling(new long[] { 0, count - 1 });
+        } else {
+            for (Entry<Long, Long> run : runsWithin(startAddress, endAddress)) {
+                long runStartAddress = Math.max(run.getKey(), startAddress);
+                long runEndAddress = Math.min(run.getValue(), endAddress);
+                if ((runEndAddress - runStartAddress + 1 >= count)
+                    && ((bestRun == null) || (runEndAddress - runStartAddress < bestRun[1] - bestRun[0])))
+                {
+                    bestRun = new long[] { runStartAddress, runEndAddress };
+                }
+            }
+        }
+        if (bestRun != null) {
+            Entry<Long, Long> run = freeRuns.floorEntry(bestRun[0]);
+            claimFrom(run.getKey(), run.getValue(), bestRun[0], bestRun[0] + count - 1);
+            claimed.add(new IpAddressRange(bestRun[0], bestRun[0] + count - 1));
+            return claimed;
+        }
+
+        // otherwise gather them from the runs within the span in ascending order, if there are enough
+        long remaining = count;
+        List<long[]> spans = new ArrayList<>();
+        for (Entry<Long, Long> run : runsWithin(startAddress, endAddress)) {
+            long spanStartAddress = Math.max(run.getKey(), startAddress);
+            long spanEndAddress = Math.min(Math.min(run.getValue(), endAddress), spanStartAddress + remaining - 1);
+            spans.add(new long[] { run.getKey(), run.getValue(), spanStartAddress, spanEndAddress });
+            remaining -= spanEndAddress - spanStartAddress + 1;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        if (remaining > 0) {
+            return claimed;
+        }
+        for (long[] span : spans) {
+            claimFrom(span[0], span[1], span[2], span[3]);
+            claimed.add(new IpAddressRange(span[2], span[3]));
+        }
+        return claimed;
+    }
+
+    /**
+     * Forgets all free addresses.
+     */
+    synchronized void clear() {
+        freeRuns.clear();
+        freeRunsBySize.clear();
+    }
+
+    /**
+     * @return Returns the number of runs of free addresses held.
+     */
+    synchronized int getRunCount() {
+        return freeRuns.size();
+    }
+
+    /**
+     * Internal utility to claim the specified span from the specified run that contains it, keeping whatever is left
+     * of the run either side of the span.
+     *
+     * @param runStartAddress First address in the run.
+     * @param runEndAddress Last address in the run.
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     */
+    private void claimFrom(long runStartAddress, long runEndAddress, long startAddress, long endAddress) {
+        removeRun(runStartAddress, runEndAddress);
+        if (runStartAddress < startAddress) {
+            putRun(runStartAddress, startAddress - 1);
+        }
+        if (runEndAddress > endAddress) {
+            putRun(endAddress + 1, runEndAddress);
+        }
+    }
+
+    /**
+     * Internal utility to add the specified run to both of our trees.
+     *
+     * @param startAddress First address in the run.
+     * @param endAddress Last address in the run.
+     */
+    private void putRun(long startAddress, long endAddress) {
+        freeRuns.put(startAddress, endAddress);
+        freeRunsBySize.add(new long[] { startAddress, endAddress });
+    }
+
+    /**
+     * Internal utility to remove the specified run from both of our trees.
+     *
+     * @param startAddress First address in the run.
+     * @param endAddress Last address in the run.
+     */
+    private void removeRun(long startAddress, long endAddress) {
+        freeRuns.remove(startAddress);
+        freeRunsBySize.remove(new long[] { startAddress, endAddress });
+    }
+
+    /**
+     * Internal utility to get the runs that overlap (inclusive) the specified span, in ascending order.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @return Iterable over the runs found.
+     */
+    private Iterable<Entry<Long, Long>> runsWithin(long startAddress, long endAddress) {
+        Long fromAddress = freeRuns.floorKey(startAddress);
+        if ((fromAddress == null) || (freeRuns.get(fromAddress) < startAddress)) {
+            fromAddress = startAddress;
+        }
+        return freeRuns.subMap(fromAddress, true, endAddress, true).entrySet();
+    }
+}
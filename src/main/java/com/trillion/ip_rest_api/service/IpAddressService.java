@@ -1,14 +1,20 @@
 package com.trillion.ip_rest_api.service;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.stereotype.Service;
 
+import com.trillion.ip_rest_api.exception.BlockJobRejectedException;
 import com.trillion.ip_rest_api.exception.IpAddressNotFoundException;
 import com.trillion.ip_rest_api.exception.IpAddressOverlapException;
 import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.store.AddressRunConsumer;
+import com.trillion.ip_rest_api.store.AddressStateConsumer;
+import com.trillion.ip_rest_api.store.StateChange;
  
 /**
  * Interface for IpAddress related service operations.
@@ -26,37 +32,132 @@ public interface IpAddressService {
     IpAddress acquire(String address) throws IpAddressNotFoundException, UnknownHostException; 
 
     /**
-     * Adds new IpAddress instances within (inclusive) the specified CIDR block.  
+     * Sets the acquired flag of each of the specified addresses to true (if it is not already), in as few round trips
+     * to the store as it allows.  Every address is validated before any is changed.
+     *
+     * @param addresses List of dotted decimal addresses to update.
+     * @return List of the outcome for each address, in the same order as the addresses.
+     * @throws UnknownHostException Thrown if unable to parse any of the input addresses.
+     */
+    List<StateChange> acquireAll(List<String> addresses) throws UnknownHostException;
+
+    /**
+     * Adds the specified CIDR block, making all addresses within (inclusive) it available.  
      *
      * @param networkAddress Dotted decimal address of CIDR block being added (e.g. "1.0.0.0").
      * @param cidrMask CIDR mask of the block being added (e.g. 24).
-     * @return Count of instances that were added.
+     * @return Count of addresses that were added.
      * @throws UnknownHostException Thrown if unable to translate input address successfully.
-     * @throws IpAddressOverlapException Thrown if CIDR block overlaps one or more existing ones already in DB.
+     * @throws IpAddressOverlapException Thrown if CIDR block overlaps an existing one, which is named in the message.
      */
     long addBlock(String networkAddress, int cidrMask) throws UnknownHostException, IpAddressOverlapException;
 
     /**
-     * Deletes all IpAddress instances.
+     * Atomically picks the first available address, optionally within the specified CIDR block, and acquires it.
+     *
+     * @param cidrBlock CIDR block to allocate the address within (e.g. "1.0.0.0/24"), or null to allocate it from any
+     * existing block.
+     * @return IpAddress acquired.
+     * @throws IpAddressNotFoundException Thrown if there is no available address (within the CIDR block).
+     * @throws UnknownHostException Thrown if unable to parse the CIDR block.
+     */
+    IpAddress allocate(String cidrBlock) throws IpAddressNotFoundException, UnknownHostException;
+
+    /**
+     * Atomically picks the specified number of available addresses, optionally within the specified CIDR block, and
+     * acquires them all at once, preferring contiguous runs of addresses.  Either all of them are acquired, or none.
+     *
+     * @param cidrBlock CIDR block to allocate the addresses within (e.g. "1.0.0.0/24"), or null to allocate them from 
+     * any existing blocks.
+     * @param count Number of addresses to allocate, which must be positive and at most the max page size.
+     * @return List of the runs of addresses acquired, in ascending order.
+     * @throws IpAddressNotFoundException Thrown if there are fewer available addresses (within the CIDR block).
+     * @throws UnknownHostException Thrown if unable to parse the CIDR block.
+     * @throws IllegalArgumentException Thrown if the count is not positive, or is above the max page size.
+     */
+    List<IpAddressRange> allocate(String cidrBlock, int count) throws IpAddressNotFoundException, UnknownHostException;
+
+    /**
+     * Cancels the specified block job, if it has not finished.  A queued job is cancelled immediately, while a running
+     * job stops at the next point where it checks, removing anything it already added.
+     *
+     * @param id Id of the job to cancel.
+     * @return BlockJob cancelled (if any).
+     */
+    Optional<BlockJob> cancelBlockJob(long id);
+
+    /**
+     * Deletes all IpAddress instances, and all CIDR blocks containing them.
      */
     void deleteAll(); 
     
     /**
-     * Query to test whether any IpAddress instances exist in the specified range (inclusive).
+     * Query to test whether any existing CIDR block overlaps the specified range (inclusive).
      * 
      * @param startAddress Start address of the range.
      * @param endAddress End address of the range.
-     * @return Returns true if any IpAddress instance existing in the range.
+     * @return Returns true if any existing CIDR block overlaps the range.
      */
     boolean existsWithinRange(long startAddress, long endAddress);
 
+    /**
+     * Fetches the existing CIDR block (if any) that overlaps the specified range (inclusive).  Since existing blocks
+     * never overlap each other, at most one block can overlap a range that is itself a CIDR block.
+     * 
+     * @param startAddress Start address of the range.
+     * @param endAddress End address of the range.
+     * @return IpAddressRange of the overlapping block (if any).
+     */
+    Optional<IpAddressRange> findOverlapping(long startAddress, long endAddress);
+
+    /**
+     * Passes the state of every address present to the specified consumer, in ascending order, without holding them
+     * all in memory simultaneously.
+     *
+     * @param consumer Consumer to pass the state of each address to.
+     * @throws IOException Thrown if the consumer fails, or a stored address is invalid (should not happen).
+     */
+    void forEachAddress(AddressStateConsumer consumer) throws IOException;
+
+    /**
+     * Passes every change made after the specified sequence number to the specified consumer, in order, so that a 
+     * client that mirrors the addresses and has applied every change up to it can catch up.  Applying a change again
+     * is harmless, so a client that resyncs in full can carry on from a sequence number fetched before it did.
+     *
+     * @param since Sequence number of the last change the client has applied (0 if none).
+     * @param consumer Consumer to pass each change to.
+     * @return Sequence number of the last change passed (or since if none were), or -1 if some of the changes needed
+     *     are no longer retained, so the client must resync in full.
+     * @throws IOException Thrown if the consumer fails.
+     */
+    long forEachChangeSince(long since, ChangeConsumer consumer) throws IOException;
+
+    /**
+     * Passes every maximal run of contiguous addresses present that share the same state to the specified consumer, in
+     * ascending order, without holding the state of each address in memory.  Runs are merged across CIDR blocks that 
+     * adjoin one another.
+     *
+     * @param consumer Consumer to pass each run to.
+     * @throws IOException Thrown if the consumer fails, or a stored address is invalid (should not happen).
+     */
+    void forEachRun(AddressRunConsumer consumer) throws IOException;
+
     /**
      * Fetches all IpAddress instances present, in ascending order.
      * 
      * @return List of IpAddresses fetched.
+     * @throws UnknownHostException Thrown if a stored address is invalid (should not happen).
      */
-    List<IpAddress> getAll();         
+    List<IpAddress> getAll() throws UnknownHostException;         
     
+    /**
+     * Fetches the specified block job, so that its progress can be reported.
+     *
+     * @param id Id of the job to fetch.
+     * @return BlockJob fetched (if any).
+     */
+    Optional<BlockJob> getBlockJob(long id);
+
     /**
      * Gets specified IpAddress instance by its primary key (address).
      * 
@@ -67,20 +168,77 @@ public interface IpAddressService {
     Optional<IpAddress> getById(String address) throws UnknownHostException; 
     
     /**
-     * Fetches count of all IpAddress instances present.
+     * Fetches the sequence number of the most recent change, which a client that resyncs in full should fetch first, 
+     * and then fetch changes after.
+     *
+     * @return Sequence number of the most recent change.
+     */
+    long getChangeSequence();
+
+    /**
+     * Fetches the count of single address lookups, acquires and releases since startup that joined a concurrent call
+     * for the same address and got its outcome, rather than touching the store themselves.
      *
-     * @return Count of IpAddresses present.
+     * @return Count of coalesced calls.
+     */
+    long getCoalescedCount();
+
+    /**
+     * Fetches count of all addresses present, across all CIDR blocks.
+     *
+     * @return Count of addresses present.
      */
     long getCount();
 
+    /**
+     * Fetches the mutation generation, which is bumped after every change to the addresses present or their state 
+     * (adding a block, acquiring, releasing, deleting), so that callers can tell whether anything may have changed 
+     * since they last read them without reading them again.  It starts at 0 on startup, and only ever increases.
+     *
+     * @return Current mutation generation.
+     */
+    long getGeneration();
+
     /**
      * Fetches one page of IpAddress instances, in ascending order.
      * 
      * @param pageNum Page number to return from the result set.
-     * @param pageSize Number of entries which constitute a page.
+     * @param pageSize Number of entries which constitute a page, which must not exceed the max page size configured in
+     * application.properties.
      * @return List of IpAddresses fetched from that page.
+     * @throws UnknownHostException Thrown if a stored address is invalid (should not happen).
+     * @throws IllegalArgumentException Thrown if pageNum is negative, or pageSize is out of bounds.
      */
-    List<IpAddress> getPage(int pageNum, int pageSize);        
+    List<IpAddress> getPage(int pageNum, int pageSize) throws UnknownHostException;        
+
+    /**
+     * Fetches one page of IpAddress instances, in ascending order, starting immediately after the specified address.
+     * The page is found by seeking on the address, rather than by skipping over the pages before it, so fetching a
+     * deep page costs the same as fetching the first.
+     * 
+     * @param afterAddress Dotted decimal address that the page follows (i.e. the last address of the previous page),
+     * or null to fetch the first page.
+     * @param limit Max number of entries to return.
+     * @return List of IpAddresses fetched, which holds fewer than limit entries only if there are no more.
+     * @throws UnknownHostException Thrown if unable to parse input address.
+     */
+    List<IpAddress> getPageAfter(String afterAddress, int limit) throws UnknownHostException;
+
+    /**
+     * Fetches the count of single address writes retried since startup after failing on a concurrent change to the 
+     * address, which rises with contention on hot addresses.
+     *
+     * @return Count of retries.
+     */
+    long getRetryCount();
+
+    /**
+     * Fetches the locks that single address acquire and release operations take, which count how often they have been
+     * contended.
+     *
+     * @return StripedLocks in use.
+     */
+    StripedLocks getStripedLocks();
     
     /**
      * Updates a specified IpAddress instance to set its acquired flag to false (if it is not already).
@@ -91,12 +249,38 @@ public interface IpAddressService {
      * @throws UnknownHostException Thrown if unable to parse input address.
      */
     IpAddress release(String address) throws IpAddressNotFoundException, UnknownHostException;
+
+    /**
+     * Sets the acquired flag of each of the specified addresses to false (if it is not already), in as few round trips
+     * to the store as it allows.  Every address is validated before any is changed.
+     *
+     * @param addresses List of dotted decimal addresses to update.
+     * @return List of the outcome for each address, in the same order as the addresses.
+     * @throws UnknownHostException Thrown if unable to parse any of the input addresses.
+     */
+    List<StateChange> releaseAll(List<String> addresses) throws UnknownHostException;
     
+    /**
+     * Starts a job that adds the specified CIDR block in the background, and returns without waiting for it to finish.
+     * The block is validated and checked for overlap before returning, and is reserved so that no other block that
+     * overlaps it can be added in the meantime.
+     *
+     * @param networkAddress Dotted decimal address of CIDR block being added (e.g. "1.0.0.0").
+     * @param cidrMask CIDR mask of the block being added (e.g. 24).
+     * @return BlockJob started.
+     * @throws UnknownHostException Thrown if unable to translate input address successfully.
+     * @throws IpAddressOverlapException Thrown if CIDR block overlaps an existing one, which is named in the message.
+     * @throws BlockJobRejectedException Thrown if too many block jobs are already running or queued.
+     */
+    BlockJob submitBlockJob(String networkAddress, int cidrMask) throws UnknownHostException, 
+        IpAddressOverlapException, BlockJobRejectedException;
+
     /**
      * Adds or updates IpAddress instance to the DB. 
      * 
      * @param ipAddress IpAddress instance to save.
      * @return IpAddress instance added or updated.
+     * @throws IllegalArgumentException Thrown if the address is not within any CIDR block.
      */
     IpAddress save(IpAddress ipAddress);
     
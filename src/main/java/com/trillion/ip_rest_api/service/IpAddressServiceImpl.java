@@ -1,178 +1,1212 @@
 package com.trillion.ip_rest_api.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.net.util.SubnetUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
 
 import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.exception.BlockJobRejectedException;
 import com.trillion.ip_rest_api.exception.IpAddressNotFoundException;
 import com.trillion.ip_rest_api.exception.IpAddressOverlapException;
+import com.trillion.ip_rest_api.model.AddressChange;
 import com.trillion.ip_rest_api.model.IpAddress;
-import com.trillion.ip_rest_api.repository.IpAddressRepository;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.store.AddressRunCoalescer;
+import com.trillion.ip_rest_api.store.AddressRunConsumer;
+import com.trillion.ip_rest_api.store.AddressStateConsumer;
+import com.trillion.ip_rest_api.store.IpAddressStore;
+import com.trillion.ip_rest_api.store.StateChange;
 import com.trillion.ip_rest_api.util.NetUtils;
  
 /**
  * Provides IpAddress related service operations.
+ * <p>
+ * CIDR blocks and the state of the addresses within them are kept in an IpAddressStore, which is selected in 
+ * application.properties.  This class is responsible for validating and converting input, and for enforcing rules such
+ * as blocks not overlapping, independent of the store in use.
+ * <p>
+ * Overlap is checked against an in-memory index of the existing blocks, keyed by start address, so the cost of the
+ * check grows only logarithmically with the number of blocks, and does not depend on their sizes.  The index is loaded
+ * from the store on startup, and kept in step with it by adding and deleting blocks only via this class.  A new block
+ * is checked for overlap and reserved in the index in one step synchronized on the index, so that concurrent requests
+ * cannot add overlapping blocks, and is then added to the store without holding that lock.  A block that fails to be
+ * added is removed from the index again.
+ * <p>
+ * Blocks can also be added by block jobs, which run on a bounded pool of low priority threads, separate from the
+ * request threads, so that adding large blocks neither ties up request threads nor starves acquire and release
+ * requests.  At most the configured number of jobs run at once, and at most the configured number wait in the queue,
+ * beyond which new jobs are rejected.  Adding blocks (including by jobs) holds a shared lock on the store, while
+ * deleting all blocks cancels all jobs and then holds an exclusive one, so that no block outlives the delete.
  */
 @Service
 public class IpAddressServiceImpl implements IpAddressService {
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(IpAddressServiceImpl.class);
+
+    /**
+     * Number of most recent block jobs kept for polling after they finish.
+     */
+    private static final int MAX_RETAINED_JOBS = 100;
+
+    /**
+     * Coalesces concurrent acquires of the same address, keyed by the dotted decimal address requested.
+     */
+    private final SingleFlight<String, IpAddress> acquireFlights = new SingleFlight<>();
+
+    /**
+     * Index of existing CIDR blocks, keyed by start address.
+     */
+    private final NavigableMap<Long, IpAddressRange> blockIndex = new ConcurrentSkipListMap<>();
+
+    /**
+     * Log of the changes made, for clients that mirror the addresses to catch up from.
+     */
+    @Autowired
+    private ChangeLog changeLog;
+
     /**
      * Loads entries from application.properties.
      */
     @Autowired
-    Environment env;
-    
+    private Environment env;
+
+    /**
+     * Summary of the available addresses within published CIDR blocks, from which addresses are allocated.
+     */
+    private final FreeSpaceIndex freeSpace = new FreeSpaceIndex();
+
+    /**
+     * Mutation generation, bumped after every change to the store has been made (never before), so that a reader that
+     * fetches the generation before reading the store can never pair a generation with older contents.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Runs block jobs.
+     */
+    private ThreadPoolExecutor jobExecutor;
+
+    /**
+     * Block jobs that are queued, running, or recently finished, keyed by id.
+     */
+    private final Map<Long, BlockJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Max number of IpAddress instances in one page of a listing, sized according to application.properties on 
+     * startup.
+     */
+    private volatile int maxPageSize = 100_000;
+
     /**
-     * Repository to use to persist IpAddress instances.
+     * Id to give the next block job.
+     */
+    private final AtomicLong nextJobId = new AtomicLong(1);
+
+    /**
+     * Index of the CIDR blocks whose addresses are all in the store, keyed by start address.  Unlike the index of 
+     * existing blocks, this holds no block that is still being added.
+     */
+    private final NavigableMap<Long, IpAddressRange> publishedBlocks = new ConcurrentSkipListMap<>();
+
+    /**
+     * Coalesces concurrent lookups of the same address, keyed by the long address, so that a write can land the 
+     * lookups of the addresses it changed however they were spelt.
+     */
+    private final SingleFlight<Long, Optional<IpAddress>> readFlights = new SingleFlight<>();
+
+    /**
+     * Coalesces concurrent releases of the same address, keyed by the dotted decimal address requested.
+     */
+    private final SingleFlight<String, IpAddress> releaseFlights = new SingleFlight<>();
+
+    /**
+     * Base delay in milliseconds before retrying a single address write that failed on a concurrent change, doubled 
+     * for each further attempt, sized according to application.properties on startup.
+     */
+    private volatile long retryBackoffMs = 5;
+
+    /**
+     * Count of single address writes retried after failing on a concurrent change.
+     */
+    private final LongAdder retryCount = new LongAdder();
+
+    /**
+     * Maximum number of attempts at a single address write that fails on concurrent changes, sized according to 
+     * application.properties on startup.
+     */
+    private volatile int retryMaxAttempts = 5;
+
+    /**
+     * Store to use for CIDR blocks and address state.
      */
     @Autowired
-    private IpAddressRepository repository;
+    private IpAddressStore store;
+
+    /**
+     * Held shared while adding blocks to the store or allocating addresses, and exclusively while deleting all blocks.
+     */
+    private final ReadWriteLock storeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Locks that single address acquire and release operations take for their address, sized according to 
+     * application.properties on startup.
+     */
+    private volatile StripedLocks stripedLocks = new StripedLocks(256);
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The address is acquired by a single compare and set in the store, rather than being fetched, checked and saved,
+     * so concurrent callers cannot both change it, and only the one that did updates the summary of free space.  
+     * Concurrent acquires of the same address are coalesced, so that only the first touches the store, and the rest 
+     * get its outcome.
+     */
     @Override
     public IpAddress acquire(String address) throws IpAddressNotFoundException, UnknownHostException {
-        Objects.requireNonNull(address, "address cannot be null");
-        
-        // fetch existing IpAddress
-        Optional<IpAddress> addressOpt = getById(address);
-        if (addressOpt.isEmpty()) {
-            throw new IpAddressNotFoundException("address " + address + " not found");
+        return compareAndSet(address, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The store changes the addresses in chunks, with a single query and a batch of conditional writes per chunk where
+     * it can.
+     */
+    @Override
+    public List<StateChange> acquireAll(List<String> addresses) throws UnknownHostException {
+        return saveStates(addresses, true);
+    }
+
+    /**
+     * Internal utility to acquire the specified address in the store, which has already been claimed from the summary
+     * of free space, via a compare and set under the stripe for the address.  The claim is given back if the change 
+     * cannot be logged or the store fails, but is kept if the address was already acquired, since the summary should 
+     * not have it as free anyway.  Once the store has acquired the address, the claim is never given back.
+     *
+     * @param address Long address to acquire.
+     * @return Returns true if this call acquired the address.
+     * @throws UnknownHostException Thrown if the address is invalid (should not happen).
+     */
+    private boolean acquireClaimed(long address) throws UnknownHostException {
+        int reserved = 0;
+        stripedLocks.lock(address);
+        try {
+            try {
+                changeLog.reserve(1);
+                reserved = 1;
+                if (compareAndSetWithRetry(address, true) != StateChange.CHANGED) {
+                    return false;
+                }
+            } catch (UnknownHostException | RuntimeException ex) {
+                freeSpace.addFree(address, address);
+                throw ex;
+            }
+            changeLog.append(AddressChange.Type.ACQUIRED, address, address);
+            reserved = 0;
+            generation.incrementAndGet();
+            landReads(address, address);
+            return true;
+        } finally {
+            changeLog.release(reserved);
+            stripedLocks.unlock(address);
         }
+    }
 
-        // update IpAddress in DB to set acquired flag true, if not already true
-        IpAddress ipAddress = addressOpt.get();
-        if (! ipAddress.isAcquired()) {       
-            ipAddress.setAcquired(true);           
-            return save(ipAddress);
-        } else {
-            return ipAddress;
+    /**
+     * Internal utility to acquire the specified runs of addresses in the store, which have already been claimed from
+     * the summary of free space, under the stripes of every address within them.  Explicit acquires hold the stripe of
+     * their address while they change it, so reading the runs back under the stripes shows any address that one got to
+     * first.  If there is any, nothing is written, and only the addresses still available are given back, since the 
+     * summary should not have the rest as free anyway.  The whole claim is given back if the changes cannot be logged 
+     * or the store fails, but never once the store has acquired the runs.
+     *
+     * @param runs IpAddressRanges of the runs claimed, each within a single block.
+     * @return Returns true if this call acquired every address within the runs.
+     * @throws UnknownHostException Thrown if an address is invalid (should not happen).
+     */
+    private boolean acquireClaimedRuns(List<IpAddressRange> runs) throws UnknownHostException {
+        int reserved = 0;
+        BitSet stripes = stripedLocks.lockAll(runs);
+        try {
+            try {
+                changeLog.reserve(runs.size());
+                reserved = runs.size();
+                List<long[]> freeRuns = new ArrayList<>();
+                long freeCount = 0;
+                long claimedCount = 0;
+                for (IpAddressRange run : runs) {
+                    store.forEachRunBetween(run.getStartAddress(), run.getEndAddress(), 
+                        (startAddress, endAddress, acquired) -> {
+                            if (! acquired) {
+                                freeRuns.add(new long[] {startAddress, endAddress});
+                            }
+                        });
+                    claimedCount += run.getSize();
+                }
+                for (long[] freeRun : freeRuns) {
+                    freeCount += freeRun[1] - freeRun[0] + 1;
+                }
+                if (freeCount < claimedCount) {
+                    for (long[] freeRun : freeRuns) {
+                        freeSpace.addFree(freeRun[0], freeRun[1]);
+                    }
+                    return false;
+                }
+                store.saveRanges(runs, true);
+            } catch (UnknownHostException | RuntimeException ex) {
+                giveBack(runs);
+                throw ex;
+            } catch (IOException ex) {
+                giveBack(runs);
+                throw new UncheckedIOException(ex);
+            }
+            for (IpAddressRange run : runs) {
+                changeLog.append(AddressChange.Type.ACQUIRED, run.getStartAddress(), run.getEndAddress());
+                landReads(run.getStartAddress(), run.getEndAddress());
+            }
+            reserved = 0;
+            generation.incrementAndGet();
+            return true;
+        } finally {
+            changeLog.release(reserved);
+            stripedLocks.unlockAll(stripes);
+        }
+    }
+
+    @Override
+    public long addBlock(String networkAddress, int cidrMask) throws UnknownHostException, IpAddressOverlapException {
+        Objects.requireNonNull(networkAddress, "networkAddress cannot be null");
+        
+        int reserved = 0;
+        storeLock.readLock().lock();
+        try {
+            changeLog.reserve(1);
+            reserved = 1;
+            IpAddressRange range = reserveBlock(networkAddress + "/" + cidrMask);
+            try {
+                store.addRange(range);
+            } catch (UnknownHostException | RuntimeException ex) {
+                blockIndex.remove(range.getStartAddress(), range);
+                throw ex;
+            }
+            publishBlock(range);
+            reserved = 0;
+            return range.getSize();
+        } finally {
+            changeLog.release(reserved);
+            storeLock.readLock().unlock();
         }
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * The IpAddress instances are added in batches, according to the JDBC batch size configuration from the
-     * application.properties file.  This is done in order to avoid having to hold potentially large numbers of these 
-     * instances in memory concurrently.  
+     * The address is claimed from the in-memory summary of free space, which takes O(log n) in the number of runs of 
+     * free addresses, and only then acquired in the store, so no two callers can ever be given the same address.  It is
+     * acquired by a compare and set, so if an explicit acquire got to it first (and has yet to update the summary), the
+     * next free address is tried instead.
+     */
+    @Override
+    public IpAddress allocate(String cidrBlock) throws IpAddressNotFoundException, UnknownHostException {
+        IpAddressRange scope = (cidrBlock == null) ? new IpAddressRange(0, NetUtils.MAX_LONG_ADDRESS) 
+            : toRange(cidrBlock);
+        storeLock.readLock().lock();
+        try {
+            while (true) {
+                OptionalLong addressOpt = freeSpace.claimFirst(scope.getStartAddress(), scope.getEndAddress());
+                if (addressOpt.isEmpty()) {
+                    throw new IpAddressNotFoundException("no available address found" + 
+                        ((cidrBlock == null) ? "" : " within CIDR block " + cidrBlock));
+                }
+                if (acquireClaimed(addressOpt.getAsLong())) {
+                    return new IpAddress(addressOpt.getAsLong(), true);
+                }
+            }
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
      * <p>
-     * Note that each of the DB operations here, namely saving each batch of new IpAddress instances, is executed in a 
-     * separate transaction, in order to avoid potentially large DB transactions.  This means however that this method 
-     * is not atomic.
+     * The addresses are claimed from the in-memory summary of free space, using the smallest single run of available 
+     * addresses that can hold them all if there is one, and then acquired in the store with a single set-based update
+     * per run (split at block boundaries), under the stripes of every address claimed.  If an explicit acquire got to 
+     * any of them first (and has yet to update the summary), the rest are given back and the claim is tried again.
      */
     @Override
-    public long addBlock(String networkAddress, int cidrMask) throws UnknownHostException, IpAddressOverlapException {
-        Objects.requireNonNull(networkAddress, "networkAddress cannot be null");
-        
-        String cidrBlock = networkAddress + "/" + cidrMask;
-        
-        // get start and end addresses in the block
-        SubnetUtils.SubnetInfo subnetInfo = NetUtils.getSubnetInfo(cidrBlock);
-        String startAddressDottedDecimal = subnetInfo.getLowAddress();
-        String endAddressDottedDecimal = subnetInfo.getHighAddress();
-        long startAddress = NetUtils.convertDottedDecimalToLong(startAddressDottedDecimal);
-        long endAddress = NetUtils.convertDottedDecimalToLong(endAddressDottedDecimal);
-        
-        // make sure proposed block doesn't overlap any existing IpAddresses
-        if (existsWithinRange(startAddress, endAddress)) {
-            throw new IpAddressOverlapException("CIDR block " + cidrBlock + " overlaps existing addresses");
+    public List<IpAddressRange> allocate(String cidrBlock, int count) throws IpAddressNotFoundException, 
+        UnknownHostException 
+    {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        if (count > maxPageSize) {
+            throw new IllegalArgumentException("count must be at most " + maxPageSize);
+        }
+        IpAddressRange scope = (cidrBlock == null) ? new IpAddressRange(0, NetUtils.MAX_LONG_ADDRESS) 
+            : toRange(cidrBlock);
+        storeLock.readLock().lock();
+        try {
+            while (true) {
+                List<IpAddressRange> runs = freeSpace.claimRuns(count, scope.getStartAddress(), scope.getEndAddress());
+                if (runs.isEmpty()) {
+                    throw new IpAddressNotFoundException("fewer than " + count + " available addresses found" + 
+                        ((cidrBlock == null) ? "" : " within CIDR block " + cidrBlock));
+                }
+                List<IpAddressRange> blockRuns = splitAtBlocks(runs);
+                if (acquireClaimedRuns(blockRuns)) {
+                    return blockRuns;
+                }
+            }
+        } finally {
+            storeLock.readLock().unlock();
         }
+    }
 
-        // get batchSize value from application.properties (default to 1)
-        String batchSizeProp = env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1");
-        int batchSize = Integer.valueOf(batchSizeProp);
+    /**
+     * Internal utility to cancel every block job that has not finished.
+     */
+    private void cancelAllBlockJobs() {
+        for (BlockJob job : jobs.values()) {
+            cancelBlockJob(job);
+        }
+    }
 
-        // save new IpAddress instances to DB (in batches for efficiency)
-        List<IpAddress> ipAddresses = new ArrayList<>();
-        long numAddresses = endAddress - startAddress + 1;
-        long i = 1L;
-        for (long address = startAddress; address <= endAddress; address++) {
-            IpAddress ipAddress = new IpAddress(address, false);
-            ipAddresses.add(ipAddress);
-            if (((i % batchSize) == 0) || (i == numAddresses)) {
-                saveAll(ipAddresses);
-                ipAddresses.clear();
+    /**
+     * Internal utility to cancel the specified block job, if it has not finished.  A job that has not started running
+     * yet is removed from the queue and its block released here, while a running job does so itself once it sees the
+     * cancellation.
+     *
+     * @param job BlockJob to cancel.
+     */
+    private void cancelBlockJob(BlockJob job) {
+        job.requestCancel();
+        Future<?> future = job.getFuture();
+        if ((future != null) && future.cancel(false)) {
+            jobExecutor.purge();
+            blockIndex.remove(job.getRange().getStartAddress(), job.getRange());
+            job.stop(BlockJob.State.CANCELLED, null);
+        }
+    }
+
+    @Override
+    public Optional<BlockJob> cancelBlockJob(long id) {
+        Optional<BlockJob> jobOpt = getBlockJob(id);
+        jobOpt.ifPresent(job -> cancelBlockJob(job));
+        return jobOpt;
+    }
+
+    /**
+     * Internal utility to put the specified address into the specified state, if it is not in it already, coalescing
+     * concurrent calls for the same address and state into a single flight, so that only the first runs and the rest
+     * get its outcome (the address in that state, or the same exception) without parsing or touching the store.  This
+     * is safe since putting an address into a fixed state is idempotent.
+     *
+     * @param address Dotted decimal address to update.
+     * @param acquired Flags whether the address should be acquired.
+     * @return IpAddress in its new state.
+     * @throws IpAddressNotFoundException Thrown if address does not exist.
+     * @throws UnknownHostException Thrown if unable to parse input address.
+     */
+    private IpAddress compareAndSet(String address, boolean acquired) throws IpAddressNotFoundException, 
+        UnknownHostException 
+    {
+        Objects.requireNonNull(address, "address cannot be null");
+        SingleFlight<String, IpAddress> flights = acquired ? acquireFlights : releaseFlights;
+        try {
+            return flights.execute(address, () -> compareAndSetInFlight(address, acquired, flights));
+        } catch (IpAddressNotFoundException | UnknownHostException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("unexpected failure updating address " + address, ex);
+        }
+    }
+
+    /**
+     * Internal utility to put the specified address into the specified state, if it is not in it already, via a single
+     * compare and set in the store, and then update the summary of free space if this call changed it, as the leading
+     * call of a flight.  The stripe for the address is held throughout, so that concurrent calls for the same address 
+     * that were not coalesced take turns here, rather than contending for the same row in the store.  The flight lands
+     * before the stripe is let go, so no call can join it after another change to the address could have been made,
+     * and so do any lookups of the address in flight if it was changed, so that no later lookup can join one that 
+     * started before the change.
+     * An address within a block that is still being added is not found, until the block has been logged as added.
+     *
+     * @param address Dotted decimal address to update.
+     * @param acquired Flags whether the address should be acquired.
+     * @param flights SingleFlight that this call is leading a flight of.
+     * @return IpAddress in its new state.
+     * @throws IpAddressNotFoundException Thrown if address does not exist.
+     * @throws UnknownHostException Thrown if unable to parse input address.
+     */
+    private IpAddress compareAndSetInFlight(String address, boolean acquired, SingleFlight<String, IpAddress> flights)
+        throws IpAddressNotFoundException, UnknownHostException 
+    {
+        long longAddress = NetUtils.convertDottedDecimalToLong(address);
+
+        int reserved = 0;
+        storeLock.readLock().lock();
+        stripedLocks.lock(longAddress);
+        try {
+            changeLog.reserve(1);
+            reserved = 1;
+            StateChange change = isPublished(longAddress) ? compareAndSetWithRetry(longAddress, acquired) 
+                : StateChange.NOT_FOUND;
+            if (change == StateChange.NOT_FOUND) {
+                throw new IpAddressNotFoundException("address " + address + " not found");
+            }
+            if (change == StateChange.CHANGED) {
+                logChange(longAddress, acquired);
+                reserved = 0;
+                generation.incrementAndGet();
+                updateFreeSpace(longAddress, acquired);
+                landReads(longAddress, longAddress);
+            }
+            return new IpAddress(longAddress, acquired);
+        } finally {
+            changeLog.release(reserved);
+            flights.land(address);
+            stripedLocks.unlock(longAddress);
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Internal utility to compare and set the specified address in the store, retrying if the store fails on a
+     * concurrent change to the address (such as a lock timeout or a deadlock), up to the configured number of attempts.
+     * Each retry waits a random time up to the base backoff doubled per attempt, so that callers that collided do not
+     * collide again in lockstep.  Retries are counted, and logged at debug level with their address, so that hot
+     * addresses can be found under load.
+     *
+     * @param address Long address to update.
+     * @param acquired Flags whether the address should be acquired.
+     * @return StateChange outcome from the store.
+     * @throws UnknownHostException Thrown if the address is invalid.
+     */
+    private StateChange compareAndSetWithRetry(long address, boolean acquired) throws UnknownHostException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return store.compareAndSet(address, acquired);
+            } catch (ConcurrencyFailureException ex) {
+                if (attempt >= retryMaxAttempts) {
+                    throw ex;
+                }
+                retryCount.increment();
+                LOGGER.debug("retrying write of address {} after attempt {} failed: {}", 
+                    NetUtils.convertLongToDottedDecimal(address), attempt, ex.getMessage());
+                long maxDelayMs = retryBackoffMs << Math.min(attempt - 1, 20);
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelayMs + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
             }
-            i++;
         }
+    }
 
-        return numAddresses;
+    /**
+     * Creates the locks that single address acquire and release operations take, sized according to 
+     * application.properties.
+     */
+    public void createStripedLocks() {
+        // get stripe count from application.properties (default to 256)
+        String stripesProp = env.getProperty(IpRestApiApplication.LOCK_STRIPES, "256");
+        stripedLocks = new StripedLocks(Integer.parseInt(stripesProp));
     }
 
     @Override
     public void deleteAll() {
-        repository.deleteAll();
+        // cancel jobs first so that running ones let go of the store, then again for any submitted in the meantime
+        cancelAllBlockJobs();
+        int reserved = 0;
+        storeLock.writeLock().lock();
+        try {
+            cancelAllBlockJobs();
+            changeLog.reserve(1);
+            reserved = 1;
+            synchronized (blockIndex) {
+                store.deleteAll();
+                changeLog.append(AddressChange.Type.DELETED_ALL, 0, NetUtils.MAX_LONG_ADDRESS);
+                reserved = 0;
+                generation.incrementAndGet();
+                blockIndex.clear();
+                publishedBlocks.clear();
+                freeSpace.clear();
+            }
+        } finally {
+            changeLog.release(reserved);
+            storeLock.writeLock().unlock();
+        }
     }
 
     @Override
     public boolean existsWithinRange(long startAddress, long endAddress) {
-        return repository.existsWithinRange(startAddress, endAddress);
+        return findOverlapping(startAddress, endAddress).isPresent();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the block with the greatest start address not after the end of the range needs to be checked, since any
+     * block before it also ends before it.
+     */
+    @Override
+    public Optional<IpAddressRange> findOverlapping(long startAddress, long endAddress) {
+        Entry<Long, IpAddressRange> entry = blockIndex.floorEntry(endAddress);
+        if ((entry == null) || (entry.getValue().getEndAddress() < startAddress)) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.getValue());
+    }
+
+    @Override
+    public void forEachAddress(AddressStateConsumer consumer) throws IOException {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        for (IpAddressRange range : store.getRanges()) {
+            store.forEachBetween(range.getStartAddress(), range.getEndAddress(), consumer);
+        }
     }
 
     @Override
-    public List<IpAddress> getAll() {        
+    public long forEachChangeSince(long since, ChangeConsumer consumer) throws IOException {
+        return changeLog.forEachSince(since, consumer);
+    }
+
+    @Override
+    public void forEachRun(AddressRunConsumer consumer) throws IOException {
+        AddressRunCoalescer coalescer = new AddressRunCoalescer(consumer);
+        for (IpAddressRange range : store.getRanges()) {
+            store.forEachRunBetween(range.getStartAddress(), range.getEndAddress(), coalescer);
+        }
+        coalescer.flush();
+    }
+
+    @Override
+    public List<IpAddress> getAll() throws UnknownHostException {        
         List<IpAddress> addresses = new ArrayList<>();
-        repository.findAll().forEach(address -> addresses.add(address));
+        for (IpAddressRange range : store.getRanges()) {
+            addresses.addAll(store.findBetween(range.getStartAddress(), range.getEndAddress()));
+        }
         return addresses;
     }
 
+    @Override
+    public Optional<BlockJob> getBlockJob(long id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Concurrent lookups of the same address are coalesced, so that only the first touches the store, and the rest get
+     * its result, which reflects the state of the address at some point since the first started.  Every write lands 
+     * the lookups of the addresses it changed before it returns, so a lookup made after a write never gets a result 
+     * from before it.
+     */
     @Override
     public Optional<IpAddress> getById(String address) throws UnknownHostException {
         Objects.requireNonNull(address, "address cannot be null");
         long longAddress = NetUtils.convertDottedDecimalToLong(address);
-        return repository.findById(longAddress);
+        try {
+            return readFlights.execute(longAddress, () -> store.findById(longAddress));
+        } catch (UnknownHostException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("unexpected failure fetching address " + address, ex);
+        }
+    }
+
+    @Override
+    public long getChangeSequence() {
+        return changeLog.getLastSequence();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return acquireFlights.getCoalesced() + readFlights.getCoalesced() + releaseFlights.getCoalesced();
     }
 
     @Override
     public long getCount() {
-        return repository.count();
+        return store.count();
     }
 
     @Override
-    public List<IpAddress> getPage(int pageNum, int pageSize) {        
-        Pageable pageable = PageRequest.of(pageNum, pageSize);
-        Page<IpAddress> page = repository.findAll(pageable);
-        return page.toList();
+    public long getGeneration() {
+        return generation.get();
     }
 
     @Override
-    public IpAddress release(String address) throws IpAddressNotFoundException, UnknownHostException {
-        Objects.requireNonNull(address, "address cannot be null");
+    public List<IpAddress> getPage(int pageNum, int pageSize) throws UnknownHostException {        
+        if ((pageNum < 0) || (pageSize < 1) || (pageSize > maxPageSize)) {
+            throw new IllegalArgumentException("pageNum must not be negative and pageSize must be between 1 and " + 
+                maxPageSize);
+        }
 
-        // fetch existing IpAddress
-        Optional<IpAddress> addressOpt = getById(address);
-        if (addressOpt.isEmpty()) {
-            throw new IpAddressNotFoundException("address " + address + " not found");
+        // size the page by the addresses that remain beyond its offset, which may be fewer than the page size
+        long offset = (long)pageNum * pageSize;
+        List<IpAddressRange> ranges = store.getRanges();
+        long total = 0;
+        for (IpAddressRange range : ranges) {
+            total += range.getSize();
         }
+        List<IpAddress> addresses = new ArrayList<>((int)Math.max(0, Math.min(pageSize, total - offset)));
 
-        // update IpAddress in DB to set acquired flag false, if not already false
-        IpAddress ipAddress = addressOpt.get();
-        if (ipAddress.isAcquired()) {       
-            ipAddress.setAcquired(false);
-            return save(ipAddress);
-        } else {
-            return ipAddress;
+        // skip over whole ranges that precede the page, then fill the page from the ranges that follow
+        for (IpAddressRange range : ranges) {
+            long remaining = pageSize - addresses.size();
+            if (remaining == 0) {
+                break;
+            }
+            if (offset >= range.getSize()) {
+                offset -= range.getSize();
+                continue;
+            }
+            long startAddress = range.getStartAddress() + offset;
+            long endAddress = startAddress + Math.min(range.getSize() - offset, remaining) - 1;
+            addresses.addAll(store.findBetween(startAddress, endAddress));
+            offset = 0;
+        }
+        return addresses;
+    }
+
+    @Override
+    public List<IpAddress> getPageAfter(String afterAddress, int limit) throws UnknownHostException {
+        if ((limit < 1) || (limit > maxPageSize)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        long startAddress = (afterAddress == null) ? 0 : NetUtils.convertDottedDecimalToLong(afterAddress) + 1;
+
+        // seek to the block holding the start (if any), then fill the page from it and the blocks that follow
+        Long fromKey = publishedBlocks.floorKey(startAddress);
+        NavigableMap<Long, IpAddressRange> blocks = (fromKey == null) ? publishedBlocks 
+            : publishedBlocks.tailMap(fromKey, true);
+        List<IpAddress> addresses = new ArrayList<>(limit);
+        for (IpAddressRange range : blocks.values()) {
+            long remaining = limit - addresses.size();
+            if (remaining == 0) {
+                break;
+            }
+            if (range.getEndAddress() < startAddress) {
+                continue;
+            }
+            long pageStartAddress = Math.max(range.getStartAddress(), startAddress);
+            long pageEndAddress = Math.min(range.getEndAddress(), pageStartAddress + remaining - 1);
+            addresses.addAll(store.findBetween(pageStartAddress, pageEndAddress));
         }
+        return addresses;
     }
 
+    @Override
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    @Override
+    public StripedLocks getStripedLocks() {
+        return stripedLocks;
+    }
+
+    /**
+     * Internal utility to give the specified runs of addresses back to the summary of free space.
+     *
+     * @param runs IpAddressRanges of the runs to give back.
+     */
+    private void giveBack(List<IpAddressRange> runs) {
+        for (IpAddressRange run : runs) {
+            freeSpace.addFree(run.getStartAddress(), run.getEndAddress());
+        }
+    }
+
+    /**
+     * Creates the locks for single address operations, loads their retry settings and the max page size, loads the 
+     * index of existing CIDR blocks and the summary of free space within them from the store, and starts the pool of 
+     * threads that runs block jobs, on startup.
+     */
+    @PostConstruct
+    public void init() {
+        createStripedLocks();
+        loadRetrySettings();
+        loadPageSettings();
+        loadBlockIndex();
+        startJobExecutor();
+    }
+
+    /**
+     * Internal utility to check whether the specified address is within a published block, since addresses within a 
+     * block that is still being added may already be in the store, but must not be changed until the block has been 
+     * logged as added.
+     *
+     * @param address Long address in question.
+     * @return Returns true if the address is within a published block.
+     */
+    private boolean isPublished(long address) {
+        Entry<Long, IpAddressRange> entry = publishedBlocks.floorEntry(address);
+        return (entry != null) && (entry.getValue().getEndAddress() >= address);
+    }
+
+    /**
+     * Internal utility to land any lookups in flight of the addresses within (inclusive) the specified range, once 
+     * they have been changed, so that a lookup made after the change never joins one that started before it.  Must be
+     * called before letting go of the stripes of the addresses.
+     *
+     * @param startAddress First address changed.
+     * @param endAddress Last address changed.
+     */
+    private void landReads(long startAddress, long endAddress) {
+        for (long address = startAddress; address <= endAddress; address++) {
+            readFlights.land(address);
+        }
+    }
+
+    /**
+     * Loads the index of existing CIDR blocks, and the summary of free space within them, from the store.  The free 
+     * space is read as runs of available addresses, so loading it takes one step per run rather than per address.
+     */
+    public void loadBlockIndex() {
+        synchronized (blockIndex) {
+            blockIndex.clear();
+            publishedBlocks.clear();
+            freeSpace.clear();
+            try {
+                for (IpAddressRange range : store.getRanges()) {
+                    blockIndex.put(range.getStartAddress(), range);
+                    publishedBlocks.put(range.getStartAddress(), range);
+                    store.forEachRunBetween(range.getStartAddress(), range.getEndAddress(), 
+                        (startAddress, endAddress, acquired) -> {
+                            if (! acquired) {
+                                freeSpace.addFree(startAddress, endAddress);
+                            }
+                        });
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Loads the max number of IpAddress instances in one page of a listing from application.properties.
+     */
+    public void loadPageSettings() {
+        // get max page size from application.properties (default to 100000)
+        String maxSizeProp = env.getProperty(IpRestApiApplication.PAGE_MAX_SIZE, "100000");
+        maxPageSize = Math.max(1, Integer.parseInt(maxSizeProp));
+    }
+
+    /**
+     * Loads the number of attempts, and the base backoff between them, for single address writes that fail on 
+     * concurrent changes, from application.properties.
+     */
+    public void loadRetrySettings() {
+        // get retry settings from application.properties (default to 5 attempts, 5ms base backoff)
+        String maxAttemptsProp = env.getProperty(IpRestApiApplication.RETRY_MAX_ATTEMPTS, "5");
+        String backoffMsProp = env.getProperty(IpRestApiApplication.RETRY_BACKOFF_MS, "5");
+        retryMaxAttempts = Math.max(1, Integer.parseInt(maxAttemptsProp));
+        retryBackoffMs = Math.max(0, Long.parseLong(backoffMsProp));
+    }
+
+    /**
+     * Internal utility to append the change of the specified address to the specified state to the change log.
+     *
+     * @param address Long address changed.
+     * @param acquired Flags whether the address was acquired (otherwise released).
+     */
+    private void logChange(long address, boolean acquired) {
+        changeLog.append(acquired ? AddressChange.Type.ACQUIRED : AddressChange.Type.RELEASED, address, address);
+    }
+
+    /**
+     * Internal utility to publish the specified block once all of its addresses are in the store, so that it is paged
+     * through and its addresses can be acquired, released and allocated.  The block is logged as added, under the lock
+     * on the index of blocks, before it is published, since its addresses cannot be changed until it has been, so no 
+     * change to one of them can be logged ahead of it.
+     *
+     * @param range IpAddressRange of the block to publish.
+     */
+    private void publishBlock(IpAddressRange range) {
+        synchronized (blockIndex) {
+            changeLog.append(AddressChange.Type.BLOCK_ADDED, range.getStartAddress(), range.getEndAddress());
+            generation.incrementAndGet();
+            publishedBlocks.put(range.getStartAddress(), range);
+            freeSpace.addFree(range.getStartAddress(), range.getEndAddress());
+        }
+    }
+
+    /**
+     * Internal utility to validate the specified CIDR block, check that it does not overlap any existing blocks, and
+     * reserve it in the index of existing blocks.
+     *
+     * @param cidrBlock CIDR block in question (e.g. "1.0.0.0/24").
+     * @return IpAddressRange of the block reserved.
+     * @throws UnknownHostException Thrown if unable to translate the block successfully.
+     * @throws IpAddressOverlapException Thrown if the block overlaps an existing one, which is named in the message.
+     */
+    private IpAddressRange reserveBlock(String cidrBlock) throws UnknownHostException, IpAddressOverlapException {
+        IpAddressRange range = toRange(cidrBlock);
+        long startAddress = range.getStartAddress();
+        long endAddress = range.getEndAddress();
+        synchronized (blockIndex) {
+            // make sure proposed block doesn't overlap any existing blocks
+            Optional<IpAddressRange> overlapping = findOverlapping(startAddress, endAddress);
+            if (overlapping.isPresent()) {
+                throw new IpAddressOverlapException("CIDR block " + cidrBlock + " overlaps existing CIDR block " + 
+                    overlapping.get().toCidrBlock());
+            }
+            blockIndex.put(startAddress, range);
+        }
+        return range;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The address is released by a single compare and set in the store, rather than being fetched, checked and saved,
+     * so concurrent callers cannot both change it, and only the one that did updates the summary of free space.  
+     * Concurrent releases of the same address are coalesced, so that only the first touches the store, and the rest 
+     * get its outcome.
+     */
+    @Override
+    public IpAddress release(String address) throws IpAddressNotFoundException, UnknownHostException {
+        return compareAndSet(address, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The store changes the addresses in chunks, with a single query and a batch of conditional writes per chunk where
+     * it can.
+     */
+    @Override
+    public List<StateChange> releaseAll(List<String> addresses) throws UnknownHostException {
+        return saveStates(addresses, false);
+    }
+
+    /**
+     * Internal utility to run the specified block job, on one of the block job threads.  Whatever the outcome, the
+     * job's block is left either added in full, or released from the index and the store.  The generation is bumped
+     * as each batch of rows is added, since they can be read before the job ends, and again once it has.
+     *
+     * @param job BlockJob to run.
+     */
+    private void runBlockJob(BlockJob job) {
+        IpAddressRange range = job.getRange();
+        int reserved = 0;
+        storeLock.readLock().lock();
+        try {
+            if (job.isCancelRequested()) {
+                throw new CancellationException("cancelled before starting");
+            }
+            changeLog.reserve(1);
+            reserved = 1;
+            job.start();
+            store.addRange(range, rows -> {
+                generation.incrementAndGet();
+                job.progress(rows);
+            });
+            publishBlock(range);
+            reserved = 0;
+            job.stop(BlockJob.State.SUCCEEDED, null);
+            LOGGER.info("block job {} added {} ({} addresses/sec)", job.getId(), job.getCidrBlock(), 
+                job.getRowsPerSec());
+        } catch (CancellationException ex) {
+            blockIndex.remove(range.getStartAddress(), range);
+            job.stop(BlockJob.State.CANCELLED, null);
+            LOGGER.info("block job {} cancelled adding {}", job.getId(), job.getCidrBlock());
+        } catch (Exception ex) {
+            blockIndex.remove(range.getStartAddress(), range);
+            job.stop(BlockJob.State.FAILED, ex.getMessage());
+            LOGGER.error("block job {} failed adding {}", job.getId(), job.getCidrBlock(), ex);
+        } finally {
+            changeLog.release(reserved);
+            generation.incrementAndGet();
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The address is put into the state of the instance by the same compare and set as acquire and release, rather 
+     * than by saving the instance, so it is ordered against them by the stripe of the address, and nothing is logged 
+     * if the address was already in the state.
+     */
     @Override
     public IpAddress save(IpAddress ipAddress) {
         Objects.requireNonNull(ipAddress, "ipAddress cannot be null");
-        return repository.save(ipAddress);
+        try {
+            return compareAndSet(NetUtils.convertLongToDottedDecimal(ipAddress.getAddress()), ipAddress.isAcquired());
+        } catch (IpAddressNotFoundException | UnknownHostException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
     }    
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The addresses are put into their states by the same batches of conditional writes as acquireAll and releaseAll,
+     * one for the addresses to acquire and one for those to release.  If an address is listed more than once, its last
+     * instance wins.  Addresses that are not within any block are skipped, and only the addresses that were changed are
+     * logged.
+     */
     @Override
     public void saveAll(List<IpAddress> ipAddresses) {
         Objects.requireNonNull(ipAddresses, "ipAddresses cannot be null");
-        repository.saveAll(ipAddresses);
+        Map<Long, Boolean> states = new LinkedHashMap<>();
+        for (IpAddress ipAddress : ipAddresses) {
+            states.put(ipAddress.getAddress(), ipAddress.isAcquired());
+        }
+        try {
+            List<String> acquired = new ArrayList<>();
+            List<String> released = new ArrayList<>();
+            for (Entry<Long, Boolean> entry : states.entrySet()) {
+                String address = NetUtils.convertLongToDottedDecimal(entry.getKey());
+                (entry.getValue() ? acquired : released).add(address);
+            }
+            saveStates(acquired, true);
+            saveStates(released, false);
+        } catch (UnknownHostException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
     }    
+
+    /**
+     * Internal utility to set the acquired flag of each of the specified addresses, once they have all been validated,
+     * and then update the summary of free space to match the addresses that were changed.  The stripes of every 
+     * address are held while the store is written and the changes are logged, so that the changes are logged in the
+     * same order as any concurrent acquires and releases of the same addresses were made.  A sequence number is 
+     * reserved in the change log for every address before the store is written, so that every change the store makes
+     * can be logged.
+     *
+     * @param addresses List of dotted decimal addresses to update.
+     * @param acquired Flags whether the addresses should be acquired.
+     * @return List of the outcome for each address, in the same order as the addresses.
+     * @throws UnknownHostException Thrown if unable to parse any of the input addresses.
+     */
+    private List<StateChange> saveStates(List<String> addresses, boolean acquired) throws UnknownHostException {
+        Objects.requireNonNull(addresses, "addresses cannot be null");
+
+        // validate every address before changing any
+        long[] longAddresses = new long[addresses.size()];
+        for (int i = 0; i < longAddresses.length; i++) {
+            String address = Objects.requireNonNull(addresses.get(i), "address cannot be null");
+            longAddresses[i] = NetUtils.convertDottedDecimalToLong(address);
+        }
+
+        int reserved = 0;
+        storeLock.readLock().lock();
+        BitSet stripes = stripedLocks.lockAll(longAddresses);
+        try {
+            changeLog.reserve(longAddresses.length);
+            reserved = longAddresses.length;
+            StateChange[] changes = saveStatesPublished(longAddresses, acquired);
+            boolean changed = false;
+            for (int i = 0; i < changes.length; i++) {
+                if (changes[i] == StateChange.CHANGED) {
+                    logChange(longAddresses[i], acquired);
+                    reserved--;
+                    updateFreeSpace(longAddresses[i], acquired);
+                    landReads(longAddresses[i], longAddresses[i]);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                generation.incrementAndGet();
+            }
+            return Arrays.asList(changes);
+        } finally {
+            changeLog.release(reserved);
+            stripedLocks.unlockAll(stripes);
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Internal utility to set the acquired flag of each of the specified addresses that is within a published block,
+     * in the store, and report the rest as not found without passing them to the store.
+     *
+     * @param addresses Long addresses to update.
+     * @param acquired Flags whether the addresses should be acquired.
+     * @return Array of the outcome for each address, in the same order as the addresses.
+     * @throws UnknownHostException Thrown if any of the addresses is invalid (should not happen).
+     */
+    private StateChange[] saveStatesPublished(long[] addresses, boolean acquired) throws UnknownHostException {
+        StateChange[] changes = new StateChange[addresses.length];
+        long[] published = new long[addresses.length];
+        int publishedCount = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            if (isPublished(addresses[i])) {
+                published[publishedCount++] = addresses[i];
+            } else {
+                changes[i] = StateChange.NOT_FOUND;
+            }
+        }
+        if (publishedCount > 0) {
+            StateChange[] publishedChanges = store.saveStates(Arrays.copyOf(published, publishedCount), acquired);
+            for (int i = 0, j = 0; i < changes.length; i++) {
+                if (changes[i] == null) {
+                    changes[i] = publishedChanges[j++];
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Internal utility to split the specified runs of addresses at the boundaries of the published blocks they span, 
+     * since the summary of free space merges the free space of adjacent blocks into single runs.
+     *
+     * @param runs IpAddressRanges of the runs to split, each within published blocks.
+     * @return List of IpAddressRanges split from the runs, in the same order, each within a single block.
+     * @throws UnknownHostException Thrown if an address is invalid (should not happen).
+     */
+    private List<IpAddressRange> splitAtBlocks(List<IpAddressRange> runs) throws UnknownHostException {
+        List<IpAddressRange> split = new ArrayList<>(runs.size());
+        for (IpAddressRange run : runs) {
+            Long fromKey = publishedBlocks.floorKey(run.getStartAddress());
+            for (IpAddressRange block : publishedBlocks.subMap((fromKey == null) ? run.getStartAddress() : fromKey, 
+                true, run.getEndAddress(), true).values())
+            {
+                long startAddress = Math.max(block.getStartAddress(), run.getStartAddress());
+                long endAddress = Math.min(block.getEndAddress(), run.getEndAddress());
+                if (startAddress <= endAddress) {
+                    split.add(new IpAddressRange(startAddress, endAddress));
+                }
+            }
+        }
+        return split;
+    }
+
+    /**
+     * Starts the pool of threads that runs block jobs, sized according to application.properties.
+     */
+    public void startJobExecutor() {
+        // get thread and queue limits from application.properties (default to 2 and 8)
+        String threadsProp = env.getProperty(IpRestApiApplication.BLOCK_JOB_THREADS, "2");
+        int threads = Integer.parseInt(threadsProp);
+        String queueSizeProp = env.getProperty(IpRestApiApplication.BLOCK_JOB_QUEUE_SIZE, "8");
+        int queueSize = Integer.parseInt(queueSizeProp);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        jobExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, 
+            new ArrayBlockingQueue<>(queueSize), runnable -> {
+                Thread thread = new Thread(runnable, "block-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+    }
+
+    /**
+     * Cancels all block jobs, and stops the pool of threads that runs them, when the application stops.
+     */
+    @PreDestroy
+    public void stopJobExecutor() {
+        cancelAllBlockJobs();
+        jobExecutor.shutdown();
+    }
+
+    /**
+     * Internal utility to translate the specified CIDR block to the range of addresses within (inclusive) it.
+     *
+     * @param cidrBlock CIDR block in question (e.g. "1.0.0.0/24").
+     * @return IpAddressRange of the block.
+     * @throws UnknownHostException Thrown if unable to translate the block successfully.
+     */
+    private IpAddressRange toRange(String cidrBlock) throws UnknownHostException {
+        // get start and end addresses in the block
+        SubnetUtils.SubnetInfo subnetInfo = NetUtils.getSubnetInfo(cidrBlock);
+        String startAddressDottedDecimal = subnetInfo.getLowAddress();
+        String endAddressDottedDecimal = subnetInfo.getHighAddress();
+        long startAddress = NetUtils.convertDottedDecimalToLong(startAddressDottedDecimal);
+        long endAddress = NetUtils.convertDottedDecimalToLong(endAddressDottedDecimal);
+        return new IpAddressRange(startAddress, endAddress);
+    }
+
+    /**
+     * Internal utility to update the summary of free space to match the acquired flag of the specified address, which
+     * has just been saved.
+     *
+     * @param address Long address saved.
+     * @param acquired Flags whether the address was saved as acquired.
+     */
+    private void updateFreeSpace(long address, boolean acquired) {
+        if (acquired) {
+            freeSpace.claim(address);
+        } else {
+            freeSpace.addFree(address, address);
+        }
+    }
+
+    @Override
+    public BlockJob submitBlockJob(String networkAddress, int cidrMask) throws UnknownHostException, 
+        IpAddressOverlapException, BlockJobRejectedException 
+    {
+        Objects.requireNonNull(networkAddress, "networkAddress cannot be null");
+
+        String cidrBlock = networkAddress + "/" + cidrMask;
+        BlockJob job;
+        storeLock.readLock().lock();
+        try {
+            IpAddressRange range = reserveBlock(cidrBlock);
+            job = new BlockJob(nextJobId.getAndIncrement(), cidrBlock, range);
+            jobs.put(job.getId(), job);
+            try {
+                job.setFuture(jobExecutor.submit(() -> runBlockJob(job)));
+            } catch (RejectedExecutionException ex) {
+                jobs.remove(job.getId());
+                blockIndex.remove(range.getStartAddress(), range);
+                throw new BlockJobRejectedException("too many block jobs running or queued to add CIDR block " + 
+                    cidrBlock + ", try again later");
+            }
+        } finally {
+            storeLock.readLock().unlock();
+        }
+
+        // forget jobs that finished long enough ago
+        long oldestRetainedId = job.getId() - MAX_RETAINED_JOBS;
+        jobs.values().removeIf(oldJob -> oldJob.getState().isFinished() && (oldJob.getId() <= oldestRetainedId));
+        return job;
+    }
 }
@@ -0,0 +1,113 @@
+package com.trillion.ip_rest_api.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent calls for the same key into a single flight: the first caller for a key runs the operation,
+ * while any caller for that key arriving before it lands waits for it and gets the same outcome (value or exception),
+ * without running the operation again.  Once the flight has landed, the next caller for the key starts a new one.
+ * <p>
+ * This only suits operations whose outcome a caller would accept from a call that started a little before its own,
+ * such as reads, or idempotent writes that put an address into a fixed state.  An operation can land its flight early,
+ * via land, once its outcome is settled, e.g. before letting go of a lock that its outcome depends on, so that later
+ * callers never get an outcome that a change made after it landed has overtaken.  A change can likewise land the
+ * flights whose outcome it overtakes, such as lookups of an address it has just written.
+ *
+ * @param <K> Type of key that calls are coalesced by.
+ * @param <V> Type of value the operation returns.
+ */
+class SingleFlight<K, V> {
+    /**
+     * Count of calls that joined a flight in progress, rather than running the operation.
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Flights in progress, mapping each key to the outcome its leading caller will complete.
+     */
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Count of calls that ran the operation.
+     */
+    private final LongAdder led = new LongAdder();
+
+    /**
+     * Internal utility to wait for the specified flight to land, and return its value or throw its exception.
+     *
+     * @param flight Flight to wait for.
+     * @return Value returned by the flight's operation.
+     * @throws Exception Thrown by the flight's operation.
+     */
+    private V await(CompletableFuture<V> flight) throws Exception {
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw (Exception)cause;
+        }
+    }
+
+    /**
+     * Runs the specified operation for the specified key, unless a flight for the key is already in progress, in which
+     * case waits for it and returns its outcome instead.
+     *
+     * @param key Key to coalesce the call by.
+     * @param operation Operation to run if no flight for the key is in progress.
+     * @return Value returned by the operation (this call's, or the flight's joined).
+     * @throws Exception Thrown by the operation (this call's, or the flight's joined).
+     */
+    V execute(K key, Callable<V> operation) throws Exception {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            coalesced.increment();
+            return await(inFlight);
+        }
+
+        led.increment();
+        try {
+            V value = operation.call();
+            flights.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (Exception | Error ex) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return Returns the count of calls so far that joined a flight in progress.
+     */
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return Returns the count of calls so far that ran the operation.
+     */
+    long getLed() {
+        return led.sum();
+    }
+
+    /**
+     * Lands the flight in progress for the specified key early, so that callers arriving from now on start a new
+     * flight, while those that already joined still get its outcome.  To be called by the operation itself once its
+     * outcome is settled, or by a change that overtakes the outcome of any flight for the key.
+     *
+     * @param key Key of the flight to land.
+     */
+    void land(K key) {
+        flights.remove(key);
+    }
+}
@@ -0,0 +1,207 @@
+package com.trillion.ip_rest_api.service;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Fixed set of locks ("stripes") that addresses are spread across by hash, so that operations on the same address
+ * take turns in memory, while operations on different addresses usually take different locks and so proceed in
+ * parallel, however many addresses there are.  Addresses are spread by a hash of the whole address rather than by
+ * prefix, so that the addresses of one hot block are spread across all the stripes.
+ * <p>
+ * Counts of lock acquisitions, of those that found their stripe held and had to wait, and of the total time spent
+ * waiting are kept, so that contention can be monitored.  A stripe count of 0 disables locking altogether.
+ * <p>
+ * Operations on many addresses at once lock the stripes of all of them, always in ascending order of stripe, so that
+ * they cannot deadlock each other, while operations on a single address never wait for a second stripe.
+ */
+public class StripedLocks {
+    /**
+     * Count of lock acquisitions.
+     */
+    private final LongAdder acquisitions = new LongAdder();
+
+    /**
+     * Count of lock acquisitions that found their stripe held, and so had to wait.
+     */
+    private final LongAdder contended = new LongAdder();
+
+    /**
+     * Locks that addresses are spread across.  The count is a power of two, so that a stripe is picked by masking.
+     */
+    private final ReentrantLock[] stripes;
+
+    /**
+     * Total time in nanoseconds spent waiting for stripes that were held.
+     */
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param stripeCount Number of stripes, which must be 0 (to disable locking) or a power of two.
+     */
+    StripedLocks(int stripeCount) {
+        if ((stripeCount < 0) || (Integer.bitCount(stripeCount) > 1)) {
+            throw new IllegalArgumentException("stripe count must be 0 or a power of two");
+        }
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @return Returns the count of lock acquisitions so far.
+     */
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    /**
+     * @return Returns the count of lock acquisitions so far that had to wait for their stripe.
+     */
+    public long getContended() {
+        return contended.sum();
+    }
+
+    /**
+     * @return Returns the number of stripes.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @return Returns the total time in nanoseconds spent waiting for stripes so far.
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * Locks the stripe for the specified address, waiting for it if it is held.  Must be paired with a call to unlock
+     * for the same address, in a finally block.
+     *
+     * @param address Long address in question.
+     */
+    void lock(long address) {
+        if (stripes.length == 0) {
+            return;
+        }
+        lockStripe(stripes[stripeIndex(address)]);
+    }
+
+    /**
+     * Locks the stripes for each of the specified addresses, in ascending order of stripe.  Once there are as many 
+     * addresses as there are stripes, every stripe is locked rather than hashing each address.  Must be paired with a
+     * call to unlockAll for the stripes returned, in a finally block.
+     *
+     * @param addresses Long addresses in question.
+     * @return BitSet of the stripes locked.
+     */
+    BitSet lockAll(long[] addresses) {
+        BitSet indexes = new BitSet(stripes.length);
+        if (addresses.length >= stripes.length) {
+            indexes.set(0, stripes.length);
+        } else {
+            for (long address : addresses) {
+                indexes.set(stripeIndex(address));
+            }
+        }
+        lockStripes(indexes);
+        return indexes;
+    }
+
+    /**
+     * Locks the stripes for every address within the specified ranges, in ascending order of stripe.  Once the ranges
+     * hold as many addresses as there are stripes, every stripe is locked rather than hashing each address.  Must be 
+     * paired with a call to unlockAll for the stripes returned, in a finally block.
+     *
+     * @param ranges IpAddressRanges in question.
+     * @return BitSet of the stripes locked.
+     */
+    BitSet lockAll(List<IpAddressRange> ranges) {
+        BitSet indexes = new BitSet(stripes.length);
+        long count = 0;
+        for (IpAddressRange range : ranges) {
+            count += range.getSize();
+        }
+        if (count >= stripes.length) {
+            indexes.set(0, stripes.length);
+        } else {
+            for (IpAddressRange range : ranges) {
+                for (long address = range.getStartAddress(); address <= range.getEndAddress(); address++) {
+                    indexes.set(stripeIndex(address));
+                }
+            }
+        }
+        lockStripes(indexes);
+        return indexes;
+    }
+
+    /**
+     * Internal utility to lock the specified stripe, waiting for it if it is held, and count the acquisition.
+     *
+     * @param stripe ReentrantLock of the stripe in question.
+     */
+    private void lockStripe(ReentrantLock stripe) {
+        if (! stripe.tryLock()) {
+            contended.increment();
+            long startNanos = System.nanoTime();
+            stripe.lock();
+            waitNanos.add(System.nanoTime() - startNanos);
+        }
+        acquisitions.increment();
+    }
+
+    /**
+     * Internal utility to lock the specified stripes, in ascending order.
+     *
+     * @param indexes BitSet of the stripes to lock.
+     */
+    private void lockStripes(BitSet indexes) {
+        for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+            lockStripe(stripes[i]);
+        }
+    }
+
+    /**
+     * Internal utility to pick the stripe for the specified address, mixing its bits so that both nearby addresses
+     * and addresses a block apart land on different stripes.
+     *
+     * @param address Long address in question.
+     * @return Index of the stripe picked.
+     */
+    private int stripeIndex(long address) {
+        long hash = address * 0x9E3779B97F4A7C15L;
+        return (int)(hash >>> 32) & (stripes.length - 1);
+    }
+
+    /**
+     * Unlocks the stripe for the specified address, which the calling thread must have locked.
+     *
+     * @param address Long address in question.
+     */
+    void unlock(long address) {
+        if (stripes.length == 0) {
+            return;
+        }
+        stripes[stripeIndex(address)].unlock();
+    }
+
+    /**
+     * Unlocks the specified stripes, which the calling thread must have locked via lockAll.
+     *
+     * @param indexes BitSet of the stripes returned by lockAll.
+     */
+    void unlockAll(BitSet indexes) {
+        for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+            stripes[i].unlock();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.trillion.ip_rest_api.store;
+
+/**
+ * Picks the number of rows to write per chunk when materializing a CIDR block, adapting it to the throughput measured
+ * for each chunk written so far.
+ * <p>
+ * This is a simple hill climb: the chunk size is doubled after each chunk for as long as throughput keeps improving,
+ * and the direction is reversed (i.e. the size is halved) whenever a chunk is slower per row than the one before it.
+ * The chunk size always stays within the configured bounds.  Since each chunk is committed in its own transaction, the
+ * time measured for a chunk includes its commit latency.
+ * <p>
+ * Instances are not thread safe, and are meant to be used for a single block.
+ */
+class AdaptiveChunkSizer {
+    /**
+     * Chunk size to use for the next chunk.
+     */
+    private long chunkSize;
+
+    /**
+     * Flags whether the chunk size is currently being grown rather than shrunk.
+     */
+    private boolean growing = true;
+
+    /**
+     * Upper bound of the chunk size.
+     */
+    private final long maxChunkSize;
+
+    /**
+     * Lower bound of the chunk size.
+     */
+    private final long minChunkSize;
+
+    /**
+     * Throughput in rows/sec measured for the previous chunk, or a negative value if no chunk has been recorded yet.
+     */
+    private double previousRowsPerSec = -1;
+
+    /**
+     * Total time in nanoseconds taken by all chunks recorded so far.
+     */
+    private long totalNanos;
+
+    /**
+     * Total number of rows in all chunks recorded so far.
+     */
+    private long totalRows;
+
+    /**
+     * Constructor.
+     *
+     * @param initialChunkSize Chunk size to use for the first chunk (clamped to the bounds).
+     * @param minChunkSize Sets our minChunkSize attribute.
+     * @param maxChunkSize Sets our maxChunkSize attribute.
+     */
+    AdaptiveChunkSizer(long initialChunkSize, long minChunkSize, long maxChunkSize) {
+        if ((minChunkSize < 1) || (maxChunkSize < minChunkSize)) {
+            throw new IllegalArgumentException("invalid chunk size bounds [" + minChunkSize + ", " + maxChunkSize
+                + "]");
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.chunkSize = clamp(initialChunkSize);
+    }
+
+    /**
+     * Internal utility to clamp the specified chunk size to our bounds.
+     *
+     * @param size Chunk size to clamp.
+     * @return Returns the clamped chunk size.
+     */
+    private long clamp(long size) {
+        return Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+
+    /**
+     * @return Returns the chunk size to use for the next chunk.
+     */
+    long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return Returns the overall throughput in rows/sec of all chunks recorded so far, or 0 if there are none.
+     */
+    long getRowsPerSec() {
+        return (totalNanos == 0) ? 0 : (long)(totalRows * 1_000_000_000.0 / totalNanos);
+    }
+
+    /**
+     * Records the time taken to write a chunk, and adjusts the chunk size to use for the next chunk accordingly.
+     *
+     * @param rows Number of rows in the chunk.
+     * @param elapsedNanos Time taken to write (and commit) the chunk, in nanoseconds.
+     */
+    void record(long rows, long elapsedNanos) {
+        long nanos = Math.max(1L, elapsedNanos);
+        totalRows += rows;
+        totalNanos += nanos;
+
+        // only a full chunk says anything about the current chunk size (the last chunk of a block may be short)
+        if (rows < chunkSize) {
+            return;
+        }
+        double rowsPerSec = rows * 1_000_000_000.0 / nanos;
+        if ((previousRowsPerSec >= 0) && (rowsPerSec < previousRowsPerSec)) {
+            growing = !growing;
+        }
+        previousRowsPerSec = rowsPerSec;
+        chunkSize = clamp(growing ? chunkSize * 2 : chunkSize / 2);
+    }
+}
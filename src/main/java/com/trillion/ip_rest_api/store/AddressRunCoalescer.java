@@ -0,0 +1,72 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Coalesces the runs (or single addresses) it is given, in ascending order, into maximal runs of contiguous addresses
+ * that share the same state, and passes those on to another AddressRunConsumer.  Only the run in progress is held, so
+ * any number of addresses can be coalesced in constant memory.
+ * <p>
+ * The final run is only passed on when flush is called.  Not thread safe.
+ */
+public final class AddressRunCoalescer implements AddressRunConsumer, AddressStateConsumer {
+    /**
+     * Consumer to pass the coalesced runs to.
+     */
+    private final AddressRunConsumer consumer;
+
+    /**
+     * Flags whether the addresses in the run in progress are acquired.
+     */
+    private boolean runAcquired;
+
+    /**
+     * Last address of the run in progress.
+     */
+    private long runEndAddress;
+
+    /**
+     * First address of the run in progress, or -1 if there is none.
+     */
+    private long runStartAddress = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param consumer Sets our consumer attribute.
+     */
+    public AddressRunCoalescer(AddressRunConsumer consumer) {
+        this.consumer = Objects.requireNonNull(consumer, "consumer cannot be null");
+    }
+
+    @Override
+    public void accept(long address, boolean acquired) throws IOException {
+        accept(address, address, acquired);
+    }
+
+    @Override
+    public void accept(long startAddress, long endAddress, boolean acquired) throws IOException {
+        if ((runStartAddress >= 0) && (startAddress == runEndAddress + 1) && (acquired == runAcquired)) {
+            runEndAddress = endAddress;
+            return;
+        }
+        flush();
+        runStartAddress = startAddress;
+        runEndAddress = endAddress;
+        runAcquired = acquired;
+    }
+
+    /**
+     * Passes the run in progress (if any) on to our consumer.
+     *
+     * @throws IOException Thrown if our consumer fails.
+     */
+    public void flush() throws IOException {
+        if (runStartAddress >= 0) {
+            long startAddress = runStartAddress;
+            runStartAddress = -1;
+            consumer.accept(startAddress, runEndAddress, runAcquired);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.IOException;
+
+/**
+ * Accepts one run of contiguous addresses that share the same state at a time, as runs are streamed from a store.
+ */
+@FunctionalInterface
+public interface AddressRunConsumer {
+    /**
+     * Accepts a run of addresses.
+     *
+     * @param startAddress First address in the run.
+     * @param endAddress Last address in the run.
+     * @param acquired Flags whether the addresses in the run are acquired.
+     * @throws IOException Thrown if unable to pass the run on (e.g. to a response being written).
+     */
+    void accept(long startAddress, long endAddress, boolean acquired) throws IOException;
+}
@@ -0,0 +1,19 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.IOException;
+
+/**
+ * Accepts the state of one address at a time, as addresses are streamed from a store, without an IpAddress instance
+ * being created for each.
+ */
+@FunctionalInterface
+public interface AddressStateConsumer {
+    /**
+     * Accepts the state of an address.
+     *
+     * @param address Long address in question.
+     * @param acquired Flags whether the address is acquired.
+     * @throws IOException Thrown if unable to pass the state on (e.g. to a response being written).
+     */
+    void accept(long address, boolean acquired) throws IOException;
+}
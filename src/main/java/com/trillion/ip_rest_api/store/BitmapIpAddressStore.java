@@ -0,0 +1,392 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongPredicate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Stores address state in memory, as one BlockBitmap per CIDR block, and persists it to the DB via JpaIpAddressStore.
+ * Selected by setting the store entry in application.properties to "bitmap".
+ * <p>
+ * State lookups are answered from memory without any DB access.  How changes of state are persisted depends on the
+ * configured durability mode:
+ * <ul>
+ * <li>SYNC - each change is written through to the DB with a single statement before the call returns.</li>
+ * <li>ASYNC - each change is only marked dirty, and dirty changes are flushed to the DB periodically in batches, each
+ * in its own transaction.  Changes not yet flushed when the application stops abruptly are lost.</li>
+ * </ul>
+ * The bitmaps are rebuilt from the DB on startup.  Note that this assumes the application is the only writer to the
+ * DB, since changes made by others will not be seen until the next restart.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = IpRestApiApplication.STORE, havingValue = "bitmap")
+public class BitmapIpAddressStore implements IpAddressStore {
+    /**
+     * Modes for persisting changes of state to the DB.
+     */
+    public enum Durability {
+        /**
+         * Write each change through to the DB before returning.
+         */
+        SYNC,
+
+        /**
+         * Flush changes to the DB periodically in batches.
+         */
+        ASYNC
+    }
+
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BitmapIpAddressStore.class);
+
+    /**
+     * In-memory state of each CIDR block, keyed by its start address.
+     */
+    private final NavigableMap<Long, BlockBitmap> blocks = new ConcurrentSkipListMap<>();
+
+    /**
+     * Changes of state not yet flushed to the DB, mapping each address to its latest acquired flag.
+     */
+    private final Map<Long, Boolean> dirty = new ConcurrentHashMap<>();
+
+    /**
+     * Mode for persisting changes of state to the DB.
+     */
+    private Durability durability;
+
+    /**
+     * Loads entries from application.properties.
+     */
+    @Autowired
+    private Environment env;
+
+    /**
+     * Maximum number of dirty changes to flush to the DB in one transaction.
+     */
+    private int flushBatchSize;
+
+    /**
+     * Lock held while flushing, so that flushes do not interleave with each other or with deleteAll.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Store to use to persist CIDR blocks and address state in the DB.
+     */
+    @Autowired
+    private JpaIpAddressStore jpaStore;
+
+    @Override
+    public void addRange(IpAddressRange range) throws UnknownHostException {
+        Objects.requireNonNull(range, "range cannot be null");
+        jpaStore.addRange(range);
+        blocks.put(range.getStartAddress(), new BlockBitmap(range));
+    }
+
+    @Override
+    public void addRange(IpAddressRange range, LongPredicate progress) throws UnknownHostException {
+        Objects.requireNonNull(range, "range cannot be null");
+        jpaStore.addRange(range, progress);
+        blocks.put(range.getStartAddress(), new BlockBitmap(range));
+    }
+
+    /**
+     * Flushes any remaining dirty changes to the DB when the application stops.
+     */
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bit is changed atomically within its block's bitmap, and only the caller that changes it persists the change,
+     * either immediately or by marking it dirty.  The change is persisted while holding the block, so that the changes
+     * to any one address reach the DB in the order they were made, and the bit is changed back if that fails.
+     */
+    @Override
+    public StateChange compareAndSet(long address, boolean acquired) throws UnknownHostException {
+        Optional<BlockBitmap> blockOpt = findBlock(address);
+        if (blockOpt.isEmpty()) {
+            return StateChange.NOT_FOUND;
+        }
+        BlockBitmap block = blockOpt.get();
+        IpAddress ipAddress = new IpAddress(address, acquired);
+        synchronized (block) {
+            if (! block.setAcquired(address, acquired)) {
+                return StateChange.ALREADY_IN_STATE;
+            }
+            try {
+                if (durability == Durability.SYNC) {
+                    jpaStore.mergeAll(Collections.singletonList(ipAddress));
+                } else {
+                    dirty.put(address, acquired);
+                }
+            } catch (RuntimeException ex) {
+                block.setAcquired(address, ! acquired);
+                throw ex;
+            }
+        }
+        return StateChange.CHANGED;
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (BlockBitmap block : blocks.values()) {
+            count += block.getRange().getSize();
+        }
+        return count;
+    }
+
+    @Override
+    public void deleteAll() {
+        synchronized (flushLock) {
+            blocks.clear();
+            dirty.clear();
+            jpaStore.deleteAll();
+        }
+    }
+
+    @Override
+    public List<IpAddress> findBetween(long startAddress, long endAddress) throws UnknownHostException {
+        BlockBitmap block = findBlock(startAddress).
+            orElseThrow(() -> new IllegalArgumentException("address " + startAddress + " is not within any block"));
+        List<IpAddress> addresses = new ArrayList<>();
+        for (long address = startAddress; address <= endAddress; address++) {
+            addresses.add(new IpAddress(address, block.isAcquired(address)));
+        }
+        return addresses;
+    }
+
+    /**
+     * Internal utility to find the in-memory state of the CIDR block containing the specified address.
+     *
+     * @param address Long address in question.
+     * @return BlockBitmap found (if any).
+     */
+    private Optional<BlockBitmap> findBlock(long address) {
+        Entry<Long, BlockBitmap> entry = blocks.floorEntry(address);
+        if ((entry == null) || ! entry.getValue().getRange().contains(address)) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.getValue());
+    }
+
+    @Override
+    public void forEachBetween(long startAddress, long endAddress, AddressStateConsumer consumer) throws IOException {
+        BlockBitmap block = findBlock(startAddress).
+            orElseThrow(() -> new IllegalArgumentException("address " + startAddress + " is not within any block"));
+        for (long address = startAddress; address <= endAddress; address++) {
+            consumer.accept(address, block.isAcquired(address));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each run is found by skipping to the next address in the bitmap with the opposite state, so a block with few
+     * acquisitions takes few steps however large it is.
+     */
+    @Override
+    public void forEachRunBetween(long startAddress, long endAddress, AddressRunConsumer consumer) 
+        throws IOException 
+    {
+        BlockBitmap block = findBlock(startAddress).
+            orElseThrow(() -> new IllegalArgumentException("address " + startAddress + " is not within any block"));
+        long runStartAddress = startAddress;
+        while (runStartAddress <= endAddress) {
+            boolean runAcquired = block.isAcquired(runStartAddress);
+            long runEndAddress = block.nextAddress(runStartAddress, endAddress, ! runAcquired) - 1;
+            consumer.accept(runStartAddress, runEndAddress, runAcquired);
+            runStartAddress = runEndAddress + 1;
+        }
+    }
+
+    @Override
+    public Optional<IpAddress> findById(long address) throws UnknownHostException {
+        Optional<BlockBitmap> blockOpt = findBlock(address);
+        if (blockOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new IpAddress(address, blockOpt.get().isAcquired(address)));
+    }
+
+    /**
+     * Writes all dirty changes to the DB, in batches of the configured flush batch size, each in its own transaction.
+     * Invoked periodically at the configured flush interval.  Changes that are made again while being flushed remain
+     * dirty, and are written by the next flush.
+     */
+    @Scheduled(fixedDelayString = "${" + IpRestApiApplication.BITMAP_FLUSH_INTERVAL_MS + ":100}")
+    public void flush() {
+        synchronized (flushLock) {
+            try {
+                List<IpAddress> batch = new ArrayList<>();
+                for (Entry<Long, Boolean> entry : dirty.entrySet()) {
+                    batch.add(new IpAddress(entry.getKey(), entry.getValue()));
+                    if (batch.size() == flushBatchSize) {
+                        flushBatch(batch);
+                        batch.clear();
+                    }
+                }
+                if (! batch.isEmpty()) {
+                    flushBatch(batch);
+                }
+            } catch (Exception ex) {
+                LOGGER.error("failed to flush dirty address state, will retry on next flush", ex);
+            }
+        }
+    }
+
+    /**
+     * Internal utility to write one batch of dirty changes to the DB, and then clear those that have not changed again
+     * in the meantime.
+     *
+     * @param batch List of IpAddresses to write.
+     */
+    private void flushBatch(List<IpAddress> batch) {
+        jpaStore.mergeAll(batch);
+        for (IpAddress ipAddress : batch) {
+            dirty.remove(ipAddress.getAddress(), ipAddress.isAcquired());
+        }
+    }
+
+    @Override
+    public List<IpAddressRange> getRanges() {
+        List<IpAddressRange> ranges = new ArrayList<>(blocks.size());
+        for (BlockBitmap block : blocks.values()) {
+            ranges.add(block.getRange());
+        }
+        return ranges;
+    }
+
+    /**
+     * Rebuilds the in-memory state of every CIDR block from the DB, on startup.
+     */
+    @PostConstruct
+    public void load() {
+        String durabilityProp = env.getProperty(IpRestApiApplication.BITMAP_DURABILITY, "sync");
+        durability = Durability.valueOf(durabilityProp.toUpperCase(Locale.ROOT));
+        String flushBatchSizeProp = env.getProperty(IpRestApiApplication.BITMAP_FLUSH_BATCH_SIZE, "1000");
+        flushBatchSize = Integer.valueOf(flushBatchSizeProp);
+
+        for (IpAddressRange range : jpaStore.getRanges()) {
+            blocks.put(range.getStartAddress(), new BlockBitmap(range));
+        }
+        jpaStore.forEachAcquired(address -> findBlock(address).ifPresent(block -> block.setAcquired(address, true)));
+
+        LOGGER.info("loaded {} blocks into memory, with {} durability", blocks.size(), durability);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The address must lie within an existing CIDR block.
+     */
+    @Override
+    public IpAddress save(IpAddress ipAddress) {
+        Objects.requireNonNull(ipAddress, "ipAddress cannot be null");
+        saveAll(Collections.singletonList(ipAddress));
+        return ipAddress;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The addresses must all lie within existing CIDR blocks.
+     */
+    @Override
+    public void saveAll(List<IpAddress> ipAddresses) {
+        Objects.requireNonNull(ipAddresses, "ipAddresses cannot be null");
+
+        // make sure every address is within a block before changing anything
+        List<BlockBitmap> ipAddressBlocks = new ArrayList<>(ipAddresses.size());
+        for (IpAddress ipAddress : ipAddresses) {
+            long address = ipAddress.getAddress();
+            ipAddressBlocks.add(findBlock(address).
+                orElseThrow(() -> new IllegalArgumentException("address " + address + " is not within any block")));
+        }
+
+        // persist changes, either immediately or by marking them dirty
+        if (durability == Durability.SYNC) {
+            jpaStore.mergeAll(ipAddresses);
+        } else {
+            for (IpAddress ipAddress : ipAddresses) {
+                dirty.put(ipAddress.getAddress(), ipAddress.isAcquired());
+            }
+        }
+
+        // update in-memory state
+        for (int i = 0; i < ipAddresses.size(); i++) {
+            IpAddress ipAddress = ipAddresses.get(i);
+            ipAddressBlocks.get(i).setAcquired(ipAddress.getAddress(), ipAddress.isAcquired());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The ranges must each lie within a single existing CIDR block.  With sync durability, the ranges are saved to the 
+     * DB via the JPA store's set-based saveRanges; otherwise each address is marked dirty.
+     */
+    @Override
+    public void saveRanges(List<IpAddressRange> ranges, boolean acquired) {
+        Objects.requireNonNull(ranges, "ranges cannot be null");
+
+        // make sure every range is within a block before changing anything
+        List<BlockBitmap> rangeBlocks = new ArrayList<>(ranges.size());
+        for (IpAddressRange range : ranges) {
+            BlockBitmap block = findBlock(range.getStartAddress()).
+                filter(candidate -> candidate.getRange().contains(range.getEndAddress())).
+                orElseThrow(() -> new IllegalArgumentException("range " + range + " is not within any block"));
+            rangeBlocks.add(block);
+        }
+
+        // persist changes, either immediately or by marking them dirty
+        if (durability == Durability.SYNC) {
+            jpaStore.saveRanges(ranges, acquired);
+        } else {
+            for (IpAddressRange range : ranges) {
+                for (long address = range.getStartAddress(); address <= range.getEndAddress(); address++) {
+                    dirty.put(address, acquired);
+                }
+            }
+        }
+
+        // update in-memory state
+        for (int i = 0; i < ranges.size(); i++) {
+            rangeBlocks.get(i).setAcquired(ranges.get(i).getStartAddress(), ranges.get(i).getEndAddress(), acquired);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.trillion.ip_rest_api.store;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * In-memory state of the addresses within one CIDR block, held as a compressed bitmap of the acquired addresses.
+ * <p>
+ * The bitmap is a RoaringBitmap, which partitions addresses into containers keyed by their upper 16 bits (i.e. by /16),
+ * and picks a sorted array, bitmap, or run encoding for each container depending on its contents.  A freshly added
+ * block therefore takes next to no memory however large it is.  Addresses are stored as ints, which RoaringBitmap
+ * treats as unsigned, so the full IPv4 range is supported.
+ * <p>
+ * Access to the bitmap is synchronized, since RoaringBitmap is not thread safe.
+ */
+class BlockBitmap {
+    /**
+     * Acquired addresses within the block.
+     */
+    private final RoaringBitmap acquired = new RoaringBitmap();
+
+    /**
+     * Boundaries of the block.
+     */
+    private final IpAddressRange range;
+
+    /**
+     * Constructor.
+     *
+     * @param range Sets our range attribute.
+     */
+    BlockBitmap(IpAddressRange range) {
+        this.range = range;
+    }
+
+    /**
+     * @return Returns our range attribute.
+     */
+    IpAddressRange getRange() {
+        return range;
+    }
+
+    /**
+     * Tests whether the specified address within the block is acquired.
+     *
+     * @param address Long address to test.
+     * @return Returns true if the address is acquired.
+     */
+    boolean isAcquired(long address) {
+        synchronized (acquired) {
+            return acquired.contains((int)address);
+        }
+    }
+
+    /**
+     * Finds the first address within (inclusive) the specified span of the block whose state is as specified, by 
+     * skipping over whole containers and runs rather than testing each address.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @param isAcquired State to find (i.e. true to find the next acquired address, false for the next available one).
+     * @return First address found, or one past the end address if there is none.
+     */
+    long nextAddress(long startAddress, long endAddress, boolean isAcquired) {
+        long address;
+        synchronized (acquired) {
+            address = isAcquired ? acquired.nextValue((int)startAddress) : acquired.nextAbsentValue((int)startAddress);
+        }
+        return ((address < 0) || (address > endAddress)) ? endAddress + 1 : address;
+    }
+
+    /**
+     * Sets whether all addresses within (inclusive) the specified span of the block are acquired.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @param isAcquired Flags whether the addresses should be acquired.
+     */
+    void setAcquired(long startAddress, long endAddress, boolean isAcquired) {
+        synchronized (acquired) {
+            if (isAcquired) {
+                acquired.add(startAddress, endAddress + 1);
+            } else {
+                acquired.remove(startAddress, endAddress + 1);
+            }
+        }
+    }
+
+    /**
+     * Sets whether the specified address within the block is acquired.
+     *
+     * @param address Long address to update.
+     * @param isAcquired Flags whether the address should be acquired.
+     * @return Returns true if this changed the state of the address.
+     */
+    boolean setAcquired(long address, boolean isAcquired) {
+        synchronized (acquired) {
+            if (isAcquired) {
+                return acquired.checkedAdd((int)address);
+            } else {
+                return acquired.checkedRemove((int)address);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.LongPredicate;
+
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Interface for storage of CIDR blocks and the state of the addresses within them.  The service layer is written in
+ * terms of this interface, so that the storage backend can be selected in application.properties.
+ * <p>
+ * Addresses are identified by their long values here, since callers are expected to have already validated and
+ * converted any dotted decimal input.
+ */
+public interface IpAddressStore {
+    /**
+     * Max number of addresses that the default forEachBetween implementation fetches at once.
+     */
+    long STREAM_WINDOW_SIZE = 4096;
+
+    /**
+     * Adds a CIDR block.  Callers are responsible for first making sure that it does not overlap any existing ones.
+     *
+     * @param range IpAddressRange defining the block being added.
+     * @throws UnknownHostException Thrown if an address within the range is invalid (should not happen).
+     */
+    void addRange(IpAddressRange range) throws UnknownHostException;
+
+    /**
+     * Adds a CIDR block, reporting progress as it goes, and allowing it to be cancelled part way.  Callers are
+     * responsible for first making sure that it does not overlap any existing ones.  If the block is not added in full,
+     * because it is cancelled or fails, anything already added for it is removed again.
+     * <p>
+     * By default the block is added in one go via addRange, and progress is only reported once it has been added.
+     *
+     * @param range IpAddressRange defining the block being added.
+     * @param progress Called with the count of addresses added so far whenever that changes.  Returning false cancels
+     * the add.
+     * @throws UnknownHostException Thrown if an address within the range is invalid (should not happen).
+     * @throws CancellationException Thrown if the add was cancelled via progress before the block was added in full.
+     */
+    default void addRange(IpAddressRange range, LongPredicate progress) throws UnknownHostException {
+        if (! progress.test(0)) {
+            throw new CancellationException("add of " + range + " cancelled");
+        }
+        addRange(range);
+        progress.test(range.getSize());
+    }
+
+    /**
+     * Puts the specified address into the specified state, only if it lies within an existing CIDR block and is not in
+     * that state already, as one atomic step.  Of any number of concurrent calls to put the same address into the same
+     * state, at most one reports it changed.
+     * <p>
+     * By default this simply delegates to saveStates, which is not atomic, so stores should override it.
+     *
+     * @param address Long address to change.
+     * @param acquired Flags whether the address should be acquired.
+     * @return Outcome for the address.
+     * @throws UnknownHostException Thrown if the address is invalid (should not happen).
+     */
+    default StateChange compareAndSet(long address, boolean acquired) throws UnknownHostException {
+        return saveStates(new long[] { address }, acquired)[0];
+    }
+
+    /**
+     * Fetches the count of all addresses present, across all CIDR blocks.
+     *
+     * @return Count of addresses present.
+     */
+    long count();
+
+    /**
+     * Deletes all CIDR blocks, and the state of all addresses within them.
+     */
+    void deleteAll();
+
+    /**
+     * Fetches IpAddress instances for every address within (inclusive) the specified span, in ascending order.  The
+     * span must lie within a single existing CIDR block.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @return List of IpAddresses fetched.
+     * @throws UnknownHostException Thrown if an address within the span is invalid (should not happen).
+     */
+    List<IpAddress> findBetween(long startAddress, long endAddress) throws UnknownHostException;
+
+    /**
+     * Passes the state of every address within (inclusive) the specified span to the specified consumer, in ascending
+     * order, without holding the states of more than a bounded number of addresses in memory at once.  The span must
+     * lie within a single existing CIDR block.
+     * <p>
+     * By default the span is fetched via findBetween, one window of STREAM_WINDOW_SIZE addresses at a time.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @param consumer Consumer to pass the state of each address to.
+     * @throws IOException Thrown if the consumer fails, or an address within the span is invalid (should not happen).
+     */
+    default void forEachBetween(long startAddress, long endAddress, AddressStateConsumer consumer) throws IOException {
+        for (long windowStart = startAddress; windowStart <= endAddress; windowStart += STREAM_WINDOW_SIZE) {
+            long windowEnd = Math.min(windowStart + STREAM_WINDOW_SIZE - 1, endAddress);
+            for (IpAddress ipAddress : findBetween(windowStart, windowEnd)) {
+                consumer.accept(ipAddress.getAddress(), ipAddress.isAcquired());
+            }
+        }
+    }
+
+    /**
+     * Passes every maximal run of contiguous addresses that share the same state within (inclusive) the specified span 
+     * to the specified consumer, in ascending order, in constant memory.  The span must lie within a single existing 
+     * CIDR block.
+     * <p>
+     * By default the runs are coalesced from the state of each address, as passed by forEachBetween.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @param consumer Consumer to pass each run to.
+     * @throws IOException Thrown if the consumer fails, or an address within the span is invalid (should not happen).
+     */
+    default void forEachRunBetween(long startAddress, long endAddress, AddressRunConsumer consumer) 
+        throws IOException 
+    {
+        AddressRunCoalescer coalescer = new AddressRunCoalescer(consumer);
+        forEachBetween(startAddress, endAddress, coalescer);
+        coalescer.flush();
+    }
+
+    /**
+     * Fetches the IpAddress instance for the specified address, if it lies within an existing CIDR block.
+     *
+     * @param address Long address to fetch.
+     * @return IpAddress fetched (if any).
+     * @throws UnknownHostException Thrown if the address is invalid.
+     */
+    Optional<IpAddress> findById(long address) throws UnknownHostException;
+
+    /**
+     * Fetches all existing CIDR blocks, in ascending order.
+     *
+     * @return List of IpAddressRanges fetched.
+     */
+    List<IpAddressRange> getRanges();
+
+    /**
+     * Records the state of the specified IpAddress instance.
+     *
+     * @param ipAddress IpAddress instance to save.
+     * @return IpAddress instance saved.
+     */
+    IpAddress save(IpAddress ipAddress);
+
+    /**
+     * Records the state of the specified IpAddress instances.
+     *
+     * @param ipAddresses List of IpAddress instances to save.
+     */
+    void saveAll(List<IpAddress> ipAddresses);
+
+    /**
+     * Puts each of the specified addresses into the specified state, if it lies within an existing CIDR block and is 
+     * not in that state already, and reports the outcome for each.  An address that appears more than once is only 
+     * changed the first time.
+     * <p>
+     * By default each address is fetched via findById, and those that need changing are saved together via saveAll.
+     *
+     * @param addresses Long addresses to change.
+     * @param acquired Flags whether the addresses should be acquired.
+     * @return Outcome for each address, in the same order as the addresses.
+     * @throws UnknownHostException Thrown if an address is invalid (should not happen).
+     */
+    default StateChange[] saveStates(long[] addresses, boolean acquired) throws UnknownHostException {
+        StateChange[] changes = new StateChange[addresses.length];
+        Map<Long, IpAddress> changed = new LinkedHashMap<>();
+        for (int i = 0; i < addresses.length; i++) {
+            Optional<IpAddress> ipAddressOpt = findById(addresses[i]);
+            if (ipAddressOpt.isEmpty()) {
+                changes[i] = StateChange.NOT_FOUND;
+            } else if ((ipAddressOpt.get().isAcquired() == acquired) || changed.containsKey(addresses[i])) {
+                changes[i] = StateChange.ALREADY_IN_STATE;
+            } else {
+                changed.put(addresses[i], new IpAddress(addresses[i], acquired));
+                changes[i] = StateChange.CHANGED;
+            }
+        }
+        if (! changed.isEmpty()) {
+            saveAll(new ArrayList<>(changed.values()));
+        }
+        return changes;
+    }
+
+    /**
+     * Records the same state for every address within (inclusive) the specified ranges, which must each lie within an 
+     * existing CIDR block.
+     * <p>
+     * By default the addresses are saved via saveAll, STREAM_WINDOW_SIZE addresses at a time.
+     *
+     * @param ranges List of ranges to save.
+     * @param acquired Flags whether the addresses should be acquired.
+     * @throws UnknownHostException Thrown if an address within the ranges is invalid (should not happen).
+     */
+    default void saveRanges(List<IpAddressRange> ranges, boolean acquired) throws UnknownHostException {
+        for (IpAddressRange range : ranges) {
+            for (long windowStart = range.getStartAddress(); windowStart <= range.getEndAddress(); 
+                windowStart += STREAM_WINDOW_SIZE) 
+            {
+                long windowEnd = Math.min(windowStart + STREAM_WINDOW_SIZE - 1, range.getEndAddress());
+                List<IpAddress> ipAddresses = new ArrayList<>((int)(windowEnd - windowStart + 1));
+                for (long address = windowStart; address <= windowEnd; address++) {
+                    ipAddresses.add(new IpAddress(address, acquired));
+                }
+                saveAll(ipAddresses);
+            }
+        }
+    }
+}
@@ -0,0 +1,1021 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.UnknownHostException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.repository.IpAddressRangeRepository;
+import com.trillion.ip_rest_api.repository.IpAddressRepository;
+
+/**
+ * Stores CIDR blocks and address state in the DB via JPA.  This is the default store.
+ * <p>
+ * Each CIDR block that is added is stored as a single IpAddressRange instance, and IpAddress instances are only stored
+ * once an address is acquired (unless block materialization is configured in application.properties).  Addresses
+ * within a range that have no stored IpAddress instance are treated as available.
+ */
+@Component
+public class JpaIpAddressStore implements IpAddressStore {
+    /**
+     * H2 statement to set the acquired flag of a stored row, only if it is currently the opposite and the address lies
+     * within a range, so that the count of rows updated tells whether this statement changed it.
+     */
+    private static final String COMPARE_AND_SET_SQL = "update ip_address set acquired = ? " +
+        "where address = ? and acquired = ? " + 
+        "and exists (select 1 from ip_address_range where ? between start_address and end_address)";
+
+    /**
+     * H2 statement to delete the rows of every address within (inclusive) a range, used to discard staged rows.
+     */
+    private static final String DELETE_RANGE_SQL = "delete from ip_address where address between ? and ?";
+
+    /**
+     * H2 statement to drop the version column that an earlier version added to every row, which nothing reads.
+     */
+    private static final String DROP_VERSION_SQL = "alter table ip_address drop column if exists version";
+
+    /**
+     * H2 statement to insert an acquired row for an address, only if it has no row yet and lies within a range.
+     */
+    private static final String INSERT_IF_ABSENT_SQL = 
+        "insert into ip_address (address, acquired) select cast(? as bigint), true " + 
+        "where not exists (select 1 from ip_address where address = ?) " +
+        "and exists (select 1 from ip_address_range where ? between start_address and end_address)";
+
+    /**
+     * H2 statement to insert an available row for every address within (inclusive) a range, generated by the DB.
+     */
+    private static final String INSERT_RANGE_SQL =
+        "insert into ip_address (address, acquired) select x, false from system_range(?, ?)";
+
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JpaIpAddressStore.class);
+
+    /**
+     * H2 query to fetch the acquired rows within (inclusive) a range, in ascending order.
+     */
+    private static final String SELECT_ACQUIRED_RANGE_SQL = 
+        "select address, acquired from ip_address where acquired = true and address between ? and ? order by address";
+
+    /**
+     * Prefix of the H2 query to fetch the stored rows for a list of addresses, to be completed with a placeholder for
+     * each address and a closing parenthesis.
+     */
+    private static final String SELECT_IN_SQL = "select address, acquired from ip_address where address in (";
+
+    /**
+     * H2 query to fetch the first and last address of each run of consecutive stored rows, in ascending order.
+     */
+    private static final String SELECT_RUNS_SQL = "select min(address), max(address) from " +
+        "(select address, address - row_number() over (order by address) as run_id from ip_address) r " +
+        "group by run_id order by 1";
+
+    /**
+     * H2 query to fetch the stored rows within (inclusive) a range, in ascending order.
+     */
+    private static final String SELECT_RANGE_SQL =
+        "select address, acquired from ip_address where address between ? and ? order by address";
+
+    /**
+     * Number of rows to fetch from the DB at a time when streaming stored rows.
+     */
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * H2 statement to insert or update the acquired flag of an address, without reading it first.
+     */
+    private static final String MERGE_SQL = "merge into ip_address t " + 
+        "using (select cast(? as bigint) as address, cast(? as boolean) as acquired) s " + 
+        "on (t.address = s.address) " +
+        "when matched then update set acquired = s.acquired " +
+        "when not matched then insert (address, acquired) values (s.address, s.acquired)";
+
+    /**
+     * H2 statement to set the acquired flag of a stored row, only if it is currently the opposite, so that the count of
+     * rows updated tells whether this statement changed it.
+     */
+    private static final String UPDATE_IF_SQL = 
+        "update ip_address set acquired = ? where address = ? and acquired = ?";
+
+    /**
+     * H2 statement to insert or update the acquired flag of every address within (inclusive) a range, without reading
+     * them first, generating the addresses in the DB itself.
+     */
+    private static final String MERGE_RANGE_SQL = "merge into ip_address t " + 
+        "using (select x as address, cast(? as boolean) as acquired from system_range(?, ?)) s " + 
+        "on (t.address = s.address) " +
+        "when matched then update set acquired = s.acquired " +
+        "when not matched then insert (address, acquired) values (s.address, s.acquired)";
+
+    /**
+     * Loads entries from application.properties.
+     */
+    @Autowired
+    private Environment env;
+
+    /**
+     * Used to issue batched statements that bypass the JPA persistence context.
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Repository to use to persist IpAddressRange instances.
+     */
+    @Autowired
+    private IpAddressRangeRepository rangeRepository;
+
+    /**
+     * Repository to use to persist IpAddress instances.
+     */
+    @Autowired
+    private IpAddressRepository repository;
+
+    /**
+     * Used to store each chunk of a materialized range in its own transaction.  Calls to this instance's own 
+     * transactional methods do not go through the Spring proxy, so those methods cannot be used for that.
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Runs the workers that materialize ranges, other than those running in the calling thread.  Created on first use.
+     */
+    private ThreadPoolExecutor workerExecutor;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The block is recorded by saving a single IpAddressRange instance, so the cost of this method does not depend on
+     * the size of the block.
+     * <p>
+     * If block materialization is configured in the application.properties file, an available row is also stored for
+     * each address in the block, using the configured method.  With the default "sql" method the rows are generated by
+     * the DB itself, via set-based insert statements, so no IpAddress instances are created at all.  With the "jpa"
+     * method IpAddress instances are saved via the repository instead.  Either way, the rows are added in chunks, each
+     * in a separate transaction, in order to avoid holding large numbers of instances in memory or potentially large
+     * DB transactions.  The chunk size adapts to the throughput measured for each chunk, within bounds configured in
+     * the application.properties file.
+     * <p>
+     * Materialization is nevertheless atomic as far as readers are concerned.  The rows are staged first, while there
+     * is no IpAddressRange for them, so they are ignored by every read (see findById).  The block is then published by
+     * saving its IpAddressRange, in one short transaction.  If staging fails or is cancelled, the staged rows are
+     * deleted again, and the block is never published.  Any rows left staged by a previous attempt that was cut short
+     * (e.g. by a crash) are deleted before staging starts.
+     */
+    @Override
+    public void addRange(IpAddressRange range) throws UnknownHostException {
+        addRange(range, rows -> true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * When materializing, progress is reported after each chunk, and a cancellation takes effect at the end of the
+     * current chunk.
+     */
+    @Override
+    public void addRange(IpAddressRange range, LongPredicate progress) throws UnknownHostException {
+        Objects.requireNonNull(range, "range cannot be null");
+        Objects.requireNonNull(progress, "progress cannot be null");
+
+        // optionally stage an available IpAddress instance for every address in the block, before publishing it
+        String materializeProp = env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false");
+        if (! Boolean.parseBoolean(materializeProp)) {
+            rangeRepository.save(range);
+            progress.test(range.getSize());
+            return;
+        }
+        String methodProp = env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql");
+        try {
+            discardStaged(range);
+            materializeRange(range.getStartAddress(), range.getEndAddress(), "jpa".equals(methodProp), progress);
+            rangeRepository.save(range);
+        } catch (UnknownHostException | RuntimeException ex) {
+            discardStaged(range);
+            throw ex;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The flag is set by a single conditional update, whose count of rows updated decides the outcome, so in the usual 
+     * case of a stored row this costs one statement and no read.  The DB's row lock makes concurrent updates of the 
+     * same row take turns, and only the first of them finds the row in the opposite state.  An address that has no row
+     * yet (i.e. an available address in a block that was not materialized) is acquired by a conditional insert 
+     * instead, of which only one can succeed.  Only when neither changes the address is it fetched, to tell whether it 
+     * was already in that state or does not exist.
+     */
+    @Override
+    @Transactional
+    public StateChange compareAndSet(long address, boolean acquired) throws UnknownHostException {
+        if (jdbcTemplate.update(COMPARE_AND_SET_SQL, acquired, address, ! acquired, address) == 1) {
+            return StateChange.CHANGED;
+        }
+
+        // no stored row in the opposite state, so if acquiring try inserting one (releasing an absent row is a no-op)
+        if (acquired) {
+            try {
+                if (jdbcTemplate.update(INSERT_IF_ABSENT_SQL, address, address, address) == 1) {
+                    return StateChange.CHANGED;
+                }
+            } catch (DuplicateKeyException ex) {
+                // lost a race to insert the row, so the winner decides whether it is still ours to change
+                if (jdbcTemplate.update(COMPARE_AND_SET_SQL, acquired, address, ! acquired, address) == 1) {
+                    return StateChange.CHANGED;
+                }
+            }
+        }
+        return findById(address).isPresent() ? StateChange.ALREADY_IN_STATE : StateChange.NOT_FOUND;
+    }
+
+    /**
+     * Internal utility to run the specified statement once for each of the specified addresses, as a single JDBC 
+     * batch, and get the count of rows changed by each statement (which H2 reports exactly).
+     *
+     * @param sql Statement to run.
+     * @param addresses Long addresses to run it for.
+     * @param setter Sets the parameters of the statement for an address.
+     * @return Count of rows changed for each address, in the same order as the addresses.
+     */
+    private int[] batchUpdateEach(String sql, List<Long> addresses, ParameterizedPreparedStatementSetter<Long> setter) {
+        int[] counts = new int[addresses.size()];
+        int i = 0;
+        for (int[] batchCounts : jdbcTemplate.batchUpdate(sql, addresses, addresses.size(), setter)) {
+            for (int count : batchCounts) {
+                counts[i++] = count;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public long count() {
+        return rangeRepository.sumSizes();
+    }
+
+    @Override
+    public void deleteAll() {
+        repository.deleteAll();
+        rangeRepository.deleteAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Addresses that have a stored IpAddress instance are represented by it, while the remainder are represented by
+     * new available IpAddress instances.
+     */
+    @Override
+    public List<IpAddress> findBetween(long startAddress, long endAddress) throws UnknownHostException {
+        List<IpAddress> stored = repository.findByAddressBetweenOrderByAddressAsc(startAddress, endAddress);
+        List<IpAddress> addresses = new ArrayList<>();
+        int storedIndex = 0;
+        for (long address = startAddress; address <= endAddress; address++) {
+            if ((storedIndex < stored.size()) && (stored.get(storedIndex).getAddress() == address)) {
+                addresses.add(stored.get(storedIndex));
+                storedIndex++;
+            } else {
+                addresses.add(new IpAddress(address, false));
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The stored rows within the span are read from a forward-only cursor, ordered by address, and merged with the
+     * addresses that have no stored row (which are available), so no IpAddress instances are created, and nothing goes
+     * through the persistence context.
+     */
+    @Override
+    public void forEachBetween(long startAddress, long endAddress, AddressStateConsumer consumer) throws IOException {
+        long[] nextAddress = { startAddress };
+        forEachStoredBetween(SELECT_RANGE_SQL, startAddress, endAddress, (storedAddress, acquired) -> {
+            for (; nextAddress[0] < storedAddress; nextAddress[0]++) {
+                consumer.accept(nextAddress[0], false);
+            }
+            consumer.accept(storedAddress, acquired);
+            nextAddress[0] = storedAddress + 1;
+        });
+        for (; nextAddress[0] <= endAddress; nextAddress[0]++) {
+            consumer.accept(nextAddress[0], false);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the acquired rows within the span are read, from a forward-only cursor ordered by address, and each gap 
+     * between them is passed as a single available run, so a block with few acquisitions takes few steps however 
+     * large it is (and whether or not it was materialized).
+     */
+    @Override
+    public void forEachRunBetween(long startAddress, long endAddress, AddressRunConsumer consumer) 
+        throws IOException 
+    {
+        AddressRunCoalescer coalescer = new AddressRunCoalescer(consumer);
+        long[] nextAddress = { startAddress };
+        forEachStoredBetween(SELECT_ACQUIRED_RANGE_SQL, startAddress, endAddress, (acquiredAddress, acquired) -> {
+            if (acquiredAddress > nextAddress[0]) {
+                coalescer.accept(nextAddress[0], acquiredAddress - 1, false);
+            }
+            coalescer.accept(acquiredAddress, true);
+            nextAddress[0] = acquiredAddress + 1;
+        });
+        if (nextAddress[0] <= endAddress) {
+            coalescer.accept(nextAddress[0], endAddress, false);
+        }
+        coalescer.flush();
+    }
+
+    /**
+     * Internal utility to pass the address and acquired flag of each row returned by the specified query to the 
+     * specified consumer, as they are read from a forward-only cursor, so that no more than one fetch worth of rows is
+     * held in memory at once.
+     *
+     * @param sql Query returning the address and acquired flag of each row, taking the start and end addresses of a 
+     * span as parameters.
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @param consumer Consumer to pass each row to.
+     * @throws IOException Thrown if the consumer fails.
+     */
+    private void forEachStoredBetween(String sql, long startAddress, long endAddress, AddressStateConsumer consumer)
+        throws IOException
+    {
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, 
+                    ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                statement.setLong(1, startAddress);
+                statement.setLong(2, endAddress);
+                return statement;
+            }, (RowCallbackHandler)resultSet -> {
+                try {
+                    consumer.accept(resultSet.getLong(1), resultSet.getBoolean(2));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the address has no stored IpAddress instance, but falls within an existing IpAddressRange, a new available
+     * IpAddress instance is returned for it.  A stored available IpAddress instance is only returned if it falls within
+     * an existing IpAddressRange, since it may have been staged for a block that has not been published.  A stored
+     * acquired IpAddress instance is returned without consulting the ranges, since only addresses within published
+     * blocks can be acquired.
+     */
+    @Override
+    public Optional<IpAddress> findById(long address) throws UnknownHostException {
+        Optional<IpAddress> addressOpt = repository.findById(address);
+        if (addressOpt.isPresent() && addressOpt.get().isAcquired()) {
+            return addressOpt;
+        }
+        if (rangeRepository.findContaining(address).isEmpty()) {
+            return Optional.empty();
+        }
+        return addressOpt.isPresent() ? addressOpt : Optional.of(new IpAddress(address, false));
+    }
+
+    /**
+     * Passes the long value of every acquired address to the specified consumer, in ascending order.  The addresses are
+     * streamed from the DB rather than being held in memory simultaneously.
+     *
+     * @param consumer Consumer to pass each acquired address to.
+     */
+    @Transactional(readOnly = true)
+    public void forEachAcquired(LongConsumer consumer) {
+        Objects.requireNonNull(consumer, "consumer cannot be null");
+        try (Stream<Long> addresses = repository.streamAcquiredAddresses()) {
+            addresses.forEach(address -> consumer.accept(address));
+        }
+    }
+
+    @Override
+    public List<IpAddressRange> getRanges() {
+        return rangeRepository.findAllByOrderByStartAddressAsc();
+    }
+
+    /**
+     * Saves an IpAddressRange instance for the IpAddress instances stored by earlier versions, on startup.
+     * <p>
+     * Earlier versions stored a row for every address of every block added, and no ranges, so those rows would
+     * otherwise be ignored by every read.  If there are rows but no ranges at all, each run of consecutive stored
+     * addresses is taken to be made up of whole blocks, and is split into the fewest aligned CIDR blocks that cover it,
+     * each of which is saved as a range.  Adjacent legacy blocks may therefore come back as one larger block.  Nothing
+     * is done once any range exists.
+     * <p>
+     * The version column that an earlier version kept on every row is dropped too, if it is there, since every write 
+     * is now a conditional or set-based statement that never compares it.
+     */
+    @PostConstruct
+    public void migrateLegacyRows() {
+        jdbcTemplate.execute(DROP_VERSION_SQL);
+        if ((rangeRepository.count() > 0) || (repository.count() == 0)) {
+            return;
+        }
+        List<IpAddressRange> ranges = new ArrayList<>();
+        try {
+            List<long[]> runs = jdbcTemplate.query(SELECT_RUNS_SQL, 
+                (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)});
+            for (long[] run : runs) {
+                splitIntoBlocks(run[0], run[1], ranges);
+            }
+        } catch (UnknownHostException ex) {
+            throw new IllegalStateException("invalid address stored by an earlier version", ex);
+        }
+        rangeRepository.saveAll(ranges);
+        LOGGER.info("saved {} ranges for the addresses stored by an earlier version", ranges.size());
+    }
+
+    /**
+     * Internal utility to stage an available row for every address within (inclusive) the specified range, in chunks
+     * that are each stored in their own transaction.  The chunks are stored concurrently by the configured number of
+     * workers, the calling thread being one of them and the rest running on our worker threads.  Each worker repeatedly
+     * claims the next chunk of the range not yet claimed, so that the range is partitioned between them as they go,
+     * and each stores its chunks over its own connection.
+     * <p>
+     * Each worker sizes its chunks independently, starting from the configured chunk size for the method (or the JDBC
+     * batch size for the "jpa" method), and then adapting to the throughput measured for each chunk, within the
+     * configured bounds.  The throughput achieved is logged.
+     * <p>
+     * If any worker fails or sees a cancellation, the others stop after their current chunk, and this method returns
+     * only once all of them have stopped, so that no rows are still being stored by the time it throws.
+     *
+     * @param startAddress Start address of the range.
+     * @param endAddress End address of the range.
+     * @param viaJpa Flags whether to save IpAddress instances via the repository, rather than use set-based inserts.
+     * @param progress Called with the count of rows stored so far after each chunk.  Returning false cancels.
+     * @throws UnknownHostException Thrown if an address in the range is invalid (should not happen).
+     * @throws CancellationException Thrown if cancelled via progress before every row was stored.
+     */
+    private void materializeRange(long startAddress, long endAddress, boolean viaJpa, LongPredicate progress)
+        throws UnknownHostException
+    {
+        // get parallelism value from application.properties (default to 1, i.e. just the calling thread)
+        String parallelismProp = env.getProperty(IpRestApiApplication.MATERIALIZE_PARALLELISM, "1");
+        int parallelism = Math.max(1, Integer.parseInt(parallelismProp));
+
+        long startNanos = System.nanoTime();
+        MaterializeTask task = new MaterializeTask(startAddress, endAddress, viaJpa, progress);
+        List<Future<?>> futures = new ArrayList<>(parallelism - 1);
+        if (parallelism > 1) {
+            ExecutorService executor = getWorkerExecutor(parallelism - 1);
+            for (int i = 1; i < parallelism; i++) {
+                futures.add(executor.submit(() -> {
+                    materializeChunks(task);
+                    return null;
+                }));
+            }
+        }
+
+        // work in this thread too, then wait for the other workers to stop, keeping the first failure (if any)
+        Throwable failure = null;
+        try {
+            materializeChunks(task);
+        } catch (UnknownHostException | RuntimeException ex) {
+            task.stop();
+            failure = ex;
+        }
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    task.stop();
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    task.stop();
+                    failure = (failure == null) ? ex.getCause() : failure;
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            failure = (failure == null) ? new CancellationException("interrupted while materializing") : failure;
+        }
+        if (failure instanceof UnknownHostException) {
+            throw (UnknownHostException)failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("failed to materialize range starting at " + startAddress, failure);
+        }
+
+        long elapsedNanos = Math.max(1L, System.nanoTime() - startNanos);
+        long numRows = endAddress - startAddress + 1;
+        LOGGER.info("materialized {} rows via {} with {} workers ({} rows/sec)", numRows, viaJpa ? "jpa" : "sql",
+            parallelism, (long)(numRows * 1_000_000_000.0 / elapsedNanos));
+    }
+
+    /**
+     * Internal utility to run one worker of the specified materialize task, storing chunks until the task's range is
+     * used up or the task is stopped.
+     *
+     * @param task MaterializeTask to work on.
+     * @throws UnknownHostException Thrown if an address in the range is invalid (should not happen).
+     * @throws CancellationException Thrown if cancelled via the task's progress.
+     */
+    private void materializeChunks(MaterializeTask task) throws UnknownHostException {
+        // get chunk size values from application.properties (default to the JDBC batch size or 2^20 to start with)
+        String initialProp = task.viaJpa
+            ? env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")
+            : env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE, "1048576");
+        String minProp = env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE_MIN, "1");
+        String maxProp = env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE_MAX, "1048576");
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(Long.parseLong(initialProp), Long.parseLong(minProp),
+            Long.parseLong(maxProp));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        while (! task.isStopped()) {
+            long chunkStart = task.nextStart.getAndAdd(sizer.getChunkSize());
+            if (chunkStart > task.endAddress) {
+                break;
+            }
+            long chunkEnd = Math.min(chunkStart + sizer.getChunkSize() - 1, task.endAddress);
+            long startNanos = System.nanoTime();
+            storeChunk(transactionTemplate, task.viaJpa, chunkStart, chunkEnd);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            LOGGER.debug("materialized chunk of {} rows in {} us", chunkEnd - chunkStart + 1, elapsedNanos / 1000);
+            sizer.record(chunkEnd - chunkStart + 1, elapsedNanos);
+            if (! task.progress(chunkEnd - chunkStart + 1)) {
+                task.stop();
+                throw new CancellationException("materialization of range starting at " + task.startAddress + 
+                    " cancelled");
+            }
+        }
+    }
+
+    /**
+     * Internal utility to delete any rows staged for a range that has not been published.
+     *
+     * @param range IpAddressRange in question.
+     */
+    private void discardStaged(IpAddressRange range) {
+        jdbcTemplate.update(DELETE_RANGE_SQL, range.getStartAddress(), range.getEndAddress());
+    }
+
+    /**
+     * Internal utility to save an available IpAddress instance for every address within (inclusive) the specified
+     * range via JPA, within the caller's transaction.  The instances are flagged as new, so each is inserted without
+     * first being read, and the inserts are batched according to the JDBC batch size configuration from the
+     * application.properties file.  They are saved via the repository rather than merged like saveAll, since this is
+     * the JPA materialization method that the set-based one is compared against, and the rows cannot exist yet anyway.
+     *
+     * @param startAddress Start address of the range.
+     * @param endAddress End address of the range.
+     * @throws UnknownHostException Thrown if an address in the range is invalid (should not happen).
+     */
+    private void saveRange(long startAddress, long endAddress) throws UnknownHostException {
+        List<IpAddress> ipAddresses = new ArrayList<>((int)(endAddress - startAddress + 1));
+        for (long address = startAddress; address <= endAddress; address++) {
+            ipAddresses.add(new IpAddress(address, false).markNew());
+        }
+        repository.saveAll(ipAddresses);
+    }
+
+    /**
+     * Internal utility to store an available row for every address within (inclusive) the specified chunk, using the
+     * specified method, in a transaction of its own, so that each chunk commits or rolls back by itself.
+     *
+     * @param transactionTemplate TransactionTemplate to run the chunk in.
+     * @param viaJpa Flags whether to save IpAddress instances via the repository, rather than use a set-based insert.
+     * @param startAddress Start address of the chunk.
+     * @param endAddress End address of the chunk.
+     * @throws UnknownHostException Thrown if an address in the chunk is invalid (should not happen).
+     */
+    private void storeChunk(TransactionTemplate transactionTemplate, boolean viaJpa, long startAddress, 
+        long endAddress) throws UnknownHostException 
+    {
+        try {
+            transactionTemplate.execute(status -> {
+                if (viaJpa) {
+                    try {
+                        saveRange(startAddress, endAddress);
+                    } catch (UnknownHostException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                } else {
+                    jdbcTemplate.update(INSERT_RANGE_SQL, startAddress, endAddress);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException ex) {
+            throw (UnknownHostException)ex.getCause();
+        }
+    }
+
+    /**
+     * Internal utility to get the pool of worker threads used to materialize ranges, creating or growing it as needed
+     * to hold the specified number of threads.
+     *
+     * @param numThreads Number of threads needed.
+     * @return ExecutorService running our worker threads.
+     */
+    private synchronized ExecutorService getWorkerExecutor(int numThreads) {
+        if (workerExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            workerExecutor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "materialize-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        } else if (workerExecutor.getMaximumPoolSize() < numThreads) {
+            workerExecutor.setMaximumPoolSize(numThreads);
+            workerExecutor.setCorePoolSize(numThreads);
+        }
+        return workerExecutor;
+    }
+
+    /**
+     * Records the acquired flag of each of the specified IpAddress instances in one transaction, using a single batched
+     * statement that inserts or updates each row without reading it first.  This bypasses the JPA persistence context.
+     *
+     * @param ipAddresses List of IpAddress instances to record.
+     */
+    @Transactional
+    public void mergeAll(List<IpAddress> ipAddresses) {
+        Objects.requireNonNull(ipAddresses, "ipAddresses cannot be null");
+        jdbcTemplate.batchUpdate(MERGE_SQL, ipAddresses, ipAddresses.size(), (statement, ipAddress) -> {
+            statement.setLong(1, ipAddress.getAddress());
+            statement.setBoolean(2, ipAddress.isAcquired());
+        });
+    }
+
+    /**
+     * Internal utility to set the acquired flag of every address within each of the specified ranges, by one JDBC batch
+     * of set-based merges, one per range.
+     *
+     * @param ranges List of the first and last address of each range.
+     * @param acquired Flags whether the addresses should be acquired.
+     */
+    private void mergeRanges(List<long[]> ranges, boolean acquired) {
+        jdbcTemplate.batchUpdate(MERGE_RANGE_SQL, ranges, ranges.size(), (statement, range) -> {
+            statement.setBoolean(1, acquired);
+            statement.setLong(2, range[0]);
+            statement.setLong(3, range[1]);
+        });
+    }
+
+    /**
+     * Stops our worker threads (if any) when the application stops.
+     */
+    @PreDestroy
+    public synchronized void stopWorkers() {
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+            workerExecutor = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The row is merged rather than the instance being saved through JPA, so that saving a new instance over a row 
+     * that is already stored overwrites it without reading it first.  The instance passed in is returned as is.
+     */
+    @Override
+    @Transactional
+    public IpAddress save(IpAddress ipAddress) {
+        Objects.requireNonNull(ipAddress, "ipAddress cannot be null");
+        mergeAll(Collections.singletonList(ipAddress));
+        return ipAddress;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The rows are merged in one batch, as by mergeAll, without reading them first.
+     */
+    @Override
+    @Transactional
+    public void saveAll(List<IpAddress> ipAddresses) {
+        Objects.requireNonNull(ipAddresses, "ipAddresses cannot be null");
+        mergeAll(ipAddresses);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The ranges are split into chunks of at most the configured batch chunk size of addresses, all in one transaction,
+     * so that either every range is saved or none is.  Each piece of a range within a chunk is saved by a single 
+     * set-based merge, with the addresses generated by the DB itself, and the merges for each chunk are sent as one 
+     * JDBC batch.  So no IpAddress instances are created, and saving the ranges takes a single round trip per chunk.
+     */
+    @Override
+    @Transactional
+    public void saveRanges(List<IpAddressRange> ranges, boolean acquired) {
+        Objects.requireNonNull(ranges, "ranges cannot be null");
+
+        // get chunk size from application.properties (default to 1000)
+        String chunkSizeProp = env.getProperty(IpRestApiApplication.BATCH_CHUNK_SIZE, "1000");
+        long chunkSize = Math.max(1, Long.parseLong(chunkSizeProp));
+
+        List<long[]> chunk = new ArrayList<>();
+        long chunkCount = 0;
+        for (IpAddressRange range : ranges) {
+            for (long startAddress = range.getStartAddress(); startAddress <= range.getEndAddress(); ) {
+                long endAddress = Math.min(range.getEndAddress(), startAddress + (chunkSize - chunkCount) - 1);
+                chunk.add(new long[] {startAddress, endAddress});
+                chunkCount += endAddress - startAddress + 1;
+                if (chunkCount == chunkSize) {
+                    mergeRanges(chunk, acquired);
+                    chunk.clear();
+                    chunkCount = 0;
+                }
+                startAddress = endAddress + 1;
+            }
+        }
+        if (! chunk.isEmpty()) {
+            mergeRanges(chunk, acquired);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The addresses are handled in chunks of the configured batch chunk size, all in one transaction.  For each chunk,
+     * the stored rows are fetched by a single query with an IN list, to find the addresses that may need changing.  Any
+     * of those that have no stored row yet (i.e. that are available within a range that was not materialized) are 
+     * inserted only if still absent, and the rest are updated only if still in the opposite state, each by a single 
+     * JDBC batch of one statement per address.  An address is reported changed only if its own statement changed a 
+     * row, so a concurrent change made after the query is never reported as made by this call too.  Whether an 
+     * address lies within a range is checked against the ranges fetched once up front.
+     */
+    @Override
+    @Transactional
+    public StateChange[] saveStates(long[] addresses, boolean acquired) {
+        Objects.requireNonNull(addresses, "addresses cannot be null");
+
+        // get chunk size from application.properties (default to 1000)
+        String chunkSizeProp = env.getProperty(IpRestApiApplication.BATCH_CHUNK_SIZE, "1000");
+        int chunkSize = Integer.parseInt(chunkSizeProp);
+
+        NavigableMap<Long, IpAddressRange> ranges = new TreeMap<>();
+        for (IpAddressRange range : getRanges()) {
+            ranges.put(range.getStartAddress(), range);
+        }
+        StateChange[] changes = new StateChange[addresses.length];
+        for (int chunkStart = 0; chunkStart < addresses.length; chunkStart += chunkSize) {
+            int chunkEnd = Math.min(chunkStart + chunkSize, addresses.length);
+            saveStatesChunk(addresses, chunkStart, chunkEnd, acquired, ranges, changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Internal utility to change one chunk of the addresses passed to saveStates, and record the outcome for each.
+     *
+     * @param addresses Long addresses to change.
+     * @param chunkStart Index of the first address in the chunk.
+     * @param chunkEnd Index one past the last address in the chunk.
+     * @param acquired Flags whether the addresses should be acquired.
+     * @param ranges Existing ranges, keyed by start address.
+     * @param changes Outcome for each address, to record the outcomes of the chunk in.
+     */
+    private void saveStatesChunk(long[] addresses, int chunkStart, int chunkEnd, boolean acquired, 
+        NavigableMap<Long, IpAddressRange> ranges, StateChange[] changes)
+    {
+        // fetch the stored rows for the chunk in one query
+        Object[] chunkArgs = new Object[chunkEnd - chunkStart];
+        for (int i = chunkStart; i < chunkEnd; i++) {
+            chunkArgs[i - chunkStart] = addresses[i];
+        }
+        Map<Long, Boolean> stored = new HashMap<>();
+        jdbcTemplate.query(SELECT_IN_SQL + placeholders(chunkArgs.length) + ")", 
+            (RowCallbackHandler)resultSet -> stored.put(resultSet.getLong(1), resultSet.getBoolean(2)), chunkArgs);
+
+        // work out the outcome for each address that cannot change, and which rows to try to insert or update
+        Set<Long> pending = new HashSet<>();
+        List<Long> inserts = new ArrayList<>();
+        List<Integer> insertIndexes = new ArrayList<>();
+        List<Long> updates = new ArrayList<>();
+        List<Integer> updateIndexes = new ArrayList<>();
+        for (int i = chunkStart; i < chunkEnd; i++) {
+            long address = addresses[i];
+            Boolean storedAcquired = stored.get(address);
+            Entry<Long, IpAddressRange> range = ranges.floorEntry(address);
+            boolean withinRange = (range != null) && range.getValue().contains(address);
+            if (! withinRange && ! Boolean.TRUE.equals(storedAcquired)) {
+                changes[i] = StateChange.NOT_FOUND;
+            } else if ((Boolean.TRUE.equals(storedAcquired) == acquired) || pending.contains(address)) {
+                changes[i] = StateChange.ALREADY_IN_STATE;
+            } else {
+                pending.add(address);
+                if (storedAcquired != null) {
+                    updates.add(address);
+                    updateIndexes.add(i);
+                } else {
+                    inserts.add(address);
+                    insertIndexes.add(i);
+                }
+            }
+        }
+
+        // insert the absent rows (only ever when acquiring), and fall back to an update for any inserted meanwhile
+        if (! inserts.isEmpty()) {
+            int[] counts = batchUpdateEach(INSERT_IF_ABSENT_SQL, inserts, (statement, address) -> {
+                statement.setLong(1, address);
+                statement.setLong(2, address);
+                statement.setLong(3, address);
+            });
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 1) {
+                    changes[insertIndexes.get(i)] = StateChange.CHANGED;
+                } else {
+                    updates.add(inserts.get(i));
+                    updateIndexes.add(insertIndexes.get(i));
+                }
+            }
+        }
+
+        // update the stored rows that are still in the opposite state
+        if (! updates.isEmpty()) {
+            int[] counts = batchUpdateEach(UPDATE_IF_SQL, updates, (statement, address) -> {
+                statement.setBoolean(1, acquired);
+                statement.setLong(2, address);
+                statement.setBoolean(3, ! acquired);
+            });
+            for (int i = 0; i < counts.length; i++) {
+                changes[updateIndexes.get(i)] = (counts[i] == 1) ? StateChange.CHANGED : StateChange.ALREADY_IN_STATE;
+            }
+        }
+    }
+
+    /**
+     * Internal utility to build a comma separated list of the specified number of JDBC placeholders.
+     *
+     * @param count Number of placeholders.
+     * @return List of placeholders built (e.g. "?,?,?").
+     */
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Internal utility to split the specified range into the fewest aligned CIDR blocks that cover it, adding an
+     * IpAddressRange instance for each block to the specified list, in ascending order.
+     *
+     * @param startAddress Start address of the range.
+     * @param endAddress End address of the range.
+     * @param ranges List to add the IpAddressRanges to.
+     * @throws UnknownHostException Thrown if an address in the range is invalid.
+     */
+    private static void splitIntoBlocks(long startAddress, long endAddress, List<IpAddressRange> ranges)
+        throws UnknownHostException
+    {
+        long address = startAddress;
+        while (address <= endAddress) {
+            // the largest block starting here is bounded by the alignment of its start, then by the end of the range
+            long size = (address == 0) ? (1L << 32) : Long.lowestOneBit(address);
+            while (address + size - 1 > endAddress) {
+                size >>= 1;
+            }
+            ranges.add(new IpAddressRange(address, address + size - 1));
+            address += size;
+        }
+    }
+
+    /**
+     * State of a range being materialized, shared between the workers materializing it.
+     */
+    private static final class MaterializeTask {
+        /**
+         * Last address of the range.
+         */
+        private final long endAddress;
+
+        /**
+         * Start address of the next chunk to be claimed by a worker.
+         */
+        private final AtomicLong nextStart;
+
+        /**
+         * Called with the count of rows stored so far after each chunk.  Returning false cancels.
+         */
+        private final LongPredicate progress;
+
+        /**
+         * Count of rows stored so far.  Updated and reported under the lock of this instance, so that progress is
+         * reported in ascending order.
+         */
+        private long rowsStored;
+
+        /**
+         * First address of the range.
+         */
+        private final long startAddress;
+
+        /**
+         * Flags whether the workers should stop, because one has failed or seen a cancellation.
+         */
+        private volatile boolean stopped;
+
+        /**
+         * Flags whether to save IpAddress instances via the repository, rather than use set-based inserts.
+         */
+        private final boolean viaJpa;
+
+        /**
+         * Constructor.
+         *
+         * @param startAddress Sets our startAddress attribute.
+         * @param endAddress Sets our endAddress attribute.
+         * @param viaJpa Sets our viaJpa attribute.
+         * @param progress Sets our progress attribute.
+         */
+        MaterializeTask(long startAddress, long endAddress, boolean viaJpa, LongPredicate progress) {
+            this.startAddress = startAddress;
+            this.endAddress = endAddress;
+            this.viaJpa = viaJpa;
+            this.progress = progress;
+            this.nextStart = new AtomicLong(startAddress);
+        }
+
+        /**
+         * @return Returns our stopped attribute.
+         */
+        boolean isStopped() {
+            return stopped;
+        }
+
+        /**
+         * Adds a chunk to the count of rows stored so far, and reports the new count.
+         *
+         * @param rows Count of rows in the chunk.
+         * @return Returns false if cancelled before every row was stored.
+         */
+        synchronized boolean progress(long rows) {
+            rowsStored += rows;
+            return progress.test(rowsStored) || (rowsStored == endAddress - startAddress + 1);
+        }
+
+        /**
+         * Flags that the workers should stop.
+         */
+        void stop() {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bitmap with one bit for every IPv4 address (2^32 bits, or 512 MiB), held in a memory-mapped file.
+ * <p>
+ * The file is created sparse, so that only the pages that have had bits set take up disk space, and the OS pages it in
+ * on demand, so that opening it is close to free however much state it holds.  Bits are grouped into little-endian
+ * long words, and every update is made with an atomic compare-and-set on the word containing the bit, so the bitmap
+ * can be safely shared between threads without locking.
+ * <p>
+ * Changes reach the file whenever the OS writes back dirty pages, or when force is called.
+ */
+final class MappedBitmap {
+    /**
+     * Size of the file in bytes, enough for one bit per IPv4 address.
+     */
+    static final long SIZE_BYTES = 1L << 29;
+
+    /**
+     * View of the mapped bytes as long words, supporting atomic access.
+     */
+    private static final VarHandle WORDS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Buffer mapped onto the file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer Sets our buffer attribute.
+     */
+    private MappedBitmap(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Atomically sets the bit for the specified address to a new value, if it currently has the expected value.
+     *
+     * @param address Long address in question.
+     * @param expected Value the bit is expected to have.
+     * @param value Value to set the bit to.
+     * @return Returns true if the bit had the expected value (and so now has the new value).
+     */
+    boolean compareAndSet(long address, boolean expected, boolean value) {
+        int offset = wordOffset(address);
+        long mask = 1L << (address & 63);
+        while (true) {
+            long word = (long)WORDS.getVolatile(buffer, offset);
+            if (((word & mask) != 0) != expected) {
+                return false;
+            }
+            long newWord = value ? (word | mask) : (word & ~mask);
+            if ((newWord == word) || WORDS.compareAndSet(buffer, offset, word, newWord)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sets the bits for all addresses within (inclusive) the specified range to the specified value.  Whole words
+     * within the range are written directly, and only the partial words at either end need compare-and-set.
+     *
+     * @param startAddress Start address of the range.
+     * @param endAddress End address of the range.
+     * @param value Value to set the bits to.
+     */
+    void fill(long startAddress, long endAddress, boolean value) {
+        long address = startAddress;
+        while (address <= endAddress) {
+            long wordEndAddress = address | 63;
+            if (((address & 63) == 0) && (wordEndAddress <= endAddress)) {
+                WORDS.setVolatile(buffer, wordOffset(address), value ? -1L : 0L);
+            } else {
+                long lastAddress = Math.min(wordEndAddress, endAddress);
+                for (long bit = address; bit <= lastAddress; bit++) {
+                    set(bit, value);
+                }
+            }
+            address = wordEndAddress + 1;
+        }
+    }
+
+    /**
+     * Writes any changes to the file.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Fetches the bit for the specified address.
+     *
+     * @param address Long address in question.
+     * @return Returns the value of the bit.
+     */
+    boolean get(long address) {
+        long word = (long)WORDS.getVolatile(buffer, wordOffset(address));
+        return (word & (1L << (address & 63))) != 0;
+    }
+
+    /**
+     * Finds the first address within (inclusive) the specified span whose bit has the specified value, testing a whole
+     * word of bits at a time.
+     *
+     * @param startAddress First address in the span.
+     * @param endAddress Last address in the span.
+     * @param value Value of the bit to find.
+     * @return First address found, or one past the end address if there is none.
+     */
+    long nextAddress(long startAddress, long endAddress, boolean value) {
+        long address = startAddress;
+        while (address <= endAddress) {
+            long word = (long)WORDS.getVolatile(buffer, wordOffset(address));
+            long matches = (value ? word : ~word) & (-1L << (address & 63));
+            if (matches != 0) {
+                return Math.min((address & ~63L) + Long.numberOfTrailingZeros(matches), endAddress + 1);
+            }
+            address = (address | 63) + 1;
+        }
+        return endAddress + 1;
+    }
+
+    /**
+     * Opens the bitmap held in the specified file, creating the file (empty and sparse) if it does not exist yet.
+     *
+     * @param path Path of the file.
+     * @return MappedBitmap opened.
+     * @throws IOException Thrown if unable to create or map the file.
+     */
+    static MappedBitmap open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE))
+        {
+            if (channel.size() < SIZE_BYTES) {
+                // writing the last byte extends the file without allocating the space before it
+                channel.write(ByteBuffer.allocate(1), SIZE_BYTES - 1);
+            }
+            return new MappedBitmap(channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE_BYTES));
+        }
+    }
+
+    /**
+     * Atomically sets the bit for the specified address to the specified value.
+     *
+     * @param address Long address in question.
+     * @param value Value to set the bit to.
+     * @return Returns the previous value of the bit.
+     */
+    boolean set(long address, boolean value) {
+        return compareAndSet(address, ! value, value) ? ! value : value;
+    }
+
+    /**
+     * Internal utility to calculate the byte offset of the word containing the bit for the specified address.
+     *
+     * @param address Long address in question.
+     * @return Byte offset of the word.
+     */
+    private static int wordOffset(long address) {
+        return (int)((address >>> 6) << 3);
+    }
+}
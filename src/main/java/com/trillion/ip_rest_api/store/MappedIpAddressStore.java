@@ -0,0 +1,335 @@
+package com.trillion.ip_rest_api.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Stores address state for the whole IPv4 address space in memory-mapped files, rather than in the DB.  Selected by
+ * setting the store entry in application.properties to "mmap".
+ * <p>
+ * Two MappedBitmaps are kept in the configured directory, one flagging which addresses exist (i.e. are within an added
+ * CIDR block), and one flagging which are acquired.  Adding a block sets a range of bits, and acquiring or releasing an
+ * address is a compare-and-set on a single mapped word, so none of these operations do any I/O of their own.  The
+ * boundaries of the blocks themselves are kept in a small file alongside the bitmaps, which is rewritten whenever a
+ * block is added or deleted.  Restarting only requires mapping the bitmaps and reading the block boundaries.
+ * <p>
+ * Changes of address state reach disk whenever the OS writes back dirty pages, and are forced to disk when blocks are
+ * added or deleted and when the application stops.  State in the DB is not used by this store, and is not migrated
+ * when switching to or from it.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = IpRestApiApplication.STORE, havingValue = "mmap")
+public class MappedIpAddressStore implements IpAddressStore {
+    /**
+     * Name of the file flagging which addresses are acquired.
+     */
+    private static final String ACQUIRED_FILE = "acquired.bits";
+
+    /**
+     * Name of the file holding the boundaries of each CIDR block.
+     */
+    private static final String BLOCKS_FILE = "blocks.dat";
+
+    /**
+     * Name of the file flagging which addresses exist.
+     */
+    private static final String EXISTS_FILE = "exists.bits";
+
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedIpAddressStore.class);
+
+    /**
+     * Flags which addresses are acquired.
+     */
+    private MappedBitmap acquired;
+
+    /**
+     * Directory holding our files.
+     */
+    private Path directory;
+
+    /**
+     * Loads entries from application.properties.
+     */
+    @Autowired
+    private Environment env;
+
+    /**
+     * Flags which addresses exist.
+     */
+    private MappedBitmap exists;
+
+    /**
+     * Boundaries of each CIDR block, keyed by its start address.  Changes are synchronized on this map, so that the
+     * blocks file is rewritten consistently.
+     */
+    private final NavigableMap<Long, IpAddressRange> ranges = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void addRange(IpAddressRange range) throws UnknownHostException {
+        Objects.requireNonNull(range, "range cannot be null");
+        synchronized (ranges) {
+            exists.fill(range.getStartAddress(), range.getEndAddress(), true);
+            exists.force();
+            ranges.put(range.getStartAddress(), range);
+            writeBlocks();
+        }
+    }
+
+    /**
+     * Forces any changes of address state to disk when the application stops.
+     */
+    @PreDestroy
+    public void close() {
+        exists.force();
+        acquired.force();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bit is changed by an atomic compare and set on its word of the mapped file, so no lock is needed.
+     */
+    @Override
+    public StateChange compareAndSet(long address, boolean isAcquired) {
+        if (! exists.get(address)) {
+            return StateChange.NOT_FOUND;
+        }
+        return acquired.compareAndSet(address, ! isAcquired, isAcquired) ? StateChange.CHANGED 
+            : StateChange.ALREADY_IN_STATE;
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (IpAddressRange range : ranges.values()) {
+            count += range.getSize();
+        }
+        return count;
+    }
+
+    @Override
+    public void deleteAll() {
+        synchronized (ranges) {
+            // clear only the bits within blocks, so that pages never touched stay unallocated
+            for (IpAddressRange range : ranges.values()) {
+                exists.fill(range.getStartAddress(), range.getEndAddress(), false);
+                acquired.fill(range.getStartAddress(), range.getEndAddress(), false);
+            }
+            close();
+            ranges.clear();
+            writeBlocks();
+        }
+    }
+
+    @Override
+    public List<IpAddress> findBetween(long startAddress, long endAddress) throws UnknownHostException {
+        List<IpAddress> addresses = new ArrayList<>();
+        for (long address = startAddress; address <= endAddress; address++) {
+            addresses.add(new IpAddress(address, acquired.get(address)));
+        }
+        return addresses;
+    }
+
+    @Override
+    public void forEachBetween(long startAddress, long endAddress, AddressStateConsumer consumer) throws IOException {
+        for (long address = startAddress; address <= endAddress; address++) {
+            consumer.accept(address, acquired.get(address));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each run is found by scanning the acquired bitmap a word at a time for the next address with the opposite state.
+     */
+    @Override
+    public void forEachRunBetween(long startAddress, long endAddress, AddressRunConsumer consumer) 
+        throws IOException 
+    {
+        long runStartAddress = startAddress;
+        while (runStartAddress <= endAddress) {
+            boolean runAcquired = acquired.get(runStartAddress);
+            long runEndAddress = acquired.nextAddress(runStartAddress, endAddress, ! runAcquired) - 1;
+            consumer.accept(runStartAddress, runEndAddress, runAcquired);
+            runStartAddress = runEndAddress + 1;
+        }
+    }
+
+    @Override
+    public Optional<IpAddress> findById(long address) throws UnknownHostException {
+        if (! exists.get(address)) {
+            return Optional.empty();
+        }
+        return Optional.of(new IpAddress(address, acquired.get(address)));
+    }
+
+    @Override
+    public List<IpAddressRange> getRanges() {
+        return new ArrayList<>(ranges.values());
+    }
+
+    /**
+     * Maps our bitmap files, creating them if needed, and reads the boundaries of each CIDR block, on startup.
+     *
+     * @throws IOException Thrown if unable to open our files.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        String directoryProp = env.getProperty(IpRestApiApplication.MMAP_DIRECTORY,
+            Paths.get(System.getProperty("user.home"), "ip-rest-api-state").toString());
+        directory = Paths.get(directoryProp);
+        Files.createDirectories(directory);
+
+        exists = MappedBitmap.open(directory.resolve(EXISTS_FILE));
+        acquired = MappedBitmap.open(directory.resolve(ACQUIRED_FILE));
+        readBlocks();
+
+        LOGGER.info("mapped state for {} blocks from {}", ranges.size(), directory);
+    }
+
+    /**
+     * Internal utility to read the boundaries of each CIDR block from the blocks file, if it exists.
+     *
+     * @throws IOException Thrown if unable to read the file.
+     */
+    private void readBlocks() throws IOException {
+        Path blocksPath = directory.resolve(BLOCKS_FILE);
+        if (! Files.exists(blocksPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(blocksPath)))) {
+            int numBlocks = in.readInt();
+            for (int i = 0; i < numBlocks; i++) {
+                IpAddressRange range = new IpAddressRange(in.readLong(), in.readLong());
+                ranges.put(range.getStartAddress(), range);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The address must lie within an existing CIDR block.
+     */
+    @Override
+    public IpAddress save(IpAddress ipAddress) {
+        Objects.requireNonNull(ipAddress, "ipAddress cannot be null");
+        long address = ipAddress.getAddress();
+        if (! exists.get(address)) {
+            throw new IllegalArgumentException("address " + address + " is not within any block");
+        }
+        acquired.set(address, ipAddress.isAcquired());
+        return ipAddress;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The addresses must all lie within existing CIDR blocks.
+     */
+    @Override
+    public void saveAll(List<IpAddress> ipAddresses) {
+        Objects.requireNonNull(ipAddresses, "ipAddresses cannot be null");
+        for (IpAddress ipAddress : ipAddresses) {
+            save(ipAddress);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each range is checked to lie within existing CIDR blocks, and then filled a word of bits at a time.
+     */
+    @Override
+    public void saveRanges(List<IpAddressRange> ranges, boolean isAcquired) {
+        Objects.requireNonNull(ranges, "ranges cannot be null");
+        for (IpAddressRange range : ranges) {
+            long missingAddress = exists.nextAddress(range.getStartAddress(), range.getEndAddress(), false);
+            if (missingAddress <= range.getEndAddress()) {
+                throw new IllegalArgumentException("address " + missingAddress + " is not within any block");
+            }
+        }
+        for (IpAddressRange range : ranges) {
+            acquired.fill(range.getStartAddress(), range.getEndAddress(), isAcquired);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each address is changed by an atomic set of its bit, whose previous value gives the outcome, so the outcome is
+     * exact even when other threads change the same addresses concurrently.
+     */
+    @Override
+    public StateChange[] saveStates(long[] addresses, boolean isAcquired) {
+        Objects.requireNonNull(addresses, "addresses cannot be null");
+        StateChange[] changes = new StateChange[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            if (! exists.get(addresses[i])) {
+                changes[i] = StateChange.NOT_FOUND;
+            } else if (acquired.set(addresses[i], isAcquired) == isAcquired) {
+                changes[i] = StateChange.ALREADY_IN_STATE;
+            } else {
+                changes[i] = StateChange.CHANGED;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Internal utility to rewrite the blocks file from our ranges.  The file is written under a temporary name and then
+     * moved into place, so that it is never left partially written.
+     */
+    private void writeBlocks() {
+        Path blocksPath = directory.resolve(BLOCKS_FILE);
+        Path tempPath = directory.resolve(BLOCKS_FILE + ".tmp");
+        try {
+            try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath))))
+            {
+                out.writeInt(ranges.size());
+                for (IpAddressRange range : ranges.values()) {
+                    out.writeLong(range.getStartAddress());
+                    out.writeLong(range.getEndAddress());
+                }
+            }
+            Files.move(tempPath, blocksPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("unable to write " + blocksPath, ex);
+        }
+    }
+}
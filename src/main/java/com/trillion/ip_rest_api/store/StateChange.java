@@ -0,0 +1,21 @@
+package com.trillion.ip_rest_api.store;
+
+/**
+ * Outcome of asking a store to put one address into a given state, as part of a batch.
+ */
+public enum StateChange {
+    /**
+     * The address was already in the state asked for, so nothing was changed.
+     */
+    ALREADY_IN_STATE,
+
+    /**
+     * The address has been changed to the state asked for.
+     */
+    CHANGED,
+
+    /**
+     * The address is not within any existing CIDR block.
+     */
+    NOT_FOUND
+}
@@ -1,20 +1,58 @@
 package com.trillion.ip_rest_api.util;
 
-import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Objects;
 
 import org.apache.commons.net.util.SubnetUtils;
-import org.apache.commons.validator.routines.InetAddressValidator;
 
 /**
  * Encapsulates network related utility methods.
+ * <p>
+ * Dotted decimal addresses are parsed and validated in a single pass over their chars, and formatted from a table of
+ * the chars of every octet value, into a caller's buffer where needed, so that neither allocates anything per address
+ * beyond the String returned (if any).  Octets must be 1 to 3 digits with no leading zeros, as with the commons 
+ * validator these replace.
  */
 public class NetUtils {
     /**
      * Max allowed value for an IPv4 address (2^32 - 1).
      */
     public final static long MAX_LONG_ADDRESS = 4_294_967_295L;
+
+    /**
+     * Max number of chars in a dotted decimal IPv4 address (i.e. "255.255.255.255").
+     */
+    public final static int MAX_DOTTED_DECIMAL_LENGTH = 15;
+
+    /**
+     * Chars of the decimal representation of each octet value, indexed by value.
+     */
+    private final static char[][] OCTET_CHARS = new char[256][];
+
+    static {
+        for (int octet = 0; octet < OCTET_CHARS.length; octet++) {
+            OCTET_CHARS[octet] = Integer.toString(octet).toCharArray();
+        }
+    }
+
+    /**
+     * Appends the specified IPv4 long address to the specified StringBuilder in dotted decimal form, without any
+     * intermediate allocation, so that a single StringBuilder can be reused across many addresses.
+     *
+     * @param longAddress Long address to append.
+     * @param builder StringBuilder to append to.
+     * @return StringBuilder appended to.
+     * @throws UnknownHostException Thrown if address is invalid.
+     */
+    public static StringBuilder appendDottedDecimal(long longAddress, StringBuilder builder) 
+        throws UnknownHostException 
+    {
+        assertValidLong(longAddress);
+        builder.append(OCTET_CHARS[(int)(longAddress >>> 24) & 0xFF]).append('.');
+        builder.append(OCTET_CHARS[(int)(longAddress >>> 16) & 0xFF]).append('.');
+        builder.append(OCTET_CHARS[(int)(longAddress >>> 8) & 0xFF]).append('.');
+        return builder.append(OCTET_CHARS[(int)longAddress & 0xFF]);
+    }
     
     /**
      * Asserts that the specified dotted decimal string address is a valid IPv4 address.
@@ -23,11 +61,7 @@ public class NetUtils {
      * @throws UnknownHostException Thrown if address is invalid.
      */
     public static void assertValidDottedDecimal(String address) throws UnknownHostException {
-        Objects.requireNonNull(address, "address must not be null");
-
-        if (! InetAddressValidator.getInstance().isValidInet4Address(address)) {
-            throw new UnknownHostException(address + " is not a valid IPv4 dotted decimal address");
-        }        
+        convertDottedDecimalToLong(address);
     }
     
     /**
@@ -50,17 +84,12 @@ public class NetUtils {
      * @throws UnknownHostException Thrown if unable to parse input address successfully.
      */
     public static long convertDottedDecimalToLong(String dottedDecimalAddress) throws UnknownHostException {
-        assertValidDottedDecimal(dottedDecimalAddress);
-        
-        InetAddress inetAddress = InetAddress.getByName(dottedDecimalAddress);
-
-        byte[] bytes = inetAddress.getAddress();
-
-        long address = bytes[3] & 0xFF;
-        address |= ((((long)bytes[2] & 0xFF) << 8) & 0xFF00);
-        address |= ((((long)bytes[1] & 0xFF) << 16) & 0xFF0000);
-        address |= ((((long)bytes[0] & 0xFF) << 24) & 0xFF000000);
+        Objects.requireNonNull(dottedDecimalAddress, "address must not be null");
 
+        long address = parseDottedDecimal(dottedDecimalAddress, 0, dottedDecimalAddress.length());
+        if (address < 0) {
+            throw new UnknownHostException(dottedDecimalAddress + " is not a valid IPv4 dotted decimal address");
+        }
         return address;
     }
     
@@ -72,17 +101,8 @@ public class NetUtils {
      * @throws UnknownHostException Thrown if unable to parse input address successfully.
      */
     public static String convertLongToDottedDecimal(long longAddress) throws UnknownHostException {
-        assertValidLong(longAddress);
-
-        byte[] bytes = new byte[4];
-        bytes[3] = (byte)(longAddress & 0xFF);
-        bytes[2] = (byte)((longAddress & 0xFF00) >> 8);
-        bytes[1] = (byte)((longAddress & 0xFF0000) >> 16);
-        bytes[0] = (byte)((longAddress & 0xFF000000) >> 24);        
-        
-        InetAddress inetAddress = InetAddress.getByAddress(bytes);
-        
-        return inetAddress.getHostAddress();
+        char[] chars = new char[MAX_DOTTED_DECIMAL_LENGTH];
+        return new String(chars, 0, writeDottedDecimal(longAddress, chars, 0));
     }
     
     /**
@@ -103,4 +123,66 @@ public class NetUtils {
             throw new UnknownHostException(ex.getMessage());
         }
     }
+
+    /**
+     * Parses the IPv4 address within (exclusive of end) the specified span of the specified chars from a dotted decimal
+     * string to a long, validating it in the same single pass, without allocating anything.
+     *
+     * @param chars Chars holding the dotted decimal address.
+     * @param start Index of the first char of the address.
+     * @param end Index after the last char of the address.
+     * @return Long version of the address, or -1 if it is not a valid dotted decimal address.
+     */
+    public static long parseDottedDecimal(CharSequence chars, int start, int end) {
+        long address = 0;
+        int i = start;
+        for (int octetNum = 0; octetNum < 4; octetNum++) {
+            if (octetNum > 0) {
+                if ((i >= end) || (chars.charAt(i) != '.')) {
+                    return -1;
+                }
+                i++;
+            }
+            int digitsStart = i;
+            int octet = 0;
+            while ((i < end) && (i - digitsStart < 3)) {
+                char c = chars.charAt(i);
+                if ((c < '0') || (c > '9')) {
+                    break;
+                }
+                octet = octet * 10 + (c - '0');
+                i++;
+            }
+            int digits = i - digitsStart;
+            if ((digits == 0) || (octet > 255) || ((digits > 1) && (chars.charAt(digitsStart) == '0'))) {
+                return -1;
+            }
+            address = (address << 8) | octet;
+        }
+        return (i == end) ? address : -1;
+    }
+
+    /**
+     * Writes the specified IPv4 long address into the specified chars in dotted decimal form, without any intermediate
+     * allocation, so that a single buffer can be reused across many addresses (e.g. when streaming a listing).
+     *
+     * @param longAddress Long address to write.
+     * @param chars Chars to write into, which must have room for MAX_DOTTED_DECIMAL_LENGTH chars from offset.
+     * @param offset Index to start writing at.
+     * @return Index after the last char written.
+     * @throws UnknownHostException Thrown if address is invalid.
+     */
+    public static int writeDottedDecimal(long longAddress, char[] chars, int offset) throws UnknownHostException {
+        assertValidLong(longAddress);
+        int pos = offset;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            char[] octetChars = OCTET_CHARS[(int)(longAddress >>> shift) & 0xFF];
+            System.arraycopy(octetChars, 0, chars, pos, octetChars.length);
+            pos += octetChars.length;
+            if (shift > 0) {
+                chars[pos++] = '.';
+            }
+        }
+        return pos;
+    }
 }
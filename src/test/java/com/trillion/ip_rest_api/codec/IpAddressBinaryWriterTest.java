@@ -0,0 +1,158 @@
+package com.trillion.ip_rest_api.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trillion.ip_rest_api.model.IpAddress;
+
+/**
+ * TDD style unit tests for IpAddressBinaryWriter, decoding what it writes with IpAddressBinaryReader.
+ */
+@Tag("codec")
+public class IpAddressBinaryWriterTest {
+
+    /* -------- tests for accept methods -------- */
+
+    /**
+     * Verifies that addresses with gaps between them, and a run of addresses after them, decode to the same addresses
+     * and run.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void accept_addressesWithGapsAndRun_roundTrips() throws Exception {
+        // setup test
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IpAddressBinaryWriter writer = new IpAddressBinaryWriter(out);
+
+        // execute test
+        writer.accept(0L, true);
+        writer.accept(1L, false);
+        writer.accept(2L, true);
+        writer.accept(10L, false);
+        writer.accept(4_294_967_295L, true);
+        writer.accept(16_777_216L, 16_777_471L, false);
+        writer.finish();
+
+        // verify result
+        List<String> result = new ArrayList<>();
+        new IpAddressBinaryReader(new ByteArrayInputStream(out.toByteArray())).read(
+            (address, acquired) -> result.add(address + ":" + acquired),
+            (startAddress, endAddress, acquired) -> result.add(startAddress + "-" + endAddress + ":" + acquired));
+        assertEquals(Arrays.asList("0:true", "1:false", "2:true", "10:false", "4294967295:true",
+            "16777216-16777471:false"), result);
+    }
+
+    /**
+     * Verifies that more contiguous addresses than fit in a single frame decode to the same addresses, in order.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void accept_moreThanOneFrame_roundTrips() throws Exception {
+        // setup test
+        int count = IpAddressBinaryWriter.MAX_FRAME_ADDRESSES * 2 + 3;
+        List<IpAddress> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            expected.add(new IpAddress(16_777_216L + i, (i % 3) == 0));
+        }
+
+        // execute test
+        byte[] body = write(expected);
+
+        // verify result
+        assertEquals(expected, read(body));
+    }
+
+    /**
+     * Verifies that a block of contiguous addresses is at least 10 times smaller than the same addresses as JSON.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void accept_contiguousBlock_atLeastTenTimesSmallerThanJson() throws Exception {
+        // setup test
+        List<IpAddress> ipAddresses = new ArrayList<>();
+        for (int i = 0; i < 65_536; i++) {
+            ipAddresses.add(new IpAddress(167_772_160L + i, (i % 7) == 0));
+        }
+
+        // execute test
+        byte[] body = write(ipAddresses);
+
+        // verify result
+        int jsonLength = new ObjectMapper().writeValueAsBytes(ipAddresses).length;
+        assertTrue(body.length * 10 <= jsonLength, body.length + " bytes vs " + jsonLength + " bytes of JSON");
+    }
+
+    /* -------- tests for IpAddressBinaryReader -------- */
+
+    /**
+     * Verifies that a stream that does not start with the magic bytes is rejected.
+     */
+    @Test
+    public void read_badMagic_throwsIOException() {
+        // execute test and verify result
+        assertThrows(IOException.class, () -> new IpAddressBinaryReader(new ByteArrayInputStream(
+            new byte[] { '{', '"', 'a', '"', ':' })));
+    }
+
+    /**
+     * Verifies that a stream that ends before its end record is rejected.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void read_truncated_throwsIOException() throws Exception {
+        // setup test
+        byte[] body = write(Arrays.asList(new IpAddress(1L, true), new IpAddress(2L, false)));
+        IpAddressBinaryReader reader = new IpAddressBinaryReader(new ByteArrayInputStream(
+            Arrays.copyOf(body, body.length - 2)));
+
+        // execute test and verify result
+        assertThrows(IOException.class, () -> reader.read((address, acquired) -> { }));
+    }
+
+    /**
+     * Internal utility to decode the specified body into IpAddress instances.
+     *
+     * @param body Body in question.
+     * @return List of IpAddress instances decoded, in order.
+     * @throws IOException Thrown if the body is malformed.
+     */
+    private List<IpAddress> read(byte[] body) throws IOException {
+        List<IpAddress> ipAddresses = new ArrayList<>();
+        new IpAddressBinaryReader(new ByteArrayInputStream(body)).read(
+            (address, acquired) -> ipAddresses.add(new IpAddress(address, acquired)));
+        return ipAddresses;
+    }
+
+    /**
+     * Internal utility to encode the specified IpAddress instances, one at a time.
+     *
+     * @param ipAddresses IpAddress instances in question.
+     * @return Encoded body.
+     * @throws IOException Should not happen.
+     */
+    private byte[] write(List<IpAddress> ipAddresses) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IpAddressBinaryWriter writer = new IpAddressBinaryWriter(out);
+        for (IpAddress ipAddress : ipAddresses) {
+            writer.accept(ipAddress.getAddress(), ipAddress.isAcquired());
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+}
@@ -1,14 +1,25 @@
 package com.trillion.ip_rest_api.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
@@ -17,6 +28,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -26,13 +40,26 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trillion.ip_rest_api.codec.IpAddressBinaryHttpMessageConverter;
+import com.trillion.ip_rest_api.codec.IpAddressBinaryReader;
+import com.trillion.ip_rest_api.dto.AddressChangeDTO;
 import com.trillion.ip_rest_api.dto.IpAddressDTO;
+import com.trillion.ip_rest_api.dto.IpAddressRunDTO;
+import com.trillion.ip_rest_api.exception.BlockJobRejectedException;
 import com.trillion.ip_rest_api.exception.ExceptionHandlerAdvice;
 import com.trillion.ip_rest_api.exception.IpAddressNotFoundException;
 import com.trillion.ip_rest_api.exception.IpAddressOverlapException;
+import com.trillion.ip_rest_api.model.AddressChange;
 import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.service.ChangeConsumer;
 import com.trillion.ip_rest_api.service.IpAddressService;
+import com.trillion.ip_rest_api.service.StripedLocks;
+import com.trillion.ip_rest_api.store.AddressRunConsumer;
+import com.trillion.ip_rest_api.store.AddressStateConsumer;
+import com.trillion.ip_rest_api.store.StateChange;
 
 /**
  * Unit tests for IpAddressController.
@@ -129,6 +156,107 @@ public class IpAddressControllerTest {
         assertEquals(expectedIpAddressDTO, resultIpAddressDTO);
     }
     
+    /* -------- tests for acquireAll method -------- */
+
+    /**
+     * Verifies that attempt to acquire a JSON array of addresses returns a 200 status and the outcome for each address,
+     * in the same order.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void acquireAll_jsonArray_returns200AndResults() throws Exception {
+        // setup for test
+        Mockito.when(service.acquireAll(Arrays.asList("1.0.0.1", "1.0.0.0", "2.0.0.0"))).thenReturn(
+            Arrays.asList(StateChange.CHANGED, StateChange.ALREADY_IN_STATE, StateChange.NOT_FOUND));
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(patch("/api/address/acquire").contentType(MediaType.APPLICATION_JSON).
+            content("[\"1.0.0.1\", \"1.0.0.0\", \"2.0.0.0\"]")).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        JsonNode resultJson = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        assertEquals(3, resultJson.size());
+        assertEquals("1.0.0.1", resultJson.get(0).get("address").asText());
+        assertEquals("CHANGED", resultJson.get(0).get("result").asText());
+        assertEquals("1.0.0.0", resultJson.get(1).get("address").asText());
+        assertEquals("ALREADY_IN_STATE", resultJson.get(1).get("result").asText());
+        assertEquals("2.0.0.0", resultJson.get(2).get("address").asText());
+        assertEquals("NOT_FOUND", resultJson.get(2).get("result").asText());
+    }
+
+    /**
+     * Verifies that attempt to acquire a list of addresses including an invalid one returns a 400 status.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void acquireAll_invalid_returns400() throws Exception {
+        // setup for test
+        Mockito.when(service.acquireAll(Arrays.asList("1.0.0.1", "1.0.0"))).thenThrow(UnknownHostException.class);
+
+        // execute test method and verify response status
+        mockMvc.perform(patch("/api/address/acquire").contentType(MediaType.APPLICATION_JSON).
+            content("[\"1.0.0.1\", \"1.0.0\"]")).
+            andExpect(status().isBadRequest()).
+            andReturn();
+    }
+
+    /**
+     * Verifies that attempt to acquire a list of addresses that holds something other than strings returns a 400 
+     * status, without calling the service.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void acquireAll_notStrings_returns400() throws Exception {
+        // execute test method and verify response status
+        mockMvc.perform(patch("/api/address/acquire").contentType(MediaType.APPLICATION_JSON).content("[1, 2]")).
+            andExpect(status().isBadRequest()).
+            andReturn();
+        Mockito.verifyNoInteractions(service);
+    }
+
+    /**
+     * Verifies that attempt to acquire a list of addresses that is not valid JSON returns a 400 status, without 
+     * calling the service.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void acquireAll_malformedJson_returns400() throws Exception {
+        // execute test method and verify response status
+        mockMvc.perform(patch("/api/address/acquire").contentType(MediaType.APPLICATION_JSON).
+            content("[\"1.0.0.1\", ")).
+            andExpect(status().isBadRequest()).
+            andReturn();
+        Mockito.verifyNoInteractions(service);
+    }
+
+    /**
+     * Verifies that attempt to acquire more addresses than a batch may hold returns a 400 status, without calling the
+     * service.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void acquireAll_tooMany_returns400() throws Exception {
+        // setup test
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i <= IpAddressController.MAX_BATCH_SIZE; i++) {
+            body.append("\"1.0.0.0\"\n");
+        }
+
+        // execute test method and verify response status
+        mockMvc.perform(patch("/api/address/acquire").contentType(IpAddressController.APPLICATION_NDJSON).
+            content(body.toString())).
+            andExpect(status().isBadRequest()).
+            andReturn();
+        Mockito.verifyNoInteractions(service);
+    }
+
     /* -------- tests for addBlock method -------- */
     
     /**
@@ -184,6 +312,209 @@ public class IpAddressControllerTest {
         assertEquals("4", count);
     }
     
+    /* -------- tests for addBlockJob method -------- */
+    
+    /**
+     * Verifies that attempt to start a block job while too many are running or queued returns a 503 status.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void addBlockJob_rejected_returns503() throws Exception {
+        // setup for test
+        Mockito.when(service.submitBlockJob("1.0.0.0", 30)).thenThrow(BlockJobRejectedException.class);
+
+        // execute test method and verify response status
+        mockMvc.perform(post("/api/address/jobs/1.0.0.0/30")).
+            andExpect(status().isServiceUnavailable()).
+            andReturn();
+    }
+
+    /* -------- tests for allocate method -------- */
+    
+    /**
+     * Verifies that attempt to allocate from a CIDR block with no available address returns a 404 status.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void allocate_noneAvailable_returns404() throws Exception {
+        // setup for test
+        Mockito.when(service.allocate("1.0.0.0/30")).thenThrow(IpAddressNotFoundException.class);
+
+        // execute test method and verify response status
+        mockMvc.perform(post("/api/address/allocate").param("cidr", "1.0.0.0/30")).
+            andExpect(status().isNotFound()).
+            andReturn();
+    }
+
+    /**
+     * Verifies that attempt to allocate from any block returns a 200 status and an IpAddressDTO instance for the 
+     * address acquired.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void allocate_available_returns200AndDTO() throws Exception {
+        // setup for test
+        Mockito.when(service.allocate(null)).thenReturn(new IpAddress(16_777_216L, true));
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(post("/api/address/allocate")).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        IpAddressDTO resultIpAddressDTO = objectMapper.readValue(result.getResponse().getContentAsString(), 
+            IpAddressDTO.class);
+        assertEquals(new IpAddressDTO("1.0.0.0", true), resultIpAddressDTO);
+    }
+
+    /**
+     * Verifies that attempt to allocate several addresses returns a 200 status and an array of IpAddressRunDTOs for 
+     * the runs acquired.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void allocateMany_available_returns200AndRunDTOs() throws Exception {
+        // setup for test
+        Mockito.when(service.allocate(null, 3)).thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_218L)));
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(post("/api/address/allocate").param("count", "3")).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        List<IpAddressRunDTO> resultRunDTOs = objectMapper.readValue(result.getResponse().getContentAsString(), 
+            new TypeReference<List<IpAddressRunDTO>>() { });
+        assertEquals(Arrays.asList(new IpAddressRunDTO("1.0.0.0", "1.0.0.2", true)), resultRunDTOs);
+    }
+
+    /**
+     * Verifies that attempt to allocate a count of addresses that is not positive returns a 400 status.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void allocateMany_countNotPositive_returns400() throws Exception {
+        // setup for test
+        Mockito.when(service.allocate(null, 0)).thenThrow(new IllegalArgumentException("count must be positive"));
+
+        // execute test method and verify response status
+        mockMvc.perform(post("/api/address/allocate").param("count", "0")).
+            andExpect(status().isBadRequest()).
+            andReturn();
+    }
+
+    /* -------- tests for cancelBlockJob method -------- */
+    
+    /**
+     * Verifies that attempt to cancel a non-existent block job returns a 404 status.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void cancelBlockJob_doesNotExist_returns404() throws Exception {
+        // setup for test
+        Mockito.when(service.cancelBlockJob(1L)).thenReturn(Optional.empty());
+
+        // execute test method and verify response status
+        mockMvc.perform(delete("/api/address/jobs/1")).
+            andExpect(status().isNotFound()).
+            andReturn();
+    }
+
+    /* -------- tests for getBlockJob method -------- */
+    
+    /**
+     * Verifies that attempt to fetch a non-existent block job returns a 404 status.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getBlockJob_doesNotExist_returns404() throws Exception {
+        // setup for test
+        Mockito.when(service.getBlockJob(1L)).thenReturn(Optional.empty());
+
+        // execute test method and verify response status
+        mockMvc.perform(get("/api/address/jobs/1")).
+            andExpect(status().isNotFound()).
+            andReturn();
+    }
+
+    /* -------- tests for getChanges method -------- */
+
+    /**
+     * Verifies that fetching the changes since a retained sequence number returns a 200 status, the changes passed by 
+     * the service, no resync flag, and the last sequence number as next.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getChanges_retained_returns200AndChanges() throws Exception {
+        // setup for test
+        Mockito.when(service.forEachChangeSince(Mockito.eq(5L), Mockito.any())).thenAnswer(invocation -> {
+            ChangeConsumer consumer = invocation.getArgument(1);
+            consumer.accept(6L, AddressChange.Type.BLOCK_ADDED, 16_777_216L, 16_777_471L);
+            consumer.accept(7L, AddressChange.Type.ACQUIRED, 16_777_216L, 16_777_216L);
+            return 7L;
+        });
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/changes").param("since", "5")).
+            andExpect(request().asyncStarted()).
+            andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        JsonNode resultNode = objectMapper.readTree(result.getResponse().getContentAsString());
+        List<AddressChangeDTO> expectedChangeDTOs = new ArrayList<>();
+        expectedChangeDTOs.add(new AddressChangeDTO(6L, AddressChange.Type.BLOCK_ADDED, "1.0.0.0", "1.0.0.255"));
+        expectedChangeDTOs.add(new AddressChangeDTO(7L, AddressChange.Type.ACQUIRED, "1.0.0.0", "1.0.0.0"));
+        List<AddressChangeDTO> resultChangeDTOs = objectMapper.convertValue(resultNode.get("changes"), 
+            new TypeReference<List<AddressChangeDTO>>() { });
+        assertEquals(expectedChangeDTOs, resultChangeDTOs);
+        assertFalse(resultNode.get("resync").asBoolean());
+        assertEquals(7L, resultNode.get("next").asLong());
+    }
+
+    /**
+     * Verifies that fetching the changes since a sequence number that is no longer retained returns a 200 status, the
+     * resync flag, and the current sequence number as next.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getChanges_compacted_returns200AndResync() throws Exception {
+        // setup for test
+        Mockito.when(service.forEachChangeSince(Mockito.eq(0L), Mockito.any())).thenReturn(-1L);
+        Mockito.when(service.getChangeSequence()).thenReturn(42L);
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/changes")).
+            andExpect(request().asyncStarted()).
+            andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        JsonNode resultNode = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        assertEquals(0, resultNode.get("changes").size());
+        assertTrue(resultNode.get("resync").asBoolean());
+        assertEquals(42L, resultNode.get("next").asLong());
+    }
+
     /* -------- tests for getAll method -------- */
     
     /**
@@ -221,7 +552,375 @@ public class IpAddressControllerTest {
             new TypeReference<List<IpAddressDTO>>() { });
         assertEquals(expectedIpAddressDTOs, resultIpAddressDTOs);
     }
+
+    /**
+     * Verifies that attempt to fetch all IpAddresses in the binary listing format returns a 200 status and a body 
+     * that decodes to the same addresses.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAll_binary_returns200AndDecodableBody() throws Exception {
+        // setup for test
+        MockMvc binaryMockMvc = MockMvcBuilders.standaloneSetup(controller).
+            setControllerAdvice(new ExceptionHandlerAdvice()).
+            setMessageConverters(new MappingJackson2HttpMessageConverter(), new IpAddressBinaryHttpMessageConverter()).
+            build();
+        List<IpAddress> ipAddresses = new ArrayList<>();
+        ipAddresses.add(new IpAddress(16_777_216L, false));
+        ipAddresses.add(new IpAddress(16_777_217L, true));
+        ipAddresses.add(new IpAddress(16_777_219L, false));
+        Mockito.when(service.getAll()).thenReturn(ipAddresses);
+
+        // execute test method and verify response status
+        MvcResult result = binaryMockMvc.perform(get("/api/address").
+                accept(IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        MockHttpServletResponse response = result.getResponse();
+        assertEquals(IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN.toString(), response.getContentType());
+        assertEquals(ipAddresses, readBinary(response.getContentAsByteArray()));
+    }
+    
+    /**
+     * Verifies that fetching all IpAddresses again with the ETag sent the first time, before anything has changed, 
+     * returns a 304 status without fetching them from the service again.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAll_ifNoneMatchCurrent_returns304WithoutFetching() throws Exception {
+        // setup for test
+        Mockito.when(service.getGeneration()).thenReturn(5L);
+        Mockito.when(service.getAll()).thenReturn(Arrays.asList(new IpAddress(16_777_216L, false)));
+        String etag = mockMvc.perform(get("/api/address")).
+            andExpect(status().isOk()).
+            andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address").header(HttpHeaders.IF_NONE_MATCH, etag)).
+            andExpect(status().isNotModified()).
+            andReturn();
+
+        // verify response
+        assertEquals("", result.getResponse().getContentAsString());
+        assertEquals(etag, result.getResponse().getHeader(HttpHeaders.ETAG));
+        Mockito.verify(service, Mockito.times(1)).getAll();
+    }
+
+    /**
+     * Verifies that fetching all IpAddresses with the ETag sent before the generation was bumped returns a 200 status
+     * and a new ETag.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAll_ifNoneMatchStale_returns200AndNewETag() throws Exception {
+        // setup for test
+        Mockito.when(service.getGeneration()).thenReturn(5L, 6L);
+        Mockito.when(service.getAll()).thenReturn(Arrays.asList(new IpAddress(16_777_216L, false)));
+        String etag = mockMvc.perform(get("/api/address")).
+            andExpect(status().isOk()).
+            andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address").header(HttpHeaders.IF_NONE_MATCH, etag)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response
+        assertNotEquals(etag, result.getResponse().getHeader(HttpHeaders.ETAG));
+        Mockito.verify(service, Mockito.times(2)).getAll();
+    }
+    
+    /* -------- tests for getAllRuns method -------- */
+    
+    /**
+     * Verifies that streaming all IpAddresses as runs returns a 200 status and an array of IpAddressRunDTOs, one per 
+     * run passed by the service.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAllRuns_returns200AndRunDTOs() throws Exception {
+        // setup for test
+        Mockito.doAnswer(invocation -> {
+            AddressRunConsumer consumer = invocation.getArgument(0);
+            consumer.accept(16_777_216L, 16_777_216L, true);
+            consumer.accept(16_777_217L, 16_777_471L, false);
+            return null;
+        }).when(service).forEachRun(Mockito.any());
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/runs")).
+            andExpect(request().asyncStarted()).
+            andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        List<IpAddressRunDTO> expectedRunDTOs = new ArrayList<>();
+        expectedRunDTOs.add(new IpAddressRunDTO("1.0.0.0", "1.0.0.0", true));
+        expectedRunDTOs.add(new IpAddressRunDTO("1.0.0.1", "1.0.0.255", false));
+        List<IpAddressRunDTO> resultRunDTOs = objectMapper.readValue(result.getResponse().getContentAsString(), 
+            new TypeReference<List<IpAddressRunDTO>>() { });
+        assertEquals(expectedRunDTOs, resultRunDTOs);
+    }
+
+    /**
+     * Verifies that streaming all IpAddresses as runs in the binary listing format returns a 200 status and a body 
+     * that decodes to the same runs.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAllRuns_binary_returns200AndDecodableRuns() throws Exception {
+        // setup for test
+        Mockito.doAnswer(invocation -> {
+            AddressRunConsumer consumer = invocation.getArgument(0);
+            consumer.accept(16_777_216L, 16_777_216L, true);
+            consumer.accept(16_777_217L, 16_777_471L, false);
+            return null;
+        }).when(service).forEachRun(Mockito.any());
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/runs").
+                accept(IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN)).
+            andExpect(request().asyncStarted()).
+            andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        List<String> runs = new ArrayList<>();
+        new IpAddressBinaryReader(new ByteArrayInputStream(result.getResponse().getContentAsByteArray())).read(
+            (address, acquired) -> runs.add(address + ":" + acquired),
+            (startAddress, endAddress, acquired) -> runs.add(startAddress + "-" + endAddress + ":" + acquired));
+        assertEquals(Arrays.asList("16777216-16777216:true", "16777217-16777471:false"), runs);
+    }
+
+    /* -------- tests for getAllStreamed method -------- */
+    
+    /**
+     * Verifies that streaming all IpAddresses as a JSON array returns a 200 status and the same array of IpAddressDTOs
+     * that getAll returns.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAllStreamed_json_returns200AndDTOs() throws Exception {
+        // setup for test
+        mockForEachAddress();
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/stream")).
+            andExpect(request().asyncStarted()).
+            andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        List<IpAddressDTO> expectedIpAddressDTOs = new ArrayList<>();
+        expectedIpAddressDTOs.add(new IpAddressDTO("1.0.0.0", false));
+        expectedIpAddressDTOs.add(new IpAddressDTO("1.0.0.1", true));
+        String resultIpAddressDTOsJson = result.getResponse().getContentAsString();
+        List<IpAddressDTO> resultIpAddressDTOs = objectMapper.readValue(resultIpAddressDTOsJson, 
+            new TypeReference<List<IpAddressDTO>>() { });
+        assertEquals(expectedIpAddressDTOs, resultIpAddressDTOs);
+    }
+
+    /**
+     * Verifies that streaming all IpAddresses as newline delimited JSON returns a 200 status and one IpAddressDTO
+     * per line.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAllStreamed_ndjson_returns200AndOneDTOPerLine() throws Exception {
+        // setup for test
+        mockForEachAddress();
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/stream").param("format", "ndjson")).
+            andExpect(request().asyncStarted()).
+            andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        MockHttpServletResponse response = result.getResponse();
+        assertEquals(IpAddressController.APPLICATION_NDJSON.toString(), response.getContentType());
+        assertEquals("{\"address\":\"1.0.0.0\",\"acquired\":false}\n{\"address\":\"1.0.0.1\",\"acquired\":true}\n",
+            response.getContentAsString());
+    }
+
+    /**
+     * Verifies that streaming all IpAddresses with the binary listing format in the Accept header, and no format 
+     * parameter, returns a 200 status and a body that decodes to the addresses passed by the service.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAllStreamed_binaryAccepted_returns200AndDecodableBody() throws Exception {
+        // setup for test
+        mockForEachAddress();
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/stream").
+                accept(IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN)).
+            andExpect(request().asyncStarted()).
+            andReturn();
+        result = mockMvc.perform(asyncDispatch(result)).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        MockHttpServletResponse response = result.getResponse();
+        assertEquals(IpAddressBinaryHttpMessageConverter.APPLICATION_IPAM_BIN.toString(), response.getContentType());
+        assertEquals(Arrays.asList(new IpAddress(16_777_216L, false), new IpAddress(16_777_217L, true)),
+            readBinary(response.getContentAsByteArray()));
+    }
+
+    /**
+     * Internal utility to mock the service to pass two addresses, the second of them acquired, to the consumer given
+     * to forEachAddress.
+     * 
+     * @throws IOException Declared by forEachAddress (not thrown).
+     */
+    private void mockForEachAddress() throws IOException {
+        Mockito.doAnswer(invocation -> {
+            AddressStateConsumer consumer = invocation.getArgument(0);
+            consumer.accept(16_777_216L, false);
+            consumer.accept(16_777_217L, true);
+            return null;
+        }).when(service).forEachAddress(Mockito.any());
+    }
+
+    /**
+     * Internal utility to decode a body in the binary listing format into IpAddress instances.
+     * 
+     * @param body Body in question.
+     * @return List of IpAddress instances decoded, in order.
+     * @throws IOException Thrown if the body is malformed.
+     */
+    private List<IpAddress> readBinary(byte[] body) throws IOException {
+        List<IpAddress> ipAddresses = new ArrayList<>();
+        new IpAddressBinaryReader(new ByteArrayInputStream(body)).read(
+            (address, acquired) -> ipAddresses.add(new IpAddress(address, acquired)));
+        return ipAddresses;
+    }
+
+    /**
+     * Verifies that streaming all IpAddresses in an unknown format returns a 400 status, without calling the service.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getAllStreamed_unknownFormat_returns400() throws Exception {
+        // execute test method and verify response status
+        mockMvc.perform(get("/api/address/stream").param("format", "xml")).
+            andExpect(status().isBadRequest()).
+            andReturn();
+        Mockito.verifyNoInteractions(service);
+    }
+
+    /* -------- tests for getLockStats method -------- */
+
+    /**
+     * Verifies that fetching the lock stats returns a 200 status, the counts from the service's locks, and the counts
+     * of coalesced calls and retries.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getLockStats_returns200AndCounts() throws Exception {
+        // setup for test
+        StripedLocks locks = Mockito.mock(StripedLocks.class);
+        Mockito.when(locks.getStripeCount()).thenReturn(256);
+        Mockito.when(locks.getAcquisitions()).thenReturn(1000L);
+        Mockito.when(locks.getContended()).thenReturn(10L);
+        Mockito.when(locks.getWaitNanos()).thenReturn(5_000_000L);
+        Mockito.when(service.getStripedLocks()).thenReturn(locks);
+        Mockito.when(service.getCoalescedCount()).thenReturn(7L);
+        Mockito.when(service.getRetryCount()).thenReturn(3L);
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/locks")).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        JsonNode resultJson = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        assertEquals(256, resultJson.get("stripes").asInt());
+        assertEquals(1000L, resultJson.get("acquisitions").asLong());
+        assertEquals(10L, resultJson.get("contended").asLong());
+        assertEquals(5L, resultJson.get("waitMillis").asLong());
+        assertEquals(7L, resultJson.get("coalesced").asLong());
+        assertEquals(3L, resultJson.get("retries").asLong());
+    }
+
+    /* -------- tests for getPageAfter method -------- */
     
+    /**
+     * Verifies that fetching a full page after a cursor returns a 200 status, the IpAddressDTOs in the page, and the
+     * last address in the page as the next cursor.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getPageAfter_fullPage_returns200AndNextCursor() throws Exception {
+        // setup for test
+        List<IpAddress> ipAddresses = new ArrayList<>();
+        ipAddresses.add(new IpAddress(16_777_217L, false));
+        ipAddresses.add(new IpAddress(16_777_218L, true));
+        Mockito.when(service.getPageAfter("1.0.0.0", 2)).thenReturn(ipAddresses);
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(get("/api/address/page").param("after", "1.0.0.0").param("limit", "2")).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        JsonNode resultJson = objectMapper.readTree(result.getResponse().getContentAsString());
+        List<IpAddressDTO> resultIpAddressDTOs = objectMapper.convertValue(resultJson.get("addresses"), 
+            new TypeReference<List<IpAddressDTO>>() { });
+        List<IpAddressDTO> expectedIpAddressDTOs = new ArrayList<>();
+        expectedIpAddressDTOs.add(new IpAddressDTO("1.0.0.1", false));
+        expectedIpAddressDTOs.add(new IpAddressDTO("1.0.0.2", true));
+        assertEquals(expectedIpAddressDTOs, resultIpAddressDTOs);
+        assertEquals("1.0.0.2", resultJson.get("next").asText());
+    }
+
+    /**
+     * Verifies that fetching a page with a limit the service rejects as out of bounds returns a 400 status.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void getPageAfter_limitOutOfBounds_returns400() throws Exception {
+        // setup for test
+        Mockito.when(service.getPageAfter(null, 2_000_000_000)).thenThrow(
+            new IllegalArgumentException("limit must be between 1 and 100000"));
+
+        // execute test method and verify response status
+        mockMvc.perform(get("/api/address/page").param("limit", "2000000000")).
+            andExpect(status().isBadRequest()).
+            andReturn();
+    }
+
     /* -------- tests for release method -------- */
     
     /**
@@ -282,4 +981,33 @@ public class IpAddressControllerTest {
         IpAddressDTO resultIpAddressDTO = objectMapper.readValue(resultIpAddressDTOJson, IpAddressDTO.class);
         assertEquals(expectedIpAddressDTO, resultIpAddressDTO);
     }
+
+    /* -------- tests for releaseAll method -------- */
+
+    /**
+     * Verifies that attempt to release newline delimited JSON addresses returns a 200 status and the outcome for each
+     * address, in the same order.
+     *
+     * @throws Exception Thrown on unexpected REST communication errors from mockMvc.
+     */
+    @Test
+    public void releaseAll_ndjson_returns200AndResults() throws Exception {
+        // setup for test
+        Mockito.when(service.releaseAll(Arrays.asList("1.0.0.0", "1.0.0.1"))).thenReturn(
+            Arrays.asList(StateChange.CHANGED, StateChange.CHANGED));
+
+        // execute test method and verify response status
+        MvcResult result = mockMvc.perform(patch("/api/address/release").
+            contentType(IpAddressController.APPLICATION_NDJSON).content("\"1.0.0.0\"\n\"1.0.0.1\"\n")).
+            andExpect(status().isOk()).
+            andReturn();
+
+        // verify response body
+        JsonNode resultJson = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        assertEquals(2, resultJson.size());
+        assertEquals("1.0.0.0", resultJson.get(0).get("address").asText());
+        assertEquals("CHANGED", resultJson.get(0).get("result").asText());
+        assertEquals("1.0.0.1", resultJson.get(1).get("address").asText());
+        assertEquals("CHANGED", resultJson.get(1).get("result").asText());
+    }
 }
@@ -0,0 +1,187 @@
+package com.trillion.ip_rest_api.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.UnknownHostException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.trillion.ip_rest_api.util.NetUtils;
+
+/**
+ * TDD style unit tests for IpAddressRange.
+ * <p>
+ * Note that I am not bothering to test simple getters here.
+ */
+@Tag("model")
+public class IpAddressRangeTest {
+
+    /* -------- tests for constructor method -------- */
+
+    /**
+     * Verifies that the ctor throws an UnknownHostException if an invalid start address is passed in.
+     *
+     * @param address Address to test.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {
+        -1L,
+        NetUtils.MAX_LONG_ADDRESS + 1
+    })
+    public void ctor_invalidStart_throwsUnknownHost(long address) {
+        assertThrows(UnknownHostException.class, () -> {
+            new IpAddressRange(address, NetUtils.MAX_LONG_ADDRESS);
+        });
+    }
+
+    /**
+     * Verifies that the ctor throws an UnknownHostException if an invalid end address is passed in.
+     *
+     * @param address Address to test.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {
+        -1L,
+        NetUtils.MAX_LONG_ADDRESS + 1
+    })
+    public void ctor_invalidEnd_throwsUnknownHost(long address) {
+        assertThrows(UnknownHostException.class, () -> {
+            new IpAddressRange(0L, address);
+        });
+    }
+
+    /**
+     * Verifies that the ctor throws an UnknownHostException if the end address precedes the start address.
+     */
+    @Test
+    public void ctor_endPrecedesStart_throwsUnknownHost() {
+        assertThrows(UnknownHostException.class, () -> {
+            new IpAddressRange(16_777_216L, 16_777_215L);
+        });
+    }
+
+    /* -------- tests for contains method -------- */
+
+    /**
+     * Verifies that the method returns false for addresses just outside the range.
+     *
+     * @param address Address to test.
+     * @throws UnknownHostException Should not happen.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {
+        16_777_215L,
+        16_777_220L
+    })
+    public void contains_outside_returnsFalse(long address) throws UnknownHostException {
+        // setup for test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+
+        // execute test method
+        boolean result = range.contains(address);
+
+        // validate result
+        assertFalse(result);
+    }
+
+    /**
+     * Verifies that the method returns true for addresses at either end of the range.
+     *
+     * @param address Address to test.
+     * @throws UnknownHostException Should not happen.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {
+        16_777_216L,
+        16_777_219L
+    })
+    public void contains_inside_returnsTrue(long address) throws UnknownHostException {
+        // setup for test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+
+        // execute test method
+        boolean result = range.contains(address);
+
+        // validate result
+        assertTrue(result);
+    }
+
+    /* -------- tests for getSize method -------- */
+
+    /**
+     * Verifies that the method returns the inclusive count of addresses for the entire IPv4 address space.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void getSize_allAddresses_returns2To32() throws UnknownHostException {
+        // setup for test
+        IpAddressRange range = new IpAddressRange(0L, NetUtils.MAX_LONG_ADDRESS);
+
+        // execute test method
+        long result = range.getSize();
+
+        // validate result
+        assertEquals(4_294_967_296L, result);
+    }
+
+    /* -------- tests for equals method -------- */
+
+    /**
+     * Verifies that equals method returns false if ranges have different end addresses.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void equals_differentEnds_returnsFalse() throws UnknownHostException {
+        // setup for test
+        IpAddressRange src = new IpAddressRange(16_777_216L, 16_777_219L);
+        IpAddressRange tgt = new IpAddressRange(16_777_216L, 16_777_223L);
+
+        // execute test method
+        boolean result = src.equals(tgt);
+
+        // validate result
+        assertFalse(result);
+    }
+
+    /**
+     * Verifies that equals method returns true if both ranges are equal.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void equals_equal_returnsTrue() throws UnknownHostException {
+        // setup for test
+        IpAddressRange src = new IpAddressRange(16_777_216L, 16_777_219L);
+        IpAddressRange tgt = new IpAddressRange(16_777_216L, 16_777_219L);
+
+        // execute test method
+        boolean result = src.equals(tgt);
+
+        // validate result
+        assertTrue(result);
+    }
+
+    /* -------- tests for toCidrBlock method -------- */
+
+    /**
+     * Verifies that the method formats ranges of the entire IPv4 address space, a /30, and a single address as CIDR
+     * blocks.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void toCidrBlock_variousSizes_returnsCidrBlocks() throws UnknownHostException {
+        assertEquals("0.0.0.0/0", new IpAddressRange(0L, NetUtils.MAX_LONG_ADDRESS).toCidrBlock());
+        assertEquals("1.0.0.0/30", new IpAddressRange(16_777_216L, 16_777_219L).toCidrBlock());
+        assertEquals("255.255.255.255/32",
+            new IpAddressRange(NetUtils.MAX_LONG_ADDRESS, NetUtils.MAX_LONG_ADDRESS).toCidrBlock());
+    }
+}
@@ -0,0 +1,50 @@
+package com.trillion.ip_rest_api.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * TDD style unit tests for IpAddressSerializer.
+ */
+@Tag("model")
+public class IpAddressSerializerTest {
+
+    /* -------- tests for serialize method -------- */
+
+    /**
+     * Verifies that an IpAddress is serialized in the same shape as IpAddressDTO, with the address in dotted decimal,
+     * and without any of its other attributes.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void serialize_single_writesAddressAndAcquired() throws Exception {
+        // execute test
+        String result = new ObjectMapper().writeValueAsString(new IpAddress(16_909_060L, true));
+
+        // verify result
+        assertEquals("{\"address\":\"1.2.3.4\",\"acquired\":true}", result);
+    }
+
+    /**
+     * Verifies that a list of IpAddress instances is serialized as an array, reusing the buffer for each address.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void serialize_list_writesEachInOrder() throws Exception {
+        // execute test
+        String result = new ObjectMapper().writeValueAsString(Arrays.asList(
+            new IpAddress(4_294_967_295L, false), new IpAddress(0L, true)));
+
+        // verify result
+        assertEquals("[{\"address\":\"255.255.255.255\",\"acquired\":false}," +
+            "{\"address\":\"0.0.0.0\",\"acquired\":true}]", result);
+    }
+}
@@ -0,0 +1,96 @@
+package com.trillion.ip_rest_api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import com.trillion.ip_rest_api.model.AddressChange;
+
+/**
+ * Tests for AddressChangeRepository against an embedded H2 DB.
+ */
+@DataJpaTest
+@Tag("repository")
+public class AddressChangeRepositoryTest {
+    /**
+     * AddressChangeRepository instance to test.
+     */
+    @Autowired
+    private AddressChangeRepository repository;
+
+    /**
+     * Internal utility to save changes with the sequence numbers 5 to 8.
+     */
+    private void saveChanges() {
+        for (long sequence = 5; sequence <= 8; sequence++) {
+            repository.save(new AddressChange(sequence, AddressChange.Type.ACQUIRED, sequence, sequence));
+        }
+    }
+
+    /* -------- tests for deleteUpTo method -------- */
+
+    /**
+     * Verifies that compacting up to a sequence number deletes only the changes up to and including it.
+     */
+    @Test
+    public void deleteUpTo_middle_keepsLaterChanges() {
+        // setup test
+        saveChanges();
+
+        // execute test
+        int result = repository.deleteUpTo(6L);
+
+        // verify result
+        assertEquals(2, result);
+        List<AddressChange> remaining = repository.findTop1000BySequenceGreaterThanOrderBySequenceAsc(0L);
+        assertEquals(Arrays.asList(new AddressChange(7L, AddressChange.Type.ACQUIRED, 7L, 7L),
+            new AddressChange(8L, AddressChange.Type.ACQUIRED, 8L, 8L)), remaining);
+    }
+
+    /* -------- tests for findMaxSequence method -------- */
+
+    /**
+     * Verifies that the greatest sequence number is 0 when there are no changes.
+     */
+    @Test
+    public void findMaxSequence_empty_returns0() {
+        // execute test and verify result
+        assertEquals(0L, repository.findMaxSequence());
+    }
+
+    /**
+     * Verifies that the greatest sequence number saved is found.
+     */
+    @Test
+    public void findMaxSequence_changes_returnsGreatest() {
+        // setup test
+        saveChanges();
+
+        // execute test and verify result
+        assertEquals(8L, repository.findMaxSequence());
+    }
+
+    /* -------- tests for findTop1000BySequenceGreaterThanOrderBySequenceAsc method -------- */
+
+    /**
+     * Verifies that only the changes after the specified sequence number are fetched, in ascending order.
+     */
+    @Test
+    public void findTop1000BySequenceGreaterThan_middle_returnsLaterInOrder() {
+        // setup test
+        saveChanges();
+
+        // execute test
+        List<AddressChange> result = repository.findTop1000BySequenceGreaterThanOrderBySequenceAsc(6L);
+
+        // verify result
+        assertEquals(Arrays.asList(new AddressChange(7L, AddressChange.Type.ACQUIRED, 7L, 7L),
+            new AddressChange(8L, AddressChange.Type.ACQUIRED, 8L, 8L)), result);
+    }
+}
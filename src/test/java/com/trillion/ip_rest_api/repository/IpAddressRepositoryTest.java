@@ -0,0 +1,112 @@
+package com.trillion.ip_rest_api.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import com.trillion.ip_rest_api.model.IpAddress;
+
+/**
+ * Tests for IpAddressRepository against an embedded H2 DB, counting the SQL statements prepared by Hibernate for each
+ * batch of IpAddress instances saved.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Tag("repository")
+public class IpAddressRepositoryTest {
+    /**
+     * Used to flush the batch saved by a test.
+     */
+    @Autowired
+    private EntityManager entityManager;
+
+    /**
+     * Used to get at the Hibernate statistics.
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * IpAddressRepository instance to test.
+     */
+    @Autowired
+    private IpAddressRepository repository;
+
+    /**
+     * Hibernate statistics, cleared before each test.
+     */
+    private Statistics statistics;
+
+    /**
+     * Clears the Hibernate statistics before each test.
+     */
+    @BeforeEach
+    public void clearStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    /**
+     * Internal utility to create a batch of 4 available IpAddress instances, starting from 1.0.0.0.
+     *
+     * @param markNew Whether to flag the instances as new.
+     * @return List of IpAddress instances created.
+     * @throws UnknownHostException Should not happen.
+     */
+    private List<IpAddress> newBatch(boolean markNew) throws UnknownHostException {
+        List<IpAddress> ipAddresses = new ArrayList<>();
+        for (long address = 16_777_216L; address < 16_777_220L; address++) {
+            IpAddress ipAddress = new IpAddress(address, false);
+            ipAddresses.add(markNew ? ipAddress.markNew() : ipAddress);
+        }
+        return ipAddresses;
+    }
+
+    /* -------- tests for saveAll method -------- */
+
+    /**
+     * Tests saving a batch of 4 IpAddress instances flagged as new.  Expected to prepare a single batched insert
+     * statement, without reading any rows first.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void saveAll_4New_1Statement() throws UnknownHostException {
+        // execute test
+        repository.saveAll(newBatch(true));
+        entityManager.flush();
+
+        // verify result
+        assertEquals(4, statistics.getEntityInsertCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Tests saving a batch of 4 IpAddress instances not flagged as new.  Expected to prepare a select statement for each
+     * instance (since each is merged), plus a single batched insert statement.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void saveAll_4NotNew_5Statements() throws UnknownHostException {
+        // execute test
+        repository.saveAll(newBatch(false));
+        entityManager.flush();
+
+        // verify result
+        assertEquals(4, statistics.getEntityInsertCount());
+        assertEquals(5, statistics.getPrepareStatementCount());
+    }
+}
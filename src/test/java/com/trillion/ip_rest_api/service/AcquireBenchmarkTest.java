@@ -0,0 +1,136 @@
+package com.trillion.ip_rest_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.util.NetUtils;
+
+/**
+ * Benchmark for single address acquire and release requests from many threads at once, all against the addresses of 
+ * one hot /24 block, comparing different numbers of lock stripes (0 disabling them) against an in-memory H2 DB.  Each 
+ * run logs the operations/sec achieved, the count of operations that failed, and the lock contention.
+ * <p>
+ * This is tagged "benchmark", so is excluded from the test task, and is run via the benchmark task instead.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:acquire-benchmark;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    IpRestApiApplication.STORE + "=jpa",
+    IpRestApiApplication.MATERIALIZE_BLOCKS + "=true"
+})
+@Tag("benchmark")
+public class AcquireBenchmarkTest {
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AcquireBenchmarkTest.class);
+
+    /**
+     * Number of operations each thread performs.
+     */
+    private static final int OPS_PER_THREAD = 500;
+
+    /**
+     * Number of threads performing operations at once.
+     */
+    private static final int THREADS = 64;
+
+    /**
+     * Environment to select the stripe count in.
+     */
+    @Autowired
+    private ConfigurableEnvironment env;
+
+    /**
+     * IpAddressServiceImpl instance to benchmark.
+     */
+    @Autowired
+    private IpAddressServiceImpl service;
+
+    /**
+     * Acquires and releases random addresses within one /24 block from 64 threads at once, with the specified number of
+     * lock stripes, and logs the operations/sec achieved.
+     *
+     * @param stripes Number of lock stripes to use.
+     * @throws Exception Should not happen.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "0",
+        "1",
+        "256"
+    })
+    public void acquireRelease_hotBlock(int stripes) throws Exception {
+        // setup test
+        service.deleteAll();
+        service.addBlock("1.0.0.0", 24);
+        Map<String, Object> props = new HashMap<>();
+        props.put(IpRestApiApplication.LOCK_STRIPES, String.valueOf(stripes));
+        env.getPropertySources().addFirst(new MapPropertySource("benchmark", props));
+        service.createStripedLocks();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                int failures = 0;
+                for (int op = 0; op < OPS_PER_THREAD; op++) {
+                    String address = NetUtils.convertLongToDottedDecimal(16_777_216L + 
+                        ThreadLocalRandom.current().nextInt(256));
+                    try {
+                        if ((op % 2) == 0) {
+                            service.acquire(address);
+                        } else {
+                            service.release(address);
+                        }
+                    } catch (RuntimeException ex) {
+                        failures++;
+                    }
+                }
+                return failures;
+            }));
+        }
+
+        // execute test
+        long startNanos = System.nanoTime();
+        startSignal.countDown();
+        int failures = 0;
+        for (Future<Integer> future : futures) {
+            failures += future.get(5, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+
+        // verify result
+        long ops = (long)THREADS * OPS_PER_THREAD;
+        StripedLocks locks = service.getStripedLocks();
+        assertEquals(stripes, locks.getStripeCount());
+        LOGGER.info("{} threads on a hot /24 with {} stripes: {} ops in {} ms ({} ops/sec), {} failed, " +
+            "{} of {} lock acquisitions contended ({} ms waiting)", THREADS, stripes, ops, elapsedNanos / 1_000_000, 
+            ops * 1_000_000_000 / elapsedNanos, failures, locks.getContended(), locks.getAcquisitions(), 
+            locks.getWaitNanos() / 1_000_000);
+        env.getPropertySources().remove("benchmark");
+    }
+}
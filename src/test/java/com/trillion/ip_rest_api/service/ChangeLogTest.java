@@ -0,0 +1,393 @@
+package com.trillion.ip_rest_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.AddressChange;
+import com.trillion.ip_rest_api.repository.AddressChangeRepository;
+
+/**
+ * TDD style unit tests for ChangeLog.
+ */
+@ExtendWith(MockitoExtension.class)
+@Tag("service")
+public class ChangeLogTest {
+    /**
+     * ChangeLog instance to use when a test runs (injected with mock repository).
+     */
+    @InjectMocks
+    private ChangeLog changeLog;
+
+    /**
+     * Mock Environment instance to use when a test runs.
+     */
+    @Mock
+    private Environment env;
+
+    /**
+     * Mock JdbcTemplate instance to use when a test runs.
+     */
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Mock AddressChangeRepository instance to use when a test runs.
+     */
+    @Mock
+    private AddressChangeRepository repository;
+
+    /**
+     * Internal utility to load our change log from a mock DB holding changes up to the specified sequence number,
+     * keeping 4 changes in memory, and 100 in the DB.
+     *
+     * @param maxSequence Greatest sequence number in the mock DB.
+     * @return Sequence number of the most recent change once loaded.
+     */
+    private long load(long maxSequence) {
+        Mockito.when(env.getProperty(IpRestApiApplication.CHANGES_MEMORY_SIZE, "65536")).thenReturn("4");
+        Mockito.when(env.getProperty(IpRestApiApplication.CHANGES_RETAINED, "1048576")).thenReturn("100");
+        Mockito.when(repository.findMaxSequence()).thenReturn(maxSequence);
+        changeLog.load();
+        return changeLog.getLastSequence();
+    }
+
+    /**
+     * Internal utility to append the specified number of changes.
+     *
+     * @param count Number of changes to append.
+     */
+    private void appendMany(int count) {
+        for (int i = 0; i < count; i++) {
+            changeLog.append(AddressChange.Type.ACQUIRED, i, i);
+        }
+    }
+
+    /**
+     * Internal utility to fetch the changes after the specified sequence number, formatted as strings.
+     *
+     * @param since Sequence number in question.
+     * @param changes List to add the changes to.
+     * @return Sequence number returned by forEachSince.
+     * @throws IOException Should not happen.
+     */
+    private long read(long since, List<String> changes) throws IOException {
+        return changeLog.forEachSince(since, (sequence, type, startAddress, endAddress) ->
+            changes.add(sequence + ":" + type + ":" + startAddress + "-" + endAddress));
+    }
+
+    /* -------- tests for append method -------- */
+
+    /**
+     * Tests method for appending changes.  Expected to number them consecutively.
+     */
+    @Test
+    public void append_several_numbersConsecutively() {
+        // setup test
+        long base = load(0L);
+
+        // execute test
+        long first = changeLog.append(AddressChange.Type.BLOCK_ADDED, 16_777_216L, 16_777_471L);
+        long second = changeLog.append(AddressChange.Type.ACQUIRED, 16_777_216L, 16_777_216L);
+
+        // verify result
+        assertEquals(base + 1, first);
+        assertEquals(base + 2, second);
+        assertEquals(second, changeLog.getLastSequence());
+    }
+
+    /* -------- tests for flush method -------- */
+
+    /**
+     * Tests method for flushing changes beyond the number retained.  Expected to write every change in one batch, and
+     * then delete all but the most recent 100 from the DB.
+     */
+    @Test
+    public void flush_moreThanRetained_writesAndCompacts() {
+        // setup test
+        long base = load(0L);
+        for (int i = 0; i < 150; i++) {
+            changeLog.append(AddressChange.Type.ACQUIRED, i, i);
+        }
+
+        // execute test
+        changeLog.flush();
+        changeLog.flush();
+
+        // verify result
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).batchUpdate(Mockito.anyString(),
+            Mockito.<Collection<AddressChange>>argThat(batch -> batch.size() == 150), Mockito.eq(1000),
+            Mockito.any());
+        Mockito.verify(repository, Mockito.times(1)).deleteUpTo(base + 50);
+    }
+
+    /* -------- tests for forEachSince method -------- */
+
+    /**
+     * Tests method for fetching changes that are all still held in memory.  Expected to pass them in order, without
+     * reading the DB, and return the last sequence number.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachSince_inMemory_passesChangesInOrder() throws IOException {
+        // setup test
+        long base = load(0L);
+        changeLog.append(AddressChange.Type.BLOCK_ADDED, 16_777_216L, 16_777_471L);
+        changeLog.append(AddressChange.Type.ACQUIRED, 16_777_216L, 16_777_216L);
+        changeLog.append(AddressChange.Type.RELEASED, 16_777_216L, 16_777_216L);
+        List<String> changes = new ArrayList<>();
+
+        // execute test
+        long result = read(base + 1, changes);
+
+        // verify result
+        assertEquals(base + 3, result);
+        assertEquals(Arrays.asList((base + 2) + ":ACQUIRED:16777216-16777216",
+            (base + 3) + ":RELEASED:16777216-16777216"), changes);
+        Mockito.verify(repository, Mockito.never()).findTop1000BySequenceGreaterThanOrderBySequenceAsc(
+            Mockito.anyLong());
+    }
+
+    /**
+     * Tests method for fetching changes when the client is already caught up.  Expected to pass nothing, and return
+     * the same sequence number.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachSince_caughtUp_passesNothing() throws IOException {
+        // setup test
+        long base = load(0L);
+        changeLog.append(AddressChange.Type.ACQUIRED, 1L, 1L);
+        List<String> changes = new ArrayList<>();
+
+        // execute test
+        long result = read(base + 1, changes);
+
+        // verify result
+        assertEquals(base + 1, result);
+        assertEquals(0, changes.size());
+    }
+
+    /**
+     * Tests method for fetching changes some of which are no longer held in memory, but are in the DB.  Expected to
+     * flush, read the older changes from the DB, then pass the rest from memory, in order.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachSince_olderInDb_readsDbThenMemory() throws IOException {
+        // setup test
+        long base = load(0L);
+        for (int i = 1; i <= 6; i++) {
+            changeLog.append(AddressChange.Type.ACQUIRED, i, i);
+        }
+        Mockito.when(repository.findTop1000BySequenceGreaterThanOrderBySequenceAsc(base)).thenReturn(Arrays.asList(
+            new AddressChange(base + 1, AddressChange.Type.ACQUIRED, 1L, 1L),
+            new AddressChange(base + 2, AddressChange.Type.ACQUIRED, 2L, 2L),
+            new AddressChange(base + 3, AddressChange.Type.ACQUIRED, 3L, 3L)));
+        List<String> changes = new ArrayList<>();
+
+        // execute test
+        long result = read(base, changes);
+
+        // verify result
+        assertEquals(base + 6, result);
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            expected.add((base + i) + ":ACQUIRED:" + i + "-" + i);
+        }
+        assertEquals(expected, changes);
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).batchUpdate(Mockito.anyString(),
+            Mockito.<Collection<AddressChange>>argThat(batch -> batch.size() == 6), Mockito.eq(1000),
+            Mockito.any());
+    }
+
+    /**
+     * Tests method for fetching changes some of which have been compacted away.  Expected to return -1, so that the
+     * client resyncs.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachSince_compacted_returnsResync() throws IOException {
+        // setup test
+        long base = load(0L);
+        for (int i = 1; i <= 6; i++) {
+            changeLog.append(AddressChange.Type.ACQUIRED, i, i);
+        }
+        Mockito.when(repository.findTop1000BySequenceGreaterThanOrderBySequenceAsc(base)).thenReturn(Arrays.asList(
+            new AddressChange(base + 2, AddressChange.Type.ACQUIRED, 2L, 2L)));
+
+        // execute test
+        long result = read(base, new ArrayList<>());
+
+        // verify result
+        assertEquals(-1, result);
+    }
+
+    /**
+     * Tests method for fetching changes after a sequence number that has not been handed out.  Expected to return -1,
+     * so that the client resyncs.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachSince_ahead_returnsResync() throws IOException {
+        // setup test
+        long base = load(0L);
+
+        // execute test
+        long result = read(base + 1, new ArrayList<>());
+
+        // verify result
+        assertEquals(-1, result);
+    }
+
+    /* -------- tests for load method -------- */
+
+    /**
+     * Tests method for loading after changes were made before a restart.  Expected to skip ahead of them, so that the
+     * changes after a client that was caught up before the restart are found missing, and it resyncs.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void load_existingChanges_skipsAheadSoCaughtUpClientResyncs() throws IOException {
+        // setup test
+        long base = load(500L);
+        changeLog.append(AddressChange.Type.ACQUIRED, 1L, 1L);
+        Mockito.when(repository.findTop1000BySequenceGreaterThanOrderBySequenceAsc(500L)).thenReturn(Arrays.asList(
+            new AddressChange(base + 1, AddressChange.Type.ACQUIRED, 1L, 1L)));
+
+        // execute test
+        long result = read(500L, new ArrayList<>());
+
+        // verify result
+        assertTrue(base > 500L);
+        assertEquals(-1, result);
+    }
+
+    /* -------- tests for release method -------- */
+
+    /**
+     * Tests method for releasing the sequence numbers reserved but not used, once as many are reserved as there is 
+     * room for.  Expected to make room to reserve them again.
+     */
+    @Test
+    public void release_unused_makesRoomAgain() {
+        // setup test
+        load(0L);
+        changeLog.reserve(1 << 19);
+
+        // execute test
+        changeLog.release(1 << 19);
+
+        // verify result
+        changeLog.reserve(1 << 19);
+    }
+
+    /* -------- tests for reserve method -------- */
+
+    /**
+     * Tests method for reserving while the DB is failing, once enough changes are waiting that appending has tried to
+     * flush them.  Expected to try to flush them again, and fail, so that the caller makes no change.
+     */
+    @Test
+    public void reserve_dbFailing_throwsIllegalState() {
+        // setup test
+        load(0L);
+        Mockito.doThrow(new DataAccessResourceFailureException("DB down")).when(jdbcTemplate).batchUpdate(
+            Mockito.anyString(), Mockito.<Collection<AddressChange>>any(), Mockito.anyInt(), Mockito.any());
+        appendMany(65_536);
+
+        // execute test
+        assertThrows(IllegalStateException.class, () -> {
+            changeLog.reserve(1);
+        });
+
+        // verify result
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).batchUpdate(Mockito.anyString(),
+            Mockito.<Collection<AddressChange>>argThat(batch -> batch.size() == 65_536), Mockito.eq(1000),
+            Mockito.any());
+    }
+
+    /**
+     * Tests method for reserving once the DB has recovered from failing to write the changes waiting.  Expected to 
+     * flush them, and pass.
+     */
+    @Test
+    public void reserve_dbRecovered_flushesAndPasses() {
+        // setup test
+        load(0L);
+        Mockito.doThrow(new DataAccessResourceFailureException("DB down")).doReturn(new int[0][]).when(jdbcTemplate)
+            .batchUpdate(Mockito.anyString(), Mockito.<Collection<AddressChange>>any(), Mockito.anyInt(), 
+            Mockito.any());
+        appendMany(65_536);
+
+        // execute test
+        changeLog.reserve(1);
+
+        // verify result
+        assertEquals(0, changeLog.getPendingCount());
+    }
+
+    /**
+     * Tests method for reserving more sequence numbers than there is room for alongside those already reserved, as 
+     * concurrent batches could.  Expected to fail, rather than let the changes waiting to be written reach half the 
+     * number of sequence numbers skipped on startup, where numbers handed out could be lost and then reused.
+     */
+    @Test
+    public void reserve_beyondMaxPending_throwsIllegalState() {
+        // setup test
+        load(0L);
+        changeLog.reserve((1 << 19) - 10);
+
+        // execute test
+        assertThrows(IllegalStateException.class, () -> {
+            changeLog.reserve(11);
+        });
+
+        // verify result
+        changeLog.reserve(10);
+    }
+
+    /**
+     * Tests method for appending as many changes as were reserved, once as many are reserved as there is room for.  
+     * Expected to append every one of them, since appending what was reserved never fails.
+     */
+    @Test
+    public void reserve_maxPending_appendsEveryChange() {
+        // setup test
+        long base = load(0L);
+        Mockito.doThrow(new DataAccessResourceFailureException("DB down")).when(jdbcTemplate).batchUpdate(
+            Mockito.anyString(), Mockito.<Collection<AddressChange>>any(), Mockito.anyInt(), Mockito.any());
+        changeLog.reserve(1 << 19);
+
+        // execute test
+        appendMany(1 << 19);
+
+        // verify result
+        assertEquals(base + (1 << 19), changeLog.getLastSequence());
+        assertEquals(1 << 19, changeLog.getPendingCount());
+    }
+}
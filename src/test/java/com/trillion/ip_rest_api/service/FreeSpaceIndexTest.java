@@ -0,0 +1,145 @@
+package com.trillion.ip_rest_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * TDD style unit tests for FreeSpaceIndex.
+ */
+@Tag("service")
+public class FreeSpaceIndexTest {
+
+    /* -------- tests for addFree method -------- */
+
+    /**
+     * Verifies that freeing a span between two free runs merges all three into a single run.
+     */
+    @Test
+    public void addFree_betweenRuns_mergesRuns() {
+        // setup test
+        FreeSpaceIndex index = new FreeSpaceIndex();
+        index.addFree(16_777_216L, 16_777_219L);
+        index.addFree(16_777_224L, 16_777_227L);
+
+        // execute test
+        index.addFree(16_777_220L, 16_777_223L);
+
+        // verify result
+        assertEquals(1, index.getRunCount());
+    }
+
+    /* -------- tests for claim method -------- */
+
+    /**
+     * Verifies that claiming an address in the middle of a run splits it, and that the address cannot be claimed again
+     * until it is freed.
+     */
+    @Test
+    public void claim_middleOfRun_splitsRunOnce() {
+        // setup test
+        FreeSpaceIndex index = new FreeSpaceIndex();
+        index.addFree(16_777_216L, 16_777_219L);
+
+        // execute test and verify result
+        assertTrue(index.claim(16_777_217L));
+        assertEquals(2, index.getRunCount());
+        assertFalse(index.claim(16_777_217L));
+        index.addFree(16_777_217L, 16_777_217L);
+        assertEquals(1, index.getRunCount());
+    }
+
+    /* -------- tests for claimFirst method -------- */
+
+    /**
+     * Verifies that claiming from a span that starts after the beginning of a run claims the start of the span, and 
+     * that claiming from a span with nothing free claims nothing.
+     */
+    @Test
+    public void claimFirst_withinSpan_claimsFirstFreeInSpan() {
+        // setup test
+        FreeSpaceIndex index = new FreeSpaceIndex();
+        index.addFree(16_777_216L, 16_777_219L);
+        index.addFree(33_554_432L, 33_554_435L);
+
+        // execute test and verify result
+        assertEquals(OptionalLong.of(16_777_218L), index.claimFirst(16_777_218L, 16_777_219L));
+        assertEquals(OptionalLong.of(16_777_219L), index.claimFirst(16_777_218L, 16_777_219L));
+        assertEquals(OptionalLong.empty(), index.claimFirst(16_777_218L, 16_777_219L));
+        assertEquals(OptionalLong.of(33_554_432L), index.claimFirst(16_777_218L, 33_554_435L));
+    }
+
+    /**
+     * Verifies that claiming every address of a nearly full block finds the last free address without scanning, and 
+     * then claims nothing.
+     */
+    @Test
+    public void claimFirst_lastFree_claimsItThenNothing() {
+        // setup test
+        FreeSpaceIndex index = new FreeSpaceIndex();
+        index.addFree(16_777_216L, 16_777_471L);
+        for (long address = 16_777_216L; address <= 16_777_471L; address += 2) {
+            index.claim(address);
+        }
+        for (long address = 16_777_217L; address < 16_777_471L; address += 2) {
+            index.claim(address);
+        }
+
+        // execute test and verify result
+        assertEquals(OptionalLong.of(16_777_471L), index.claimFirst(0, 4_294_967_295L));
+        assertEquals(OptionalLong.empty(), index.claimFirst(0, 4_294_967_295L));
+    }
+
+    /* -------- tests for claimRuns method -------- */
+
+    /**
+     * Verifies that claiming a number of addresses that fits within more than one run claims them from the smallest 
+     * such run, as a single run.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void claimRuns_fitsInRun_claimsFromSmallestRun() throws UnknownHostException {
+        // setup test
+        FreeSpaceIndex index = new FreeSpaceIndex();
+        index.addFree(16_777_216L, 16_777_223L);
+        index.addFree(33_554_432L, 33_554_435L);
+
+        // execute test and verify result
+        assertEquals(Collections.singletonList(new IpAddressRange(33_554_432L, 33_554_434L)), 
+            index.claimRuns(3, 0, 4_294_967_295L));
+        assertEquals(Collections.singletonList(new IpAddressRange(16_777_216L, 16_777_218L)), 
+            index.claimRuns(3, 16_777_216L, 16_777_471L));
+    }
+
+    /**
+     * Verifies that claiming more addresses than any run holds gathers them from the runs in ascending order, and that
+     * claiming more than are free claims nothing at all.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void claimRuns_spansRuns_gathersRunsOrClaimsNothing() throws UnknownHostException {
+        // setup test
+        FreeSpaceIndex index = new FreeSpaceIndex();
+        index.addFree(16_777_216L, 16_777_219L);
+        index.addFree(33_554_432L, 33_554_435L);
+
+        // execute test and verify result
+        assertTrue(index.claimRuns(9, 0, 4_294_967_295L).isEmpty());
+        assertEquals(2, index.getRunCount());
+        assertEquals(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L), 
+            new IpAddressRange(33_554_432L, 33_554_433L)), index.claimRuns(6, 0, 4_294_967_295L));
+        assertEquals(1, index.getRunCount());
+    }
+}
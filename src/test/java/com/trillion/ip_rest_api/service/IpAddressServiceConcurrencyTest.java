@@ -0,0 +1,186 @@
+package com.trillion.ip_rest_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.exception.IpAddressNotFoundException;
+import com.trillion.ip_rest_api.model.AddressChange;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.store.MappedIpAddressStore;
+import com.trillion.ip_rest_api.util.NetUtils;
+
+/**
+ * Concurrency tests for IpAddressServiceImpl, run against a real MappedIpAddressStore in a temporary directory, so 
+ * that allocations and explicit acquires contend for the same addresses in the store as well as in memory.
+ */
+@Tag("service")
+public class IpAddressServiceConcurrencyTest {
+    /**
+     * First address of the block that the threads contend for (1.0.0.0).
+     */
+    private static final long BLOCK_START = 16_777_216L;
+
+    /**
+     * Number of addresses in the block that the threads contend for (a /24).
+     */
+    private static final int BLOCK_SIZE = 256;
+
+    /**
+     * Number of threads allocating, and of threads acquiring explicitly.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Count of ACQUIRED changes logged for each address in the block, indexed by its offset within the block.
+     */
+    private final AtomicIntegerArray acquiredCounts = new AtomicIntegerArray(BLOCK_SIZE);
+
+    /**
+     * Temporary directory to hold the store's files when a test runs.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * IpAddressServiceImpl instance to use when a test runs.
+     */
+    private IpAddressServiceImpl service;
+
+    /**
+     * MappedIpAddressStore instance that our service uses.
+     */
+    private MappedIpAddressStore store;
+
+    /**
+     * Opens our store on the temporary directory with the block 1.0.0.0/24 added to it, and creates our service over
+     * it, with a mock change log that counts the ACQUIRED changes for each address.
+     *
+     * @throws IOException Should not happen.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        MockEnvironment env = new MockEnvironment().withProperty(IpRestApiApplication.MMAP_DIRECTORY, 
+            directory.toString());
+        store = new MappedIpAddressStore();
+        ReflectionTestUtils.setField(store, "env", env);
+        store.open();
+        store.addRange(new IpAddressRange(BLOCK_START, BLOCK_START + BLOCK_SIZE - 1));
+
+        ChangeLog changeLog = Mockito.mock(ChangeLog.class);
+        Mockito.when(changeLog.append(Mockito.any(), Mockito.anyLong(), Mockito.anyLong())).thenAnswer(invocation -> {
+            AddressChange.Type type = invocation.getArgument(0);
+            long startAddress = invocation.getArgument(1);
+            long endAddress = invocation.getArgument(2);
+            if (type == AddressChange.Type.ACQUIRED) {
+                for (long address = startAddress; address <= endAddress; address++) {
+                    acquiredCounts.incrementAndGet((int)(address - BLOCK_START));
+                }
+            }
+            return 0L;
+        });
+
+        service = new IpAddressServiceImpl();
+        ReflectionTestUtils.setField(service, "changeLog", changeLog);
+        ReflectionTestUtils.setField(service, "env", env);
+        ReflectionTestUtils.setField(service, "store", store);
+        service.createStripedLocks();
+        service.loadRetrySettings();
+        service.loadPageSettings();
+        service.loadBlockIndex();
+    }
+
+    /**
+     * Closes our store after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        store.close();
+    }
+
+    /* -------- tests for allocate method -------- */
+
+    /**
+     * Tests method for allocating 3 addresses at a time on several threads until none are left, while as many other 
+     * threads explicitly acquire every address in the block between them.  Expected to log exactly one ACQUIRED change
+     * for each address, never allocate the same address twice, and leave every address acquired.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocateCount_concurrentExplicitAcquires_eachAddressAcquiredOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS * 2);
+        try {
+            // setup test
+            CountDownLatch startSignal = new CountDownLatch(1);
+            List<Future<List<IpAddressRange>>> allocators = new ArrayList<>();
+            List<Future<Void>> acquirers = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                allocators.add(executor.submit(() -> {
+                    startSignal.await();
+                    List<IpAddressRange> allocated = new ArrayList<>();
+                    try {
+                        while (true) {
+                            allocated.addAll(service.allocate(null, 3));
+                        }
+                    } catch (IpAddressNotFoundException ex) {
+                        return allocated;
+                    }
+                }));
+                int firstOffset = i;
+                acquirers.add(executor.submit(() -> {
+                    startSignal.await();
+                    for (int offset = firstOffset; offset < BLOCK_SIZE; offset += THREADS) {
+                        service.acquire(NetUtils.convertLongToDottedDecimal(BLOCK_START + offset));
+                    }
+                    return null;
+                }));
+            }
+
+            // execute test
+            startSignal.countDown();
+            boolean[] allocated = new boolean[BLOCK_SIZE];
+            for (Future<List<IpAddressRange>> future : allocators) {
+                for (IpAddressRange range : future.get(30, TimeUnit.SECONDS)) {
+                    for (long address = range.getStartAddress(); address <= range.getEndAddress(); address++) {
+                        int offset = (int)(address - BLOCK_START);
+                        assertFalse(allocated[offset], "allocated twice: " + address);
+                        allocated[offset] = true;
+                    }
+                }
+            }
+            for (Future<Void> future : acquirers) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            // verify result
+            for (int offset = 0; offset < BLOCK_SIZE; offset++) {
+                assertEquals(1, acquiredCounts.get(offset), "ACQUIRED changes logged for offset " + offset);
+                assertTrue(store.findById(BLOCK_START + offset).get().isAcquired());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -6,53 +6,82 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
 
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.CannotAcquireLockException;
 
 import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.exception.BlockJobRejectedException;
 import com.trillion.ip_rest_api.exception.IpAddressNotFoundException;
 import com.trillion.ip_rest_api.exception.IpAddressOverlapException;
+import com.trillion.ip_rest_api.model.AddressChange;
 import com.trillion.ip_rest_api.model.IpAddress;
-import com.trillion.ip_rest_api.repository.IpAddressRepository;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.store.AddressRunConsumer;
+import com.trillion.ip_rest_api.store.IpAddressStore;
+import com.trillion.ip_rest_api.store.StateChange;
+import com.trillion.ip_rest_api.util.NetUtils;
 
 /**
  * TDD style unit tests for IpAddressService.
  * <p>
- * Note that I am not bothering to test the deleteAll, getAll, getCount, or getPage methods here, due to their 
- * simplicity.
+ * Note that I am not bothering to test the deleteAll, getAll, or getCount methods here, due to their simplicity.
  */
 @ExtendWith(MockitoExtension.class)
 @Tag("service")
 public class IpAddressServiceTest {
+    /**
+     * Mock ChangeLog instance to use when a test runs.
+     */
+    @Mock
+    private ChangeLog changeLog;
+
     /**
      * Mock Environment instance to use when a test runs.
      */
     @Mock
     private Environment env;
-    
+
     /**
-     * Mock IpAddressRepository instance to use when a test runs.
+     * Mock IpAddressStore instance to use when a test runs.
      */
     @Mock
-    private IpAddressRepository repository;
+    private IpAddressStore store;
     
     /**
-     * IpAddressServiceImple instance to use when a test runs (injected with mock repository).
+     * IpAddressServiceImple instance to use when a test runs (injected with mock store).
      */
     @InjectMocks
     private IpAddressServiceImpl service;
     
     /* -------- tests for acquire method -------- */
 
+    /**
+     * Internal utility to mock the store to hold the single block 1.0.0.0/30, and load it into the service, so that 
+     * its addresses are published and can be acquired and released.
+     */
+    private void loadBlock() {
+        Mockito.when(store.getRanges()).thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        service.loadBlockIndex();
+    }
+
     /**
      * Tests method for acquiring a null address.  Expected to throw a NullPointerException.
      * 
@@ -67,45 +96,199 @@ public class IpAddressServiceTest {
     }
 
     /**
-     * Tests method for acquiring an IpAddress that does not exist.  Expected to throw an IpAddressNotFoundException.
+     * Tests method for acquiring an IpAddress that is not within any published block.  Expected to throw an 
+     * IpAddressNotFoundException without touching the store.
      * 
      * @throws UnknownHostException Should not happen.
      */
     @Test
     public void acquire_doesNotExist_throwsIpAddressNotFound() throws UnknownHostException {
+        // execute test
+        assertThrows(IpAddressNotFoundException.class, () -> {
+            service.acquire("1.0.0.0");
+        });
+
+        // verify result
+        Mockito.verify(store, Mockito.never()).compareAndSet(Mockito.anyLong(), Mockito.anyBoolean());
+    }
+
+    /**
+     * Tests method for acquiring an address while the change log is too backlogged to take more changes.  Expected to
+     * fail without touching the store, so that no change is made that cannot be logged.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void acquire_changeLogBacklogged_throwsIllegalStateWithoutChanging() throws UnknownHostException {
         // setup test
-        Optional<IpAddress> ipAddressOpt = Optional.empty();
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
+        loadBlock();
+        Mockito.doThrow(new IllegalStateException("backlogged")).when(changeLog).reserve(1);
         
         // execute test
-        assertThrows(IpAddressNotFoundException.class, () -> {
+        assertThrows(IllegalStateException.class, () -> {
             service.acquire("1.0.0.0");
         });
+
+        // verify result
+        Mockito.verify(store, Mockito.never()).compareAndSet(Mockito.anyLong(), Mockito.anyBoolean());
     }
 
     /**
      * Tests method for acquiring an IpAddress that exists with acquired set false.  Expected to set the acquired flag 
-     * true for it, save it to DB, and return it.
+     * true for it by a single compare and set in the store, without fetching it first, and return it.
      * 
      * @throws UnknownHostException Should not happen.
      * @throws IpAddressNotFoundException Should not happen.
      */
     @Test
-    public void acquire_existsNotAcquired_setsAcquireTrueAndSaves_returnsIpAddress() throws UnknownHostException, 
+    public void acquire_existsNotAcquired_compareAndSetsTrue_returnsIpAddress() throws UnknownHostException, 
         IpAddressNotFoundException 
     {
         // setup test
-        IpAddress ipAddress = new IpAddress(16_777_216L, false);
-        Optional<IpAddress> ipAddressOpt = Optional.of(ipAddress);
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
-        Mockito.when(repository.save(ipAddress)).thenReturn(ipAddress);
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.CHANGED);
         
         // execute test
         IpAddress result = service.acquire("1.0.0.0");
 
         // verify result
-        assertNotNull(result);
-        assertTrue(result.isAcquired());
+        assertEquals(new IpAddress(16_777_216L, true), result);
+        Mockito.verify(store, Mockito.never()).findById(Mockito.anyLong());
+        Mockito.verify(store, Mockito.never()).save(Mockito.any());
+    }
+
+    /**
+     * Tests method for acquiring an address, after sizing the locks from application.properties.  Expected to take the
+     * stripe lock for the address once, uncontended.
+     * 
+     * @throws UnknownHostException Should not happen.
+     * @throws IpAddressNotFoundException Should not happen.
+     */
+    @Test
+    public void acquire_afterCreateStripedLocks_takesStripeOnce() throws UnknownHostException, 
+        IpAddressNotFoundException 
+    {
+        // setup test
+        loadBlock();
+        Mockito.when(env.getProperty(IpRestApiApplication.LOCK_STRIPES, "256")).thenReturn("16");
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.CHANGED);
+        service.createStripedLocks();
+        
+        // execute test
+        service.acquire("1.0.0.0");
+
+        // verify result
+        assertEquals(16, service.getStripedLocks().getStripeCount());
+        assertEquals(1, service.getStripedLocks().getAcquisitions());
+        assertEquals(0, service.getStripedLocks().getContended());
+    }
+
+    /**
+     * Tests method for acquiring an address whose first write fails on a concurrent change.  Expected to retry it, 
+     * succeed, and count the retry.
+     * 
+     * @throws UnknownHostException Should not happen.
+     * @throws IpAddressNotFoundException Should not happen.
+     */
+    @Test
+    public void acquire_concurrencyFailureOnce_retriesAndCounts() throws UnknownHostException, 
+        IpAddressNotFoundException 
+    {
+        // setup test
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).
+            thenThrow(new CannotAcquireLockException("lock timeout")).
+            thenReturn(StateChange.CHANGED);
+        
+        // execute test
+        IpAddress result = service.acquire("1.0.0.0");
+
+        // verify result
+        assertEquals(new IpAddress(16_777_216L, true), result);
+        assertEquals(1, service.getRetryCount());
+        Mockito.verify(store, Mockito.times(2)).compareAndSet(16_777_216L, true);
+    }
+
+    /**
+     * Tests method for acquiring an address whose every write fails on a concurrent change, after loading the retry
+     * settings from application.properties.  Expected to give up after the maximum number of attempts and rethrow.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void acquire_concurrencyFailureEveryAttempt_throwsAfterMaxAttempts() throws UnknownHostException {
+        // setup test
+        loadBlock();
+        Mockito.when(env.getProperty(IpRestApiApplication.RETRY_MAX_ATTEMPTS, "5")).thenReturn("3");
+        Mockito.when(env.getProperty(IpRestApiApplication.RETRY_BACKOFF_MS, "5")).thenReturn("0");
+        Mockito.when(store.compareAndSet(16_777_216L, true)).
+            thenThrow(new CannotAcquireLockException("lock timeout"));
+        service.loadRetrySettings();
+        
+        // execute test
+        assertThrows(CannotAcquireLockException.class, () -> {
+            service.acquire("1.0.0.0");
+        });
+
+        // verify result
+        assertEquals(2, service.getRetryCount());
+        Mockito.verify(store, Mockito.times(3)).compareAndSet(16_777_216L, true);
+    }
+
+    /**
+     * Tests method for acquiring an address while another acquire of it is in progress.  Expected to join that acquire
+     * and return its outcome, touching the store only once.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void acquire_concurrentSameAddress_touchesStoreOnce() throws Exception {
+        // setup test
+        loadBlock();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return StateChange.CHANGED;
+        });
+        List<IpAddress> results = new ArrayList<>();
+        Thread leader = new Thread(() -> results.add(acquireQuietly("1.0.0.0")));
+        leader.start();
+        started.await(5, TimeUnit.SECONDS);
+        
+        // execute test
+        Thread releaser = new Thread(() -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((service.getCoalescedCount() == 0) && (System.nanoTime() < deadline)) {
+                Thread.yield();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        IpAddress result = service.acquire("1.0.0.0");
+        leader.join(5_000);
+        releaser.join(5_000);
+
+        // verify result
+        assertEquals(new IpAddress(16_777_216L, true), result);
+        assertEquals(Arrays.asList(new IpAddress(16_777_216L, true)), results);
+        assertEquals(1, service.getCoalescedCount());
+        Mockito.verify(store, Mockito.times(1)).compareAndSet(16_777_216L, true);
+    }
+
+    /**
+     * Internal utility to acquire the specified address, wrapping any checked exception.
+     *
+     * @param address Dotted decimal address to acquire.
+     * @return IpAddress acquired.
+     */
+    private IpAddress acquireQuietly(String address) {
+        try {
+            return service.acquire(address);
+        } catch (IpAddressNotFoundException | UnknownHostException ex) {
+            throw new IllegalStateException(ex);
+        }
     }
 
     /**
@@ -119,9 +302,8 @@ public class IpAddressServiceTest {
         IpAddressNotFoundException 
     {
         // setup test
-        IpAddress ipAddress = new IpAddress(16_777_216L, true);
-        Optional<IpAddress> ipAddressOpt = Optional.of(ipAddress);
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.ALREADY_IN_STATE);
         
         // execute test
         IpAddress result = service.acquire("1.0.0.0");
@@ -130,7 +312,126 @@ public class IpAddressServiceTest {
         assertNotNull(result);
         assertTrue(result.isAcquired());
     }
+
+    /**
+     * Tests method for acquiring an address twice.  Expected to bump the mutation generation the first time, when the
+     * address is changed, but not the second, when it is already acquired.
+     * 
+     * @throws UnknownHostException Should not happen.
+     * @throws IpAddressNotFoundException Should not happen.
+     */
+    @Test
+    public void acquire_changedThenAlreadyAcquired_bumpsGenerationOnce() throws UnknownHostException, 
+        IpAddressNotFoundException 
+    {
+        // setup test
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.CHANGED, 
+            StateChange.ALREADY_IN_STATE);
+        long generation = service.getGeneration();
+        
+        // execute test
+        service.acquire("1.0.0.0");
+        long changedGeneration = service.getGeneration();
+        service.acquire("1.0.0.0");
+
+        // verify result
+        assertEquals(generation + 1, changedGeneration);
+        assertEquals(changedGeneration, service.getGeneration());
+    }
+
+    /**
+     * Tests method for acquiring an address twice.  Expected to append the change to the change log the first time, 
+     * when the address is changed, but not the second, when it is already acquired.
+     * 
+     * @throws UnknownHostException Should not happen.
+     * @throws IpAddressNotFoundException Should not happen.
+     */
+    @Test
+    public void acquire_changedThenAlreadyAcquired_logsChangeOnce() throws UnknownHostException, 
+        IpAddressNotFoundException 
+    {
+        // setup test
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.CHANGED, 
+            StateChange.ALREADY_IN_STATE);
+        
+        // execute test
+        service.acquire("1.0.0.0");
+        service.acquire("1.0.0.0");
+
+        // verify result
+        Mockito.verify(changeLog, Mockito.times(1)).append(AddressChange.Type.ACQUIRED, 16_777_216L, 16_777_216L);
+    }
     
+    /* -------- tests for acquireAll method -------- */
+
+    /**
+     * Tests method for acquiring a list of addresses that includes an invalid one.  Expected to throw an 
+     * UnknownHostException without changing any address.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void acquireAll_invalid_throwsUnknownHostAndChangesNothing() throws Exception {
+        // execute test
+        assertThrows(UnknownHostException.class, () -> {
+            service.acquireAll(Arrays.asList("1.0.0.0", "1.0.0"));
+        });
+        
+        // verify result
+        Mockito.verify(store, Mockito.never()).saveStates(Mockito.any(), Mockito.anyBoolean());
+    }
+
+    /**
+     * Tests method for acquiring a list of addresses, only one of which is within a published block, and which the 
+     * store changes.  Expected to pass only that one to the store, return the outcomes in order, and take the changed 
+     * address out of the summary of free space, so that allocating next skips it.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void acquireAll_oneChanged_returnsOutcomesAndClaimsChanged() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        Mockito.when(store.saveStates(new long[] { 16_777_216L }, true)).thenReturn(
+            new StateChange[] { StateChange.CHANGED });
+        Mockito.when(store.compareAndSet(Mockito.anyLong(), Mockito.eq(true))).thenReturn(StateChange.CHANGED);
+        
+        // execute test
+        List<StateChange> changes = service.acquireAll(Arrays.asList("1.0.0.0", "2.0.0.0"));
+        IpAddress allocated = service.allocate(null);
+        
+        // verify result
+        assertEquals(Arrays.asList(StateChange.CHANGED, StateChange.NOT_FOUND), changes);
+        assertEquals(new IpAddress(16_777_217L, true), allocated);
+    }
+
+    /**
+     * Tests method for acquiring a list of 2 addresses, only one of which the store changes.  Expected to reserve a
+     * sequence number for both in the change log before writing the store, log the one changed, and then release the
+     * other.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void acquireAll_oneOfTwoChanged_reservesBothBeforeWritingAndReleasesOne() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        Mockito.when(store.saveStates(new long[] { 16_777_216L, 16_777_217L }, true)).thenReturn(
+            new StateChange[] { StateChange.CHANGED, StateChange.ALREADY_IN_STATE });
+        
+        // execute test
+        service.acquireAll(Arrays.asList("1.0.0.0", "1.0.0.1"));
+        
+        // verify result
+        InOrder inOrder = Mockito.inOrder(changeLog, store);
+        inOrder.verify(changeLog).reserve(2);
+        inOrder.verify(store).saveStates(new long[] { 16_777_216L, 16_777_217L }, true);
+        inOrder.verify(changeLog).append(AddressChange.Type.ACQUIRED, 16_777_216L, 16_777_216L);
+        inOrder.verify(changeLog).release(1);
+    }
+
     /* -------- tests for addBlock method -------- */
 
     /**
@@ -167,81 +468,334 @@ public class IpAddressServiceTest {
     @Test
     public void addBlock_overlap_throwsIpAddressOverlap() throws UnknownHostException {
         // setup test
-        Mockito.when(repository.existsWithinRange(16_777_216L, 16_777_219L)).thenReturn(true);
+        Mockito.when(store.getRanges()).thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_471L)));
+        service.loadBlockIndex();
         
         // execute test
-        assertThrows(IpAddressOverlapException.class, () -> {
-            service.addBlock("1.0.0.0", 30);
+        IpAddressOverlapException ex = assertThrows(IpAddressOverlapException.class, () -> {
+            service.addBlock("1.0.0.4", 30);
         });
+
+        // verify result
+        assertEquals("CIDR block 1.0.0.4/30 overlaps existing CIDR block 1.0.0.0/24", ex.getMessage());
+        Mockito.verify(store, Mockito.never()).addRange(Mockito.any());
     }
 
     /**
-     * Tests method for adding a CIDR block of size 4, that does not overlap any existing blocks, and has a batch size 
-     * of 256.  Expected to call saveAll once to save all IpAddresses in the range, and return a count of 4.
+     * Tests method for adding a CIDR block immediately after an existing block, then adding the same block again.
+     * Expected to add the first, and throw an IpAddressOverlapException for the second.
      * 
      * @throws UnknownHostException Should not happen.
      * @throws IpAddressOverlapException Should not happen.
      */
     @Test
-    public void addBlockOf4_noOverlap_256BatchSize_1CallOnSaveAll_returns4() throws UnknownHostException, 
-        IpAddressOverlapException 
-    {
+    public void addBlock_adjacentThenRepeated_addsOnce() throws UnknownHostException, IpAddressOverlapException {
         // setup test
-        Mockito.when(repository.existsWithinRange(16_777_216L, 16_777_219L)).thenReturn(false);
-        Mockito.when(env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")).thenReturn("256");
-        
+        Mockito.when(store.getRanges()).thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        service.loadBlockIndex();
+
         // execute test
-        long result = service.addBlock("1.0.0.0", 30);
+        service.addBlock("1.0.0.4", 30);
+        assertThrows(IpAddressOverlapException.class, () -> {
+            service.addBlock("1.0.0.4", 30);
+        });
 
         // verify result
-        assertEquals(4, result);
-        Mockito.verify(repository, Mockito.times(1)).saveAll(Mockito.anyList());
+        Mockito.verify(store, Mockito.times(1)).addRange(new IpAddressRange(16_777_220L, 16_777_223L));
     }
 
     /**
-     * Tests method for adding a CIDR block of size 4, that does not overlap any existing blocks, and has a batch size 
-     * of 1.  Expected to call saveAll 4 times, and return a count of 4.
+     * Tests method for adding a CIDR block of size 4, that does not overlap any existing blocks.  Expected to add one 
+     * IpAddressRange for the block to the store, and return a count of 4.
      * 
      * @throws UnknownHostException Should not happen.
      * @throws IpAddressOverlapException Should not happen.
      */
     @Test
-    public void addBlock_noOverlap_1BatchSize_4CallsOnSaveAll_returns4() throws UnknownHostException, 
+    public void addBlockOf4_noOverlap_addsRange_returns4() throws UnknownHostException, 
         IpAddressOverlapException 
     {
-        // setup test
-        Mockito.when(repository.existsWithinRange(16_777_216L, 16_777_219L)).thenReturn(false);
-        Mockito.when(env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")).thenReturn("1");
-        
         // execute test
         long result = service.addBlock("1.0.0.0", 30);
 
         // verify result
         assertEquals(4, result);
-        Mockito.verify(repository, Mockito.times(4)).saveAll(Mockito.anyList());
+        Mockito.verify(store, Mockito.times(1)).addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+    }
+
+    /* -------- tests for allocate method -------- */
+
+    /**
+     * Internal utility to mock the store to hold the single block 1.0.0.0/30, with every address available, and load
+     * it into the service.
+     *
+     * @throws IOException Should not happen.
+     */
+    private void loadAvailableBlock() throws IOException {
+        Mockito.when(store.getRanges()).thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        Mockito.doAnswer(invocation -> {
+            AddressRunConsumer consumer = invocation.getArgument(2);
+            consumer.accept(invocation.getArgument(0), invocation.getArgument(1), false);
+            return null;
+        }).when(store).forEachRunBetween(Mockito.anyLong(), Mockito.anyLong(), Mockito.any());
+        service.loadBlockIndex();
     }
 
     /**
-     * Tests method for adding a CIDR block of size 4, that does not overlap any existing blocks, and has a batch size 
-     * of 3.  Expected to call saveAll 2 times, and return a count of 4.
+     * Tests method for allocating twice from a block with every address available.  Expected to acquire the first 
+     * address in the store, then the second.
      * 
-     * @throws UnknownHostException Should not happen.
-     * @throws IpAddressOverlapException Should not happen.
+     * @throws Exception Should not happen.
      */
     @Test
-    public void addBlock_noOverlap_3BatchSize_2CallsOnSaveAll_returns4() throws UnknownHostException, 
-        IpAddressOverlapException 
-    {
+    public void allocate_available_acquiresAddressesInOrder() throws Exception {
         // setup test
-        Mockito.when(repository.existsWithinRange(16_777_216L, 16_777_219L)).thenReturn(false);
-        Mockito.when(env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")).thenReturn("3");
+        loadAvailableBlock();
+        Mockito.when(store.compareAndSet(Mockito.anyLong(), Mockito.eq(true))).thenReturn(StateChange.CHANGED);
         
         // execute test
-        long result = service.addBlock("1.0.0.0", 30);
+        IpAddress first = service.allocate(null);
+        IpAddress second = service.allocate("1.0.0.0/30");
+        
+        // verify result
+        assertEquals(new IpAddress(16_777_216L, true), first);
+        assertEquals(new IpAddress(16_777_217L, true), second);
+        Mockito.verify(store, Mockito.times(2)).compareAndSet(Mockito.anyLong(), Mockito.eq(true));
+    }
 
+    /**
+     * Tests method for allocating from a block whose first address was acquired concurrently, without the summary of
+     * free space having caught up yet.  Expected to move on to and acquire the next address.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocate_firstAcquiredConcurrently_acquiresNext() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.ALREADY_IN_STATE);
+        Mockito.when(store.compareAndSet(16_777_217L, true)).thenReturn(StateChange.CHANGED);
+        
+        // execute test
+        IpAddress result = service.allocate(null);
+        
         // verify result
-        assertEquals(4, result);
-        Mockito.verify(repository, Mockito.times(2)).saveAll(Mockito.anyList());
+        assertEquals(new IpAddress(16_777_217L, true), result);
+    }
+
+    /**
+     * Tests method for allocating within a CIDR block that holds no available address.  Expected to throw an 
+     * IpAddressNotFoundException without saving anything.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocate_noneAvailableInScope_throwsIpAddressNotFound() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        
+        // execute test
+        assertThrows(IpAddressNotFoundException.class, () -> {
+            service.allocate("2.0.0.0/30");
+        });
+        
+        // verify result
+        Mockito.verify(store, Mockito.never()).compareAndSet(Mockito.anyLong(), Mockito.anyBoolean());
+    }
+
+    /**
+     * Tests method for allocating when the store fails to save the address.  Expected to give the address back, so that
+     * the next allocation picks it again.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocate_saveFails_givesAddressBack() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).
+            thenThrow(new IllegalStateException("DB down")).
+            thenReturn(StateChange.CHANGED);
+        
+        // execute test
+        assertThrows(IllegalStateException.class, () -> {
+            service.allocate(null);
+        });
+        IpAddress result = service.allocate(null);
+        
+        // verify result
+        assertEquals(new IpAddress(16_777_216L, true), result);
+    }
+
+    /**
+     * Tests method for allocating while the change log is too backlogged to take more changes.  Expected to give the 
+     * address back without touching the store, so that the next allocation picks it again.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocate_changeLogBacklogged_givesAddressBack() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        Mockito.doThrow(new IllegalStateException("backlogged")).doNothing().when(changeLog).reserve(1);
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.CHANGED);
+        
+        // execute test
+        assertThrows(IllegalStateException.class, () -> {
+            service.allocate(null);
+        });
+        IpAddress result = service.allocate(null);
+        
+        // verify result
+        assertEquals(new IpAddress(16_777_216L, true), result);
+        Mockito.verify(store, Mockito.times(1)).compareAndSet(16_777_216L, true);
+    }
+
+    /**
+     * Tests method for allocating several addresses from a block with every address available.  Expected to acquire 
+     * them as a single run, saved to the store in one call.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocate_countAvailable_savesSingleRun() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        
+        // execute test
+        List<IpAddressRange> result = service.allocate(null, 3);
+        
+        // verify result
+        List<IpAddressRange> expected = Arrays.asList(new IpAddressRange(16_777_216L, 16_777_218L));
+        assertEquals(expected, result);
+        Mockito.verify(store, Mockito.times(1)).saveRanges(expected, true);
+    }
+
+    /**
+     * Tests method for allocating 2 addresses when an explicit acquire got to the second address of the run claimed 
+     * first, before the summary of free space was updated.  Expected to write nothing for that run, give back the 
+     * first address, and acquire the next run that can hold both instead.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocate_countLostToExplicitAcquire_retriesNextRun() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        Mockito.doAnswer(invocation -> {
+            AddressRunConsumer consumer = invocation.getArgument(2);
+            long startAddress = invocation.getArgument(0);
+            long endAddress = invocation.getArgument(1);
+            if (startAddress == 16_777_216L) {
+                consumer.accept(16_777_216L, 16_777_216L, false);
+                consumer.accept(16_777_217L, 16_777_217L, true);
+            } else {
+                consumer.accept(startAddress, endAddress, false);
+            }
+            return null;
+        }).when(store).forEachRunBetween(Mockito.anyLong(), Mockito.anyLong(), Mockito.any());
+        
+        // execute test
+        List<IpAddressRange> result = service.allocate(null, 2);
+        
+        // verify result
+        List<IpAddressRange> expected = Arrays.asList(new IpAddressRange(16_777_218L, 16_777_219L));
+        assertEquals(expected, result);
+        Mockito.verify(store, Mockito.times(1)).saveRanges(Mockito.anyList(), Mockito.anyBoolean());
+        Mockito.verify(store, Mockito.times(1)).saveRanges(expected, true);
+        Mockito.verify(changeLog, Mockito.never()).append(AddressChange.Type.ACQUIRED, 16_777_216L, 16_777_217L);
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.CHANGED);
+        assertEquals(new IpAddress(16_777_216L, true), service.allocate(null));
+    }
+
+    /**
+     * Tests method for allocating more addresses than are available.  Expected to throw an IpAddressNotFoundException 
+     * without saving anything, and leave every address available for the next allocation.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void allocate_countUnavailable_throwsIpAddressNotFound() throws Exception {
+        // setup test
+        loadAvailableBlock();
+        
+        // execute test
+        assertThrows(IpAddressNotFoundException.class, () -> {
+            service.allocate(null, 5);
+        });
+        
+        // verify result
+        Mockito.verify(store, Mockito.never()).saveRanges(Mockito.anyList(), Mockito.anyBoolean());
+        assertEquals(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)), service.allocate(null, 4));
+    }
+
+    /**
+     * Tests method for allocating more addresses at once than the configured max page size.  Expected to throw an 
+     * IllegalArgumentException without touching the store.
+     */
+    @Test
+    public void allocate_countAboveMax_throwsIllegalArgumentException() {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.PAGE_MAX_SIZE, "100000")).thenReturn("1000");
+        service.loadPageSettings();
+        
+        // execute test and verify result
+        assertThrows(IllegalArgumentException.class, () -> service.allocate(null, 1001));
+        Mockito.verifyNoInteractions(store);
+    }
+
+    /* -------- tests for findOverlapping method -------- */
+
+    /**
+     * Tests method for ranges either side of, straddling, and within an existing block.  Expected to return the block
+     * only for those that overlap it.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findOverlapping_variousRanges_returnsOnlyOverlapped() throws UnknownHostException {
+        // setup test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+        Mockito.when(store.getRanges()).thenReturn(Arrays.asList(range));
+        service.loadBlockIndex();
+
+        // execute test and verify result
+        assertTrue(service.findOverlapping(0L, 16_777_215L).isEmpty());
+        assertTrue(service.findOverlapping(16_777_220L, 16_777_223L).isEmpty());
+        assertEquals(Optional.of(range), service.findOverlapping(16_777_219L, 16_777_222L));
+        assertEquals(Optional.of(range), service.findOverlapping(16_777_217L, 16_777_217L));
+        assertEquals(Optional.of(range), service.findOverlapping(0L, NetUtils.MAX_LONG_ADDRESS));
+    }
+
+    /* -------- tests for forEachRun method -------- */
+
+    /**
+     * Tests method for streaming the runs of two adjoining ranges that are both wholly available.  Expected to merge 
+     * the run of each range into a single run spanning both.
+     * 
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachRun_adjoiningRanges_mergesRuns() throws IOException {
+        // setup test
+        List<IpAddressRange> ranges = Arrays.asList(
+            new IpAddressRange(16_777_216L, 16_777_219L),
+            new IpAddressRange(16_777_220L, 16_777_223L)
+        );
+        Mockito.when(store.getRanges()).thenReturn(ranges);
+        Mockito.doAnswer(invocation -> {
+            AddressRunConsumer consumer = invocation.getArgument(2);
+            consumer.accept(invocation.getArgument(0), invocation.getArgument(1), false);
+            return null;
+        }).when(store).forEachRunBetween(Mockito.anyLong(), Mockito.anyLong(), Mockito.any());
+        
+        // execute test
+        List<String> runs = new ArrayList<>();
+        service.forEachRun((startAddress, endAddress, acquired) -> 
+            runs.add(startAddress + "-" + endAddress + ":" + acquired));
+        
+        // verify result
+        assertEquals(Arrays.asList("16777216-16777223:false"), runs);
     }
 
     /* -------- tests for getById method -------- */
@@ -267,7 +821,7 @@ public class IpAddressServiceTest {
     public void getById_doesNotExist_returnEmptyOptional() throws UnknownHostException {
         // setup test
         Optional<IpAddress> ipAddressOpt = Optional.empty();
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
+        Mockito.when(store.findById(16_777_216L)).thenReturn(ipAddressOpt);
         
         // execute test
         Optional<IpAddress> result = service.getById("1.0.0.0");
@@ -288,7 +842,7 @@ public class IpAddressServiceTest {
         // setup test
         IpAddress ipAddress = new IpAddress(16_777_216L, false);
         Optional<IpAddress> ipAddressOpt = Optional.of(ipAddress);
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
+        Mockito.when(store.findById(16_777_216L)).thenReturn(ipAddressOpt);
         
         // execute test
         Optional<IpAddress> result = service.getById("1.0.0.0");
@@ -298,6 +852,172 @@ public class IpAddressServiceTest {
         assertEquals(ipAddress, result.get());
     }
 
+    /**
+     * Tests method for fetching an address that is acquired while a lookup of it is still in flight.  Expected to 
+     * read it from the store again rather than join that lookup, so that the caller sees its own acquire, while the 
+     * lookup in flight still gets its own result.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void getById_acquiredWhileLookupInFlight_readsOwnWrite() throws Exception {
+        // setup test
+        loadBlock();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(store.findById(16_777_216L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(new IpAddress(16_777_216L, false));
+        }).thenReturn(Optional.of(new IpAddress(16_777_216L, true)));
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.CHANGED);
+        List<Optional<IpAddress>> results = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            try {
+                results.add(service.getById("1.0.0.0"));
+            } catch (UnknownHostException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        reader.start();
+        started.await(5, TimeUnit.SECONDS);
+        
+        // execute test
+        service.acquire("1.0.0.0");
+        Optional<IpAddress> result = service.getById("1.0.0.0");
+        release.countDown();
+        reader.join(5_000);
+
+        // verify result
+        assertEquals(new IpAddress(16_777_216L, true), result.get());
+        assertEquals(Arrays.asList(Optional.of(new IpAddress(16_777_216L, false))), results);
+        assertEquals(0, service.getCoalescedCount());
+        Mockito.verify(store, Mockito.times(2)).findById(16_777_216L);
+    }
+
+    /* -------- tests for getPage method -------- */
+
+    /**
+     * Tests method for fetching a page that starts part way through one range and ends part way through the next, 
+     * where one address in the page has been acquired.  Expected to return the addresses in ascending order, with the 
+     * acquired one flagged as such.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void getPage_spansRanges_returnsAddressesInOrder() throws UnknownHostException {
+        // setup test
+        List<IpAddressRange> ranges = Arrays.asList(
+            new IpAddressRange(16_777_216L, 16_777_219L),
+            new IpAddressRange(33_554_432L, 33_554_435L)
+        );
+        Mockito.when(store.getRanges()).thenReturn(ranges);
+        Mockito.when(store.findBetween(16_777_219L, 16_777_219L)).
+            thenReturn(Arrays.asList(new IpAddress(16_777_219L, false)));
+        Mockito.when(store.findBetween(33_554_432L, 33_554_433L)).
+            thenReturn(Arrays.asList(new IpAddress(33_554_432L, false), new IpAddress(33_554_433L, true)));
+        
+        // execute test
+        List<IpAddress> result = service.getPage(1, 3);
+        
+        // verify result
+        List<IpAddress> expected = Arrays.asList(
+            new IpAddress(16_777_219L, false),
+            new IpAddress(33_554_432L, false),
+            new IpAddress(33_554_433L, true)
+        );
+        assertEquals(expected, result);
+    }
+
+    /**
+     * Tests method for fetching a page beyond the last address, with a huge page size that is within the configured
+     * max.  Expected to return an empty page, without fetching from the store.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void getPage_beyondLast_hugePageSize_returnsEmpty() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.PAGE_MAX_SIZE, "100000")).thenReturn("2000000000");
+        service.loadPageSettings();
+        Mockito.when(store.getRanges()).thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        
+        // execute test
+        List<IpAddress> result = service.getPage(1, 2_000_000_000);
+        
+        // verify result
+        assertTrue(result.isEmpty());
+        Mockito.verify(store, Mockito.never()).findBetween(Mockito.anyLong(), Mockito.anyLong());
+    }
+
+    /**
+     * Tests method for fetching a page larger than the configured max page size.  Expected to throw an 
+     * IllegalArgumentException without touching the store.
+     */
+    @Test
+    public void getPage_pageSizeAboveMax_throwsIllegalArgumentException() {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.PAGE_MAX_SIZE, "100000")).thenReturn("1000");
+        service.loadPageSettings();
+        
+        // execute test and verify result
+        assertThrows(IllegalArgumentException.class, () -> service.getPage(0, 1001));
+        Mockito.verifyNoInteractions(store);
+    }
+
+    /* -------- tests for getPageAfter method -------- */
+
+    /**
+     * Tests method for fetching a page after an address part way through one range, that ends part way through the
+     * next.  Expected to seek straight to the range holding the cursor via the index of blocks, without reading the 
+     * ranges from the store again, and return the addresses that follow the cursor in ascending order.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void getPageAfter_spansRanges_returnsAddressesAfterCursor() throws UnknownHostException {
+        // setup test
+        List<IpAddressRange> ranges = Arrays.asList(
+            new IpAddressRange(16_777_216L, 16_777_219L),
+            new IpAddressRange(33_554_432L, 33_554_435L),
+            new IpAddressRange(50_331_648L, 50_331_651L)
+        );
+        Mockito.when(store.getRanges()).thenReturn(ranges);
+        service.loadBlockIndex();
+        Mockito.when(store.findBetween(33_554_434L, 33_554_435L)).
+            thenReturn(Arrays.asList(new IpAddress(33_554_434L, false), new IpAddress(33_554_435L, true)));
+        Mockito.when(store.findBetween(50_331_648L, 50_331_648L)).
+            thenReturn(Arrays.asList(new IpAddress(50_331_648L, false)));
+        
+        // execute test
+        List<IpAddress> result = service.getPageAfter("2.0.0.1", 3);
+        
+        // verify result
+        List<IpAddress> expected = Arrays.asList(
+            new IpAddress(33_554_434L, false),
+            new IpAddress(33_554_435L, true),
+            new IpAddress(50_331_648L, false)
+        );
+        assertEquals(expected, result);
+        Mockito.verify(store, Mockito.times(2)).findBetween(Mockito.anyLong(), Mockito.anyLong());
+        Mockito.verify(store, Mockito.times(1)).getRanges();
+    }
+
+    /**
+     * Tests method for fetching a page with a limit above the configured max page size.  Expected to throw an 
+     * IllegalArgumentException without touching the store.
+     */
+    @Test
+    public void getPageAfter_limitAboveMax_throwsIllegalArgumentException() {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.PAGE_MAX_SIZE, "100000")).thenReturn("1000");
+        service.loadPageSettings();
+        
+        // execute test and verify result
+        assertThrows(IllegalArgumentException.class, () -> service.getPageAfter(null, 1001));
+        Mockito.verifyNoInteractions(store);
+    }
+
     /* -------- tests for release method -------- */
 
     /**
@@ -314,45 +1034,44 @@ public class IpAddressServiceTest {
     }
 
     /**
-     * Tests method for releasing an IpAddress that does not exist.  Expected to throw an IpAddressNotFoundException.
+     * Tests method for releasing an IpAddress that is not within any published block.  Expected to throw an 
+     * IpAddressNotFoundException without touching the store.
      * 
      * @throws UnknownHostException Should not happen.
      */
     @Test
     public void release_doesNotExist_throwsIpAddressNotFound() throws UnknownHostException {
-        // setup test
-        Optional<IpAddress> ipAddressOpt = Optional.empty();
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
-        
         // execute test
         assertThrows(IpAddressNotFoundException.class, () -> {
             service.release("1.0.0.0");
         });
+
+        // verify result
+        Mockito.verify(store, Mockito.never()).compareAndSet(Mockito.anyLong(), Mockito.anyBoolean());
     }
 
     /**
      * Tests method for releasing an IpAddress that exists with acquired set true.  Expected to set the acquired flag 
-     * false for it, save it to DB, and return it.
+     * false for it by a single compare and set in the store, without fetching it first, and return it.
      * 
      * @throws UnknownHostException Should not happen.
      * @throws IpAddressNotFoundException Should not happen.
      */
     @Test
-    public void release_existsAcquired_setsAcquireFalseAndSaves_returnsIpAddress() throws UnknownHostException, 
+    public void release_existsAcquired_compareAndSetsFalse_returnsIpAddress() throws UnknownHostException, 
         IpAddressNotFoundException 
     {
         // setup test
-        IpAddress ipAddress = new IpAddress(16_777_216L, true);
-        Optional<IpAddress> ipAddressOpt = Optional.of(ipAddress);
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
-        Mockito.when(repository.save(ipAddress)).thenReturn(ipAddress);
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, false)).thenReturn(StateChange.CHANGED);
         
         // execute test
         IpAddress result = service.release("1.0.0.0");
 
         // verify result
-        assertNotNull(result);
-        assertFalse(result.isAcquired());
+        assertEquals(new IpAddress(16_777_216L, false), result);
+        Mockito.verify(store, Mockito.never()).findById(Mockito.anyLong());
+        Mockito.verify(store, Mockito.never()).save(Mockito.any());
     }
 
     /**
@@ -366,9 +1085,8 @@ public class IpAddressServiceTest {
         IpAddressNotFoundException 
     {
         // setup test
-        IpAddress ipAddress = new IpAddress(16_777_216L, false);
-        Optional<IpAddress> ipAddressOpt = Optional.of(ipAddress);
-        Mockito.when(repository.findById(16_777_216L)).thenReturn(ipAddressOpt);
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, false)).thenReturn(StateChange.ALREADY_IN_STATE);
         
         // execute test
         IpAddress result = service.release("1.0.0.0");
@@ -377,4 +1095,196 @@ public class IpAddressServiceTest {
         assertNotNull(result);
         assertFalse(result.isAcquired());
     }
+
+    /* -------- tests for releaseAll method -------- */
+
+    /**
+     * Tests method for releasing a list of addresses that the store changes.  Expected to return the outcomes from the
+     * store in order, and to put the changed addresses back into the summary of free space, so that allocating next 
+     * picks the first of them.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void releaseAll_changed_returnsOutcomesAndFreesChanged() throws Exception {
+        // setup test
+        Mockito.when(store.getRanges()).thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        Mockito.doAnswer(invocation -> {
+            AddressRunConsumer consumer = invocation.getArgument(2);
+            consumer.accept(invocation.getArgument(0), invocation.getArgument(1), true);
+            return null;
+        }).when(store).forEachRunBetween(Mockito.anyLong(), Mockito.anyLong(), Mockito.any());
+        service.loadBlockIndex();
+        Mockito.when(store.saveStates(new long[] { 16_777_218L, 16_777_219L }, false)).thenReturn(
+            new StateChange[] { StateChange.CHANGED, StateChange.ALREADY_IN_STATE });
+        Mockito.when(store.compareAndSet(Mockito.anyLong(), Mockito.eq(true))).thenReturn(StateChange.CHANGED);
+        
+        // execute test
+        List<StateChange> changes = service.releaseAll(Arrays.asList("1.0.0.2", "1.0.0.3"));
+        IpAddress allocated = service.allocate(null);
+        
+        // verify result
+        assertEquals(Arrays.asList(StateChange.CHANGED, StateChange.ALREADY_IN_STATE), changes);
+        assertEquals(new IpAddress(16_777_218L, true), allocated);
+    }
+
+    /* -------- tests for save method -------- */
+
+    /**
+     * Tests method for saving a new IpAddress instance for an address that is already in its state, as a caller that
+     * did not read the address first would.  Expected to put it into the state by a compare and set rather than saving
+     * the instance, so that the row is never read, and to log nothing since nothing changed.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void save_newInstanceAlreadyInState_compareAndSets_logsNothing() throws UnknownHostException {
+        // setup test
+        loadBlock();
+        Mockito.when(store.compareAndSet(16_777_216L, true)).thenReturn(StateChange.ALREADY_IN_STATE);
+        
+        // execute test
+        IpAddress result = service.save(new IpAddress(16_777_216L, true));
+
+        // verify result
+        assertEquals(new IpAddress(16_777_216L, true), result);
+        Mockito.verify(store, Mockito.never()).save(Mockito.any());
+        Mockito.verify(changeLog, Mockito.never()).append(Mockito.any(), Mockito.anyLong(), Mockito.anyLong());
+    }
+
+    /**
+     * Tests method for saving an IpAddress instance for an address that is not within any block.  Expected to throw 
+     * an IllegalArgumentException.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void save_doesNotExist_throwsIllegalArgument() throws UnknownHostException {
+        // execute test
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.save(new IpAddress(16_777_216L, true));
+        });
+    }
+
+    /* -------- tests for saveAll method -------- */
+
+    /**
+     * Tests method for saving new IpAddress instances that list the same address twice.  Expected to put the addresses
+     * into their states by a batch of conditional writes per state (skipping the store for a state with no addresses),
+     * with the last instance of the address winning, and to log only the address that changed.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void saveAll_duplicateAddress_lastWins_logsOnlyChanged() throws UnknownHostException {
+        // setup test
+        loadBlock();
+        Mockito.when(store.saveStates(new long[] { 16_777_216L, 16_777_217L }, false)).thenReturn(
+            new StateChange[] { StateChange.CHANGED, StateChange.ALREADY_IN_STATE });
+        
+        // execute test
+        service.saveAll(Arrays.asList(new IpAddress(16_777_216L, true), new IpAddress(16_777_217L, false), 
+            new IpAddress(16_777_216L, false)));
+
+        // verify result
+        Mockito.verify(store, Mockito.never()).saveAll(Mockito.anyList());
+        Mockito.verify(changeLog, Mockito.times(1)).append(Mockito.any(), Mockito.anyLong(), Mockito.anyLong());
+        Mockito.verify(changeLog, Mockito.times(1)).append(AddressChange.Type.RELEASED, 16_777_216L, 16_777_216L);
+    }
+
+    /* -------- tests for submitBlockJob method -------- */
+
+    /**
+     * Internal utility to start the block job threads, with 1 thread and a queue size of 1.
+     */
+    private void startJobExecutor() {
+        Mockito.when(env.getProperty(IpRestApiApplication.BLOCK_JOB_THREADS, "2")).thenReturn("1");
+        Mockito.when(env.getProperty(IpRestApiApplication.BLOCK_JOB_QUEUE_SIZE, "8")).thenReturn("1");
+        service.startJobExecutor();
+    }
+
+    /**
+     * Tests method for submitting a job to add a CIDR block of size 4, that does not overlap any existing blocks.
+     * Expected to add the range to the store in the background, and finish in the SUCCEEDED state.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void submitBlockJobOf4_noOverlap_addsRange_succeeds() throws Exception {
+        // setup test
+        startJobExecutor();
+
+        // execute test
+        BlockJob job = service.submitBlockJob("1.0.0.0", 30);
+        job.getFuture().get(5, TimeUnit.SECONDS);
+
+        // verify result
+        assertEquals(BlockJob.State.SUCCEEDED, job.getState());
+        assertEquals(4, job.getTotalRows());
+        Mockito.verify(store, Mockito.times(1)).addRange(Mockito.eq(new IpAddressRange(16_777_216L, 16_777_219L)), 
+            Mockito.any(LongPredicate.class));
+        service.stopJobExecutor();
+    }
+
+    /**
+     * Tests method for submitting a job whose add fails in the store.  Expected to finish in the FAILED state, with
+     * the block released so that it no longer counts as overlapping.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void submitBlockJob_storeFails_failsAndReleasesBlock() throws Exception {
+        // setup test
+        startJobExecutor();
+        Mockito.doThrow(new IllegalStateException("boom")).when(store).addRange(Mockito.any(IpAddressRange.class), 
+            Mockito.any(LongPredicate.class));
+
+        // execute test
+        BlockJob job = service.submitBlockJob("1.0.0.0", 30);
+        job.getFuture().get(5, TimeUnit.SECONDS);
+
+        // verify result
+        assertEquals(BlockJob.State.FAILED, job.getState());
+        assertEquals("boom", job.getErrorMessage());
+        assertFalse(service.existsWithinRange(16_777_216L, 16_777_219L));
+        service.stopJobExecutor();
+    }
+
+    /**
+     * Tests method for submitting 3 jobs while the single job thread is busy and the queue holds 1.  Expected to run 
+     * the first, queue the second, and reject the third.  Cancelling the queued job is expected to release its block 
+     * immediately.
+     * 
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void submitBlockJob_queueFull_throwsBlockJobRejected() throws Exception {
+        // setup test
+        startJobExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(store).addRange(Mockito.any(IpAddressRange.class), Mockito.any(LongPredicate.class));
+
+        // execute test
+        BlockJob running = service.submitBlockJob("1.0.0.0", 30);
+        started.await(5, TimeUnit.SECONDS);
+        BlockJob queued = service.submitBlockJob("1.0.0.4", 30);
+        assertThrows(BlockJobRejectedException.class, () -> {
+            service.submitBlockJob("1.0.0.8", 30);
+        });
+        service.cancelBlockJob(queued.getId());
+        release.countDown();
+        running.getFuture().get(5, TimeUnit.SECONDS);
+
+        // verify result
+        assertEquals(BlockJob.State.SUCCEEDED, running.getState());
+        assertEquals(BlockJob.State.CANCELLED, queued.getState());
+        assertTrue(service.existsWithinRange(16_777_216L, 16_777_219L));
+        assertFalse(service.existsWithinRange(16_777_220L, 16_777_227L));
+        service.stopJobExecutor();
+    }
 }
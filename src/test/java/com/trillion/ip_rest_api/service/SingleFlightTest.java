@@ -0,0 +1,144 @@
+package com.trillion.ip_rest_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TDD style unit tests for SingleFlight.
+ */
+@Tag("service")
+public class SingleFlightTest {
+    /**
+     * Number of callers that join the leading caller's flight in the concurrent test.
+     */
+    private static final int JOINERS = 8;
+
+    /**
+     * Internal utility to wait until the specified number of calls have joined a flight, failing after 10 seconds.
+     *
+     * @param flights SingleFlight in question.
+     * @param count Number of joined calls to wait for.
+     * @throws InterruptedException Should not happen.
+     */
+    private static void awaitCoalesced(SingleFlight<?, ?> flights, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((flights.getCoalesced() < count) && (System.nanoTime() < deadline)) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, flights.getCoalesced());
+    }
+
+    /* -------- tests for execute method -------- */
+
+    /**
+     * Verifies that callers arriving while a flight for the same key is in progress wait for it, and get its value
+     * without running their own operation.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void execute_concurrentSameKey_runsOnceAndSharesValue() throws Exception {
+        // setup test
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(JOINERS + 1);
+        List<Future<String>> results = new ArrayList<>();
+
+        // execute test
+        try {
+            results.add(executor.submit(() -> flights.execute("1.0.0.0", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "leader";
+            })));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < JOINERS; i++) {
+                results.add(executor.submit(() -> flights.execute("1.0.0.0", () -> {
+                    calls.incrementAndGet();
+                    return "joiner";
+                })));
+            }
+            awaitCoalesced(flights, JOINERS);
+            release.countDown();
+
+            // verify result
+            for (Future<String> result : results) {
+                assertEquals("leader", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, flights.getLed());
+    }
+
+    /**
+     * Verifies that an exception from the operation is thrown to the caller, and that the flight lands so that the
+     * next call for the same key runs its own operation.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void execute_operationThrows_throwsAndLands() throws Exception {
+        // setup test
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        IllegalStateException failure = new IllegalStateException("DB down");
+
+        // execute test
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> {
+            flights.execute("1.0.0.0", () -> {
+                throw failure;
+            });
+        });
+        String result = flights.execute("1.0.0.0", () -> "retried");
+
+        // verify result
+        assertSame(failure, thrown);
+        assertEquals("retried", result);
+        assertEquals(2, flights.getLed());
+        assertEquals(0, flights.getCoalesced());
+    }
+
+    /* -------- tests for land method -------- */
+
+    /**
+     * Verifies that once an operation lands its flight early, a call for the same key starts a new flight, rather than
+     * joining the one still in progress.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void land_early_nextCallRunsAfresh() throws Exception {
+        // setup test
+        SingleFlight<String, String> flights = new SingleFlight<>();
+
+        // execute test
+        String result = flights.execute("1.0.0.0", () -> {
+            flights.land("1.0.0.0");
+            return "outer after " + flights.execute("1.0.0.0", () -> "inner");
+        });
+
+        // verify result
+        assertEquals("outer after inner", result);
+        assertEquals(2, flights.getLed());
+        assertEquals(0, flights.getCoalesced());
+    }
+}
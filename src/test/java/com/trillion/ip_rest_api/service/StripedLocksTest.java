@@ -0,0 +1,169 @@
+package com.trillion.ip_rest_api.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * TDD style unit tests for StripedLocks.
+ */
+@Tag("service")
+public class StripedLocksTest {
+
+    /* -------- tests for constructor -------- */
+
+    /**
+     * Verifies that a stripe count that is not a power of two is rejected.
+     */
+    @Test
+    public void constructor_notPowerOfTwo_throwsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new StripedLocks(100);
+        });
+    }
+
+    /* -------- tests for lock method -------- */
+
+    /**
+     * Verifies that locking an address whose stripe is held by another thread waits until it is unlocked, and is 
+     * counted as contended, while locking an address on a free stripe is not.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void lock_sameAddressHeld_waitsAndCountsContended() throws Exception {
+        // setup test
+        StripedLocks locks = new StripedLocks(16);
+        locks.lock(16_777_216L);
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            locks.lock(16_777_216L);
+            locked.countDown();
+            locks.unlock(16_777_216L);
+        });
+
+        // execute test
+        thread.start();
+        boolean lockedWhileHeld = locked.await(100, TimeUnit.MILLISECONDS);
+        locks.unlock(16_777_216L);
+
+        // verify result
+        assertFalse(lockedWhileHeld);
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        thread.join();
+        assertEquals(2, locks.getAcquisitions());
+        assertEquals(1, locks.getContended());
+        assertTrue(locks.getWaitNanos() > 0);
+    }
+
+    /**
+     * Verifies that with a stripe count of 0, locking does nothing and counts nothing.
+     */
+    @Test
+    public void lock_zeroStripes_doesNothing() {
+        // setup test
+        StripedLocks locks = new StripedLocks(0);
+
+        // execute test
+        locks.lock(16_777_216L);
+        locks.lock(16_777_216L);
+        locks.unlock(16_777_216L);
+        locks.unlock(16_777_216L);
+
+        // verify result
+        assertEquals(0, locks.getStripeCount());
+        assertEquals(0, locks.getAcquisitions());
+    }
+
+    /* -------- tests for lockAll method -------- */
+
+    /**
+     * Verifies that locking ranges holding at least as many addresses as there are stripes locks every stripe, so that
+     * locking a single address within them waits until they are unlocked.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void lockAll_manyAddresses_locksEveryStripe() throws Exception {
+        // setup test
+        StripedLocks locks = new StripedLocks(16);
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            locks.lock(50_331_648L);
+            locked.countDown();
+            locks.unlock(50_331_648L);
+        });
+
+        // execute test
+        BitSet stripes = locks.lockAll(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_223L), 
+            new IpAddressRange(33_554_432L, 33_554_439L)));
+        thread.start();
+        boolean lockedWhileHeld = locked.await(100, TimeUnit.MILLISECONDS);
+        locks.unlockAll(stripes);
+
+        // verify result
+        assertEquals(16, stripes.cardinality());
+        assertFalse(lockedWhileHeld);
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        thread.join();
+    }
+
+    /**
+     * Verifies that locking a range holding fewer addresses than there are stripes locks only the stripes of those 
+     * addresses, and that unlocking them lets another thread lock them without waiting.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void lockAll_fewAddresses_locksOnlyTheirStripes() throws Exception {
+        // setup test
+        StripedLocks locks = new StripedLocks(256);
+
+        // execute test
+        BitSet stripes = locks.lockAll(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        locks.unlockAll(stripes);
+        Thread thread = new Thread(() -> {
+            locks.lock(16_777_216L);
+            locks.unlock(16_777_216L);
+        });
+        thread.start();
+        thread.join(10_000);
+
+        // verify result
+        assertTrue((stripes.cardinality() >= 1) && (stripes.cardinality() <= 4));
+        assertEquals(stripes.cardinality() + 1, locks.getAcquisitions());
+        assertEquals(0, locks.getContended());
+    }
+
+    /**
+     * Verifies that locking a list of addresses locks each of their stripes once, in ascending order, and that at 
+     * least as many addresses as stripes lock every stripe.
+     */
+    @Test
+    public void lockAll_addresses_locksTheirStripesOrEvery() {
+        // setup test
+        StripedLocks locks = new StripedLocks(4);
+
+        // execute test
+        BitSet few = locks.lockAll(new long[] { 16_777_216L, 16_777_216L });
+        locks.unlockAll(few);
+        BitSet many = locks.lockAll(new long[] { 16_777_216L, 16_777_217L, 16_777_218L, 16_777_219L });
+        locks.unlockAll(many);
+
+        // verify result
+        assertEquals(1, few.cardinality());
+        assertEquals(4, many.cardinality());
+        assertEquals(5, locks.getAcquisitions());
+    }
+}
@@ -0,0 +1,73 @@
+package com.trillion.ip_rest_api.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * TDD style unit tests for AdaptiveChunkSizer.
+ */
+@Tag("store")
+public class AdaptiveChunkSizerTest {
+
+    /* -------- tests for constructor method -------- */
+
+    /**
+     * Verifies that the ctor throws an IllegalArgumentException if the max is below the min.
+     */
+    @Test
+    public void ctor_maxBelowMin_throwsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new AdaptiveChunkSizer(10, 10, 5);
+        });
+    }
+
+    /**
+     * Verifies that the ctor clamps the initial chunk size to the bounds.
+     */
+    @Test
+    public void ctor_initialAboveMax_clampsToMax() {
+        assertEquals(100, new AdaptiveChunkSizer(1000, 10, 100).getChunkSize());
+    }
+
+    /* -------- tests for record method -------- */
+
+    /**
+     * Verifies that the chunk size keeps doubling while throughput improves, up to the max.
+     */
+    @Test
+    public void record_improving_doublesUpToMax() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(10, 10, 30);
+        sizer.record(10, 1000);
+        assertEquals(20, sizer.getChunkSize());
+        sizer.record(20, 1000);
+        assertEquals(30, sizer.getChunkSize());
+    }
+
+    /**
+     * Verifies that the chunk size is halved once throughput drops, and keeps shrinking while that improves throughput.
+     */
+    @Test
+    public void record_worsening_reversesDirection() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(100, 1, 1000);
+        sizer.record(100, 1000);
+        sizer.record(200, 4000);
+        assertEquals(100, sizer.getChunkSize());
+        sizer.record(100, 1000);
+        assertEquals(50, sizer.getChunkSize());
+    }
+
+    /**
+     * Verifies that a short chunk (i.e. the last of a block) does not change the chunk size, but counts towards the
+     * overall throughput.
+     */
+    @Test
+    public void record_shortChunk_keepsChunkSize() {
+        AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(100, 1, 1000);
+        sizer.record(50, 1_000_000_000L);
+        assertEquals(100, sizer.getChunkSize());
+        assertEquals(50, sizer.getRowsPerSec());
+    }
+}
@@ -0,0 +1,193 @@
+package com.trillion.ip_rest_api.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.Environment;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * TDD style unit tests for BitmapIpAddressStore.
+ * <p>
+ * Note that I am not bothering to test the count, findBetween, or getRanges methods here, due to their simplicity.
+ */
+@ExtendWith(MockitoExtension.class)
+@Tag("store")
+public class BitmapIpAddressStoreTest {
+    /**
+     * Mock Environment instance to use when a test runs.
+     */
+    @Mock
+    private Environment env;
+
+    /**
+     * Mock JpaIpAddressStore instance to use when a test runs.
+     */
+    @Mock
+    private JpaIpAddressStore jpaStore;
+
+    /**
+     * BitmapIpAddressStore instance to use when a test runs (injected with mock JPA store).
+     */
+    @InjectMocks
+    private BitmapIpAddressStore store;
+
+    /**
+     * Internal utility to load our store from a mock DB containing the block 1.0.0.0/30, with 1.0.0.1 acquired.
+     *
+     * @param durability Durability mode to load the store with.
+     * @throws UnknownHostException Should not happen.
+     */
+    private void load(String durability) throws UnknownHostException {
+        Mockito.when(env.getProperty(IpRestApiApplication.BITMAP_DURABILITY, "sync")).thenReturn(durability);
+        Mockito.when(env.getProperty(IpRestApiApplication.BITMAP_FLUSH_BATCH_SIZE, "1000")).thenReturn("1000");
+        Mockito.when(jpaStore.getRanges()).
+            thenReturn(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        Mockito.doAnswer(invocation -> {
+            LongConsumer consumer = invocation.getArgument(0);
+            consumer.accept(16_777_217L);
+            return null;
+        }).when(jpaStore).forEachAcquired(Mockito.any());
+        store.load();
+    }
+
+    /* -------- tests for compareAndSet method -------- */
+
+    /**
+     * Tests method for acquiring an address outside the block.  Expected to report it not found.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void compareAndSet_notWithinBlock_returnsNotFound() throws UnknownHostException {
+        // setup test
+        load("sync");
+
+        // execute test and verify result
+        assertEquals(StateChange.NOT_FOUND, store.compareAndSet(16_777_220L, true));
+    }
+
+    /* -------- tests for findById method -------- */
+
+    /**
+     * Tests method for fetching addresses after loading from the DB.  Expected to reflect the acquired address, and
+     * to return an empty Optional for an address outside the block.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findById_afterLoad_reflectsDb() throws UnknownHostException {
+        // setup test
+        load("sync");
+
+        // execute test and verify result
+        assertEquals(Optional.of(new IpAddress(16_777_216L, false)), store.findById(16_777_216L));
+        assertEquals(Optional.of(new IpAddress(16_777_217L, true)), store.findById(16_777_217L));
+        assertTrue(store.findById(16_777_220L).isEmpty());
+    }
+
+    /* -------- tests for forEachRunBetween method -------- */
+
+    /**
+     * Tests method for streaming the runs of the block after loading from the DB.  Expected to pass the acquired
+     * address as a run of its own, between runs of available addresses.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachRunBetween_afterLoad_passesRuns() throws IOException {
+        // setup test
+        load("sync");
+
+        // execute test
+        List<String> runs = new ArrayList<>();
+        store.forEachRunBetween(16_777_216L, 16_777_219L, (startAddress, endAddress, acquired) -> 
+            runs.add(startAddress + "-" + endAddress + ":" + acquired));
+
+        // verify result
+        assertEquals(Arrays.asList("16777216-16777216:false", "16777217-16777217:true", "16777218-16777219:false"), 
+            runs);
+    }
+
+    /* -------- tests for save method -------- */
+
+    /**
+     * Tests method for saving an address with async durability.  Expected to update the in-memory state immediately,
+     * but only write to the DB on the next flush, and only once.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void save_async_writesOnFlush() throws UnknownHostException {
+        // setup test
+        load("async");
+        IpAddress ipAddress = new IpAddress(16_777_216L, true);
+
+        // execute test
+        store.save(ipAddress);
+
+        // verify result
+        assertEquals(Optional.of(ipAddress), store.findById(16_777_216L));
+        Mockito.verify(jpaStore, Mockito.never()).mergeAll(Mockito.anyList());
+        store.flush();
+        store.flush();
+        Mockito.verify(jpaStore, Mockito.times(1)).mergeAll(Collections.singletonList(ipAddress));
+    }
+
+    /**
+     * Tests method for saving an address outside every block.  Expected to throw an IllegalArgumentException.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void save_notWithinBlock_throwsIllegalArgument() throws UnknownHostException {
+        // setup test
+        load("sync");
+        IpAddress ipAddress = new IpAddress(16_777_220L, true);
+
+        // execute test
+        assertThrows(IllegalArgumentException.class, () -> {
+            store.save(ipAddress);
+        });
+    }
+
+    /**
+     * Tests method for saving an address with sync durability.  Expected to write it to the DB immediately, and
+     * update the in-memory state.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void save_sync_writesThrough() throws UnknownHostException {
+        // setup test
+        load("sync");
+        IpAddress ipAddress = new IpAddress(16_777_217L, false);
+
+        // execute test
+        store.save(ipAddress);
+
+        // verify result
+        Mockito.verify(jpaStore, Mockito.times(1)).mergeAll(Collections.singletonList(ipAddress));
+        assertEquals(Optional.of(ipAddress), store.findById(16_777_217L));
+    }
+}
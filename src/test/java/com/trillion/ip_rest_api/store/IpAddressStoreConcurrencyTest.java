@@ -0,0 +1,154 @@
+package com.trillion.ip_rest_api.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mockito;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Concurrency tests shared by the in-memory stores, each run against every store, so that they all meet the same 
+ * contract.  The check itself is also used by the JPA store's test against an embedded H2 DB.
+ */
+@Tag("store")
+public class IpAddressStoreConcurrencyTest {
+    /**
+     * Number of threads to contend for the same address.
+     */
+    private static final int THREADS = 16;
+
+    /**
+     * Temporary directory to hold the mmap store's files when a test runs.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * MappedIpAddressStore instance opened by a test (if any), to close after it.
+     */
+    private MappedIpAddressStore mappedStore;
+
+    /**
+     * Checks that when many threads flip the same address at once, exactly one of them reports it changed, and the 
+     * rest find it already changed, for each address within (inclusive) the specified range in turn.
+     *
+     * @param store IpAddressStore to check.
+     * @param startAddress First address to flip.
+     * @param endAddress Last address to flip.
+     * @throws Exception Thrown if the check fails to run.
+     */
+    static void assertConcurrentFlipsHaveOneWinner(IpAddressStore store, long startAddress, long endAddress) 
+        throws Exception 
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (long address = startAddress; address <= endAddress; address++) {
+                long contendedAddress = address;
+                boolean acquired = ! store.findById(address).get().isAcquired();
+                CountDownLatch startSignal = new CountDownLatch(1);
+                List<Future<StateChange>> futures = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    futures.add(executor.submit(() -> {
+                        startSignal.await();
+                        return store.compareAndSet(contendedAddress, acquired);
+                    }));
+                }
+
+                startSignal.countDown();
+                int winners = 0;
+                for (Future<StateChange> future : futures) {
+                    StateChange change = future.get(30, TimeUnit.SECONDS);
+                    if (change == StateChange.CHANGED) {
+                        winners++;
+                    } else {
+                        assertEquals(StateChange.ALREADY_IN_STATE, change);
+                    }
+                }
+
+                assertEquals(1, winners, "winners flipping address " + address + " to acquired=" + acquired);
+                assertEquals(Optional.of(new IpAddress(address, acquired)), store.findById(address));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Internal utility to create the specified kind of store, holding the block 1.0.0.0/30 with every address 
+     * available.  The bitmap store uses async durability over a mock JPA store, so that only its bitmap is contended.
+     *
+     * @param kind Kind of store to create ("bitmap" or "mmap").
+     * @return IpAddressStore created.
+     * @throws Exception Should not happen.
+     */
+    private IpAddressStore openStore(String kind) throws Exception {
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+        if ("bitmap".equals(kind)) {
+            JpaIpAddressStore jpaStore = Mockito.mock(JpaIpAddressStore.class);
+            Mockito.when(jpaStore.getRanges()).thenReturn(Arrays.asList(range));
+            BitmapIpAddressStore store = new BitmapIpAddressStore();
+            ReflectionTestUtils.setField(store, "env", 
+                new MockEnvironment().withProperty(IpRestApiApplication.BITMAP_DURABILITY, "async"));
+            ReflectionTestUtils.setField(store, "jpaStore", jpaStore);
+            store.load();
+            return store;
+        }
+        mappedStore = new MappedIpAddressStore();
+        ReflectionTestUtils.setField(mappedStore, "env", 
+            new MockEnvironment().withProperty(IpRestApiApplication.MMAP_DIRECTORY, directory.toString()));
+        mappedStore.open();
+        mappedStore.addRange(range);
+        return mappedStore;
+    }
+
+    /**
+     * Closes the mmap store after each test that opened one.
+     */
+    @AfterEach
+    public void tearDown() {
+        if (mappedStore != null) {
+            mappedStore.close();
+        }
+    }
+
+    /* -------- tests for compareAndSet method -------- */
+
+    /**
+     * Tests method for many threads flipping the same address at once, for each address in the block in turn, acquiring
+     * it and then releasing it again.  Expected to report exactly one of them as having changed each address each 
+     * time, and the rest as finding it already changed.
+     *
+     * @param kind Kind of store to test.
+     * @throws Exception Should not happen.
+     */
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = { "bitmap", "mmap" })
+    public void compareAndSet_concurrentFlips_exactlyOneWinner(String kind) throws Exception {
+        // setup test
+        IpAddressStore store = openStore(kind);
+
+        // execute test and verify result
+        assertConcurrentFlipsHaveOneWinner(store, 16_777_216L, 16_777_219L);
+        assertConcurrentFlipsHaveOneWinner(store, 16_777_216L, 16_777_219L);
+    }
+}
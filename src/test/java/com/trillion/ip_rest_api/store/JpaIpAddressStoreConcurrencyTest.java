@@ -0,0 +1,79 @@
+package com.trillion.ip_rest_api.store;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Concurrency tests for JpaIpAddressStore against an embedded H2 DB, so that the conditional update, the insert of an
+ * absent row, and the handling of the duplicate key that a racing insert hits, all run for real.
+ * <p>
+ * The tests do not run within a transaction of their own, so that each call to the store commits, and the threads 
+ * contend for the same rows as separate callers would.  The DB is emptied after each test instead.
+ */
+@DataJpaTest
+@Import(JpaIpAddressStore.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("store")
+public class JpaIpAddressStoreConcurrencyTest {
+    /**
+     * JpaIpAddressStore instance to test.
+     */
+    @Autowired
+    private JpaIpAddressStore store;
+
+    /**
+     * Deletes every block and address after each test, since nothing is rolled back.
+     */
+    @AfterEach
+    public void tearDown() {
+        store.deleteAll();
+    }
+
+    /* -------- tests for compareAndSet method -------- */
+
+    /**
+     * Tests method for many threads flipping the same address at once, for each address in a block that was not 
+     * materialized, acquiring it (so that the threads race to insert its row) and then releasing it again.  Expected 
+     * to report exactly one of them as having changed each address each time.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void compareAndSet_concurrentFlips_notMaterialized_exactlyOneWinner() throws Exception {
+        // setup test
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+
+        // execute test and verify result
+        IpAddressStoreConcurrencyTest.assertConcurrentFlipsHaveOneWinner(store, 16_777_216L, 16_777_219L);
+        IpAddressStoreConcurrencyTest.assertConcurrentFlipsHaveOneWinner(store, 16_777_216L, 16_777_219L);
+    }
+
+    /**
+     * Tests method for many threads flipping the same address at once, for each address in a block whose rows are all
+     * stored available, acquiring it and then releasing it again, so that only the conditional update runs.  Expected
+     * to report exactly one of them as having changed each address each time.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void compareAndSet_concurrentFlips_materialized_exactlyOneWinner() throws Exception {
+        // setup test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+        store.addRange(range);
+        store.saveRanges(Arrays.asList(range), false);
+
+        // execute test and verify result
+        IpAddressStoreConcurrencyTest.assertConcurrentFlipsHaveOneWinner(store, 16_777_216L, 16_777_219L);
+        IpAddressStoreConcurrencyTest.assertConcurrentFlipsHaveOneWinner(store, 16_777_216L, 16_777_219L);
+    }
+}
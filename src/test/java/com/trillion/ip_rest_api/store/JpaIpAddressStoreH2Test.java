@@ -0,0 +1,98 @@
+package com.trillion.ip_rest_api.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Tests for JpaIpAddressStore against an embedded H2 DB, for the merges over stored rows the mocked tests cannot check.
+ * <p>
+ * The tests do not run within a transaction of their own, so that each call to the store commits, and rows are read
+ * back from the DB rather than from a persistence context.  The DB is emptied after each test instead.
+ */
+@DataJpaTest
+@Import(JpaIpAddressStore.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("store")
+public class JpaIpAddressStoreH2Test {
+    /**
+     * JpaIpAddressStore instance to test.
+     */
+    @Autowired
+    private JpaIpAddressStore store;
+
+    /**
+     * Internal utility to add the block 1.0.0.0/30, and then acquire and release its first address, so that the row of
+     * that address has been updated since it was inserted.
+     *
+     * @throws Exception Should not happen.
+     */
+    private void addBlockAndTouchFirst() throws Exception {
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+        assertEquals(StateChange.CHANGED, store.compareAndSet(16_777_216L, true));
+        assertEquals(StateChange.CHANGED, store.compareAndSet(16_777_216L, false));
+    }
+
+    /**
+     * Deletes every block and address after each test, since nothing is rolled back.
+     */
+    @AfterEach
+    public void tearDown() {
+        store.deleteAll();
+    }
+
+    /* -------- tests for save method -------- */
+
+    /**
+     * Tests method for saving a new IpAddress instance over an address whose row has already been updated.  Expected
+     * to save its state, rather than fail on the row already being there.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void save_newInstanceOverTouchedAddress_savesState() throws Exception {
+        // setup test
+        addBlockAndTouchFirst();
+
+        // execute test
+        store.save(new IpAddress(16_777_216L, true));
+
+        // verify result
+        Optional<IpAddress> result = store.findById(16_777_216L);
+        assertEquals(true, result.get().isAcquired());
+    }
+
+    /* -------- tests for saveAll method -------- */
+
+    /**
+     * Tests method for saving new IpAddress instances over an address whose row has already been updated, and an
+     * address that has no row yet.  Expected to save the state of both.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void saveAll_newInstancesOverTouchedAndUntouched_savesStates() throws Exception {
+        // setup test
+        addBlockAndTouchFirst();
+
+        // execute test
+        store.saveAll(Arrays.asList(new IpAddress(16_777_216L, true), new IpAddress(16_777_217L, true)));
+
+        // verify result
+        assertEquals(true, store.findById(16_777_216L).get().isAcquired());
+        assertEquals(true, store.findById(16_777_217L).get().isAcquired());
+    }
+}
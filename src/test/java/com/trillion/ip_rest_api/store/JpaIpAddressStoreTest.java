@@ -0,0 +1,799 @@
+package com.trillion.ip_rest_api.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+import com.trillion.ip_rest_api.repository.IpAddressRangeRepository;
+import com.trillion.ip_rest_api.repository.IpAddressRepository;
+
+/**
+ * TDD style unit tests for JpaIpAddressStore.
+ * <p>
+ * Note that I am not bothering to test the count, deleteAll, getRanges, save, or saveAll methods here, since they
+ * simply delegate to the repositories or to mergeAll (which JpaIpAddressStoreH2Test runs against a real DB).
+ */
+@ExtendWith(MockitoExtension.class)
+@Tag("store")
+public class JpaIpAddressStoreTest {
+    /**
+     * Mock Environment instance to use when a test runs.
+     */
+    @Mock
+    private Environment env;
+
+    /**
+     * Mock JdbcTemplate instance to use when a test runs.
+     */
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Mock IpAddressRangeRepository instance to use when a test runs.
+     */
+    @Mock
+    private IpAddressRangeRepository rangeRepository;
+
+    /**
+     * Mock IpAddressRepository instance to use when a test runs.
+     */
+    @Mock
+    private IpAddressRepository repository;
+
+    /**
+     * Mock PlatformTransactionManager instance to use when a test runs.
+     */
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * JpaIpAddressStore instance to use when a test runs (injected with mock repositories).
+     */
+    @InjectMocks
+    private JpaIpAddressStore store;
+
+    /**
+     * Internal utility to mock the bounds of the materialize chunk size, with a single worker.
+     *
+     * @param min Min chunk size to mock.
+     * @param max Max chunk size to mock.
+     */
+    private void mockChunkSizeBounds(String min, String max) {
+        mockChunkSizeBounds(min, max, "1");
+    }
+
+    /**
+     * Internal utility to mock the bounds of the materialize chunk size, and the number of workers.
+     *
+     * @param min Min chunk size to mock.
+     * @param max Max chunk size to mock.
+     * @param parallelism Number of workers to mock.
+     */
+    private void mockChunkSizeBounds(String min, String max, String parallelism) {
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_PARALLELISM, "1")).thenReturn(parallelism);
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE_MIN, "1")).thenReturn(min);
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE_MAX, "1048576")).thenReturn(max);
+    }
+
+    /* -------- tests for addRange method -------- */
+
+    /**
+     * Tests method for adding a range of size 4 that is not materialized.  Expected to save the IpAddressRange, and
+     * never call saveAll.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_notMaterialized_savesRange_0CallsOnSaveAll() throws UnknownHostException {
+        // setup test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("false");
+
+        // execute test
+        store.addRange(range);
+
+        // verify result
+        Mockito.verify(rangeRepository, Mockito.times(1)).save(range);
+        Mockito.verify(repository, Mockito.never()).saveAll(Mockito.anyList());
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via JPA, with a batch size of 256.  Expected to
+     * call saveAll once to save all IpAddresses in the range.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedJpa_256BatchSize_1CallOnSaveAll() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("jpa");
+        Mockito.when(env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")).thenReturn("256");
+        mockChunkSizeBounds("1", "1048576");
+
+        // execute test
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+
+        // verify result
+        Mockito.verify(repository, Mockito.times(1)).saveAll(Mockito.anyList());
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via JPA, with a batch size of 1 and chunk size
+     * fixed at 1.  Expected to call saveAll 4 times.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedJpa_1BatchSize_4CallsOnSaveAll() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("jpa");
+        Mockito.when(env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")).thenReturn("1");
+        mockChunkSizeBounds("1", "1");
+
+        // execute test
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+
+        // verify result
+        Mockito.verify(repository, Mockito.times(4)).saveAll(Mockito.anyList());
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via JPA, with a batch size of 1 and chunk size
+     * fixed at 1.  Expected to save each chunk in a transaction of its own, committed before the next chunk is saved.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedJpa_1BatchSize_commitsEachChunk() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("jpa");
+        Mockito.when(env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")).thenReturn("1");
+        mockChunkSizeBounds("1", "1");
+
+        // execute test
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+
+        // verify result
+        InOrder inOrder = Mockito.inOrder(transactionManager, repository);
+        for (int i = 0; i < 4; i++) {
+            inOrder.verify(transactionManager).getTransaction(Mockito.any());
+            inOrder.verify(repository).saveAll(Mockito.anyList());
+            inOrder.verify(transactionManager).commit(Mockito.any());
+        }
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via JPA, with a batch size of 3 and chunk size
+     * fixed at 3.  Expected to call saveAll 2 times.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedJpa_3BatchSize_2CallsOnSaveAll() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("jpa");
+        Mockito.when(env.getProperty(IpRestApiApplication.JDBC_BATCH_SIZE, "1")).thenReturn("3");
+        mockChunkSizeBounds("3", "3");
+
+        // execute test
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+
+        // verify result
+        Mockito.verify(repository, Mockito.times(2)).saveAll(Mockito.anyList());
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via SQL, with an initial chunk size of 3.
+     * Expected to issue 2 set-based inserts covering the range (the second chunk growing past the end of the range),
+     * and never call saveAll.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedSql_3ChunkSize_2Inserts() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("sql");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE, "1048576")).thenReturn("3");
+        mockChunkSizeBounds("1", "1048576");
+
+        // execute test
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+
+        // verify result
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).update(Mockito.anyString(), Mockito.eq(16_777_216L),
+            Mockito.eq(16_777_218L));
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).update(Mockito.anyString(), Mockito.eq(16_777_219L),
+            Mockito.eq(16_777_219L));
+        Mockito.verify(repository, Mockito.never()).saveAll(Mockito.anyList());
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via SQL by 2 workers, with the chunk size fixed at
+     * 1.  Expected to issue a set-based insert for each address, between them, and save the IpAddressRange once.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedSql_2Workers_4Inserts() throws UnknownHostException {
+        // setup test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("sql");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE, "1048576")).thenReturn("1");
+        mockChunkSizeBounds("1", "1", "2");
+
+        // execute test
+        try {
+            store.addRange(range);
+        } finally {
+            store.stopWorkers();
+        }
+
+        // verify result
+        for (long address = 16_777_216L; address <= 16_777_219L; address++) {
+            Mockito.verify(jdbcTemplate, Mockito.times(1)).update(Mockito.startsWith("insert"), Mockito.eq(address), 
+                Mockito.eq(address));
+        }
+        Mockito.verify(rangeRepository, Mockito.times(1)).save(range);
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via SQL, with the number of workers configured as
+     * 0.  Expected to treat it as 1, and issue a single set-based insert from the calling thread.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedSql_0Workers_usesCallingThread() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("sql");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE, "1048576")).thenReturn("4");
+        mockChunkSizeBounds("1", "1048576", "0");
+
+        // execute test
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+
+        // verify result
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).update(Mockito.startsWith("insert"), Mockito.eq(16_777_216L), 
+            Mockito.eq(16_777_219L));
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via SQL.  Expected to publish the block by saving 
+     * the IpAddressRange only after staging its rows.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedSql_savesRangeAfterInserts() throws UnknownHostException {
+        // setup test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("sql");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE, "1048576")).thenReturn("4");
+        mockChunkSizeBounds("1", "1048576");
+
+        // execute test
+        store.addRange(range);
+
+        // verify result
+        InOrder inOrder = Mockito.inOrder(jdbcTemplate, rangeRepository);
+        inOrder.verify(jdbcTemplate).update(Mockito.startsWith("insert"), Mockito.eq(16_777_216L), 
+            Mockito.eq(16_777_219L));
+        inOrder.verify(rangeRepository).save(range);
+    }
+
+    /**
+     * Tests method for adding a range of size 4 that is materialized via SQL, where staging the rows fails.  Expected 
+     * to delete the staged rows, rethrow, and never save the IpAddressRange.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void addRangeOf4_materializedSqlFails_discardsStaged_neverSavesRange() throws UnknownHostException {
+        // setup test
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_219L);
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_BLOCKS, "false")).thenReturn("true");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_METHOD, "sql")).thenReturn("sql");
+        Mockito.when(env.getProperty(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE, "1048576")).thenReturn("4");
+        mockChunkSizeBounds("1", "1048576");
+        Mockito.lenient().when(jdbcTemplate.update(Mockito.startsWith("insert"), Mockito.anyLong(), Mockito.anyLong())).
+            thenThrow(new IllegalStateException("boom"));
+
+        // execute test
+        assertThrows(IllegalStateException.class, () -> {
+            store.addRange(range);
+        });
+
+        // verify result
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).update(Mockito.startsWith("delete"), Mockito.eq(16_777_216L), 
+            Mockito.eq(16_777_219L));
+        Mockito.verify(rangeRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    /* -------- tests for compareAndSet method -------- */
+
+    /**
+     * Tests method for acquiring an address whose stored row is available.  Expected to report it changed on the 
+     * strength of the conditional update alone, without reading anything.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void compareAndSet_storedAvailable_oneUpdate_returnsChanged() throws UnknownHostException {
+        // setup test
+        Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.eq(true), Mockito.eq(16_777_216L), 
+            Mockito.eq(false), Mockito.eq(16_777_216L))).thenReturn(1);
+
+        // execute test
+        StateChange result = store.compareAndSet(16_777_216L, true);
+
+        // verify result
+        assertEquals(StateChange.CHANGED, result);
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).update(Mockito.anyString(), (Object[])Mockito.any());
+        Mockito.verifyNoInteractions(repository, rangeRepository);
+    }
+
+    /**
+     * Tests method for acquiring an address whose stored row is already acquired.  Expected to update nothing, insert
+     * nothing, and report it already in that state.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void compareAndSet_storedAcquired_returnsAlreadyInState() throws UnknownHostException {
+        // setup test
+        Mockito.when(repository.findById(16_777_216L)).thenReturn(Optional.of(new IpAddress(16_777_216L, true)));
+
+        // execute test
+        StateChange result = store.compareAndSet(16_777_216L, true);
+
+        // verify result
+        assertEquals(StateChange.ALREADY_IN_STATE, result);
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).update(Mockito.anyString(), (Object[])Mockito.any());
+    }
+
+    /**
+     * Tests method for acquiring an address with no stored row, within a range.  Expected to report it changed by the
+     * conditional insert.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void compareAndSet_notStoredWithinRange_insertsAndReturnsChanged() throws UnknownHostException {
+        // setup test
+        Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.eq(true), Mockito.eq(16_777_216L), 
+            Mockito.eq(false), Mockito.eq(16_777_216L))).thenReturn(0);
+        Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.eq(16_777_216L), Mockito.eq(16_777_216L), 
+            Mockito.eq(16_777_216L))).thenReturn(1);
+
+        // execute test
+        StateChange result = store.compareAndSet(16_777_216L, true);
+
+        // verify result
+        assertEquals(StateChange.CHANGED, result);
+        Mockito.verifyNoInteractions(repository, rangeRepository);
+    }
+
+    /**
+     * Tests method for releasing an address that is not within any range.  Expected to insert nothing, and report it 
+     * not found.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void compareAndSet_releaseNotWithinRange_returnsNotFound() throws UnknownHostException {
+        // setup test
+        Mockito.when(repository.findById(16_777_216L)).thenReturn(Optional.empty());
+        Mockito.when(rangeRepository.findContaining(16_777_216L)).thenReturn(Optional.empty());
+
+        // execute test
+        StateChange result = store.compareAndSet(16_777_216L, false);
+
+        // verify result
+        assertEquals(StateChange.NOT_FOUND, result);
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).update(Mockito.anyString(), (Object[])Mockito.any());
+    }
+
+    /* -------- tests for findBetween method -------- */
+
+    /**
+     * Tests method for fetching a span of 3 addresses, where the middle one has a stored IpAddress.  Expected to return
+     * the stored IpAddress in the middle, with available IpAddresses either side.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findBetween_oneStored_returnsStoredAndAvailable() throws UnknownHostException {
+        // setup test
+        Mockito.when(repository.findByAddressBetweenOrderByAddressAsc(16_777_216L, 16_777_218L)).
+            thenReturn(Arrays.asList(new IpAddress(16_777_217L, true)));
+
+        // execute test
+        List<IpAddress> result = store.findBetween(16_777_216L, 16_777_218L);
+
+        // verify result
+        List<IpAddress> expected = Arrays.asList(
+            new IpAddress(16_777_216L, false),
+            new IpAddress(16_777_217L, true),
+            new IpAddress(16_777_218L, false)
+        );
+        assertEquals(expected, result);
+    }
+
+    /* -------- tests for forEachBetween method -------- */
+
+    /**
+     * Tests method for streaming a span of 3 addresses, where the middle one has a stored row.  Expected to pass the
+     * stored state in the middle, with available states either side, in ascending order.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void forEachBetween_oneStored_passesStoredAndAvailable() throws Exception {
+        // setup test
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(resultSet.getLong(1)).thenReturn(16_777_217L);
+        Mockito.when(resultSet.getBoolean(2)).thenReturn(true);
+        Mockito.doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(Mockito.any(PreparedStatementCreator.class), Mockito.any(RowCallbackHandler.class));
+
+        // execute test
+        List<IpAddress> result = new ArrayList<>();
+        store.forEachBetween(16_777_216L, 16_777_218L, (address, acquired) -> result.add(new IpAddress(address, 
+            acquired)));
+
+        // verify result
+        List<IpAddress> expected = Arrays.asList(
+            new IpAddress(16_777_216L, false),
+            new IpAddress(16_777_217L, true),
+            new IpAddress(16_777_218L, false)
+        );
+        assertEquals(expected, result);
+        Mockito.verify(repository, Mockito.never()).findByAddressBetweenOrderByAddressAsc(Mockito.anyLong(), 
+            Mockito.anyLong());
+    }
+
+    /**
+     * Tests method for streaming a span to a consumer that fails on the stored row.  Expected to rethrow the
+     * consumer's IOException itself.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void forEachBetween_consumerFails_throwsIOException() throws Exception {
+        // setup test
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(resultSet.getLong(1)).thenReturn(16_777_216L);
+        Mockito.doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(Mockito.any(PreparedStatementCreator.class), Mockito.any(RowCallbackHandler.class));
+
+        // execute test and verify result
+        assertThrows(IOException.class, () -> {
+            store.forEachBetween(16_777_216L, 16_777_218L, (address, acquired) -> { 
+                throw new IOException("broken pipe"); 
+            });
+        });
+    }
+
+    /* -------- tests for forEachRunBetween method -------- */
+
+    /**
+     * Tests method for streaming the runs of a span of 5 addresses, where the middle two have acquired rows.  Expected 
+     * to pass the acquired rows as one run, between runs of available addresses, reading only the acquired rows.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void forEachRunBetween_twoAcquired_passesRuns() throws Exception {
+        // setup test
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(resultSet.getLong(1)).thenReturn(16_777_217L, 16_777_218L);
+        Mockito.when(resultSet.getBoolean(2)).thenReturn(true);
+        Mockito.doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(Mockito.any(PreparedStatementCreator.class), Mockito.any(RowCallbackHandler.class));
+
+        // execute test
+        List<String> runs = new ArrayList<>();
+        store.forEachRunBetween(16_777_216L, 16_777_220L, (startAddress, endAddress, acquired) -> 
+            runs.add(startAddress + "-" + endAddress + ":" + acquired));
+
+        // verify result
+        assertEquals(Arrays.asList("16777216-16777216:false", "16777217-16777218:true", "16777219-16777220:false"), 
+            runs);
+    }
+
+    /* -------- tests for findById method -------- */
+
+    /**
+     * Tests method for fetching an address that has no IpAddress stored, and is not within any range.  Expected to
+     * return an empty Optional.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findById_notStoredNotWithinRange_returnEmptyOptional() throws UnknownHostException {
+        // setup test
+        Mockito.when(repository.findById(16_777_216L)).thenReturn(Optional.empty());
+        Mockito.when(rangeRepository.findContaining(16_777_216L)).thenReturn(Optional.empty());
+
+        // execute test
+        Optional<IpAddress> result = store.findById(16_777_216L);
+
+        // verify result
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+    }
+
+    /**
+     * Tests method for fetching an address that has no IpAddress stored, but is within an existing range.  Expected to
+     * return an Optional populated with an available IpAddress.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findById_notStoredWithinRange_returnAvailableOptional() throws UnknownHostException {
+        // setup test
+        Mockito.when(repository.findById(16_777_216L)).thenReturn(Optional.empty());
+        Mockito.when(rangeRepository.findContaining(16_777_216L)).
+            thenReturn(Optional.of(new IpAddressRange(16_777_216L, 16_777_219L)));
+
+        // execute test
+        Optional<IpAddress> result = store.findById(16_777_216L);
+
+        // verify result
+        assertNotNull(result);
+        assertEquals(new IpAddress(16_777_216L, false), result.get());
+    }
+
+    /**
+     * Tests method for fetching an address that has an available IpAddress stored, but is not within any range (i.e.
+     * it is staged for a block not yet published).  Expected to return an empty Optional.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findById_storedAvailableNotWithinRange_returnEmptyOptional() throws UnknownHostException {
+        // setup test
+        Mockito.when(repository.findById(16_777_216L)).thenReturn(Optional.of(new IpAddress(16_777_216L, false)));
+        Mockito.when(rangeRepository.findContaining(16_777_216L)).thenReturn(Optional.empty());
+
+        // execute test
+        Optional<IpAddress> result = store.findById(16_777_216L);
+
+        // verify result
+        assertNotNull(result);
+        assertTrue(result.isEmpty());
+    }
+
+    /**
+     * Tests method for fetching an address that has an acquired IpAddress stored.  Expected to return an Optional 
+     * populated with the stored IpAddress, without consulting the ranges.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findById_stored_returnStoredOptional() throws UnknownHostException {
+        // setup test
+        IpAddress ipAddress = new IpAddress(16_777_216L, true);
+        Mockito.when(repository.findById(16_777_216L)).thenReturn(Optional.of(ipAddress));
+
+        // execute test
+        Optional<IpAddress> result = store.findById(16_777_216L);
+
+        // verify result
+        assertNotNull(result);
+        assertEquals(ipAddress, result.get());
+        Mockito.verify(rangeRepository, Mockito.never()).findContaining(Mockito.anyLong());
+    }
+
+    /* -------- tests for migrateLegacyRows method -------- */
+
+    /**
+     * Tests method for migrating when ranges already exist.  Expected to drop the legacy version column, and leave the
+     * ranges alone.
+     */
+    @Test
+    public void migrateLegacyRows_rangesExist_savesNothing() {
+        // setup test
+        Mockito.when(rangeRepository.count()).thenReturn(1L);
+
+        // execute test
+        store.migrateLegacyRows();
+
+        // verify result
+        Mockito.verify(rangeRepository, Mockito.never()).saveAll(Mockito.anyList());
+        Mockito.verify(jdbcTemplate, Mockito.times(1)).execute("alter table ip_address drop column if exists version");
+        Mockito.verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    /**
+     * Tests method for migrating 2 runs of stored rows (1.0.0.0 to 1.0.0.5, and 2.0.0.0 alone) when no ranges exist.
+     * Expected to save the fewest aligned CIDR blocks covering each run, in ascending order.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void migrateLegacyRows_2Runs_noRanges_savesAlignedBlocks() throws UnknownHostException {
+        // setup test
+        Mockito.when(rangeRepository.count()).thenReturn(0L);
+        Mockito.when(repository.count()).thenReturn(7L);
+        Mockito.when(jdbcTemplate.query(Mockito.anyString(), Mockito.<RowMapper<long[]>>any())).thenReturn(
+            Arrays.asList(new long[] {16_777_216L, 16_777_221L}, new long[] {33_554_432L, 33_554_432L}));
+
+        // execute test
+        store.migrateLegacyRows();
+
+        // verify result
+        Mockito.verify(rangeRepository, Mockito.times(1)).saveAll(Arrays.asList(
+            new IpAddressRange(16_777_216L, 16_777_219L), new IpAddressRange(16_777_220L, 16_777_221L),
+            new IpAddressRange(33_554_432L, 33_554_432L)));
+    }
+
+    /* -------- tests for saveRanges method -------- */
+
+    /**
+     * Tests method for saving ranges holding more addresses than the batch chunk size of 4.  Expected to split them 
+     * into chunks of at most 4 addresses, splitting a range across chunks where needed, and send each chunk as its own
+     * JDBC batch of one merge per piece of a range.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void saveRanges_moreThanChunkSize_mergesEachChunkAsOwnBatch() throws UnknownHostException {
+        // setup test
+        Mockito.when(env.getProperty(IpRestApiApplication.BATCH_CHUNK_SIZE, "1000")).thenReturn("4");
+        List<List<String>> batches = new ArrayList<>();
+        Mockito.when(jdbcTemplate.batchUpdate(Mockito.startsWith("merge"), Mockito.<List<long[]>>any(), 
+            Mockito.anyInt(), Mockito.<ParameterizedPreparedStatementSetter<long[]>>any())).thenAnswer(invocation -> {
+                List<String> batch = new ArrayList<>();
+                for (long[] range : invocation.<List<long[]>>getArgument(1)) {
+                    batch.add(range[0] + "-" + range[1]);
+                }
+                batches.add(batch);
+                return new int[0][];
+            });
+
+        // execute test
+        store.saveRanges(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_218L), 
+            new IpAddressRange(16_777_224L, 16_777_229L)), true);
+
+        // verify result
+        assertEquals(Arrays.asList(Arrays.asList("16777216-16777218", "16777224-16777224"), 
+            Arrays.asList("16777225-16777228"), Arrays.asList("16777229-16777229")), batches);
+    }
+
+    /* -------- tests for saveStates method -------- */
+
+    /**
+     * Internal utility to mock the ranges (just 1.0.0.0/30) and the stored rows fetched for each chunk passed to 
+     * saveStates, with 1.0.0.0 being stored available.
+     *
+     * @param chunkSize Chunk size to mock.
+     * @param storedAcquired Acquired flag of 1.0.0.0 to return for each chunk in turn.
+     * @throws Exception Should not happen.
+     */
+    private void mockSaveStatesQueries(String chunkSize, Boolean... storedAcquired) throws Exception {
+        Mockito.when(env.getProperty(IpRestApiApplication.BATCH_CHUNK_SIZE, "1000")).thenReturn(chunkSize);
+        Mockito.when(rangeRepository.findAllByOrderByStartAddressAsc()).thenReturn(
+            Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L)));
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(resultSet.getLong(1)).thenReturn(16_777_216L);
+        Mockito.when(resultSet.getBoolean(2)).thenReturn(storedAcquired[0], 
+            Arrays.copyOfRange(storedAcquired, 1, storedAcquired.length));
+        Mockito.doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(Mockito.anyString(), Mockito.any(RowCallbackHandler.class), 
+            (Object[])Mockito.any());
+    }
+
+    /**
+     * Internal utility to mock the counts of rows changed by the batch of the specified statement type for the
+     * specified addresses, one count per address.
+     *
+     * @param sqlPrefix Start of the statement (i.e. "insert" or "update").
+     * @param addresses Long addresses that the batch is for.
+     * @param counts Counts of rows changed to return, one per address.
+     */
+    private void mockBatchCounts(String sqlPrefix, List<Long> addresses, int... counts) {
+        Mockito.when(jdbcTemplate.batchUpdate(Mockito.startsWith(sqlPrefix), Mockito.eq(addresses), 
+            Mockito.eq(addresses.size()), Mockito.<ParameterizedPreparedStatementSetter<Long>>any())).
+            thenReturn(new int[][] { counts });
+    }
+
+    /**
+     * Tests method for acquiring 4 addresses in chunks of 3: one stored available, one within a range but not stored, 
+     * one not within any range, and the first again (now stored acquired).  Expected to report each outcome in order, 
+     * updating the stored row and inserting the row that was not stored, in one conditional batch each.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void saveStates_mixed_3ChunkSize_reportsOutcomesInOrder() throws Exception {
+        // setup test
+        mockSaveStatesQueries("3", false, true);
+        mockBatchCounts("insert", Arrays.asList(16_777_217L), 1);
+        mockBatchCounts("update", Arrays.asList(16_777_216L), 1);
+
+        // execute test
+        StateChange[] changes = store.saveStates(new long[] { 16_777_216L, 16_777_217L, 33_554_432L, 16_777_216L }, 
+            true);
+
+        // verify result
+        assertEquals(Arrays.asList(StateChange.CHANGED, StateChange.CHANGED, StateChange.NOT_FOUND, 
+            StateChange.ALREADY_IN_STATE), Arrays.asList(changes));
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).query(Mockito.anyString(), Mockito.any(RowCallbackHandler.class),
+            (Object[])Mockito.any());
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).batchUpdate(Mockito.anyString(), Mockito.anyList(), 
+            Mockito.anyInt(), Mockito.<ParameterizedPreparedStatementSetter<Long>>any());
+        Mockito.verify(jdbcTemplate, Mockito.never()).update(Mockito.anyString(), (Object[])Mockito.any());
+    }
+
+    /**
+     * Tests method for acquiring 2 addresses that were both changed concurrently after the query: the stored one was
+     * acquired, and the absent one was inserted available.  Expected to report the stored one already acquired, since
+     * its conditional update changed nothing, and to fall back to a conditional update for the absent one, reporting
+     * it changed since that update did change it.
+     *
+     * @throws Exception Should not happen.
+     */
+    @Test
+    public void saveStates_concurrentChanges_reportsOnlyRowsChanged() throws Exception {
+        // setup test
+        mockSaveStatesQueries("1000", false);
+        mockBatchCounts("insert", Arrays.asList(16_777_217L), 0);
+        mockBatchCounts("update", Arrays.asList(16_777_216L, 16_777_217L), 0, 1);
+
+        // execute test
+        StateChange[] changes = store.saveStates(new long[] { 16_777_216L, 16_777_217L }, true);
+
+        // verify result
+        assertEquals(Arrays.asList(StateChange.ALREADY_IN_STATE, StateChange.CHANGED), Arrays.asList(changes));
+    }
+}
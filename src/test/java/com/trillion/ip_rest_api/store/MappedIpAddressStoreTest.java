@@ -0,0 +1,234 @@
+package com.trillion.ip_rest_api.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.Environment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddress;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * TDD style unit tests for MappedIpAddressStore, run against real mapped files in a temporary directory.
+ * <p>
+ * Note that I am not bothering to test the count or getRanges methods here, due to their simplicity.
+ */
+@ExtendWith(MockitoExtension.class)
+@Tag("store")
+public class MappedIpAddressStoreTest {
+    /**
+     * Temporary directory to hold the store's files when a test runs.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Mock Environment instance to use when a test runs.
+     */
+    @Mock
+    private Environment env;
+
+    /**
+     * MappedIpAddressStore instance to use when a test runs (injected with mock Environment).
+     */
+    @InjectMocks
+    private MappedIpAddressStore store;
+
+    /**
+     * Opens our store on the temporary directory, and adds the block 1.0.0.0/30 to it.
+     *
+     * @throws IOException Should not happen.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        Mockito.when(env.getProperty(Mockito.eq(IpRestApiApplication.MMAP_DIRECTORY), Mockito.anyString())).
+            thenReturn(directory.toString());
+        store.open();
+        store.addRange(new IpAddressRange(16_777_216L, 16_777_219L));
+    }
+
+    /**
+     * Closes our store after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        store.close();
+    }
+
+    /* -------- tests for compareAndSet method -------- */
+
+    /**
+     * Tests method for acquiring an address outside the block.  Expected to report it not found.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void compareAndSet_notWithinBlock_returnsNotFound() throws UnknownHostException {
+        // execute test and verify result
+        assertEquals(StateChange.NOT_FOUND, store.compareAndSet(16_777_220L, true));
+    }
+
+    /* -------- tests for deleteAll method -------- */
+
+    /**
+     * Tests method after acquiring an address.  Expected to leave no blocks, and no addresses.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void deleteAll_acquired_removesEverything() throws UnknownHostException {
+        // setup test
+        store.save(new IpAddress(16_777_217L, true));
+
+        // execute test
+        store.deleteAll();
+
+        // verify result
+        assertTrue(store.getRanges().isEmpty());
+        assertTrue(store.findById(16_777_217L).isEmpty());
+    }
+
+    /* -------- tests for findBetween method -------- */
+
+    /**
+     * Tests method for fetching the whole block after acquiring one address.  Expected to reflect the acquired address.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findBetween_oneAcquired_reflectsState() throws UnknownHostException {
+        // setup test
+        store.save(new IpAddress(16_777_218L, true));
+
+        // execute test and verify result
+        assertEquals(Arrays.asList(
+            new IpAddress(16_777_216L, false),
+            new IpAddress(16_777_217L, false),
+            new IpAddress(16_777_218L, true),
+            new IpAddress(16_777_219L, false)
+        ), store.findBetween(16_777_216L, 16_777_219L));
+    }
+
+    /* -------- tests for forEachRunBetween method -------- */
+
+    /**
+     * Tests method for streaming the runs of a /24 block with two adjoining addresses acquired part way through the 
+     * second of its words.  Expected to pass the acquired addresses as one run, between runs of available addresses.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void forEachRunBetween_twoAcquired_passesRuns() throws IOException {
+        // setup test
+        store.addRange(new IpAddressRange(33_554_432L, 33_554_687L));
+        store.save(new IpAddress(33_554_500L, true));
+        store.save(new IpAddress(33_554_501L, true));
+
+        // execute test
+        List<String> runs = new ArrayList<>();
+        store.forEachRunBetween(33_554_432L, 33_554_687L, (startAddress, endAddress, acquired) -> 
+            runs.add(startAddress + "-" + endAddress + ":" + acquired));
+
+        // verify result
+        assertEquals(Arrays.asList("33554432-33554499:false", "33554500-33554501:true", "33554502-33554687:false"), 
+            runs);
+    }
+
+    /* -------- tests for findById method -------- */
+
+    /**
+     * Tests method for addresses either side of the block.  Expected to return an empty Optional.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void findById_notWithinBlock_returnsEmptyOptional() throws UnknownHostException {
+        // execute test and verify result
+        assertTrue(store.findById(16_777_215L).isEmpty());
+        assertTrue(store.findById(16_777_220L).isEmpty());
+    }
+
+    /* -------- tests for open method -------- */
+
+    /**
+     * Tests method for reopening the store after adding a second block and acquiring addresses.  Expected to restore
+     * both blocks and the state of every address.
+     *
+     * @throws IOException Should not happen.
+     */
+    @Test
+    public void open_afterChanges_restoresState() throws IOException {
+        // setup test
+        IpAddressRange topRange = new IpAddressRange(4_294_967_292L, 4_294_967_295L);
+        store.addRange(topRange);
+        store.saveAll(Arrays.asList(new IpAddress(16_777_216L, true), new IpAddress(4_294_967_295L, true)));
+        store.close();
+
+        // execute test
+        MappedIpAddressStore reopened = new MappedIpAddressStore();
+        ReflectionTestUtils.setField(reopened, "env", env);
+        reopened.open();
+
+        // verify result
+        assertEquals(Arrays.asList(new IpAddressRange(16_777_216L, 16_777_219L), topRange), reopened.getRanges());
+        assertEquals(Optional.of(new IpAddress(16_777_216L, true)), reopened.findById(16_777_216L));
+        assertEquals(Optional.of(new IpAddress(16_777_217L, false)), reopened.findById(16_777_217L));
+        assertEquals(Optional.of(new IpAddress(4_294_967_295L, true)), reopened.findById(4_294_967_295L));
+        reopened.close();
+    }
+
+    /* -------- tests for save method -------- */
+
+    /**
+     * Tests method for acquiring then releasing an address.  Expected to reflect each change.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void save_acquireThenRelease_reflectsState() throws UnknownHostException {
+        // execute test and verify result
+        store.save(new IpAddress(16_777_216L, true));
+        assertTrue(store.findById(16_777_216L).get().isAcquired());
+        store.save(new IpAddress(16_777_216L, false));
+        assertFalse(store.findById(16_777_216L).get().isAcquired());
+    }
+
+    /**
+     * Tests method for saving an address outside every block.  Expected to throw an IllegalArgumentException.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void save_notWithinBlock_throwsIllegalArgument() throws UnknownHostException {
+        // setup test
+        IpAddress ipAddress = new IpAddress(16_777_220L, true);
+
+        // execute test
+        assertThrows(IllegalArgumentException.class, () -> {
+            store.saveAll(Collections.singletonList(ipAddress));
+        });
+    }
+}
@@ -0,0 +1,136 @@
+package com.trillion.ip_rest_api.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.trillion.ip_rest_api.IpRestApiApplication;
+import com.trillion.ip_rest_api.model.IpAddressRange;
+
+/**
+ * Benchmarks for materializing CIDR blocks via JpaIpAddressStore, comparing the "sql" and "jpa" methods for blocks of
+ * various sizes, and the scaling of the "sql" method with the number of workers, against an in-memory H2 DB.  Each run
+ * logs the rows/sec achieved.
+ * <p>
+ * These are tagged "benchmark", so are excluded from the test task, and are run via the benchmark task instead.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    IpRestApiApplication.STORE + "=jpa",
+    IpRestApiApplication.MATERIALIZE_BLOCKS + "=true"
+})
+@Tag("benchmark")
+public class MaterializeBenchmarkTest {
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaterializeBenchmarkTest.class);
+
+    /**
+     * Environment to select the materialize method in.
+     */
+    @Autowired
+    private ConfigurableEnvironment env;
+
+    /**
+     * Used to count the rows materialized.
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * JpaIpAddressStore instance to benchmark.
+     */
+    @Autowired
+    private JpaIpAddressStore store;
+
+    /**
+     * Materializes a block of the specified size with the specified method, and logs the rows/sec achieved.
+     *
+     * @param method Materialize method to use ("sql" or "jpa").
+     * @param cidrMask CIDR mask of the block to materialize.
+     * @throws UnknownHostException Should not happen.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "sql, 24",
+        "sql, 16",
+        "sql, 12",
+        "jpa, 24",
+        "jpa, 16",
+        "jpa, 12"
+    })
+    public void addRange_materialized(String method, int cidrMask) throws UnknownHostException {
+        // setup test
+        store.deleteAll();
+        Map<String, Object> props = new HashMap<>();
+        props.put(IpRestApiApplication.MATERIALIZE_METHOD, method);
+        props.put(IpRestApiApplication.MATERIALIZE_PARALLELISM, "1");
+        env.getPropertySources().addFirst(new MapPropertySource("benchmark", props));
+        long size = 1L << (32 - cidrMask);
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_216L + size - 1);
+
+        // execute test
+        long startNanos = System.nanoTime();
+        store.addRange(range);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // verify result
+        assertEquals(size, jdbcTemplate.queryForObject("select count(*) from ip_address", Long.class));
+        LOGGER.info("materialized /{} via {}: {} rows in {} ms ({} rows/sec)", cidrMask, method, size,
+            elapsedNanos / 1_000_000, size * 1_000_000_000 / elapsedNanos);
+        env.getPropertySources().remove("benchmark");
+    }
+
+    /**
+     * Materializes a /12 block via the "sql" method with the specified number of workers, and logs the rows/sec
+     * achieved, along with the number of cores available.
+     *
+     * @param parallelism Number of workers to use.
+     * @throws UnknownHostException Should not happen.
+     */
+    @ParameterizedTest
+    @CsvSource({
+        "1",
+        "2",
+        "4",
+        "8"
+    })
+    public void addRange_materializedInParallel(int parallelism) throws UnknownHostException {
+        // setup test
+        store.deleteAll();
+        Map<String, Object> props = new HashMap<>();
+        props.put(IpRestApiApplication.MATERIALIZE_METHOD, "sql");
+        props.put(IpRestApiApplication.MATERIALIZE_PARALLELISM, String.valueOf(parallelism));
+        props.put(IpRestApiApplication.MATERIALIZE_CHUNK_SIZE, "65536");
+        env.getPropertySources().addFirst(new MapPropertySource("benchmark", props));
+        long size = 1L << 20;
+        IpAddressRange range = new IpAddressRange(16_777_216L, 16_777_216L + size - 1);
+
+        // execute test
+        long startNanos = System.nanoTime();
+        store.addRange(range);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // verify result
+        assertEquals(size, jdbcTemplate.queryForObject("select count(*) from ip_address", Long.class));
+        LOGGER.info("materialized /12 with {} workers on {} cores: {} rows in {} ms ({} rows/sec)", parallelism,
+            Runtime.getRuntime().availableProcessors(), size, elapsedNanos / 1_000_000,
+            size * 1_000_000_000 / elapsedNanos);
+        env.getPropertySources().remove("benchmark");
+    }
+}
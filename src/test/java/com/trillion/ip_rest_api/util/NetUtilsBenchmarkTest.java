@@ -0,0 +1,177 @@
+package com.trillion.ip_rest_api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.apache.commons.validator.routines.InetAddressValidator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark for parsing and formatting dotted decimal addresses, comparing the single pass parser and table driven
+ * formatter in NetUtils against the validator and InetAddress based conversions they replaced.  Each comparison warms
+ * up both implementations before timing them over the same addresses, and logs the nanoseconds per address of each.
+ * <p>
+ * This is tagged "benchmark", so is excluded from the test task, and is run via the benchmark task instead.
+ */
+@Tag("benchmark")
+public class NetUtilsBenchmarkTest {
+    /**
+     * Logger specific to this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(NetUtilsBenchmarkTest.class);
+
+    /**
+     * Number of distinct addresses converted per round.
+     */
+    private static final int ADDRESSES = 1 << 16;
+
+    /**
+     * Number of rounds over the addresses timed, after as many rounds of warm up.
+     */
+    private static final int ROUNDS = 20;
+
+    /**
+     * Internal utility to create the addresses converted, spread across the whole address space.
+     *
+     * @return Array of long addresses.
+     */
+    private static long[] longAddresses() {
+        long[] addresses = new long[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            addresses[i] = (i * 0x9E3779B1L) & NetUtils.MAX_LONG_ADDRESS;
+        }
+        return addresses;
+    }
+
+    /**
+     * Internal utility to log the nanoseconds per address of the previous and current implementations.
+     *
+     * @param operation Name of the operation compared.
+     * @param previousNanos Total nanoseconds taken by the previous implementation.
+     * @param currentNanos Total nanoseconds taken by the current implementation.
+     */
+    private static void logComparison(String operation, long previousNanos, long currentNanos) {
+        long conversions = (long)ADDRESSES * ROUNDS;
+        LOGGER.info("{} over {} addresses: previous {} ns/address, current {} ns/address ({}x)", operation,
+            conversions, previousNanos / conversions, currentNanos / conversions,
+            String.format("%.1f", (double)previousNanos / currentNanos));
+    }
+
+    /**
+     * Internal utility reproducing the previous parser, which validated via the commons validator and then converted
+     * via InetAddress.
+     *
+     * @param dottedDecimalAddress Dotted decimal string address to convert.
+     * @return Long version of input address.
+     * @throws UnknownHostException Thrown if unable to parse input address successfully.
+     */
+    private static long previousConvertDottedDecimalToLong(String dottedDecimalAddress) throws UnknownHostException {
+        if (! InetAddressValidator.getInstance().isValidInet4Address(dottedDecimalAddress)) {
+            throw new UnknownHostException(dottedDecimalAddress + " is not a valid IPv4 dotted decimal address");
+        }
+        byte[] bytes = InetAddress.getByName(dottedDecimalAddress).getAddress();
+        long address = bytes[3] & 0xFF;
+        address |= ((((long)bytes[2] & 0xFF) << 8) & 0xFF00);
+        address |= ((((long)bytes[1] & 0xFF) << 16) & 0xFF0000);
+        address |= ((((long)bytes[0] & 0xFF) << 24) & 0xFF000000);
+        return address;
+    }
+
+    /**
+     * Internal utility reproducing the previous formatter, which converted via a byte array and InetAddress.
+     *
+     * @param longAddress Long address to convert.
+     * @return Dotted decimal version of input address.
+     * @throws UnknownHostException Thrown if unable to convert input address successfully.
+     */
+    private static String previousConvertLongToDottedDecimal(long longAddress) throws UnknownHostException {
+        NetUtils.assertValidLong(longAddress);
+        byte[] bytes = new byte[4];
+        bytes[3] = (byte)(longAddress & 0xFF);
+        bytes[2] = (byte)((longAddress & 0xFF00) >> 8);
+        bytes[1] = (byte)((longAddress & 0xFF0000) >> 16);
+        bytes[0] = (byte)((longAddress & 0xFF000000) >> 24);
+        return InetAddress.getByAddress(bytes).getHostAddress();
+    }
+
+    /**
+     * Compares parsing dotted decimal addresses via the previous and current implementations, checking that both agree.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void convertDottedDecimalToLong_previousVsCurrent() throws UnknownHostException {
+        // setup test
+        long[] addresses = longAddresses();
+        String[] dottedDecimals = new String[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            dottedDecimals[i] = NetUtils.convertLongToDottedDecimal(addresses[i]);
+        }
+
+        // execute test
+        long previousSum = 0;
+        long currentSum = 0;
+        long previousNanos = 0;
+        long currentNanos = 0;
+        for (int round = -ROUNDS; round < ROUNDS; round++) {
+            long startNanos = System.nanoTime();
+            for (String dottedDecimal : dottedDecimals) {
+                previousSum += previousConvertDottedDecimalToLong(dottedDecimal);
+            }
+            long midNanos = System.nanoTime();
+            for (String dottedDecimal : dottedDecimals) {
+                currentSum += NetUtils.convertDottedDecimalToLong(dottedDecimal);
+            }
+            if (round >= 0) {
+                previousNanos += midNanos - startNanos;
+                currentNanos += System.nanoTime() - midNanos;
+            }
+        }
+
+        // verify result
+        assertEquals(previousSum, currentSum);
+        logComparison("convertDottedDecimalToLong", previousNanos, currentNanos);
+    }
+
+    /**
+     * Compares formatting long addresses via the previous implementation, and via the current one writing into a
+     * reused buffer, checking that both agree.
+     *
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void writeDottedDecimal_previousVsCurrent() throws UnknownHostException {
+        // setup test
+        long[] addresses = longAddresses();
+        char[] chars = new char[NetUtils.MAX_DOTTED_DECIMAL_LENGTH];
+
+        // execute test
+        long previousLength = 0;
+        long currentLength = 0;
+        long previousNanos = 0;
+        long currentNanos = 0;
+        for (int round = -ROUNDS; round < ROUNDS; round++) {
+            long startNanos = System.nanoTime();
+            for (long address : addresses) {
+                previousLength += previousConvertLongToDottedDecimal(address).length();
+            }
+            long midNanos = System.nanoTime();
+            for (long address : addresses) {
+                currentLength += NetUtils.writeDottedDecimal(address, chars, 0);
+            }
+            if (round >= 0) {
+                previousNanos += midNanos - startNanos;
+                currentNanos += System.nanoTime() - midNanos;
+            }
+        }
+
+        // verify result
+        assertEquals(previousLength, currentLength);
+        logComparison("writeDottedDecimal", previousNanos, currentNanos);
+    }
+}
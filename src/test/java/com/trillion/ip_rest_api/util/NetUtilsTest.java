@@ -17,6 +17,22 @@ import org.junit.jupiter.params.provider.ValueSource;
  */
 @Tag("utils")
 public class NetUtilsTest {
+
+    /* -------- tests for appendDottedDecimal method -------- */
+
+    /**
+     * Verifies that the method appends each address in turn to the same StringBuilder.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void appendDottedDecimal_reusedBuilder_appendsEach() throws UnknownHostException {
+        StringBuilder builder = new StringBuilder();
+        NetUtils.appendDottedDecimal(16_909_060L, builder).append(',');
+        NetUtils.appendDottedDecimal(NetUtils.MAX_LONG_ADDRESS, builder);
+
+        assertEquals("1.2.3.4,255.255.255.255", builder.toString());
+    }
     
     /* -------- tests for assertValidDottedDecimal method -------- */
 
@@ -43,7 +59,13 @@ public class NetUtilsTest {
         "1.0.0",
         "1.0.0.0.0",
         "-1.0.0.0",
-        "256.0.0.0"
+        "256.0.0.0",
+        "01.0.0.0",
+        "1000.0.0.0",
+        "1..0.0",
+        "1.0.0.",
+        "1.0.0.0 ",
+        "a.0.0.0"
     })
     public void assertValidDottedDecimal_invalid_throwsUnknownHost(String address) {
         assertThrows(UnknownHostException.class, () -> {
@@ -125,6 +147,24 @@ public class NetUtilsTest {
         assertEquals(NetUtils.MAX_LONG_ADDRESS, result);
     }
     
+    /**
+     * Verifies that method converts addresses back to the same dotted decimal strings they were formatted from.
+     * 
+     * @param address Address to test.
+     * @throws UnknownHostException Should not happen.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {
+        16_909_060L,
+        167_772_170L,
+        3_232_235_876L
+    })
+    public void convertDottedDecimalToLong_formatted_roundTrips(long address) throws UnknownHostException {
+        long result = NetUtils.convertDottedDecimalToLong(NetUtils.convertLongToDottedDecimal(address));
+        
+        assertEquals(address, result);
+    }
+    
     /* -------- tests for convertLongToDottedDecimal method -------- */
     
     /**
@@ -203,5 +243,44 @@ public class NetUtilsTest {
         
         // verify results
         assertNotNull(subnetInfo);
-    }    
+    }
+
+    /* -------- tests for parseDottedDecimal method -------- */
+
+    /**
+     * Verifies that the method parses just the specified span of the chars.
+     */
+    @Test
+    public void parseDottedDecimal_span_returnsAddress() {
+        long result = NetUtils.parseDottedDecimal("[1.2.3.4]", 1, 8);
+
+        assertEquals(16_909_060L, result);
+    }
+
+    /**
+     * Verifies that the method returns -1 rather than throwing if the span holds an invalid address.
+     */
+    @Test
+    public void parseDottedDecimal_invalid_returnsMinus1() {
+        long result = NetUtils.parseDottedDecimal("1.2.3.400", 0, 9);
+
+        assertEquals(-1L, result);
+    }
+
+    /* -------- tests for writeDottedDecimal method -------- */
+
+    /**
+     * Verifies that the method writes the address from the specified offset, and returns the index after it.
+     * 
+     * @throws UnknownHostException Should not happen.
+     */
+    @Test
+    public void writeDottedDecimal_offset_returnsEnd() throws UnknownHostException {
+        char[] chars = new char[1 + NetUtils.MAX_DOTTED_DECIMAL_LENGTH];
+
+        int end = NetUtils.writeDottedDecimal(3_232_235_876L, chars, 1);
+
+        assertEquals(14, end);
+        assertEquals("192.168.1.100", new String(chars, 1, end - 1));
+    }
 }